@@ -0,0 +1,204 @@
+package com.firefly.utils.io;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The piped stream that retains the written buffers instead of copying them. When the retained data exceed the
+ * threshold, the buffers are written to a temp file by the gathering writes of the file channel, and the later
+ * buffers are collected and written in batches.
+ * <p>
+ * The writer must not modify the buffers after it writes them.
+ *
+ * @author Pengtao Qiu
+ */
+public class ByteBufferPipedStream implements PipedStream {
+
+    /**
+     * The buffers that are written after the spilling are collected until they reach this size.
+     */
+    public static final int SPILL_BATCH_SIZE = 64 * 1024;
+
+    private final int threshold;
+    private final String tempdir;
+    private final List<ByteBuffer> buffers = new ArrayList<>();
+    private long bufferedSize;
+    private long length;
+    private File temp;
+    private FileChannel channel;
+    private OutputStream out;
+    private InputStream in;
+
+    /**
+     * @param threshold The max bytes that are retained in memory.
+     * @param tempdir   The directory of the temp file.
+     */
+    public ByteBufferPipedStream(int threshold, String tempdir) {
+        this.threshold = threshold;
+        this.tempdir = tempdir;
+    }
+
+    /**
+     * Retain the buffer. The content between the position and the limit of the buffer is written, the position of
+     * the buffer is not changed.
+     *
+     * @param buffer The buffer.
+     * @throws IOException The temp file writing error.
+     */
+    public void write(ByteBuffer buffer) throws IOException {
+        if (!buffer.hasRemaining()) {
+            return;
+        }
+
+        buffers.add(buffer.slice());
+        bufferedSize += buffer.remaining();
+        length += buffer.remaining();
+        if (channel != null) {
+            if (bufferedSize >= SPILL_BATCH_SIZE) {
+                flushToFile();
+            }
+        } else if (bufferedSize > threshold) {
+            temp = new File(tempdir, UUID.randomUUID().toString());
+            temp.deleteOnExit();
+            channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            flushToFile();
+        }
+    }
+
+    private void flushToFile() throws IOException {
+        ByteBuffer[] array = buffers.toArray(BufferUtils.EMPTY_BYTE_BUFFER_ARRAY);
+        long remaining = bufferedSize;
+        while (remaining > 0) {
+            remaining -= channel.write(array);
+        }
+        buffers.clear();
+        bufferedSize = 0;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public boolean isSpilled() {
+        return channel != null || temp != null;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        if (in == null) {
+            if (channel != null) {
+                flushToFile();
+                channel.close();
+                channel = null;
+            }
+
+            if (temp != null) {
+                in = new BufferedInputStream(new FileInputStream(temp));
+            } else {
+                in = new ByteBufferInputStream(buffers);
+            }
+        }
+        return in;
+    }
+
+    /**
+     * Get the output stream that copies the written bytes. It is used by the writers that do not have the buffers.
+     *
+     * @return The output stream.
+     */
+    @Override
+    public OutputStream getOutputStream() {
+        if (out == null) {
+            out = new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[]{(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    byte[] copy = new byte[len];
+                    System.arraycopy(b, off, copy, 0, len);
+                    ByteBufferPipedStream.this.write(ByteBuffer.wrap(copy));
+                }
+            };
+        }
+        return out;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (in != null) {
+                in.close();
+            }
+            if (channel != null) {
+                channel.close();
+            }
+        } finally {
+            if (temp != null) {
+                temp.delete();
+            }
+            buffers.clear();
+            in = null;
+            out = null;
+            channel = null;
+            temp = null;
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final List<ByteBuffer> buffers;
+        private int index;
+
+        ByteBufferInputStream(List<ByteBuffer> buffers) {
+            this.buffers = buffers;
+        }
+
+        private ByteBuffer current() {
+            while (index < buffers.size()) {
+                ByteBuffer buffer = buffers.get(index);
+                if (buffer.hasRemaining()) {
+                    return buffer;
+                }
+                index++;
+            }
+            return null;
+        }
+
+        @Override
+        public int read() {
+            ByteBuffer buffer = current();
+            return buffer == null ? -1 : buffer.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            ByteBuffer buffer = current();
+            if (buffer == null) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            int available = 0;
+            for (int i = index; i < buffers.size(); i++) {
+                available += buffers.get(i).remaining();
+            }
+            return available;
+        }
+    }
+}
@@ -1,26 +1,134 @@
 package com.firefly.utils.lang.pool;
 
-import com.firefly.utils.concurrent.Atomics;
 import com.firefly.utils.concurrent.Promise;
+import com.firefly.utils.concurrent.Scheduler;
+import com.firefly.utils.concurrent.Schedulers;
 import com.firefly.utils.exception.CommonRuntimeException;
 import com.firefly.utils.lang.AbstractLifeCycle;
+import com.firefly.utils.time.Millisecond100Clock;
 
-import java.util.concurrent.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
+ * The bounded asynchronous pool. When the pool is exhausted, the request is put into a FIFO waiter queue and
+ * the released object is handed off to the eldest waiter directly. The waiter does not block any thread,
+ * its timeout is driven by a shared scheduler.
+ * <p>
+ * The idle objects are reused in LIFO order, so the most recently used objects stay hot and the least recently
+ * used objects are evicted by the {@link #evict()} when they are idle too long, expired or invalid.
+ *
  * @author Pengtao Qiu
  */
 public class BoundedAsynchronousPool<T> extends AbstractLifeCycle implements AsynchronousPool<T> {
 
+    private static final int WAITING = 0;
+    private static final int COMPLETED = 1;
+    private static final int TIMEOUT = 2;
+
     private int maxSize;
-    private AtomicInteger createdObjectSize = new AtomicInteger(0);
     private long timeout = 5000L;
-    private BlockingQueue<PooledObject<T>> queue;
+    private int createdObjectSize;
+    private int preparingSize;
+    private volatile int minIdle;
+    private volatile long maxIdleTime;
+    private volatile long maxLifetime;
+    private volatile SharedCapacity sharedCapacity;
+    private final ArrayDeque<PooledObject<T>> queue;
+    private final ArrayDeque<Waiter<T>> waiters = new ArrayDeque<>();
+    private final AtomicInteger waitingSize = new AtomicInteger();
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder destroyedCount = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder waitCount = new LongAdder();
+    private final LongAdder waitTime = new LongAdder();
+    private final Scheduler scheduler;
+    private final ObjectFactory<T> objectFactory;
+    private final Validator<T> validator;
+    private final Dispose<T> dispose;
+    private volatile PoolMetrics metrics = PoolMetrics.NOOP;
     private ExecutorService service;
-    private ObjectFactory<T> objectFactory;
-    private Validator<T> validator;
-    private Dispose<T> dispose;
+
+    /**
+     * Receives the pool events, it is used to report the pool metrics.
+     */
+    public interface PoolMetrics {
+
+        PoolMetrics NOOP = new PoolMetrics() {
+        };
+
+        /**
+         * The waiter gets an object.
+         *
+         * @param waitTime The wait time in nanoseconds.
+         */
+        default void onWaitCompleted(long waitTime) {
+        }
+
+        /**
+         * The waiter times out.
+         */
+        default void onWaitTimeout() {
+        }
+
+        /**
+         * The pool starts creating an object.
+         */
+        default void onCreate() {
+        }
+
+        /**
+         * The pool destroys an object.
+         */
+        default void onDestroy() {
+        }
+    }
+
+    /**
+     * The capacity that is shared by many pools, such as the max number of the connections of all the origins.
+     */
+    public interface SharedCapacity {
+
+        /**
+         * Acquire a slot before the pool creates an object.
+         *
+         * @return If true, the pool can create an object.
+         */
+        boolean tryAcquire();
+
+        /**
+         * Release a slot after the pool destroys an object or it fails to create the object.
+         */
+        void release();
+    }
+
+    private static class Waiter<T> {
+        final Promise.Completable<PooledObject<T>> completable = new Promise.Completable<>();
+        final long startTime = System.nanoTime();
+        final AtomicInteger state = new AtomicInteger(WAITING);
+        volatile Scheduler.Future timeoutFuture;
+    }
+
+    private static class DefaultScheduler {
+        static final Scheduler scheduler;
+
+        static {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread thread = new Thread(r, "firefly bounded asynchronous pool timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            scheduler = new Schedulers.SchedulerService(executor);
+        }
+    }
 
     public BoundedAsynchronousPool(ObjectFactory<T> objectFactory, Validator<T> validator, Dispose<T> dispose) {
         this(32, objectFactory, validator, dispose);
@@ -32,138 +140,425 @@ public class BoundedAsynchronousPool<T> extends AbstractLifeCycle implements Asy
 
     public BoundedAsynchronousPool(int maxSize, long timeout,
                                    ObjectFactory<T> objectFactory, Validator<T> validator, Dispose<T> dispose) {
-        this(maxSize, timeout,
-                Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> new Thread(r, "firefly bounded asynchronous pool")),
-                objectFactory, validator, dispose);
+        this(maxSize, timeout, DefaultScheduler.scheduler, objectFactory, validator, dispose);
     }
 
-    public BoundedAsynchronousPool(int maxSize, long timeout, ExecutorService service,
+    /**
+     * Create a bounded asynchronous pool.
+     *
+     * @param maxSize       The max number of the created objects.
+     * @param timeout       The max time in milliseconds that the request waits for a released object.
+     * @param scheduler     The timer of the waiters, it can be shared by many pools and the pool does not stop it.
+     * @param objectFactory Create the pooled object.
+     * @param validator     Validate the pooled object.
+     * @param dispose       Destroy the pooled object.
+     */
+    public BoundedAsynchronousPool(int maxSize, long timeout, Scheduler scheduler,
                                    ObjectFactory<T> objectFactory, Validator<T> validator, Dispose<T> dispose) {
         this.maxSize = maxSize;
         this.timeout = timeout;
-        this.service = service;
+        this.scheduler = scheduler;
         this.objectFactory = objectFactory;
         this.validator = validator;
         this.dispose = dispose;
-        this.queue = new ArrayBlockingQueue<>(maxSize);
+        this.queue = new ArrayDeque<>(maxSize);
         start();
     }
 
-    private Promise.Completable<PooledObject<T>> createObject() {
-        Promise.Completable<PooledObject<T>> r = new Promise.Completable<>();
-        createObject(r);
-        return r;
+    /**
+     * Create a bounded asynchronous pool.
+     *
+     * @param maxSize       The max number of the created objects.
+     * @param timeout       The max time in milliseconds that the request waits for a released object.
+     * @param service       The executor is not used, the waiters do not block any thread. It is shut down when the
+     *                      pool stops.
+     * @param objectFactory Create the pooled object.
+     * @param validator     Validate the pooled object.
+     * @param dispose       Destroy the pooled object.
+     * @deprecated Use {@link #BoundedAsynchronousPool(int, long, Scheduler, ObjectFactory, Validator, Dispose)}
+     */
+    @Deprecated
+    public BoundedAsynchronousPool(int maxSize, long timeout, ExecutorService service,
+                                   ObjectFactory<T> objectFactory, Validator<T> validator, Dispose<T> dispose) {
+        this(maxSize, timeout, DefaultScheduler.scheduler, objectFactory, validator, dispose);
+        this.service = service;
+    }
+
+    public void setMetrics(PoolMetrics metrics) {
+        this.metrics = metrics == null ? PoolMetrics.NOOP : metrics;
+    }
+
+    public void setSharedCapacity(SharedCapacity sharedCapacity) {
+        this.sharedCapacity = sharedCapacity;
+    }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    /**
+     * Set the min number of the idle objects. The {@link #prepare()} creates the objects until the idle objects
+     * reach this number, and the {@link #evict()} does not evict the objects that are idle too long below it.
+     *
+     * @param minIdle The min number of the idle objects.
+     */
+    public void setMinIdle(int minIdle) {
+        this.minIdle = Math.min(minIdle, maxSize);
+    }
+
+    public long getMaxIdleTime() {
+        return maxIdleTime;
+    }
+
+    /**
+     * Set the max time that an object stays idle in the pool.
+     *
+     * @param maxIdleTime The max idle time in milliseconds, 0 means no limit.
+     */
+    public void setMaxIdleTime(long maxIdleTime) {
+        this.maxIdleTime = maxIdleTime;
+    }
+
+    public long getMaxLifetime() {
+        return maxLifetime;
+    }
+
+    /**
+     * Set the max lifetime of an object. The expired object is destroyed when it is taken, released or evicted.
+     *
+     * @param maxLifetime The max lifetime in milliseconds, 0 means no limit.
+     */
+    public void setMaxLifetime(long maxLifetime) {
+        this.maxLifetime = maxLifetime;
+    }
+
+    private boolean reserveSlot() {
+        if (createdObjectSize >= maxSize) {
+            return false;
+        }
+        SharedCapacity capacity = sharedCapacity;
+        if (capacity != null && !capacity.tryAcquire()) {
+            return false;
+        }
+        createdObjectSize++;
+        return true;
     }
 
     private void createObject(Promise.Completable<PooledObject<T>> completable) {
-        Atomics.getAndIncrement(createdObjectSize, maxSize);
-        Promise.Completable<PooledObject<T>> tmp = objectFactory.createNew();
+        // the slot of the created object has been reserved
+        createdCount.increment();
+        metrics.onCreate();
+        Promise.Completable<PooledObject<T>> tmp;
+        try {
+            tmp = objectFactory.createNew();
+        } catch (Throwable e) {
+            releaseSlot();
+            completable.failed(e);
+            return;
+        }
         tmp.thenAccept(completable::succeeded)
            .exceptionally(e0 -> {
-               Atomics.getAndDecrement(createdObjectSize, 0);
+               releaseSlot();
                completable.failed(e0);
                return null;
            });
     }
 
-    private void destroyObject(PooledObject<T> t) {
-        Atomics.getAndDecrement(createdObjectSize, 0);
+    private void disposeObject(PooledObject<T> t) {
+        t.dispose();
+        destroyedCount.increment();
+        metrics.onDestroy();
         dispose.destroy(t);
     }
 
+    private void destroyObject(PooledObject<T> t) {
+        try {
+            disposeObject(t);
+        } finally {
+            releaseSlot();
+        }
+    }
+
+    /**
+     * The created object is destroyed or it is failed to create the object. If there are some waiters, the slot is
+     * transferred to the eldest waiter, and then it creates a new object for the waiter.
+     */
+    private void releaseSlot() {
+        Waiter<T> waiter;
+        boolean released = false;
+        synchronized (this) {
+            waiter = pollWaiter();
+            if (waiter == null && createdObjectSize > 0) {
+                createdObjectSize--;
+                released = true;
+            }
+        }
+        if (waiter != null) {
+            completeWaiter(waiter);
+            createObject(waiter.completable);
+        } else if (released) {
+            SharedCapacity capacity = sharedCapacity;
+            if (capacity != null) {
+                capacity.release();
+            }
+        }
+    }
+
+    /**
+     * Create the objects for the waiters if the pool has free slots. It is used when the shared capacity is released
+     * by the other pool.
+     */
+    public void createForWaiters() {
+        while (true) {
+            Waiter<T> waiter;
+            synchronized (this) {
+                if (waitingSize.get() == 0 || !reserveSlot()) {
+                    return;
+                }
+                waiter = pollWaiter();
+                if (waiter == null) {
+                    createdObjectSize--;
+                }
+            }
+            if (waiter == null) {
+                SharedCapacity capacity = sharedCapacity;
+                if (capacity != null) {
+                    capacity.release();
+                }
+                return;
+            }
+            completeWaiter(waiter);
+            createObject(waiter.completable);
+        }
+    }
+
     @Override
     public Promise.Completable<PooledObject<T>> take() {
-        PooledObject<T> t = get();
+        PooledObject<T> t;
+        Waiter<T> waiter = null;
+        boolean create = false;
+        synchronized (this) {
+            t = pollObject();
+            if (t == null) {
+                if (reserveSlot()) {
+                    create = true;
+                } else {
+                    waiter = new Waiter<>();
+                    waiters.offer(waiter);
+                    waitingSize.incrementAndGet();
+                }
+            }
+        }
+
         if (t != null) {
-            if (validator.isValid(t)) {
-                Promise.Completable<PooledObject<T>> completable = new Promise.Completable<>();
+            Promise.Completable<PooledObject<T>> completable = new Promise.Completable<>();
+            if (isAvailable(t, Millisecond100Clock.currentTimeMillis())) {
                 completable.succeeded(t);
-                return completable;
             } else {
-                destroyObject(t);
-                return createObject();
+                disposeObject(t);
+                createObject(completable);
             }
+            return completable;
+        } else if (create) {
+            Promise.Completable<PooledObject<T>> completable = new Promise.Completable<>();
+            createObject(completable);
+            return completable;
         } else {
-            // the queue is empty
-            int availableSize = maxSize - getCreatedObjectSize();
-            if (availableSize > 0) {
-                return createObject();
-            } else {
-                Promise.Completable<PooledObject<T>> completable = new Promise.Completable<>();
-                service.execute(() -> {
-                    try {
-                        PooledObject<T> r = queue.poll(timeout, TimeUnit.MILLISECONDS);
-                        if (r != null) {
-                            if (r.prepareTake()) {
-                                if (validator.isValid(r)) {
-                                    completable.succeeded(r);
-                                } else {
-                                    destroyObject(r);
-                                    createObject(completable);
-                                }
-                            } else {
-                                completable.failed(new CommonRuntimeException("the pooled object has been used"));
-                            }
-                        } else {
-                            completable.failed(new TimeoutException("take pooled object timeout"));
-                        }
-                    } catch (InterruptedException e) {
-                        completable.failed(e);
-                    }
-                });
-                return completable;
+            Waiter<T> w = waiter;
+            w.timeoutFuture = scheduler.schedule(() -> timeout(w), timeout, TimeUnit.MILLISECONDS);
+            return w.completable;
+        }
+    }
+
+    private void timeout(Waiter<T> waiter) {
+        if (waiter.state.compareAndSet(WAITING, TIMEOUT)) {
+            waitingSize.decrementAndGet();
+            timeoutCount.increment();
+            metrics.onWaitTimeout();
+            synchronized (this) {
+                // the waiters have the same timeout, so the timed out waiters are usually at the head of the queue
+                Waiter<T> head;
+                while ((head = waiters.peek()) != null && head.state.get() != WAITING) {
+                    waiters.poll();
+                }
+            }
+            waiter.completable.failed(new TimeoutException("take pooled object timeout"));
+        }
+    }
+
+    private Waiter<T> pollWaiter() {
+        Waiter<T> waiter;
+        while ((waiter = waiters.poll()) != null) {
+            if (waiter.state.compareAndSet(WAITING, COMPLETED)) {
+                waitingSize.decrementAndGet();
+                return waiter;
+            }
+        }
+        return null;
+    }
+
+    private void completeWaiter(Waiter<T> waiter) {
+        Scheduler.Future future = waiter.timeoutFuture;
+        if (future != null) {
+            future.cancel();
+        }
+        long time = System.nanoTime() - waiter.startTime;
+        waitCount.increment();
+        waitTime.add(time);
+        metrics.onWaitCompleted(time);
+    }
+
+    private boolean isExpired(PooledObject<T> t, long now) {
+        long maxLifetime = this.maxLifetime;
+        return maxLifetime > 0 && now - t.getCreateTime() >= maxLifetime;
+    }
+
+    private boolean isAvailable(PooledObject<T> t, long now) {
+        return !isExpired(t, now) && validator.isValid(t);
+    }
+
+    private PooledObject<T> pollObject() {
+        PooledObject<T> t;
+        // LIFO, the most recently released object is reused first
+        while ((t = queue.pollLast()) != null) {
+            if (t.prepareTake()) {
+                return t;
             }
         }
+        return null;
     }
 
     @Override
     public void release(PooledObject<T> t) {
-        if (t != null) {
-            if (t.prepareRelease()) {
-                boolean success = queue.offer(t);
-                if (!success) {
-                    // the queue is full
-                    service.execute(() -> {
-                        try {
-                            boolean success0 = queue.offer(t, timeout, TimeUnit.MILLISECONDS);
-                            if (!success0) {
-                                destroyObject(t);
-                            }
-                        } catch (InterruptedException e) {
-                            destroyObject(t);
-                        }
-                    });
+        if (t == null || !t.prepareRelease()) {
+            return;
+        }
+
+        if (isExpired(t, t.getReleasedTime())) {
+            t.prepareTake();
+            destroyObject(t);
+            return;
+        }
+
+        Waiter<T> waiter;
+        synchronized (this) {
+            waiter = pollWaiter();
+            if (waiter == null) {
+                queue.offerLast(t);
+                return;
+            }
+        }
+
+        // hand off the object to the eldest waiter
+        t.prepareTake();
+        completeWaiter(waiter);
+        if (validator.isValid(t)) {
+            waiter.completable.succeeded(t);
+        } else {
+            disposeObject(t);
+            createObject(waiter.completable);
+        }
+    }
+
+    /**
+     * Evict the idle objects that are idle too long, expired or invalid, and then create the objects until the idle
+     * objects reach the min idle number. It is called by the background sweeper periodically.
+     */
+    public void evict() {
+        long now = Millisecond100Clock.currentTimeMillis();
+        List<PooledObject<T>> evicted = new ArrayList<>();
+        List<PooledObject<T>> idle;
+        synchronized (this) {
+            idle = new ArrayList<>(queue);
+        }
+
+        // the head of the queue is the least recently used object
+        int idleSize = idle.size();
+        for (PooledObject<T> t : idle) {
+            boolean idleTooLong = maxIdleTime > 0 && now - t.getReleasedTime() > maxIdleTime && idleSize > minIdle;
+            if (idleTooLong || !isAvailable(t, now)) {
+                boolean removed;
+                synchronized (this) {
+                    removed = queue.remove(t) && t.prepareTake();
+                }
+                if (removed) {
+                    evicted.add(t);
+                    idleSize--;
                 }
             }
         }
+        evicted.forEach(this::destroyObject);
+        prepare();
+    }
+
+    /**
+     * Destroy the least recently used idle object.
+     *
+     * @return If true, an idle object is destroyed.
+     */
+    public boolean evictLeastRecentlyUsed() {
+        PooledObject<T> t;
+        synchronized (this) {
+            do {
+                t = queue.pollFirst();
+            } while (t != null && !t.prepareTake());
+        }
+        if (t == null) {
+            return false;
+        }
+        destroyObject(t);
+        return true;
+    }
+
+    /**
+     * Create the objects until the idle objects reach the min idle number, the created objects are put into the pool.
+     * It is used to warm up the pool.
+     */
+    public void prepare() {
+        int number = 0;
+        synchronized (this) {
+            while (queue.size() + preparingSize < minIdle && waitingSize.get() == 0 && reserveSlot()) {
+                preparingSize++;
+                number++;
+            }
+        }
+
+        for (int i = 0; i < number; i++) {
+            Promise.Completable<PooledObject<T>> completable = new Promise.Completable<>();
+            completable.thenAccept(t -> {
+                synchronized (this) {
+                    preparingSize--;
+                }
+                release(t);
+            }).exceptionally(e -> {
+                synchronized (this) {
+                    preparingSize--;
+                }
+                return null;
+            });
+            createObject(completable);
+        }
     }
 
     @Override
     public PooledObject<T> get() {
-        PooledObject<T> t = queue.poll();
-        if (t != null) {
-            if (t.prepareTake()) {
-                return t;
-            } else {
-                return null;
-            }
-        } else {
-            return t;
+        synchronized (this) {
+            return pollObject();
         }
     }
 
     @Override
-    public int size() {
+    public synchronized int size() {
         return queue.size();
     }
 
     @Override
-    public int getCreatedObjectSize() {
-        return createdObjectSize.get();
+    public synchronized int getCreatedObjectSize() {
+        return createdObjectSize;
     }
 
     @Override
-    public boolean isEmpty() {
+    public synchronized boolean isEmpty() {
         return queue.isEmpty();
     }
 
@@ -172,23 +567,99 @@ public class BoundedAsynchronousPool<T> extends AbstractLifeCycle implements Asy
         return validator.isValid(t);
     }
 
+    /**
+     * Get the number of the requests that are waiting for the released objects.
+     *
+     * @return The waiter queue depth.
+     */
+    public int getWaitingSize() {
+        return waitingSize.get();
+    }
+
+    /**
+     * Get the total number of the objects that the pool creates.
+     *
+     * @return The total number of the created objects.
+     */
+    public long getCreatedCount() {
+        return createdCount.sum();
+    }
+
+    /**
+     * Get the total number of the objects that the pool destroys.
+     *
+     * @return The total number of the destroyed objects.
+     */
+    public long getDestroyedCount() {
+        return destroyedCount.sum();
+    }
+
+    /**
+     * Get the number of the objects that are taken from the pool or being created.
+     *
+     * @return The number of the leased objects.
+     */
+    public synchronized int getLeasedSize() {
+        return createdObjectSize - queue.size();
+    }
+
+    /**
+     * Get the total number of the waiters that time out.
+     *
+     * @return The total number of the timed out waiters.
+     */
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    /**
+     * Get the total number of the waiters that get the objects.
+     *
+     * @return The total number of the completed waiters.
+     */
+    public long getWaitCount() {
+        return waitCount.sum();
+    }
+
+    /**
+     * Get the total wait time of the completed waiters.
+     *
+     * @return The total wait time in nanoseconds.
+     */
+    public long getWaitTime() {
+        return waitTime.sum();
+    }
+
     @Override
     protected void init() {
     }
 
     @Override
     protected void destroy() {
+        Waiter<T> waiter;
+        while ((waiter = pollWaiterSynchronously()) != null) {
+            Scheduler.Future future = waiter.timeoutFuture;
+            if (future != null) {
+                future.cancel();
+            }
+            waiter.completable.failed(new CommonRuntimeException("the pool has been stopped"));
+        }
+
         try {
             PooledObject<T> t;
-            while ((t = queue.poll()) != null) {
-                t.prepareTake();
+            while ((t = get()) != null) {
                 destroyObject(t);
             }
         } catch (Exception e) {
             System.err.println(e.getMessage());
         }
+
         if (service != null) {
             service.shutdown();
         }
     }
+
+    private synchronized Waiter<T> pollWaiterSynchronously() {
+        return pollWaiter();
+    }
 }
@@ -12,12 +12,15 @@ public class PooledObject<T> {
     private final T object;
     private final long createTime;
     private long activeTime;
+    private volatile long releasedTime;
+    private volatile boolean disposed;
     private AtomicBoolean released = new AtomicBoolean(false);
 
     public PooledObject(T object) {
         this.object = object;
         createTime = Millisecond100Clock.currentTimeMillis();
         activeTime = createTime;
+        releasedTime = createTime;
     }
 
     boolean prepareTake() {
@@ -25,7 +28,21 @@ public class PooledObject<T> {
     }
 
     boolean prepareRelease() {
-        return released.compareAndSet(false, true);
+        // the destroyed object can not be put back to the pool
+        if (!disposed && released.compareAndSet(false, true)) {
+            releasedTime = Millisecond100Clock.currentTimeMillis();
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    void dispose() {
+        disposed = true;
+    }
+
+    public boolean isDisposed() {
+        return disposed;
     }
 
     public boolean isReleased() {
@@ -44,4 +61,8 @@ public class PooledObject<T> {
     public long getActiveTime() {
         return activeTime;
     }
+
+    public long getReleasedTime() {
+        return releasedTime;
+    }
 }
@@ -1,23 +1,43 @@
 package com.firefly.utils.time;
 
 import com.firefly.utils.concurrent.Scheduler;
-import com.firefly.utils.concurrent.ThreadUtils;
 import com.firefly.utils.lang.AbstractLifeCycle;
 
-import java.util.concurrent.ConcurrentLinkedQueue;
-
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The timer that is based on the hierarchical timing wheel. Adding and cancelling a task are O(1). The worker
+ * thread wakes up at the deadline of every tick instead of sleeping an interval after running the tasks, so the
+ * execution time of the tasks does not delay the schedule, and the worker catches up the missed ticks after a pause.
+ * <p>
+ * The expired tasks run in the worker thread by default. If the tasks are slow, set an executor to run them.
+ */
 public class HashTimeWheel extends AbstractLifeCycle {
 
-    private int maxTimers = 60; // slot's number in wheel
+    private int maxTimers = 60;
     private long interval = 1000; // the clock's accuracy
+    private int levels = 4;
+    private Executor executor;
 
-    private ConcurrentLinkedQueue<TimerTask>[] timerSlots;
-    private volatile int currentSlot = 0;
+    private final Object lock = new Object();
+    private TimingWheel<TimerTask> wheel;
+    private long startTime;
+    private Thread worker;
 
+    @Deprecated
     public int getMaxTimers() {
         return maxTimers;
     }
 
+    /**
+     * @param maxTimers The slot number of the single level wheel.
+     * @deprecated Every level of the hierarchical wheel has 64 slots, use {@link #setLevels(int)} to set the range.
+     */
+    @Deprecated
     public void setMaxTimers(int maxTimers) {
         this.maxTimers = maxTimers;
     }
@@ -30,6 +50,33 @@ public class HashTimeWheel extends AbstractLifeCycle {
         this.interval = interval;
     }
 
+    public int getLevels() {
+        return levels;
+    }
+
+    /**
+     * Set the levels of the wheel. The wheel holds the delays in 64^levels intervals directly, the longer delays
+     * are checked again when they come in range.
+     *
+     * @param levels The levels of the wheel.
+     */
+    public void setLevels(int levels) {
+        this.levels = levels;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Set the executor that runs the expired tasks. If it is null, the tasks run in the worker thread.
+     *
+     * @param executor The executor of the expired tasks.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
     /**
      * add a task
      *
@@ -38,67 +85,87 @@ public class HashTimeWheel extends AbstractLifeCycle {
      * @return The task future
      */
     public Future add(long delay, Runnable run) {
-        final int curSlot = currentSlot;
-
-        final int ticks = delay > interval ? (int) (delay / interval) : 1; // figure out how many ticks need
-        final int index = (curSlot + (ticks % maxTimers)) % maxTimers; // figure out the wheel's index
-        final int round = (ticks - 1) / maxTimers; // the round number of spin
-
-        TimerTask task = new TimerTask(round, run);
-        timerSlots[index].add(task);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        long deadlineTick = Math.max(1, (elapsed + Math.max(delay, 0) + interval - 1) / interval);
+        TimerTask task = new TimerTask(run);
+        synchronized (lock) {
+            task.entry = wheel.add(task, deadlineTick);
+        }
+        return new Future(this, task);
+    }
 
-        return new Future(this, index, task);
+    private boolean remove(TimerTask task) {
+        synchronized (lock) {
+            return task.entry != null && wheel.cancel(task.entry);
+        }
     }
 
-    private boolean remove(TimerTask task, int index) {
-        return timerSlots[index].remove(task);
+    /**
+     * @return The number of the tasks that wait for running.
+     */
+    public int size() {
+        synchronized (lock) {
+            return wheel.size();
+        }
     }
 
     private final class Worker implements Runnable {
 
         @Override
         public void run() {
+            List<TimerTask> expired = new ArrayList<>();
+            long tick = 1;
             while (start) {
-                int currentSlotTemp = currentSlot;
-                ConcurrentLinkedQueue<TimerTask> timerSlot = timerSlots[currentSlotTemp++];
-                currentSlotTemp %= timerSlots.length;
-                timerSlot.removeIf(TimerTask::runTask);
-                ThreadUtils.sleep(interval);
-                currentSlot = currentSlotTemp;
+                long deadline = startTime + TimeUnit.MILLISECONDS.toNanos(tick * interval);
+                long wait = deadline - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                    continue;
+                }
+
+                // catch up all the ticks that are passed
+                tick = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) / interval;
+                synchronized (lock) {
+                    wheel.advance(tick, expired::add);
+                }
+                for (TimerTask task : expired) {
+                    runTask(task);
+                }
+                expired.clear();
+                tick++;
             }
         }
 
+        private void runTask(TimerTask task) {
+            try {
+                if (executor != null) {
+                    executor.execute(task.run);
+                } else {
+                    task.run.run();
+                }
+            } catch (Throwable t) {
+                // report the exception and keep the worker running
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+            }
+        }
     }
 
-    private final class TimerTask {
-        private int round;
-        private Runnable run;
+    private static final class TimerTask {
+        private final Runnable run;
+        private TimingWheel.Entry<TimerTask> entry;
 
-        public TimerTask(int round, Runnable run) {
-            this.round = round;
+        TimerTask(Runnable run) {
             this.run = run;
         }
-
-        public boolean runTask() {
-            if (round == 0) {
-                run.run();
-                return true;
-            } else {
-                round--;
-                return false;
-            }
-        }
     }
 
     public static class Future implements Scheduler.Future {
-        private HashTimeWheel timeWheel;
-        private int index;
-        private TimerTask task;
+        private final HashTimeWheel timeWheel;
+        private final TimerTask task;
 
-        public Future(HashTimeWheel timeWheel, int index, TimerTask task) {
-            super();
+        private Future(HashTimeWheel timeWheel, TimerTask task) {
             this.timeWheel = timeWheel;
-            this.index = index;
             this.task = task;
         }
 
@@ -109,26 +176,23 @@ public class HashTimeWheel extends AbstractLifeCycle {
          */
         @Override
         public boolean cancel() {
-            return timeWheel.remove(task, index);
+            return timeWheel.remove(task);
         }
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     protected void init() {
-        timerSlots = new ConcurrentLinkedQueue[maxTimers];
-        for (int i = 0; i < timerSlots.length; i++) {
-            timerSlots[i] = new ConcurrentLinkedQueue<TimerTask>();
-        }
-
+        startTime = System.nanoTime();
+        wheel = new TimingWheel<>(levels, 0);
         start = true;
-        new Thread(new Worker(), "firefly time wheel").start();
+        worker = new Thread(new Worker(), "firefly time wheel");
+        worker.start();
     }
 
     @Override
     protected void destroy() {
         start = false;
-        timerSlots = null;
+        LockSupport.unpark(worker);
     }
 
 }
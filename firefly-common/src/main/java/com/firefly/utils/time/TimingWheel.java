@@ -0,0 +1,182 @@
+package com.firefly.utils.time;
+
+import java.util.function.Consumer;
+
+/**
+ * The hierarchical timing wheel. Every level has 64 slots, the slot of the level n covers 64^n ticks. An entry is
+ * put in the lowest level that can hold its deadline, and it is moved to the lower levels when the wheel reaches
+ * the slot of the higher level. The slots are the doubly linked lists, so adding and cancelling an entry are O(1).
+ * <p>
+ * The wheel is not thread safe, the callers must synchronize the methods. It does not have a thread, the owner
+ * advances the wheel to the current tick and receives the expired entries in a batch.
+ *
+ * @author Pengtao Qiu
+ */
+public class TimingWheel<T> {
+
+    public static final int SLOT_BITS = 6;
+    public static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    private final Entry<T>[][] wheels;
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param levels  The number of the levels, the wheel holds the deadlines in 64^levels ticks directly, the
+     *                later deadlines are put in the last slot of the highest level until they come in range.
+     * @param startTick The first tick of the wheel.
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(int levels, long startTick) {
+        if (levels < 1 || levels * SLOT_BITS >= 63) {
+            throw new IllegalArgumentException("the levels must be in [1, 10]");
+        }
+        wheels = new Entry[levels][SLOTS];
+        for (Entry<T>[] wheel : wheels) {
+            for (int i = 0; i < SLOTS; i++) {
+                Entry<T> head = new Entry<>(null, 0);
+                head.prev = head;
+                head.next = head;
+                wheel[i] = head;
+            }
+        }
+        currentTick = startTick;
+    }
+
+    /**
+     * Add a value that expires at the deadline tick. If the deadline is passed, the value expires at the next
+     * advancing.
+     *
+     * @param value        The value.
+     * @param deadlineTick The deadline tick.
+     * @return The entry of the value, it is used to cancel the value.
+     */
+    public Entry<T> add(T value, long deadlineTick) {
+        Entry<T> entry = new Entry<>(value, deadlineTick);
+        insert(entry);
+        size++;
+        return entry;
+    }
+
+    /**
+     * Remove the entry from the wheel.
+     *
+     * @param entry The entry.
+     * @return If the entry is in the wheel, return true.
+     */
+    public boolean cancel(Entry<T> entry) {
+        if (entry.prev == null) {
+            return false;
+        }
+        unlink(entry);
+        size--;
+        return true;
+    }
+
+    /**
+     * Move the wheel to the tick, the entries whose deadlines are not later than the tick expire.
+     *
+     * @param tick    The current tick.
+     * @param expired Receive the expired values.
+     * @return The number of the expired values.
+     */
+    public int advance(long tick, Consumer<T> expired) {
+        int count = 0;
+        while (currentTick <= tick) {
+            if (size == 0) {
+                // nothing to cascade, skip the idle ticks
+                currentTick = tick + 1;
+                break;
+            }
+
+            for (int level = wheels.length - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    cascade(level);
+                }
+            }
+
+            Entry<T> head = wheels[0][(int) (currentTick & SLOT_MASK)];
+            while (head.next != head) {
+                Entry<T> entry = head.next;
+                unlink(entry);
+                size--;
+                count++;
+                expired.accept(entry.value);
+            }
+            currentTick++;
+        }
+        return count;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The next tick that the wheel processes.
+     */
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    private void cascade(int level) {
+        Entry<T> head = wheels[level][(int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK)];
+        while (head.next != head) {
+            Entry<T> entry = head.next;
+            unlink(entry);
+            insert(entry);
+        }
+    }
+
+    private void insert(Entry<T> entry) {
+        long deadline = Math.max(entry.deadlineTick, currentTick);
+        int top = wheels.length - 1;
+        for (int level = 0; level <= top; level++) {
+            int shift = SLOT_BITS * level;
+            long distance = (deadline >>> shift) - (currentTick >>> shift);
+            if (distance < SLOTS) {
+                link(wheels[level][(int) ((deadline >>> shift) & SLOT_MASK)], entry);
+                return;
+            }
+        }
+        // out of range, it is cascaded again when the wheel reaches the last slot of the highest level
+        int shift = SLOT_BITS * top;
+        link(wheels[top][(int) (((currentTick >>> shift) + SLOTS - 1) & SLOT_MASK)], entry);
+    }
+
+    private static <T> void link(Entry<T> head, Entry<T> entry) {
+        Entry<T> tail = head.prev;
+        entry.prev = tail;
+        entry.next = head;
+        tail.next = entry;
+        head.prev = entry;
+    }
+
+    private static <T> void unlink(Entry<T> entry) {
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+        entry.prev = null;
+        entry.next = null;
+    }
+
+    public static class Entry<T> {
+        private final T value;
+        private final long deadlineTick;
+        private Entry<T> prev;
+        private Entry<T> next;
+
+        private Entry(T value, long deadlineTick) {
+            this.value = value;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public long getDeadlineTick() {
+            return deadlineTick;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package test.utils.io;
+
+import com.firefly.utils.io.ByteBufferPipedStream;
+import com.firefly.utils.io.IO;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.is;
+
+/**
+ * @author Pengtao Qiu
+ */
+public class TestByteBufferPipedStream {
+
+    @Test
+    public void testInMemory() throws Exception {
+        try (ByteBufferPipedStream pipedStream = new ByteBufferPipedStream(1024, System.getProperty("java.io.tmpdir"))) {
+            ByteBuffer buffer = ByteBuffer.wrap("hello ".getBytes(StandardCharsets.UTF_8));
+            pipedStream.write(buffer);
+            Assert.assertThat(buffer.remaining(), is(6));
+
+            try (OutputStream out = pipedStream.getOutputStream()) {
+                out.write("world".getBytes(StandardCharsets.UTF_8));
+            }
+            Assert.assertThat(pipedStream.isSpilled(), is(false));
+            Assert.assertThat(pipedStream.getLength(), is(11L));
+
+            try (InputStream in = pipedStream.getInputStream()) {
+                Assert.assertThat(IO.toString(in, "UTF-8"), is("hello world"));
+            }
+        }
+    }
+
+    @Test
+    public void testSpill() throws Exception {
+        StringBuilder data = new StringBuilder();
+        try (ByteBufferPipedStream pipedStream = new ByteBufferPipedStream(4 * 1024, System.getProperty("java.io.tmpdir"))) {
+            for (int i = 0; i < 20000; i++) {
+                String s = i + ",";
+                data.append(s);
+                pipedStream.write(ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8)));
+            }
+            Assert.assertThat(pipedStream.isSpilled(), is(true));
+            Assert.assertThat(pipedStream.getLength(), is((long) data.length()));
+
+            try (InputStream in = pipedStream.getInputStream()) {
+                Assert.assertThat(IO.toString(in, "UTF-8"), is(data.toString()));
+            }
+        }
+    }
+}
@@ -10,6 +10,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -169,12 +170,175 @@ public class TestAsyncPool {
 
         int number = 100;
         takeObjectTest(pool, number);
-        Assert.assertThat(pool.size(), is(6));
+        // the slot of the failed object is transferred to the waiter, the waiter creates a new object
+        Assert.assertThat(pool.size(), is(8));
         Assert.assertThat(pool.size(), is(pool.getCreatedObjectSize()));
         System.out.println(pool.size());
         pool.stop();
     }
 
+    @Test
+    public void testWaiters() throws Exception {
+        BoundedAsynchronousPool<TestPooledObject> pool = createPool(2, 200L);
+        PooledObject<TestPooledObject> o1 = pool.take().get();
+        PooledObject<TestPooledObject> o2 = pool.take().get();
+
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        List<Promise.Completable<PooledObject<TestPooledObject>>> waiters = new ArrayList<>();
+        for (int j = 0; j < 3; j++) {
+            int index = j;
+            Promise.Completable<PooledObject<TestPooledObject>> completable = pool.take();
+            completable.thenAccept(o -> order.add(index));
+            waiters.add(completable);
+        }
+        Assert.assertThat(pool.getWaitingSize(), is(3));
+        Assert.assertThat(waiters.get(0).isDone(), is(false));
+
+        // the released object is handed off to the eldest waiter directly
+        pool.release(o1);
+        Assert.assertThat(waiters.get(0).isDone(), is(true));
+        Assert.assertThat(waiters.get(0).get(), is(o1));
+        pool.release(o2);
+        Assert.assertThat(waiters.get(1).get(), is(o2));
+        Assert.assertThat(order, is(Arrays.asList(0, 1)));
+        Assert.assertThat(pool.getWaitingSize(), is(1));
+        Assert.assertThat(pool.size(), is(0));
+
+        try {
+            waiters.get(2).get(2, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertThat(e.getCause(), instanceOf(TimeoutException.class));
+        }
+        Assert.assertThat(pool.getWaitingSize(), is(0));
+        Assert.assertThat(pool.getTimeoutCount(), is(1L));
+        Assert.assertThat(pool.getWaitCount(), is(2L));
+        Assert.assertThat(pool.getCreatedCount(), is(2L));
+
+        // the timed out waiter does not get the released object
+        pool.release(o1);
+        pool.release(o2);
+        Assert.assertThat(pool.size(), is(2));
+        Assert.assertThat(pool.getCreatedObjectSize(), is(2));
+        pool.stop();
+    }
+
+    @Test
+    public void testInvalidHandoff() throws Exception {
+        BoundedAsynchronousPool<TestPooledObject> pool = createPool(1, 5000L);
+        PooledObject<TestPooledObject> o = pool.take().get();
+        Promise.Completable<PooledObject<TestPooledObject>> waiter = pool.take();
+
+        // the waiter gets a new object if the released object is invalid
+        o.getObject().closed = true;
+        pool.release(o);
+        PooledObject<TestPooledObject> o2 = waiter.get(2, TimeUnit.SECONDS);
+        Assert.assertThat(o2.getObject().closed, is(false));
+        Assert.assertThat(o2.getObject().i, is(1));
+        Assert.assertThat(pool.getCreatedObjectSize(), is(1));
+        pool.release(o2);
+        pool.stop();
+    }
+
+    @Test
+    public void testLIFO() throws Exception {
+        BoundedAsynchronousPool<TestPooledObject> pool = createPool(4, 5000L);
+        PooledObject<TestPooledObject> o1 = pool.take().get();
+        PooledObject<TestPooledObject> o2 = pool.take().get();
+        pool.release(o1);
+        pool.release(o2);
+
+        // the most recently released object is reused first
+        Assert.assertThat(pool.take().get(), is(o2));
+        Assert.assertThat(pool.take().get(), is(o1));
+        pool.stop();
+    }
+
+    @Test
+    public void testEvict() throws Exception {
+        BoundedAsynchronousPool<TestPooledObject> pool = createPool(4, 5000L);
+        pool.setMaxIdleTime(300L);
+        pool.setMinIdle(1);
+        List<PooledObject<TestPooledObject>> list = new ArrayList<>();
+        for (int j = 0; j < 4; j++) {
+            list.add(pool.take().get());
+        }
+        list.get(0).getObject().closed = true;
+        list.forEach(pool::release);
+        Assert.assertThat(pool.size(), is(4));
+
+        // the health check evicts the invalid object
+        pool.evict();
+        Assert.assertThat(pool.size(), is(3));
+        Assert.assertThat(pool.getDestroyedCount(), is(1L));
+
+        // the idle objects are evicted but the min idle objects are kept
+        ThreadUtils.sleep(600L);
+        pool.evict();
+        Assert.assertThat(pool.size(), is(1));
+        Assert.assertThat(pool.getCreatedObjectSize(), is(1));
+        Assert.assertThat(pool.getDestroyedCount(), is(3L));
+
+        // the expired object is destroyed
+        pool.setMaxLifetime(300L);
+        pool.evict();
+        Assert.assertThat(pool.size(), is(1));
+        Assert.assertThat(pool.getDestroyedCount(), is(4L));
+        Assert.assertThat(pool.getCreatedCount(), is(5L));
+        pool.stop();
+    }
+
+    @Test
+    public void testPrepare() {
+        BoundedAsynchronousPool<TestPooledObject> pool = createPool(4, 5000L);
+        pool.setMinIdle(2);
+        pool.prepare();
+        Assert.assertThat(pool.size(), is(2));
+        Assert.assertThat(pool.getCreatedObjectSize(), is(2));
+        pool.prepare();
+        Assert.assertThat(pool.size(), is(2));
+        pool.stop();
+    }
+
+    @Test
+    public void testSharedCapacity() throws Exception {
+        AtomicInteger capacity = new AtomicInteger(2);
+        List<BoundedAsynchronousPool<TestPooledObject>> pools = new ArrayList<>();
+        BoundedAsynchronousPool.SharedCapacity sharedCapacity = new BoundedAsynchronousPool.SharedCapacity() {
+            @Override
+            public boolean tryAcquire() {
+                return capacity.getAndUpdate(c -> c > 0 ? c - 1 : c) > 0;
+            }
+
+            @Override
+            public void release() {
+                capacity.incrementAndGet();
+                pools.forEach(BoundedAsynchronousPool::createForWaiters);
+            }
+        };
+        BoundedAsynchronousPool<TestPooledObject> pool1 = createPool(4, 5000L);
+        BoundedAsynchronousPool<TestPooledObject> pool2 = createPool(4, 5000L);
+        pools.add(pool1);
+        pools.add(pool2);
+        pool1.setSharedCapacity(sharedCapacity);
+        pool2.setSharedCapacity(sharedCapacity);
+
+        PooledObject<TestPooledObject> o1 = pool1.take().get();
+        pool1.take().get();
+        Promise.Completable<PooledObject<TestPooledObject>> waiter = pool2.take();
+        Assert.assertThat(pool2.getWaitingSize(), is(1));
+
+        // the other pool creates an object for its waiter when the capacity is released
+        pool1.release(o1);
+        Assert.assertThat(pool1.evictLeastRecentlyUsed(), is(true));
+        Assert.assertThat(waiter.get(2, TimeUnit.SECONDS).getObject().closed, is(false));
+        Assert.assertThat(pool1.getCreatedObjectSize(), is(1));
+        Assert.assertThat(pool2.getCreatedObjectSize(), is(1));
+        Assert.assertThat(capacity.get(), is(0));
+        pool1.stop();
+        pool2.stop();
+    }
+
     private void takeObjectTest(BoundedAsynchronousPool<TestPooledObject> pool, int number) {
         Phaser phaser = new Phaser(number + 1);
         for (int j = 0; j < number; j++) {
@@ -183,8 +347,8 @@ public class TestAsyncPool {
                     System.out.println("get o: " + o.getObject().i + "| created object size: " + pool.getCreatedObjectSize());
                     new Thread(() -> {
                         ThreadUtils.sleep(100L);
-                        phaser.arrive();
                         pool.release(o);
+                        phaser.arrive();
                     }).start();
                 })
                 .exceptionally(t -> {
@@ -199,8 +363,12 @@ public class TestAsyncPool {
     }
 
     private BoundedAsynchronousPool<TestPooledObject> createPool(int size) {
+        return createPool(size, 5000L);
+    }
+
+    private BoundedAsynchronousPool<TestPooledObject> createPool(int size, long timeout) {
         AtomicInteger i = new AtomicInteger();
-        return new BoundedAsynchronousPool<>(size, () -> {
+        return new BoundedAsynchronousPool<>(size, timeout, () -> {
             Promise.Completable<PooledObject<TestPooledObject>> completable = new Promise.Completable<>();
             completable.succeeded(new PooledObject<>(new TestPooledObject(i.getAndIncrement())));
             return completable;
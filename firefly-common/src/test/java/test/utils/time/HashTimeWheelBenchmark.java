@@ -0,0 +1,226 @@
+package test.utils.time;
+
+import com.firefly.utils.concurrent.ThreadUtils;
+import com.firefly.utils.time.HashTimeWheel;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compare the hierarchical HashTimeWheel with the previous single level wheel and the ScheduledThreadPoolExecutor.
+ * <p>
+ * The idle timeout benchmark schedules a timeout for every connection, and then every activity of a connection
+ * cancels its timeout and schedules a new one. The drift benchmark runs the tasks that take a half interval, and it
+ * measures how late the tasks run.
+ *
+ * @author Pengtao Qiu
+ */
+public class HashTimeWheelBenchmark {
+
+    private static final int CONNECTIONS = 100_000;
+    private static final int ACTIVITIES = 5;
+
+    interface Timer {
+        Object add(long delay, Runnable task);
+
+        void cancel(Object future);
+
+        void stop();
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (int i = 0; i < 3; i++) {
+            System.out.println("round " + i);
+            idleTimeout("single level wheel", legacyTimer());
+            idleTimeout("hierarchical wheel", hierarchicalTimer(null));
+            idleTimeout("scheduled executor", scheduledExecutor());
+        }
+
+        drift("single level wheel", legacyTimer());
+        drift("hierarchical wheel", hierarchicalTimer(null));
+    }
+
+    private static void idleTimeout(String name, Timer timer) {
+        Object[] futures = new Object[CONNECTIONS];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Runnable task = () -> {
+        };
+
+        long start = System.nanoTime();
+        for (int i = 0; i < CONNECTIONS; i++) {
+            futures[i] = timer.add(30_000 + random.nextInt(30_000), task);
+        }
+        for (int j = 0; j < ACTIVITIES * CONNECTIONS; j++) {
+            // the connections are active in random order
+            int i = random.nextInt(CONNECTIONS);
+            timer.cancel(futures[i]);
+            futures[i] = timer.add(30_000 + random.nextInt(30_000), task);
+        }
+        long time = System.nanoTime() - start;
+        long ops = CONNECTIONS * (1L + 2L * ACTIVITIES);
+        System.out.println(name + ": idle timeout " + (ops * 1000_000_000L / time) + " ops/s");
+        timer.stop();
+    }
+
+    private static void drift(String name, Timer timer) throws InterruptedException {
+        int count = 50;
+        long interval = 20;
+        CountDownLatch latch = new CountDownLatch(count);
+        AtomicLong lateness = new AtomicLong();
+        long start = System.nanoTime();
+        for (int i = 1; i <= count; i++) {
+            long delay = i * interval;
+            timer.add(delay, () -> {
+                long late = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) - delay;
+                lateness.addAndGet(Math.max(0, late));
+                ThreadUtils.sleep(interval / 2);
+                latch.countDown();
+            });
+        }
+        latch.await();
+        System.out.println(name + ": average lateness " + (lateness.get() / count) + "ms");
+        timer.stop();
+    }
+
+    private static Timer hierarchicalTimer(Executor executor) {
+        HashTimeWheel wheel = new HashTimeWheel();
+        wheel.setInterval(10);
+        wheel.setExecutor(executor);
+        wheel.start();
+        return new Timer() {
+            @Override
+            public Object add(long delay, Runnable task) {
+                return wheel.add(delay, task);
+            }
+
+            @Override
+            public void cancel(Object future) {
+                ((HashTimeWheel.Future) future).cancel();
+            }
+
+            @Override
+            public void stop() {
+                wheel.stop();
+            }
+        };
+    }
+
+    private static Timer legacyTimer() {
+        LegacyHashTimeWheel wheel = new LegacyHashTimeWheel();
+        wheel.init();
+        return new Timer() {
+            @Override
+            public Object add(long delay, Runnable task) {
+                return wheel.add(delay, task);
+            }
+
+            @Override
+            public void cancel(Object future) {
+                ((LegacyHashTimeWheel.Future) future).cancel();
+            }
+
+            @Override
+            public void stop() {
+                wheel.start = false;
+            }
+        };
+    }
+
+    private static Timer scheduledExecutor() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+        executor.setRemoveOnCancelPolicy(true);
+        return new Timer() {
+            @Override
+            public Object add(long delay, Runnable task) {
+                return executor.schedule(task, delay, TimeUnit.MILLISECONDS);
+            }
+
+            @Override
+            public void cancel(Object future) {
+                ((ScheduledFuture<?>) future).cancel(false);
+            }
+
+            @Override
+            public void stop() {
+                executor.shutdownNow();
+            }
+        };
+    }
+
+    /**
+     * The previous single level wheel, it walks the slot to cancel a task and to decrease the rounds, and it
+     * sleeps an interval after running the tasks of a slot.
+     */
+    static class LegacyHashTimeWheel {
+        private final int maxTimers = 60;
+        private final long interval = 10;
+        private ConcurrentLinkedQueue<TimerTask>[] timerSlots;
+        private volatile int currentSlot = 0;
+        private volatile boolean start;
+
+        Future add(long delay, Runnable run) {
+            final int curSlot = currentSlot;
+            final int ticks = delay > interval ? (int) (delay / interval) : 1;
+            final int index = (curSlot + (ticks % maxTimers)) % maxTimers;
+            final int round = (ticks - 1) / maxTimers;
+            TimerTask task = new TimerTask(round, run);
+            timerSlots[index].add(task);
+            return new Future(this, index, task);
+        }
+
+        @SuppressWarnings("unchecked")
+        void init() {
+            timerSlots = new ConcurrentLinkedQueue[maxTimers];
+            for (int i = 0; i < timerSlots.length; i++) {
+                timerSlots[i] = new ConcurrentLinkedQueue<>();
+            }
+            start = true;
+            new Thread(() -> {
+                while (start) {
+                    int currentSlotTemp = currentSlot;
+                    ConcurrentLinkedQueue<TimerTask> timerSlot = timerSlots[currentSlotTemp++];
+                    currentSlotTemp %= timerSlots.length;
+                    timerSlot.removeIf(TimerTask::runTask);
+                    ThreadUtils.sleep(interval);
+                    currentSlot = currentSlotTemp;
+                }
+            }, "legacy time wheel").start();
+        }
+
+        static class TimerTask {
+            private int round;
+            private final Runnable run;
+
+            TimerTask(int round, Runnable run) {
+                this.round = round;
+                this.run = run;
+            }
+
+            boolean runTask() {
+                if (round == 0) {
+                    run.run();
+                    return true;
+                } else {
+                    round--;
+                    return false;
+                }
+            }
+        }
+
+        static class Future {
+            private final LegacyHashTimeWheel timeWheel;
+            private final int index;
+            private final TimerTask task;
+
+            Future(LegacyHashTimeWheel timeWheel, int index, TimerTask task) {
+                this.timeWheel = timeWheel;
+                this.index = index;
+                this.task = task;
+            }
+
+            boolean cancel() {
+                return timeWheel.timerSlots[index].remove(task);
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package test.utils.time;
+
+import com.firefly.utils.time.HashTimeWheel;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.is;
+
+/**
+ * @author Pengtao Qiu
+ */
+public class TestHashTimeWheel {
+
+    private HashTimeWheel timeWheel;
+
+    @Before
+    public void init() {
+        timeWheel = new HashTimeWheel();
+        timeWheel.setInterval(10);
+    }
+
+    @After
+    public void destroy() {
+        timeWheel.stop();
+    }
+
+    @Test
+    public void testDelay() throws Exception {
+        timeWheel.start();
+        int count = 20;
+        CountDownLatch latch = new CountDownLatch(count);
+        AtomicInteger early = new AtomicInteger();
+        for (int i = 0; i < count; i++) {
+            long delay = i * 15;
+            long start = System.nanoTime();
+            timeWheel.add(delay, () -> {
+                if (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < delay) {
+                    early.incrementAndGet();
+                }
+                latch.countDown();
+            });
+        }
+        Assert.assertThat(latch.await(5, TimeUnit.SECONDS), is(true));
+        Assert.assertThat(early.get(), is(0));
+        Assert.assertThat(timeWheel.size(), is(0));
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        timeWheel.start();
+        AtomicInteger executed = new AtomicInteger();
+        HashTimeWheel.Future future = timeWheel.add(50, executed::incrementAndGet);
+        CountDownLatch latch = new CountDownLatch(1);
+        timeWheel.add(100, latch::countDown);
+
+        Assert.assertThat(future.cancel(), is(true));
+        Assert.assertThat(future.cancel(), is(false));
+        Assert.assertThat(latch.await(5, TimeUnit.SECONDS), is(true));
+        Assert.assertThat(executed.get(), is(0));
+    }
+
+    @Test
+    public void testExecutor() throws Exception {
+        ExecutorService executor = Executors.newCachedThreadPool(r -> new Thread(r, "timer task executor"));
+        timeWheel.setExecutor(executor);
+        timeWheel.start();
+
+        CountDownLatch slow = new CountDownLatch(1);
+        timeWheel.add(10, () -> {
+            try {
+                slow.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+        });
+
+        // the slow task does not block the worker thread
+        CountDownLatch fast = new CountDownLatch(1);
+        timeWheel.add(30, () -> {
+            Assert.assertThat(Thread.currentThread().getName(), is("timer task executor"));
+            fast.countDown();
+        });
+        Assert.assertThat(fast.await(1, TimeUnit.SECONDS), is(true));
+        slow.countDown();
+        executor.shutdown();
+    }
+}
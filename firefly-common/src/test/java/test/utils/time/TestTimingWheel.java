@@ -0,0 +1,77 @@
+package test.utils.time;
+
+import com.firefly.utils.time.TimingWheel;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.is;
+
+/**
+ * @author Pengtao Qiu
+ */
+public class TestTimingWheel {
+
+    @Test
+    public void testExpireAtDeadline() {
+        TimingWheel<Long> wheel = new TimingWheel<>(3, 1000);
+        Random random = new Random(7);
+        int count = 10000;
+        for (int i = 0; i < count; i++) {
+            // cover all the levels and the deadlines out of range
+            long deadline = 1000 + random.nextInt(64 * 64 * 64 * 2);
+            wheel.add(deadline, deadline);
+        }
+        Assert.assertThat(wheel.size(), is(count));
+
+        List<Long> expired = new ArrayList<>();
+        for (long tick = 1000; wheel.size() > 0; tick++) {
+            long now = tick;
+            wheel.advance(tick, deadline -> {
+                Assert.assertThat(deadline, is(now));
+                expired.add(deadline);
+            });
+        }
+        Assert.assertThat(expired.size(), is(count));
+    }
+
+    @Test
+    public void testCatchUp() {
+        TimingWheel<String> wheel = new TimingWheel<>(2, 0);
+        wheel.add("a", 10);
+        wheel.add("b", 100);
+        wheel.add("c", 5000);
+
+        List<String> expired = new ArrayList<>();
+        Assert.assertThat(wheel.advance(200, expired::add), is(2));
+        Assert.assertThat(expired.toString(), is("[a, b]"));
+        Assert.assertThat(wheel.advance(4999, expired::add), is(0));
+        Assert.assertThat(wheel.advance(5000, expired::add), is(1));
+        Assert.assertThat(wheel.getCurrentTick(), is(5001L));
+
+        // the passed deadline expires at the next advancing
+        wheel.add("d", 10);
+        Assert.assertThat(wheel.advance(5001, expired::add), is(1));
+        Assert.assertThat(expired.toString(), is("[a, b, c, d]"));
+    }
+
+    @Test
+    public void testCancel() {
+        TimingWheel<String> wheel = new TimingWheel<>(2, 0);
+        TimingWheel.Entry<String> a = wheel.add("a", 10);
+        TimingWheel.Entry<String> b = wheel.add("b", 1000);
+        wheel.add("c", 1000);
+        Assert.assertThat(wheel.cancel(a), is(true));
+        Assert.assertThat(wheel.cancel(a), is(false));
+        Assert.assertThat(wheel.cancel(b), is(true));
+        Assert.assertThat(wheel.size(), is(1));
+
+        List<String> expired = new ArrayList<>();
+        wheel.advance(2000, expired::add);
+        Assert.assertThat(expired.toString(), is("[c]"));
+        Assert.assertThat(wheel.size(), is(0));
+    }
+}
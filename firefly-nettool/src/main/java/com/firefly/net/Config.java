@@ -19,6 +19,14 @@ public class Config {
     private Encoder encoder;
     private Handler handler;
 
+    // the read buffer pool, the session allocates a heap buffer for every reading if it is null
+    private BufferPool readBufferPool;
+
+    // merge the queued output entries into one gathering write
+    private boolean gatheringWriteEnabled = false;
+    private int maxGatheringWriteBytes = 256 * 1024;
+    private int maxGatheringWriteEntries = 64;
+
     private boolean monitorEnable = true;
     private MetricReporterFactory metricReporterFactory = ServiceUtils.loadService(MetricReporterFactory.class, new DefaultMetricReporterFactory());
 
@@ -97,6 +105,63 @@ public class Config {
         this.metricReporterFactory = metricReporterFactory;
     }
 
+    public BufferPool getReadBufferPool() {
+        return readBufferPool;
+    }
+
+    /**
+     * Set the pool that provides the buffers of socket reading. The pool is used only by the TLS connections. The TLS
+     * session copies the received data to its packet buffer and releases the received buffer by
+     * {@link Session#releaseBuffer(java.nio.ByteBuffer)}. The plaintext HTTP/1, HTTP/2 and TCP connection decoders
+     * keep the slices of the received buffers in the parsed content, so their sessions allocate a heap buffer for
+     * every reading and do not use the pool. See {@link Session#enableReadBufferPool()}.
+     *
+     * @param readBufferPool The read buffer pool. If it is null, the session allocates a heap buffer for every reading.
+     */
+    public void setReadBufferPool(BufferPool readBufferPool) {
+        this.readBufferPool = readBufferPool;
+    }
+
+    public boolean isGatheringWriteEnabled() {
+        return gatheringWriteEnabled;
+    }
+
+    /**
+     * If true, the session drains the queued byte buffer entries into one gathering write,
+     * and then completes the callback of every entry in order.
+     *
+     * @param gatheringWriteEnabled Enable the gathering write. The default value is false.
+     */
+    public void setGatheringWriteEnabled(boolean gatheringWriteEnabled) {
+        this.gatheringWriteEnabled = gatheringWriteEnabled;
+    }
+
+    public int getMaxGatheringWriteBytes() {
+        return maxGatheringWriteBytes;
+    }
+
+    /**
+     * Set the max bytes of a gathering write. The first entry is always written even if it exceeds this value.
+     *
+     * @param maxGatheringWriteBytes The max bytes of a gathering write. The default value is 256KB.
+     */
+    public void setMaxGatheringWriteBytes(int maxGatheringWriteBytes) {
+        this.maxGatheringWriteBytes = maxGatheringWriteBytes;
+    }
+
+    public int getMaxGatheringWriteEntries() {
+        return maxGatheringWriteEntries;
+    }
+
+    /**
+     * Set the max number of the output entries that are merged into a gathering write.
+     *
+     * @param maxGatheringWriteEntries The max entry number of a gathering write. The default value is 64.
+     */
+    public void setMaxGatheringWriteEntries(int maxGatheringWriteEntries) {
+        this.maxGatheringWriteEntries = maxGatheringWriteEntries;
+    }
+
     public boolean isMonitorEnable() {
         return monitorEnable;
     }
@@ -110,6 +175,8 @@ public class Config {
         return "Firefly asynchronous TCP configuration {" +
                 "timeout=" + timeout +
                 ", asynchronousCorePoolSize=" + asynchronousCorePoolSize +
+                ", readBufferPool=" + (readBufferPool != null ? readBufferPool.getClass().getSimpleName() : "none") +
+                ", gatheringWriteEnabled=" + gatheringWriteEnabled +
                 '}';
     }
 }
@@ -3,5 +3,14 @@ package com.firefly.net;
 import java.nio.ByteBuffer;
 
 public interface Decoder {
+
+	/**
+	 * Decode the received data. If the read buffer pool is configured, the decoder should call
+	 * {@link Session#releaseBuffer(ByteBuffer)} after it consumes the buffer.
+	 *
+	 * @param buf     The received data
+	 * @param session The current session
+	 * @throws Throwable A decoding exception
+	 */
 	void decode(ByteBuffer buf, Session session) throws Throwable;
 }
@@ -1,5 +1,6 @@
 package com.firefly.net;
 
+import com.codahale.metrics.MetricRegistry;
 import com.firefly.net.buffer.FileRegion;
 import com.firefly.utils.concurrent.Callback;
 
@@ -21,6 +22,14 @@ public interface Session {
 
     void encode(Object message);
 
+    /**
+     * Pass the buffer to the decoder, as the buffer is received from the socket. The handshake executor calls it to
+     * continue the TLS handshake that waits for the delegated tasks.
+     *
+     * @param buf The received data.
+     */
+    void decode(ByteBuffer buf);
+
     void write(OutputEntry<?> entry);
 
     void write(ByteBuffer byteBuffer, Callback callback);
@@ -31,6 +40,35 @@ public interface Session {
 
     void write(FileRegion file, Callback callback);
 
+    /**
+     * Return the received buffer to the read buffer pool. The decoder calls it when the buffer has been consumed
+     * and no reference of the buffer is retained. It does nothing if the read buffer pool is not configured.
+     *
+     * @param buffer The buffer that is passed to the decoder.
+     */
+    void releaseBuffer(ByteBuffer buffer);
+
+    /**
+     * Read the socket into the buffers of the read buffer pool. The session does not use the pool until it is
+     * enabled, because the plaintext decoders keep the slices of the received buffers. The decoder that releases
+     * every received buffer by {@link #releaseBuffer(ByteBuffer)} enables it, such as the TLS session that copies the
+     * received data to its packet buffer.
+     */
+    void enableReadBufferPool();
+
+    /**
+     * Stop reading the socket after the current buffer is decoded. It is the backpressure of a consumer that can not
+     * keep up with the received data. The peer is blocked by the TCP flow control when the socket buffer is full.
+     */
+    void suspendRead();
+
+    /**
+     * Continue reading the socket that is suspended by {@link #suspendRead()}.
+     */
+    void resumeRead();
+
+    boolean isReadSuspended();
+
     int getSessionId();
 
     long getOpenTime();
@@ -66,4 +104,11 @@ public interface Session {
     InetSocketAddress getRemoteAddress();
 
     long getIdleTimeout();
+
+    /**
+     * Get the metric registry of the session configuration.
+     *
+     * @return The metric registry
+     */
+    MetricRegistry getMetricRegistry();
 }
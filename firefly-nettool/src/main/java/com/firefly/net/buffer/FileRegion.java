@@ -1,87 +1,197 @@
-package com.firefly.net.buffer;
-
-import java.io.Closeable;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.nio.channels.FileChannel;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
-
-import com.firefly.utils.concurrent.Callback;
-import com.firefly.utils.io.BufferReaderHandler;
-import com.firefly.utils.io.FileUtils;
-
-public class FileRegion implements Closeable {
-
-	private final File file;
-	private final long position;
-	private final long length;
-	private final boolean randomAccess;
-	private FileChannel fileChannel;
-
-	public FileRegion(File file) throws FileNotFoundException {
-		this.file = file;
-		position = 0;
-		length = file.length();
-		randomAccess = false;
-	}
-
-	public FileRegion(File file, long position, long length) throws FileNotFoundException {
-		long fileLen = file.length();
-		if (position < 0 || position >= fileLen) {
-			throw new IndexOutOfBoundsException("the position range is illegal");
-		}
-
-		this.file = file;
-		this.position = position;
-		this.length = length;
-		if (position > 0) {
-			randomAccess = true;
-		} else {
-			randomAccess = (length < fileLen);
-		}
-	}
-
-	public long getPosition() {
-		return position;
-	}
-
-	public long getLength() {
-		return length;
-	}
-
-	public FileChannel getFileChannel() throws IOException {
-		if (fileChannel != null) {
-			return fileChannel;
-		} else {
-			fileChannel = FileChannel.open(Paths.get(file.toURI()), StandardOpenOption.READ);
-			return fileChannel;
-		}
-	}
-
-	public boolean isRandomAccess() {
-		return randomAccess;
-	}
-
-	public File getFile() {
-		return file;
-	}
-
-	public long transferTo(Callback callback, BufferReaderHandler handler) throws IOException {
-		long ret;
-		if (isRandomAccess()) {
-			ret = FileUtils.transferTo(getFileChannel(), getPosition(), getLength(), callback, handler);
-		} else {
-			ret = FileUtils.transferTo(getFileChannel(), getLength(), callback, handler);
-		}
-		return ret;
-	}
-
-	@Override
-	public void close() throws IOException {
-		if (fileChannel != null)
-			fileChannel.close();
-	}
-
-}
+package com.firefly.net.buffer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import com.firefly.utils.concurrent.Callback;
+import com.firefly.utils.concurrent.CountingCallback;
+import com.firefly.utils.concurrent.IteratingCallback;
+import com.firefly.utils.io.BufferReaderHandler;
+import com.firefly.utils.io.FileUtils;
+import com.firefly.utils.io.IO;
+
+public class FileRegion implements Closeable {
+
+	/**
+	 * The max size of a memory mapped chunk
+	 */
+	public static final int MAPPED_CHUNK_SIZE = 8 * 1024 * 1024;
+
+	/**
+	 * The file region that is shorter than this value is read by the heap buffer, because mapping a small file
+	 * costs more than reading it.
+	 */
+	public static final int MIN_MAPPED_LENGTH = 64 * 1024;
+
+	private final File file;
+	private final long position;
+	private final long length;
+	private final boolean randomAccess;
+	private FileChannel fileChannel;
+
+	public FileRegion(File file) throws FileNotFoundException {
+		this.file = file;
+		position = 0;
+		length = file.length();
+		randomAccess = false;
+	}
+
+	public FileRegion(File file, long position, long length) throws FileNotFoundException {
+		long fileLen = file.length();
+		if (position < 0 || position >= fileLen) {
+			throw new IndexOutOfBoundsException("the position range is illegal");
+		}
+
+		this.file = file;
+		this.position = position;
+		this.length = length;
+		if (position > 0) {
+			randomAccess = true;
+		} else {
+			randomAccess = (length < fileLen);
+		}
+	}
+
+	public long getPosition() {
+		return position;
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	public FileChannel getFileChannel() throws IOException {
+		if (fileChannel != null) {
+			return fileChannel;
+		} else {
+			fileChannel = FileChannel.open(Paths.get(file.toURI()), StandardOpenOption.READ);
+			return fileChannel;
+		}
+	}
+
+	public boolean isRandomAccess() {
+		return randomAccess;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public long transferTo(Callback callback, BufferReaderHandler handler) throws IOException {
+		long ret;
+		if (isRandomAccess()) {
+			ret = FileUtils.transferTo(getFileChannel(), getPosition(), getLength(), callback, handler);
+		} else {
+			ret = FileUtils.transferTo(getFileChannel(), getLength(), callback, handler);
+		}
+		return ret;
+	}
+
+	/**
+	 * Map the file region to the read-only direct buffers and pass them to the handler. The socket channel writes the
+	 * mapped buffers from the page cache, so the data is not copied to a user space buffer. The handler receives the
+	 * next slice when the callback of the previous slice is succeeded, and the next chunk is mapped when the previous
+	 * chunk is consumed, so a slow connection does not hold the whole region in the memory. The region that is
+	 * shorter than {@link #MIN_MAPPED_LENGTH} falls back to {@link #transferTo(Callback, BufferReaderHandler)}.
+	 *
+	 * @param callback  The callback is succeeded when all the buffers passed to the handler are completed
+	 * @param handler   The handler receives the mapped buffers
+	 * @param sliceSize The max size of the buffer passed to the handler
+	 * @return The length of the region that will be transferred
+	 * @throws IOException Opening file or mapping the first chunk error, the later errors fail the callback
+	 */
+	public long transferMappedBuffers(Callback callback, BufferReaderHandler handler, int sliceSize) throws IOException {
+		if (length < MIN_MAPPED_LENGTH) {
+			return transferTo(callback, handler);
+		}
+
+		// the transfer owns the channel until the last slice is completed, closing the region does not break it
+		FileChannel fc = FileChannel.open(Paths.get(file.toURI()), StandardOpenOption.READ);
+		MappedBufferTransfer transfer;
+		try {
+			long len = Math.min(length, fc.size() - position);
+			if (len <= 0) {
+				fc.close();
+				callback.succeeded();
+				return 0;
+			}
+			transfer = new MappedBufferTransfer(fc, len, sliceSize, callback, handler);
+		} catch (IOException e) {
+			fc.close();
+			throw e;
+		}
+		transfer.iterate();
+		return transfer.len;
+	}
+
+	private class MappedBufferTransfer extends IteratingCallback {
+
+		private final FileChannel fc;
+		private final long len;
+		private final int sliceSize;
+		private final Callback callback;
+		private final BufferReaderHandler handler;
+		private MappedByteBuffer mapped;
+		private long count;
+
+		private MappedBufferTransfer(FileChannel fc, long len, int sliceSize, Callback callback,
+				BufferReaderHandler handler) throws IOException {
+			this.fc = fc;
+			this.len = len;
+			this.sliceSize = sliceSize;
+			this.callback = callback;
+			this.handler = handler;
+			mapped = map();
+		}
+
+		private MappedByteBuffer map() throws IOException {
+			return fc.map(FileChannel.MapMode.READ_ONLY, position + count, Math.min(MAPPED_CHUNK_SIZE, len - count));
+		}
+
+		@Override
+		protected Action process() throws Throwable {
+			if (count >= len) {
+				return Action.SUCCEEDED;
+			}
+			if (!mapped.hasRemaining()) {
+				mapped = map();
+			}
+
+			int size = Math.min(sliceSize, mapped.remaining());
+			ByteBuffer buf = mapped.slice();
+			buf.limit(size);
+			mapped.position(mapped.position() + size);
+			count += size;
+			handler.readBuffer(buf, new CountingCallback(this, 1), count);
+			return Action.SCHEDULED;
+		}
+
+		@Override
+		protected void onCompleteSuccess() {
+			mapped = null;
+			IO.close(fc);
+			callback.succeeded();
+		}
+
+		@Override
+		protected void onCompleteFailure(Throwable cause) {
+			mapped = null;
+			IO.close(fc);
+			callback.failed(cause);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (fileChannel != null)
+			fileChannel.close();
+	}
+
+}
@@ -0,0 +1,221 @@
+package com.firefly.net.buffer;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.firefly.net.BufferPool;
+import com.firefly.net.MetricReporterFactory;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A striped buffer pool that groups the buffers by power-of-two size classes.
+ * The stripe is selected by the current thread, so the I/O threads rarely contend with each other.
+ * The buffers are allowed to be released by any thread. The buffer that is larger than the max size class
+ * is not pooled.
+ *
+ * @author Pengtao Qiu
+ */
+public class SizeClassedBufferPool implements BufferPool {
+
+    public static final int DEFAULT_MIN_SIZE = 1024;
+    public static final int DEFAULT_MAX_SIZE = 64 * 1024;
+    public static final int DEFAULT_MAX_BUFFERS_PER_CLASS = 64;
+
+    private final boolean directBuffer;
+    private final int minShift;
+    private final int maxSize;
+    private final int stripeMask;
+    private final ArrayBlockingQueue<ByteBuffer>[][] stripes;
+
+    private final Counter hit;
+    private final Counter miss;
+    private final Counter outstanding;
+    private final Counter pooled;
+    private final Meter allocation;
+
+    public SizeClassedBufferPool(MetricReporterFactory metricReporterFactory) {
+        this(metricReporterFactory, true);
+    }
+
+    public SizeClassedBufferPool(MetricReporterFactory metricReporterFactory, boolean directBuffer) {
+        this(metricReporterFactory, directBuffer, DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE, DEFAULT_MAX_BUFFERS_PER_CLASS,
+                Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    /**
+     * Create a size classed buffer pool.
+     *
+     * @param metricReporterFactory The metric registry provider. The pool reports the hit, miss, outstanding and pooled counters.
+     * @param directBuffer          If true, the pool allocates the direct buffers.
+     * @param minSize               The smallest size class, it will be rounded up to the power of two.
+     * @param maxSize               The largest size class, it will be rounded up to the power of two.
+     * @param maxBuffersPerClass    The max number of idle buffers of every size class in a stripe.
+     * @param stripeNumber          The stripe number, it will be rounded up to the power of two.
+     */
+    public SizeClassedBufferPool(MetricReporterFactory metricReporterFactory, boolean directBuffer,
+                                 int minSize, int maxSize, int maxBuffersPerClass, int stripeNumber) {
+        this(metricReporterFactory, "SizeClassedBufferPool", directBuffer, minSize, maxSize, maxBuffersPerClass,
+                stripeNumber);
+    }
+
+    /**
+     * Create a size classed buffer pool.
+     *
+     * @param metricReporterFactory The metric registry provider.
+     * @param name                  The pool name. The metrics are named "buffer.[name].hit", "buffer.[name].miss",
+     *                              "buffer.[name].outstanding", "buffer.[name].pooled" and "buffer.[name].allocation",
+     *                              so the pools that have the different names report separately.
+     * @param directBuffer          If true, the pool allocates the direct buffers.
+     * @param minSize               The smallest size class, it will be rounded up to the power of two.
+     * @param maxSize               The largest size class, it will be rounded up to the power of two.
+     * @param maxBuffersPerClass    The max number of idle buffers of every size class in a stripe.
+     * @param stripeNumber          The stripe number, it will be rounded up to the power of two.
+     */
+    @SuppressWarnings("unchecked")
+    public SizeClassedBufferPool(MetricReporterFactory metricReporterFactory, String name, boolean directBuffer,
+                                 int minSize, int maxSize, int maxBuffersPerClass, int stripeNumber) {
+        if (minSize <= 0 || maxSize < minSize) {
+            throw new IllegalArgumentException("the size class range is illegal, min: " + minSize + ", max: " + maxSize);
+        }
+        if (maxBuffersPerClass <= 0 || stripeNumber <= 0) {
+            throw new IllegalArgumentException("the max buffers per class and the stripe number must be positive");
+        }
+
+        this.directBuffer = directBuffer;
+        this.minShift = log2(ceilingPowerOfTwo(minSize));
+        this.maxSize = ceilingPowerOfTwo(maxSize);
+        int classNumber = log2(this.maxSize) - minShift + 1;
+        int stripeNum = ceilingPowerOfTwo(stripeNumber);
+        this.stripeMask = stripeNum - 1;
+        this.stripes = new ArrayBlockingQueue[stripeNum][classNumber];
+        for (int i = 0; i < stripeNum; i++) {
+            for (int j = 0; j < classNumber; j++) {
+                stripes[i][j] = new ArrayBlockingQueue<>(maxBuffersPerClass);
+            }
+        }
+
+        MetricRegistry metrics = metricReporterFactory.getMetricRegistry();
+        hit = metrics.counter("buffer." + name + ".hit");
+        miss = metrics.counter("buffer." + name + ".miss");
+        outstanding = metrics.counter("buffer." + name + ".outstanding");
+        pooled = metrics.counter("buffer." + name + ".pooled");
+        allocation = metrics.meter("buffer." + name + ".allocation");
+    }
+
+    @Override
+    public ByteBuffer acquire(int size) {
+        if (size > maxSize) {
+            // the oversize buffer is not pooled, so it is not counted as outstanding
+            miss.inc();
+            return allocate(size);
+        }
+
+        outstanding.inc();
+
+        int index = sizeClassIndex(size);
+        ByteBuffer buf = stripe()[index].poll();
+        if (buf != null) {
+            hit.inc();
+            pooled.dec();
+            buf.clear();
+            return buf;
+        } else {
+            miss.inc();
+            return allocate(1 << (index + minShift));
+        }
+    }
+
+    @Override
+    public void release(ByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+
+        int capacity = buffer.capacity();
+        if (buffer.isDirect() != directBuffer
+                || capacity > maxSize
+                || Integer.bitCount(capacity) != 1
+                || capacity < (1 << minShift)) {
+            // the buffer is not acquired from this pool
+            return;
+        }
+
+        outstanding.dec();
+        buffer.clear();
+        if (stripe()[sizeClassIndex(capacity)].offer(buffer)) {
+            pooled.inc();
+        }
+    }
+
+    @Override
+    public int size() {
+        int count = 0;
+        for (ArrayBlockingQueue<ByteBuffer>[] stripe : stripes) {
+            for (ArrayBlockingQueue<ByteBuffer> queue : stripe) {
+                count += queue.size();
+            }
+        }
+        return count;
+    }
+
+    public boolean isDirectBuffer() {
+        return directBuffer;
+    }
+
+    public long getHitCount() {
+        return hit.getCount();
+    }
+
+    public long getMissCount() {
+        return miss.getCount();
+    }
+
+    public long getOutstandingCount() {
+        return outstanding.getCount();
+    }
+
+    public long getPooledCount() {
+        return pooled.getCount();
+    }
+
+    /**
+     * Get the number of the buffers that the pool allocates, the rate is reported by the "buffer.[name].allocation"
+     * meter.
+     *
+     * @return The number of the allocated buffers.
+     */
+    public long getAllocationCount() {
+        return allocation.getCount();
+    }
+
+    private ArrayBlockingQueue<ByteBuffer>[] stripe() {
+        long id = Thread.currentThread().getId();
+        return stripes[(int) (id ^ (id >>> 16)) & stripeMask];
+    }
+
+    private int sizeClassIndex(int size) {
+        if (size <= (1 << minShift)) {
+            return 0;
+        }
+        return log2(ceilingPowerOfTwo(size)) - minShift;
+    }
+
+    private ByteBuffer allocate(int size) {
+        allocation.mark();
+        return directBuffer ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    private static int ceilingPowerOfTwo(int size) {
+        if (size <= 1) {
+            return 1;
+        }
+        return Integer.highestOneBit(size - 1) << 1;
+    }
+
+    private static int log2(int powerOfTwo) {
+        return 31 - Integer.numberOfLeadingZeros(powerOfTwo);
+    }
+
+}
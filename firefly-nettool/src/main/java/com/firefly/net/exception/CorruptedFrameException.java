@@ -0,0 +1,15 @@
+package com.firefly.net.exception;
+
+/**
+ * The received frame can not be decoded, such as the length field is negative or exceeds the max frame length.
+ *
+ * @author Pengtao Qiu
+ */
+public class CorruptedFrameException extends NetException {
+
+    private static final long serialVersionUID = -4377290264339126457L;
+
+    public CorruptedFrameException(String msg) {
+        super(msg);
+    }
+}
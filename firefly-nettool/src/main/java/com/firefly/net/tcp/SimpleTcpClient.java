@@ -119,7 +119,7 @@ public class SimpleTcpClient extends AbstractLifeCycle {
 
                 @Override
                 public void sessionOpened(Session session) throws Throwable {
-                    session.attachObject(new SecureTcpConnectionImpl(session, new SSLSession(config.getSslContextFactory(), true, session, (ssl) -> {
+                    session.attachObject(new SecureTcpConnectionImpl(session, new SSLSession(config.getSslContextFactory(), true, session, config.getSslHandshakeExecutor(), (ssl) -> {
                         Object o = session.getAttachment();
                         if (o != null && o instanceof SecureTcpConnectionImpl) {
                             SecureTcpConnectionImpl c = (SecureTcpConnectionImpl) o;
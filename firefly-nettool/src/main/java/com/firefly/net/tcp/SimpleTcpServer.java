@@ -80,7 +80,7 @@ public class SimpleTcpServer extends AbstractLifeCycle {
                 @Override
                 public void sessionOpened(Session session) throws Throwable {
                     session.attachObject(new SecureTcpConnectionImpl(session,
-                            new SSLSession(config.getSslContextFactory(), false, session, (ssl) -> {
+                            new SSLSession(config.getSslContextFactory(), false, session, config.getSslHandshakeExecutor(), (ssl) -> {
                                 Object o = session.getAttachment();
                                 if (o != null && o instanceof SecureTcpConnectionImpl) {
                                     SecureTcpConnectionImpl c = (SecureTcpConnectionImpl) o;
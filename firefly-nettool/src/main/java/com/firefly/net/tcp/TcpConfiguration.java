@@ -2,6 +2,7 @@ package com.firefly.net.tcp;
 
 import com.firefly.net.Config;
 import com.firefly.net.SSLContextFactory;
+import com.firefly.net.tcp.ssl.SSLHandshakeExecutor;
 import com.firefly.net.tcp.ssl.SelfSignedCertificateOpenSSLContextFactory;
 
 public class TcpConfiguration extends Config {
@@ -9,6 +10,7 @@ public class TcpConfiguration extends Config {
     // SSL/TLS settings
     private boolean isSecureConnectionEnabled;
     private SSLContextFactory sslContextFactory = new SelfSignedCertificateOpenSSLContextFactory();
+    private SSLHandshakeExecutor sslHandshakeExecutor;
 
     public boolean isSecureConnectionEnabled() {
         return isSecureConnectionEnabled;
@@ -26,4 +28,18 @@ public class TcpConfiguration extends Config {
         this.sslContextFactory = sslContextFactory;
     }
 
+    public SSLHandshakeExecutor getSslHandshakeExecutor() {
+        return sslHandshakeExecutor;
+    }
+
+    /**
+     * Set the executor that runs the delegated tasks of the TLS handshakes. If it is null, the tasks run in the I/O
+     * threads.
+     *
+     * @param sslHandshakeExecutor The handshake executor.
+     */
+    public void setSslHandshakeExecutor(SSLHandshakeExecutor sslHandshakeExecutor) {
+        this.sslHandshakeExecutor = sslHandshakeExecutor;
+    }
+
 }
@@ -2,6 +2,7 @@ package com.firefly.net.tcp.aio;
 
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.firefly.net.*;
 import com.firefly.net.buffer.AdaptiveBufferSizePredictor;
@@ -19,13 +20,10 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
-import java.util.Collection;
-import java.util.Date;
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class AsynchronousTcpSession implements Session {
 
@@ -35,6 +33,9 @@ public class AsynchronousTcpSession implements Session {
     private final long openTime;
     private final Counter activeCount;
     private final Histogram duration;
+    private final Histogram writeBuffers;
+    private final Histogram writeEntries;
+    private final Meter fileRegionBytes;
     private long closeTime;
     private long lastReadTime;
     private long lastWrittenTime;
@@ -49,10 +50,15 @@ public class AsynchronousTcpSession implements Session {
     private final EventManager eventManager;
     private volatile Object attachment;
 
-    private final Lock outputLock = new ReentrantLock();
-    private boolean isWriting = false;
-    private final Queue<OutputEntry<?>> outputBuffer = new LinkedList<>();
+    // the producers offer the entries, only the thread that holds the writing state polls the queue
+    private final AtomicBoolean writing = new AtomicBoolean(false);
+    private final Queue<OutputEntry<?>> outputBuffer = new ConcurrentLinkedQueue<>();
     private final BufferSizePredictor bufferSizePredictor = new AdaptiveBufferSizePredictor();
+    private volatile boolean readBufferPoolEnabled;
+
+    // the read loop stops when the reading is suspended, the thread that resumes the reading restarts the loop
+    private volatile boolean readSuspended;
+    private final AtomicBoolean readPaused = new AtomicBoolean(false);
 
     AsynchronousTcpSession(int sessionId, Config config, EventManager eventManager,
                            AsynchronousSocketChannel socketChannel) {
@@ -66,13 +72,16 @@ public class AsynchronousTcpSession implements Session {
         activeCount = metrics.counter("aio.AsynchronousTcpSession.activeCount");
         activeCount.inc();
         duration = metrics.histogram("aio.AsynchronousTcpSession.duration");
+        writeBuffers = metrics.histogram("aio.AsynchronousTcpSession.write.buffers");
+        writeEntries = metrics.histogram("aio.AsynchronousTcpSession.write.entries");
+        fileRegionBytes = metrics.meter("aio.AsynchronousTcpSession.fileRegion.bytes");
     }
 
     void _read() {
         if (!isOpen())
             return;
 
-        final ByteBuffer buf = ByteBuffer.allocate(BufferUtils.normalizeBufferSize(bufferSizePredictor.nextBufferSize()));
+        final ByteBuffer buf = acquireReadBuffer();
 
         if (log.isDebugEnabled()) {
             log.debug("the session {} buffer size is {}", getSessionId(), buf.remaining());
@@ -88,6 +97,7 @@ public class AsynchronousTcpSession implements Session {
                                 log.debug("the session {} input is closed, {}", session.getSessionId(),
                                         currentReadBytes);
                             }
+                            session.releaseBuffer(buf);
                             session.closeNow();
                             return;
                         }
@@ -104,7 +114,7 @@ public class AsynchronousTcpSession implements Session {
                         } catch (Throwable t) {
                             eventManager.executeExceptionTask(session, t);
                         } finally {
-                            _read();
+                            continueRead();
                         }
                     }
 
@@ -118,11 +128,67 @@ public class AsynchronousTcpSession implements Session {
                             log.warn("the session {} read data is failed", t, session.getSessionId());
                         }
 
+                        session.releaseBuffer(buf);
                         session.closeNow();
                     }
                 });
     }
 
+    private void continueRead() {
+        if (readSuspended) {
+            readPaused.set(true);
+            // the reading may be resumed before the loop is paused
+            if (!readSuspended && readPaused.compareAndSet(true, false)) {
+                _read();
+            }
+        } else {
+            _read();
+        }
+    }
+
+    @Override
+    public void suspendRead() {
+        readSuspended = true;
+    }
+
+    @Override
+    public void resumeRead() {
+        readSuspended = false;
+        if (readPaused.compareAndSet(true, false)) {
+            _read();
+        }
+    }
+
+    @Override
+    public boolean isReadSuspended() {
+        return readSuspended;
+    }
+
+    private ByteBuffer acquireReadBuffer() {
+        int size = BufferUtils.normalizeBufferSize(bufferSizePredictor.nextBufferSize());
+        BufferPool readBufferPool = config.getReadBufferPool();
+        if (readBufferPool != null && readBufferPoolEnabled) {
+            ByteBuffer buf = readBufferPool.acquire(size);
+            buf.clear();
+            return buf;
+        } else {
+            return ByteBuffer.allocate(size);
+        }
+    }
+
+    @Override
+    public void releaseBuffer(ByteBuffer buffer) {
+        BufferPool readBufferPool = config.getReadBufferPool();
+        if (readBufferPool != null && readBufferPoolEnabled && buffer != null) {
+            readBufferPool.release(buffer);
+        }
+    }
+
+    @Override
+    public void enableReadBufferPool() {
+        readBufferPoolEnabled = true;
+    }
+
     private class OutputEntryCompletionHandler<V extends Number, T> implements CompletionHandler<V, AsynchronousTcpSession> {
 
         private final OutputEntry<T> entry;
@@ -167,18 +233,7 @@ public class AsynchronousTcpSession implements Session {
 
             writtenBytes += currentWrittenBytes;
             callback.succeeded();
-
-            outputLock.lock();
-            try {
-                OutputEntry<?> obj = outputBuffer.poll();
-                if (obj != null) {
-                    _write(obj);
-                } else {
-                    isWriting = false;
-                }
-            } finally {
-                outputLock.unlock();
-            }
+            writeNext();
         }
 
         private void writingFailedCallback(Callback callback, Throwable t) {
@@ -190,16 +245,13 @@ public class AsynchronousTcpSession implements Session {
                 log.warn("the session {} writes data is failed", t, getSessionId());
             }
 
-            outputLock.lock();
-            try {
-                int bufferSize = outputBuffer.size();
-                log.warn("the session {} has {} buffer data can not ouput", getSessionId(), bufferSize);
-                outputBuffer.clear();
-                isWriting = false;
-                shutdownSocketChannel();
-            } finally {
-                outputLock.unlock();
+            int bufferSize = 0;
+            while (outputBuffer.poll() != null) {
+                bufferSize++;
             }
+            log.warn("the session {} has {} buffer data can not ouput", getSessionId(), bufferSize);
+            writing.set(false);
+            shutdownSocketChannel();
             callback.failed(t);
         }
     }
@@ -211,6 +263,8 @@ public class AsynchronousTcpSession implements Session {
         switch (entry.getOutputEntryType()) {
             case BYTE_BUFFER:
                 ByteBufferOutputEntry byteBufferOutputEntry = (ByteBufferOutputEntry) entry;
+                writeBuffers.update(1);
+                writeEntries.update(1);
                 socketChannel.write(byteBufferOutputEntry.getData(),
                         config.getTimeout(), TimeUnit.MILLISECONDS, this,
                         new OutputEntryCompletionHandler<>(byteBufferOutputEntry));
@@ -218,6 +272,12 @@ public class AsynchronousTcpSession implements Session {
 
             case BYTE_BUFFER_ARRAY:
                 ByteBufferArrayOutputEntry byteBuffersEntry = (ByteBufferArrayOutputEntry) entry;
+                writeBuffers.update(byteBuffersEntry.getData().length);
+                if (byteBuffersEntry instanceof GatheringOutputEntry) {
+                    writeEntries.update(((GatheringOutputEntry) byteBuffersEntry).entryCount);
+                } else {
+                    writeEntries.update(1);
+                }
                 socketChannel.write(byteBuffersEntry.getData(), 0, byteBuffersEntry.getData().length,
                         config.getTimeout(), TimeUnit.MILLISECONDS, this,
                         new OutputEntryCompletionHandler<>(byteBuffersEntry));
@@ -230,6 +290,134 @@ public class AsynchronousTcpSession implements Session {
         }
     }
 
+    /**
+     * Write the next queued entry. The caller must hold the writing state. If the queue is empty, the writing state
+     * is released, and then the queue is checked again, because a producer may offer an entry after the poll but
+     * before the release.
+     */
+    private void writeNext() {
+        while (true) {
+            OutputEntry<?> obj = outputBuffer.poll();
+            if (obj != null) {
+                _write(gather(obj));
+                return;
+            }
+
+            writing.set(false);
+            if (outputBuffer.isEmpty() || !writing.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Merge the queued byte buffer entries into one gathering write entry. The caller must hold the writing state.
+     *
+     * @param entry The next output entry
+     * @return The gathering write entry, or the original entry if the gathering write is disabled
+     * or there is no entry that can be merged.
+     */
+    private OutputEntry<?> gather(OutputEntry<?> entry) {
+        if (!config.isGatheringWriteEnabled() || !isByteBufferEntry(entry)) {
+            return entry;
+        }
+
+        OutputEntry<?> next = outputBuffer.peek();
+        if (next == null || !isByteBufferEntry(next)) {
+            return entry;
+        }
+
+        List<OutputEntry<?>> entries = new ArrayList<>();
+        List<ByteBuffer> buffers = new ArrayList<>();
+        long bytes = entry.remaining();
+        addEntry(entry, entries, buffers);
+        while (next != null && isByteBufferEntry(next)
+                && entries.size() < config.getMaxGatheringWriteEntries()
+                && bytes + next.remaining() <= config.getMaxGatheringWriteBytes()) {
+            outputBuffer.poll();
+            bytes += next.remaining();
+            addEntry(next, entries, buffers);
+            next = outputBuffer.peek();
+        }
+
+        if (entries.size() == 1) {
+            return entry;
+        } else {
+            return new GatheringOutputEntry(entries, buffers.toArray(BufferUtils.EMPTY_BYTE_BUFFER_ARRAY));
+        }
+    }
+
+    private static boolean isByteBufferEntry(OutputEntry<?> entry) {
+        switch (entry.getOutputEntryType()) {
+            case BYTE_BUFFER:
+            case BYTE_BUFFER_ARRAY:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static void addEntry(OutputEntry<?> entry, List<OutputEntry<?>> entries, List<ByteBuffer> buffers) {
+        entries.add(entry);
+        switch (entry.getOutputEntryType()) {
+            case BYTE_BUFFER:
+                buffers.add(((ByteBufferOutputEntry) entry).getData());
+                break;
+            case BYTE_BUFFER_ARRAY:
+                Collections.addAll(buffers, ((ByteBufferArrayOutputEntry) entry).getData());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static class GatheringOutputEntry extends ByteBufferArrayOutputEntry {
+
+        private final int entryCount;
+
+        GatheringOutputEntry(List<OutputEntry<?>> entries, ByteBuffer[] data) {
+            super(new GatheringCallback(entries), data);
+            this.entryCount = entries.size();
+        }
+    }
+
+    /**
+     * Complete the callbacks of the merged entries in order.
+     */
+    private static class GatheringCallback implements Callback {
+
+        private final Callback[] callbacks;
+
+        GatheringCallback(List<OutputEntry<?>> entries) {
+            callbacks = new Callback[entries.size()];
+            for (int i = 0; i < callbacks.length; i++) {
+                callbacks[i] = entries.get(i).getCallback();
+            }
+        }
+
+        @Override
+        public void succeeded() {
+            for (Callback callback : callbacks) {
+                try {
+                    callback.succeeded();
+                } catch (Throwable t) {
+                    log.error("the gathering write callback exception", t);
+                }
+            }
+        }
+
+        @Override
+        public void failed(Throwable x) {
+            for (Callback callback : callbacks) {
+                try {
+                    callback.failed(x);
+                } catch (Throwable t) {
+                    log.error("the gathering write callback exception", t);
+                }
+            }
+        }
+    }
+
     @Override
     public void write(OutputEntry<?> entry) {
         if (!isOpen())
@@ -238,16 +426,9 @@ public class AsynchronousTcpSession implements Session {
         if (entry == null)
             return;
 
-        outputLock.lock();
-        try {
-            if (!isWriting) {
-                isWriting = true;
-                _write(entry);
-            } else {
-                outputBuffer.offer(entry);
-            }
-        } finally {
-            outputLock.unlock();
+        outputBuffer.offer(entry);
+        if (writing.compareAndSet(false, true)) {
+            writeNext();
         }
     }
 
@@ -277,17 +458,35 @@ public class AsynchronousTcpSession implements Session {
         @Override
         public void readBuffer(ByteBuffer buf, CountingCallback countingCallback, long count) {
             log.debug("write file,  count: {} , lenth: {}", count, len);
-            write(buf, countingCallback);
+            final int size = buf.remaining();
+            write(buf, new Callback() {
+                @Override
+                public void succeeded() {
+                    fileRegionBytes.mark(size);
+                    countingCallback.succeeded();
+                }
+
+                @Override
+                public void failed(Throwable x) {
+                    countingCallback.failed(x);
+                }
+            });
         }
 
     }
 
+    /**
+     * The asynchronous socket channel is not a WritableByteChannel, so the FileChannel.transferTo can not be used.
+     * The file region is mapped to the direct buffers, and the socket channel writes them from the page cache.
+     */
     @Override
     public void write(FileRegion file, Callback callback) {
         try (FileRegion fileRegion = file) {
-            fileRegion.transferTo(callback, new FileBufferReaderHandler(fileRegion.getLength()));
+            fileRegion.transferMappedBuffers(callback, new FileBufferReaderHandler(fileRegion.getLength()),
+                    FileRegion.MAPPED_CHUNK_SIZE);
         } catch (Throwable t) {
             log.error("transfer file error", t);
+            callback.failed(t);
         }
     }
 
@@ -315,6 +514,15 @@ public class AsynchronousTcpSession implements Session {
         }
     }
 
+    @Override
+    public void decode(ByteBuffer buf) {
+        try {
+            config.getDecoder().decode(buf, this);
+        } catch (Throwable t) {
+            eventManager.executeExceptionTask(this, t);
+        }
+    }
+
     @Override
     public void close() {
         write(DISCONNECTION_FLAG);
@@ -469,4 +677,9 @@ public class AsynchronousTcpSession implements Session {
         return config.getTimeout();
     }
 
+    @Override
+    public MetricRegistry getMetricRegistry() {
+        return config.getMetricReporterFactory().getMetricRegistry();
+    }
+
 }
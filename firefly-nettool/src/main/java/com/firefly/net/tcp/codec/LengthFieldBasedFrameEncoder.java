@@ -0,0 +1,118 @@
+package com.firefly.net.tcp.codec;
+
+import com.firefly.net.tcp.TcpConnection;
+import com.firefly.utils.function.Action0;
+import com.firefly.utils.function.Action1;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The encoder prepends the length field to the payload, it matches the {@link LengthFieldBasedFrameParser} whose length
+ * field offset is 0. The length field and the payload buffers are written to the connection by one gathering write,
+ * the payload is not copied.
+ *
+ * @author Pengtao Qiu
+ */
+public class LengthFieldBasedFrameEncoder {
+
+    private final int lengthFieldLength;
+    private final ByteOrder byteOrder;
+    private final int lengthAdjustment;
+
+    /**
+     * Create an encoder that writes the big-endian length field.
+     *
+     * @param lengthFieldLength The length field length is 1, 2, 3, 4, 8 or
+     *                          {@link LengthFieldBasedFrameParser#VARINT_LENGTH_FIELD}.
+     */
+    public LengthFieldBasedFrameEncoder(int lengthFieldLength) {
+        this(lengthFieldLength, ByteOrder.BIG_ENDIAN, 0);
+    }
+
+    /**
+     * Create a length field based frame encoder.
+     *
+     * @param lengthFieldLength The length field length is 1, 2, 3, 4, 8 or
+     *                          {@link LengthFieldBasedFrameParser#VARINT_LENGTH_FIELD}.
+     * @param byteOrder         The byte order of the fixed width length field.
+     * @param lengthAdjustment  The length field value is the payload length minus the length adjustment, it is the
+     *                          same as the length adjustment of the parser.
+     */
+    public LengthFieldBasedFrameEncoder(int lengthFieldLength, ByteOrder byteOrder, int lengthAdjustment) {
+        switch (lengthFieldLength) {
+            case LengthFieldBasedFrameParser.VARINT_LENGTH_FIELD:
+            case 1:
+            case 2:
+            case 3:
+            case 4:
+            case 8:
+                break;
+            default:
+                throw new IllegalArgumentException("the length field length must be 1, 2, 3, 4, 8 or varint: " + lengthFieldLength);
+        }
+        this.lengthFieldLength = lengthFieldLength;
+        this.byteOrder = byteOrder;
+        this.lengthAdjustment = lengthAdjustment;
+    }
+
+    /**
+     * Encode the length field of the payload.
+     *
+     * @param payload The payload buffers of a frame.
+     * @return The length field buffer and the payload buffers.
+     */
+    public ByteBuffer[] encode(ByteBuffer... payload) {
+        long payloadLength = 0;
+        for (ByteBuffer buf : payload) {
+            payloadLength += buf.remaining();
+        }
+        ByteBuffer[] buffers = new ByteBuffer[payload.length + 1];
+        buffers[0] = encodeLengthField(payloadLength - lengthAdjustment);
+        System.arraycopy(payload, 0, buffers, 1, payload.length);
+        return buffers;
+    }
+
+    public ByteBuffer encodeLengthField(long length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("the length field value must not be negative: " + length);
+        }
+
+        ByteBuffer header;
+        if (lengthFieldLength == LengthFieldBasedFrameParser.VARINT_LENGTH_FIELD) {
+            if (length > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("the length field value " + length + " exceeds the varint range");
+            }
+            header = ByteBuffer.allocate(5);
+            while ((length & ~0x7FL) != 0) {
+                header.put((byte) ((length & 0x7F) | 0x80));
+                length >>>= 7;
+            }
+            header.put((byte) length);
+        } else {
+            if (lengthFieldLength < 8 && length >= 1L << (8 * lengthFieldLength)) {
+                throw new IllegalArgumentException("the length field value " + length + " exceeds " + lengthFieldLength + " bytes");
+            }
+            header = ByteBuffer.allocate(lengthFieldLength);
+            for (int i = 0; i < lengthFieldLength; i++) {
+                int shift = byteOrder == ByteOrder.BIG_ENDIAN ? 8 * (lengthFieldLength - 1 - i) : 8 * i;
+                header.put((byte) (length >>> shift));
+            }
+        }
+        header.flip();
+        return header;
+    }
+
+    public TcpConnection write(TcpConnection connection, ByteBuffer payload) {
+        return connection.write(encode(payload));
+    }
+
+    public TcpConnection write(TcpConnection connection, ByteBuffer payload, Action0 succeeded, Action1<Throwable> failed) {
+        return connection.write(encode(payload), succeeded, failed);
+    }
+
+    public TcpConnection write(TcpConnection connection, ByteBuffer[] payload, Action0 succeeded, Action1<Throwable> failed) {
+        return connection.write(encode(payload), succeeded, failed);
+    }
+
+}
@@ -0,0 +1,255 @@
+package com.firefly.net.tcp.codec;
+
+import com.firefly.net.exception.CorruptedFrameException;
+import com.firefly.utils.io.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+
+/**
+ * The parser splits the received buffers into the frames by the length field in the frame header. The header consists
+ * of the bytes before the length field, and the length field that is a fixed width unsigned integer or an unsigned
+ * varint (7 bits per byte, the least significant group first). The frame length is the header length plus the length
+ * field value plus the length adjustment.
+ * <p>
+ * The parser keeps the slices of the received buffers until the frames are complete. If a frame is in one received
+ * buffer, the parser emits a slice of the buffer without copying, otherwise it copies the parts of the frame into a
+ * new buffer once. So the caller must not reuse the received buffers, and the frame is valid until the caller reuses
+ * the received buffer.
+ * <p>
+ * If the frame length exceeds the max frame length or the length field is invalid, the parser reports a
+ * {@link CorruptedFrameException} and discards all the data that it receives later, the caller should close the
+ * connection.
+ *
+ * @author Pengtao Qiu
+ */
+public class LengthFieldBasedFrameParser extends AbstractMessageHandler<ByteBuffer, ByteBuffer> {
+
+    /**
+     * The length field length of the varint length field.
+     */
+    public static final int VARINT_LENGTH_FIELD = 0;
+
+    /**
+     * Strip the bytes before the end of the length field.
+     */
+    public static final int STRIP_HEADER = -1;
+
+    private static final int MAX_VARINT_LENGTH = 5;
+
+    private final int maxFrameLength;
+    private final ByteOrder byteOrder;
+    private final int lengthFieldOffset;
+    private final int lengthFieldLength;
+    private final int lengthAdjustment;
+    private final int initialBytesToStrip;
+
+    private final ArrayDeque<ByteBuffer> parts = new ArrayDeque<>();
+    private int cumulatedLength;
+    private int frameLength = -1;
+    private int bytesToStrip;
+    private boolean corrupted;
+
+    /**
+     * Create a parser that emits the frames without the big-endian length field at the beginning of the frames.
+     *
+     * @param maxFrameLength    The max frame length including the header.
+     * @param lengthFieldLength The length field length is 1, 2, 3, 4, 8 or {@link #VARINT_LENGTH_FIELD}.
+     */
+    public LengthFieldBasedFrameParser(int maxFrameLength, int lengthFieldLength) {
+        this(maxFrameLength, ByteOrder.BIG_ENDIAN, 0, lengthFieldLength, 0, STRIP_HEADER);
+    }
+
+    /**
+     * Create a length field based frame parser.
+     *
+     * @param maxFrameLength      The max frame length including the header.
+     * @param byteOrder           The byte order of the fixed width length field.
+     * @param lengthFieldOffset   The number of the bytes before the length field.
+     * @param lengthFieldLength   The length field length is 1, 2, 3, 4, 8 or {@link #VARINT_LENGTH_FIELD}.
+     * @param lengthAdjustment    The value adds to the length field value to compute the length of the data after the
+     *                            length field.
+     * @param initialBytesToStrip The number of the bytes that are removed from the beginning of the frame, or
+     *                            {@link #STRIP_HEADER}.
+     */
+    public LengthFieldBasedFrameParser(int maxFrameLength, ByteOrder byteOrder,
+                                       int lengthFieldOffset, int lengthFieldLength,
+                                       int lengthAdjustment, int initialBytesToStrip) {
+        if (maxFrameLength <= 0) {
+            throw new IllegalArgumentException("the max frame length must be positive: " + maxFrameLength);
+        }
+        if (lengthFieldOffset < 0) {
+            throw new IllegalArgumentException("the length field offset must not be negative: " + lengthFieldOffset);
+        }
+        switch (lengthFieldLength) {
+            case VARINT_LENGTH_FIELD:
+            case 1:
+            case 2:
+            case 3:
+            case 4:
+            case 8:
+                break;
+            default:
+                throw new IllegalArgumentException("the length field length must be 1, 2, 3, 4, 8 or varint: " + lengthFieldLength);
+        }
+        if (initialBytesToStrip < STRIP_HEADER) {
+            throw new IllegalArgumentException("the initial bytes to strip must not be negative: " + initialBytesToStrip);
+        }
+        this.maxFrameLength = maxFrameLength;
+        this.byteOrder = byteOrder;
+        this.lengthFieldOffset = lengthFieldOffset;
+        this.lengthFieldLength = lengthFieldLength;
+        this.lengthAdjustment = lengthAdjustment;
+        this.initialBytesToStrip = initialBytesToStrip;
+    }
+
+    @Override
+    protected void parse(ByteBuffer buf) {
+        if (corrupted || !buf.hasRemaining()) {
+            return;
+        }
+
+        parts.add(buf.slice());
+        cumulatedLength += buf.remaining();
+        try {
+            while ((frameLength >= 0 || decodeFrameLength()) && cumulatedLength >= frameLength) {
+                ByteBuffer frame = takeFrame();
+                try {
+                    action.call(frame);
+                } catch (Throwable t) {
+                    exception.call(t);
+                }
+            }
+        } catch (CorruptedFrameException e) {
+            corrupted = true;
+            parts.clear();
+            cumulatedLength = 0;
+            exception.call(e);
+        }
+    }
+
+    /**
+     * Get the number of the received bytes that are not emitted.
+     *
+     * @return The cumulated length.
+     */
+    public int getCumulatedLength() {
+        return cumulatedLength;
+    }
+
+    private boolean decodeFrameLength() {
+        int lengthFieldEnd;
+        long length;
+        if (lengthFieldLength == VARINT_LENGTH_FIELD) {
+            length = 0;
+            int i = 0;
+            while (true) {
+                if (i == MAX_VARINT_LENGTH) {
+                    throw new CorruptedFrameException("the varint length field exceeds " + MAX_VARINT_LENGTH + " bytes");
+                }
+                if (lengthFieldOffset + i >= cumulatedLength) {
+                    return false;
+                }
+                int b = getByte(lengthFieldOffset + i);
+                length |= (long) (b & 0x7F) << (7 * i);
+                i++;
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+            }
+            lengthFieldEnd = lengthFieldOffset + i;
+        } else {
+            lengthFieldEnd = lengthFieldOffset + lengthFieldLength;
+            if (cumulatedLength < lengthFieldEnd) {
+                return false;
+            }
+            length = 0;
+            for (int i = 0; i < lengthFieldLength; i++) {
+                long b = getByte(lengthFieldOffset + i);
+                if (byteOrder == ByteOrder.BIG_ENDIAN) {
+                    length = (length << 8) | b;
+                } else {
+                    length |= b << (8 * i);
+                }
+            }
+        }
+
+        long frameLength = lengthFieldEnd + length + lengthAdjustment;
+        if (length < 0 || frameLength < lengthFieldEnd) {
+            throw new CorruptedFrameException("the length field value " + length + " is invalid");
+        }
+        if (frameLength > maxFrameLength) {
+            throw new CorruptedFrameException("the frame length " + frameLength + " exceeds the max frame length " + maxFrameLength);
+        }
+        int bytesToStrip = initialBytesToStrip == STRIP_HEADER ? lengthFieldEnd : initialBytesToStrip;
+        if (bytesToStrip > frameLength) {
+            throw new CorruptedFrameException("the frame length " + frameLength + " is less than the initial bytes to strip " + bytesToStrip);
+        }
+        this.frameLength = (int) frameLength;
+        this.bytesToStrip = bytesToStrip;
+        return true;
+    }
+
+    private int getByte(int index) {
+        for (ByteBuffer part : parts) {
+            if (index < part.remaining()) {
+                return part.get(part.position() + index) & 0xFF;
+            }
+            index -= part.remaining();
+        }
+        throw new IndexOutOfBoundsException("the index exceeds the cumulated length " + cumulatedLength);
+    }
+
+    private ByteBuffer takeFrame() {
+        skip(bytesToStrip);
+        int length = frameLength - bytesToStrip;
+        cumulatedLength -= frameLength;
+        frameLength = -1;
+
+        ByteBuffer frame;
+        if (length == 0) {
+            frame = BufferUtils.EMPTY_BUFFER;
+        } else if (parts.getFirst().remaining() >= length) {
+            // the frame is in one received buffer
+            ByteBuffer part = parts.getFirst();
+            frame = part.slice();
+            frame.limit(length);
+            part.position(part.position() + length);
+            if (!part.hasRemaining()) {
+                parts.removeFirst();
+            }
+        } else {
+            frame = ByteBuffer.allocate(length);
+            while (frame.hasRemaining()) {
+                ByteBuffer part = parts.getFirst();
+                if (part.remaining() <= frame.remaining()) {
+                    frame.put(part);
+                    parts.removeFirst();
+                } else {
+                    int n = frame.remaining();
+                    ByteBuffer slice = part.slice();
+                    slice.limit(n);
+                    frame.put(slice);
+                    part.position(part.position() + n);
+                }
+            }
+            frame.flip();
+        }
+        return frame;
+    }
+
+    private void skip(int n) {
+        while (n > 0) {
+            ByteBuffer part = parts.getFirst();
+            if (part.remaining() <= n) {
+                n -= part.remaining();
+                parts.removeFirst();
+            } else {
+                part.position(part.position() + n);
+                n = 0;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.firefly.net.tcp.rpc;
+
+import com.codahale.metrics.Histogram;
+import com.firefly.net.tcp.TcpConnection;
+import com.firefly.utils.function.Action1;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The writer keeps one write in progress on the connection. The frames that are sent by the other threads during the
+ * write wait in a lock-free queue, and they are written together by one gathering write when the current write is
+ * completed. So the concurrent requests share the system calls without an explicit flush.
+ *
+ * @author Pengtao Qiu
+ */
+class BatchingFrameWriter {
+
+    private final TcpConnection connection;
+    private final int maxBatchSize;
+    private final Histogram batchSize;
+    private final Action1<Throwable> failed;
+
+    private final ConcurrentLinkedQueue<ByteBuffer[]> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean writing = new AtomicBoolean();
+
+    BatchingFrameWriter(TcpConnection connection, int maxBatchSize, Histogram batchSize, Action1<Throwable> failed) {
+        this.connection = connection;
+        this.maxBatchSize = Math.max(maxBatchSize, 1);
+        this.batchSize = batchSize;
+        this.failed = failed;
+    }
+
+    void write(ByteBuffer[] frame) {
+        queue.offer(frame);
+        flush();
+    }
+
+    private void flush() {
+        // the thread that finishes the write or adds a frame after the write checks the queue again
+        while (!queue.isEmpty() && writing.compareAndSet(false, true)) {
+            List<ByteBuffer> buffers = new ArrayList<>();
+            int frames = 0;
+            ByteBuffer[] frame;
+            while (frames < maxBatchSize && (frame = queue.poll()) != null) {
+                Collections.addAll(buffers, frame);
+                frames++;
+            }
+            if (frames == 0) {
+                writing.set(false);
+                continue;
+            }
+
+            batchSize.update(frames);
+            connection.write(buffers, () -> {
+                writing.set(false);
+                flush();
+            }, x -> {
+                writing.set(false);
+                failed.call(x);
+            });
+            return;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.firefly.net.tcp.rpc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The lock-free table of the requests that wait for the responses. The request id is a sequence number, and the
+ * request is stored in the slot of the id modulo the capacity. If the slot is occupied by an older request, the table
+ * takes the next id. The response, the timeout and the connection closing remove the request by CAS, so only one of
+ * them completes the request.
+ *
+ * @author Pengtao Qiu
+ */
+class InFlightTable<T extends InFlightTable.Request> {
+
+    static class Request {
+        volatile long requestId = -1;
+    }
+
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private final AtomicInteger size = new AtomicInteger();
+
+    InFlightTable(int capacity) {
+        int n = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        slots = new AtomicReferenceArray<>(n);
+        mask = n - 1;
+    }
+
+    /**
+     * Add the request and assign the request id.
+     *
+     * @param request The request.
+     * @return False if the table is full.
+     */
+    boolean add(T request) {
+        if (size.incrementAndGet() > slots.length()) {
+            size.decrementAndGet();
+            return false;
+        }
+        while (true) {
+            long requestId = nextRequestId.getAndIncrement();
+            int index = (int) (requestId & mask);
+            if (slots.get(index) == null) {
+                request.requestId = requestId;
+                if (slots.compareAndSet(index, null, request)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the request.
+     *
+     * @param requestId The request id.
+     * @return The request, or null if the request has been removed.
+     */
+    T remove(long requestId) {
+        int index = (int) (requestId & mask);
+        T request = slots.get(index);
+        if (request != null && request.requestId == requestId && slots.compareAndSet(index, request, null)) {
+            size.decrementAndGet();
+            return request;
+        }
+        return null;
+    }
+
+    List<T> removeAll() {
+        List<T> requests = new ArrayList<>();
+        for (int i = 0; i < slots.length(); i++) {
+            T request = slots.getAndSet(i, null);
+            if (request != null) {
+                size.decrementAndGet();
+                requests.add(request);
+            }
+        }
+        return requests;
+    }
+
+    int size() {
+        return size.get();
+    }
+}
@@ -0,0 +1,112 @@
+package com.firefly.net.tcp.rpc;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.firefly.net.tcp.SimpleTcpClient;
+import com.firefly.utils.concurrent.Promise;
+import com.firefly.utils.io.BufferUtils;
+import com.firefly.utils.json.Json;
+import com.firefly.utils.lang.AbstractLifeCycle;
+import com.firefly.utils.time.HashTimeWheel;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The RPC client multiplexes the concurrent requests on a few connections of every server. The responses are
+ * correlated with the requests by the request ids, the request that does not receive the response in the timeout
+ * fails with a {@link java.util.concurrent.TimeoutException}. The futures are completed in the I/O threads, the slow
+ * callbacks should run in another executor.
+ * <p>
+ * The client reports the metrics "rpc.client.request" and "rpc.client.write.batch.size".
+ *
+ * @author Pengtao Qiu
+ */
+public class RpcClient extends AbstractLifeCycle {
+
+    private final RpcConfiguration config;
+    private final SimpleTcpClient client;
+    private final Map<String, RpcEndpoint> endpoints = new ConcurrentHashMap<>();
+    private final Timer requestTimer;
+    private final Histogram batchSize;
+    private HashTimeWheel timer;
+
+    public RpcClient() {
+        this(new RpcConfiguration());
+    }
+
+    public RpcClient(RpcConfiguration config) {
+        this.config = config;
+        client = new SimpleTcpClient(config.getTcpConfiguration());
+        MetricRegistry metrics = config.getTcpConfiguration().getMetricReporterFactory().getMetricRegistry();
+        requestTimer = metrics.timer("rpc.client.request");
+        batchSize = metrics.histogram("rpc.client.write.batch.size");
+    }
+
+    public CompletableFuture<ByteBuffer> call(String host, int port, String path, ByteBuffer request) {
+        return call(host, port, path, request, config.getRequestTimeout());
+    }
+
+    /**
+     * Send a request.
+     *
+     * @param host    The server host.
+     * @param port    The server port.
+     * @param path    The request path.
+     * @param request The request payload, the caller must not modify it until the future is completed.
+     * @param timeout The timeout in milliseconds.
+     * @return The response payload.
+     */
+    public CompletableFuture<ByteBuffer> call(String host, int port, String path, ByteBuffer request, long timeout) {
+        start();
+        long start = System.nanoTime();
+        RpcEndpoint endpoint = endpoints.computeIfAbsent(host + ":" + port, k ->
+                new RpcEndpoint(config.getConnectionsPerEndpoint(), () -> connect(host, port)));
+        CompletableFuture<ByteBuffer> response = endpoint.select().thenCompose(c -> c.call(path, request, timeout));
+        response.whenComplete((r, x) -> requestTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        return response;
+    }
+
+    /**
+     * Send a JSON request.
+     *
+     * @param host         The server host.
+     * @param port         The server port.
+     * @param path         The request path.
+     * @param request      The request object is serialized by {@link Json}.
+     * @param responseType The response type.
+     * @param <T>          The response type.
+     * @return The response object.
+     */
+    public <T> CompletableFuture<T> callJson(String host, int port, String path, Object request, Class<T> responseType) {
+        return call(host, port, path, BufferUtils.toBuffer(Json.toJson(request), StandardCharsets.UTF_8))
+                .thenApply(buf -> Json.toObject(BufferUtils.toString(buf, StandardCharsets.UTF_8), responseType));
+    }
+
+    private Promise.Completable<RpcClientConnection> connect(String host, int port) {
+        Promise.Completable<RpcClientConnection> future = new Promise.Completable<>();
+        client.connect(host, port, connection -> future.succeeded(new RpcClientConnection(connection, config, timer, batchSize)),
+                future::failed);
+        return future;
+    }
+
+    @Override
+    protected void init() {
+        timer = new HashTimeWheel();
+        timer.setInterval(config.getTimeoutTickInterval());
+        timer.start();
+    }
+
+    @Override
+    protected void destroy() {
+        endpoints.values().forEach(RpcEndpoint::close);
+        endpoints.clear();
+        client.stop();
+        timer.stop();
+    }
+}
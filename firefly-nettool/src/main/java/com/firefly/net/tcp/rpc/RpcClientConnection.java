@@ -0,0 +1,142 @@
+package com.firefly.net.tcp.rpc;
+
+import com.codahale.metrics.Histogram;
+import com.firefly.net.tcp.TcpConnection;
+import com.firefly.net.tcp.codec.LengthFieldBasedFrameParser;
+import com.firefly.utils.concurrent.Promise;
+import com.firefly.utils.concurrent.Scheduler;
+import com.firefly.utils.io.BufferUtils;
+import com.firefly.utils.io.IO;
+import com.firefly.utils.time.HashTimeWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The client side of a multiplexed connection. The requests are written by the batching writer, and the responses
+ * complete the in-flight requests by the request ids in any order.
+ *
+ * @author Pengtao Qiu
+ */
+class RpcClientConnection {
+
+    private static Logger log = LoggerFactory.getLogger("firefly-system");
+
+    private static class InFlightRequest extends InFlightTable.Request {
+        final Promise.Completable<ByteBuffer> promise = new Promise.Completable<>();
+        volatile Scheduler.Future timeout;
+    }
+
+    private final TcpConnection connection;
+    private final HashTimeWheel timer;
+    private final InFlightTable<InFlightRequest> inFlightTable;
+    private final BatchingFrameWriter writer;
+
+    RpcClientConnection(TcpConnection connection, RpcConfiguration config, HashTimeWheel timer, Histogram batchSize) {
+        this.connection = connection;
+        this.timer = timer;
+        inFlightTable = new InFlightTable<>(config.getMaxInFlightRequests());
+        writer = new BatchingFrameWriter(connection, config.getMaxBatchSize(), batchSize, x -> {
+            log.warn("the rpc connection {} writes the requests failed", x, connection.getSessionId());
+            connection.closeNow();
+        });
+
+        LengthFieldBasedFrameParser parser = RpcFrame.createParser(config.getMaxFrameLength());
+        parser.complete(this::receive).exception(x -> {
+            log.error("the rpc connection {} receives the corrupted frame", x, connection.getSessionId());
+            connection.closeNow();
+        });
+        connection.receive(parser::receive)
+                  .close(() -> failAll(new RpcException("the rpc connection " + connection.getSessionId() + " is closed")));
+    }
+
+    Promise.Completable<ByteBuffer> call(String path, ByteBuffer payload, long timeout) {
+        InFlightRequest request = new InFlightRequest();
+        if (!inFlightTable.add(request)) {
+            request.promise.failed(new RpcException("the rpc connection " + connection.getSessionId() + " has too many in-flight requests"));
+            return request.promise;
+        }
+
+        long requestId = request.requestId;
+        request.timeout = timer.add(timeout, () -> {
+            InFlightRequest r = inFlightTable.remove(requestId);
+            if (r != null) {
+                r.promise.failed(new TimeoutException("the rpc request " + path + " is timeout after " + timeout + "ms"));
+            }
+        });
+        if (!connection.isOpen()) {
+            // the connection is closed before the request is added
+            fail(requestId, new RpcException("the rpc connection " + connection.getSessionId() + " is closed"));
+            return request.promise;
+        }
+
+        try {
+            writer.write(RpcFrame.encodeRequest(requestId, path, payload));
+        } catch (Throwable t) {
+            fail(requestId, t);
+        }
+        return request.promise;
+    }
+
+    private void receive(ByteBuffer buf) {
+        RpcFrame frame = RpcFrame.decode(buf);
+        InFlightRequest request = inFlightTable.remove(frame.getRequestId());
+        if (request == null) {
+            // the request is timeout
+            if (log.isDebugEnabled()) {
+                log.debug("the rpc connection {} receives the response of the removed request {}",
+                        connection.getSessionId(), frame.getRequestId());
+            }
+            return;
+        }
+
+        cancelTimeout(request);
+        switch (frame.getType()) {
+            case RpcFrame.RESPONSE:
+                request.promise.succeeded(frame.getPayload());
+                break;
+            case RpcFrame.ERROR:
+                request.promise.failed(new RpcException(BufferUtils.toString(frame.getPayload(), StandardCharsets.UTF_8)));
+                break;
+            default:
+                request.promise.failed(new RpcException("the rpc client receives the unexpected frame type " + frame.getType()));
+        }
+    }
+
+    private void fail(long requestId, Throwable x) {
+        InFlightRequest request = inFlightTable.remove(requestId);
+        if (request != null) {
+            cancelTimeout(request);
+            request.promise.failed(x);
+        }
+    }
+
+    private void failAll(Throwable x) {
+        for (InFlightRequest request : inFlightTable.removeAll()) {
+            cancelTimeout(request);
+            request.promise.failed(x);
+        }
+    }
+
+    private static void cancelTimeout(InFlightRequest request) {
+        Scheduler.Future timeout = request.timeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    int getInFlightRequests() {
+        return inFlightTable.size();
+    }
+
+    boolean isOpen() {
+        return connection.isOpen();
+    }
+
+    void close() {
+        IO.close(connection);
+    }
+}
@@ -0,0 +1,110 @@
+package com.firefly.net.tcp.rpc;
+
+import com.firefly.net.tcp.TcpServerConfiguration;
+
+/**
+ * @author Pengtao Qiu
+ */
+public class RpcConfiguration {
+
+    // TCP settings, the client uses the same configuration without the host and port
+    private TcpServerConfiguration tcpConfiguration = new TcpServerConfiguration();
+
+    // RPC settings
+    private int maxFrameLength = 16 * 1024 * 1024;
+    private int connectionsPerEndpoint = 2;
+    private int maxInFlightRequests = 4096;
+    private long requestTimeout = 5000;
+    private long timeoutTickInterval = 10;
+    private int maxBatchSize = 256;
+
+    public TcpServerConfiguration getTcpConfiguration() {
+        return tcpConfiguration;
+    }
+
+    public void setTcpConfiguration(TcpServerConfiguration tcpConfiguration) {
+        this.tcpConfiguration = tcpConfiguration;
+    }
+
+    public int getMaxFrameLength() {
+        return maxFrameLength;
+    }
+
+    /**
+     * Set the max length of the request and response frames. The peer that receives a longer frame closes the
+     * connection.
+     *
+     * @param maxFrameLength The max frame length.
+     */
+    public void setMaxFrameLength(int maxFrameLength) {
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    public int getConnectionsPerEndpoint() {
+        return connectionsPerEndpoint;
+    }
+
+    /**
+     * Set the number of the connections that the client opens to a server. The requests are multiplexed on the
+     * connections, a request is sent on the connection that has the fewest in-flight requests.
+     *
+     * @param connectionsPerEndpoint The number of the connections of an endpoint.
+     */
+    public void setConnectionsPerEndpoint(int connectionsPerEndpoint) {
+        this.connectionsPerEndpoint = connectionsPerEndpoint;
+    }
+
+    public int getMaxInFlightRequests() {
+        return maxInFlightRequests;
+    }
+
+    /**
+     * Set the max number of the requests that wait for the responses on a connection. It is rounded up to the power
+     * of 2. The request fails immediately if the connection has too many in-flight requests.
+     *
+     * @param maxInFlightRequests The max in-flight requests of a connection.
+     */
+    public void setMaxInFlightRequests(int maxInFlightRequests) {
+        this.maxInFlightRequests = maxInFlightRequests;
+    }
+
+    public long getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * Set the default request timeout.
+     *
+     * @param requestTimeout The request timeout in milliseconds.
+     */
+    public void setRequestTimeout(long requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
+    public long getTimeoutTickInterval() {
+        return timeoutTickInterval;
+    }
+
+    /**
+     * Set the tick interval of the timer wheel that checks the request timeouts. It is the accuracy of the timeouts.
+     *
+     * @param timeoutTickInterval The tick interval in milliseconds.
+     */
+    public void setTimeoutTickInterval(long timeoutTickInterval) {
+        this.timeoutTickInterval = timeoutTickInterval;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Set the max number of the frames that are written by one gathering write. The frames that are sent when the
+     * connection is writing are batched to the next write.
+     *
+     * @param maxBatchSize The max frames of a write.
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        this.maxBatchSize = maxBatchSize;
+    }
+}
@@ -0,0 +1,102 @@
+package com.firefly.net.tcp.rpc;
+
+import com.firefly.utils.concurrent.Promise;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * The connection set of a server address. The connections are opened lazily, and the failed or closed connection is
+ * opened again when it is selected. The request is sent on the open connection that has the fewest in-flight
+ * requests.
+ *
+ * @author Pengtao Qiu
+ */
+class RpcEndpoint {
+
+    private final AtomicReferenceArray<Promise.Completable<RpcClientConnection>> connections;
+    private final Supplier<Promise.Completable<RpcClientConnection>> connector;
+
+    RpcEndpoint(int size, Supplier<Promise.Completable<RpcClientConnection>> connector) {
+        this.connections = new AtomicReferenceArray<>(Math.max(size, 1));
+        this.connector = connector;
+    }
+
+    CompletableFuture<RpcClientConnection> select() {
+        CompletableFuture<RpcClientConnection> future = trySelect();
+        if (future == null) {
+            // the connections are closed after they are checked, the second selecting opens them again
+            future = trySelect();
+        }
+        if (future == null) {
+            Promise.Completable<RpcClientConnection> failed = new Promise.Completable<>();
+            failed.completeExceptionally(new RpcException("the rpc endpoint does not have an open connection"));
+            future = failed;
+        }
+        return future;
+    }
+
+    private CompletableFuture<RpcClientConnection> trySelect() {
+        RpcClientConnection selected = null;
+        CompletableFuture<RpcClientConnection> pending = null;
+        for (int i = 0; i < connections.length(); i++) {
+            Promise.Completable<RpcClientConnection> future = connections.get(i);
+            if (future == null || isBroken(future)) {
+                future = reconnect(i, future);
+            }
+
+            if (future.isDone()) {
+                if (!future.isCompletedExceptionally()) {
+                    RpcClientConnection connection = future.join();
+                    if (connection.isOpen() && (selected == null
+                            || connection.getInFlightRequests() < selected.getInFlightRequests())) {
+                        selected = connection;
+                    }
+                } else if (pending == null) {
+                    pending = future;
+                }
+            } else if (pending == null || pending.isCompletedExceptionally()) {
+                pending = future;
+            }
+        }
+
+        if (selected != null) {
+            return CompletableFuture.completedFuture(selected);
+        } else {
+            // wait for the connection that is opening, or report the connecting exception. It is null if all the
+            // connections are closed after they are checked
+            return pending;
+        }
+    }
+
+    private static boolean isBroken(Promise.Completable<RpcClientConnection> future) {
+        return future.isDone() && (future.isCompletedExceptionally() || !future.join().isOpen());
+    }
+
+    private Promise.Completable<RpcClientConnection> reconnect(int index, Promise.Completable<RpcClientConnection> old) {
+        Promise.Completable<RpcClientConnection> future = new Promise.Completable<>();
+        if (connections.compareAndSet(index, old, future)) {
+            connector.get().whenComplete((connection, x) -> {
+                if (x != null) {
+                    future.completeExceptionally(x);
+                } else {
+                    future.complete(connection);
+                }
+            });
+            return future;
+        } else {
+            // the other thread is reconnecting
+            return connections.get(index);
+        }
+    }
+
+    void close() {
+        for (int i = 0; i < connections.length(); i++) {
+            Promise.Completable<RpcClientConnection> future = connections.getAndSet(i, null);
+            if (future != null) {
+                future.thenAccept(RpcClientConnection::close);
+            }
+        }
+    }
+}
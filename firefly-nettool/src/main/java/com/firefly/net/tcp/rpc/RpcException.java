@@ -0,0 +1,17 @@
+package com.firefly.net.tcp.rpc;
+
+import com.firefly.net.exception.NetException;
+
+/**
+ * The request fails, such as the server handler reports an error or the connection is closed.
+ *
+ * @author Pengtao Qiu
+ */
+public class RpcException extends NetException {
+
+    private static final long serialVersionUID = 3201745930962541870L;
+
+    public RpcException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,127 @@
+package com.firefly.net.tcp.rpc;
+
+import com.firefly.net.exception.CorruptedFrameException;
+import com.firefly.net.tcp.codec.LengthFieldBasedFrameEncoder;
+import com.firefly.net.tcp.codec.LengthFieldBasedFrameParser;
+import com.firefly.utils.io.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The RPC frame is a length-field based frame:
+ * <pre>
+ * +------------+----------+----------------+---------------------------------------+
+ * | length (4) | type (1) | request id (8) | request: path length (2), path, payload |
+ * |            |          |                | response: payload                      |
+ * |            |          |                | error: UTF-8 message                   |
+ * +------------+----------+----------------+---------------------------------------+
+ * </pre>
+ * The length is the number of the bytes after the length field. The request id correlates the response with the
+ * request, so the responses can arrive in any order.
+ *
+ * @author Pengtao Qiu
+ */
+public class RpcFrame {
+
+    public static final byte REQUEST = 1;
+    public static final byte RESPONSE = 2;
+    public static final byte ERROR = 3;
+
+    static final int LENGTH_FIELD_LENGTH = 4;
+    static final int HEADER_LENGTH = 1 + 8;
+
+    private static final LengthFieldBasedFrameEncoder encoder = new LengthFieldBasedFrameEncoder(LENGTH_FIELD_LENGTH);
+
+    private final byte type;
+    private final long requestId;
+    private final String path;
+    private final ByteBuffer payload;
+
+    public RpcFrame(byte type, long requestId, String path, ByteBuffer payload) {
+        this.type = type;
+        this.requestId = requestId;
+        this.path = path;
+        this.payload = payload;
+    }
+
+    public byte getType() {
+        return type;
+    }
+
+    public long getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * @return The request path, it is null if the frame is not a request.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public ByteBuffer getPayload() {
+        return payload;
+    }
+
+    public static LengthFieldBasedFrameParser createParser(int maxFrameLength) {
+        return new LengthFieldBasedFrameParser(maxFrameLength, LENGTH_FIELD_LENGTH);
+    }
+
+    /**
+     * Decode the frame that is emitted by the parser of {@link #createParser(int)}.
+     *
+     * @param frame The frame without the length field.
+     * @return The RPC frame, the payload is a slice of the buffer.
+     */
+    public static RpcFrame decode(ByteBuffer frame) {
+        if (frame.remaining() < HEADER_LENGTH) {
+            throw new CorruptedFrameException("the rpc frame length " + frame.remaining() + " is less than the header length");
+        }
+        ByteBuffer buf = frame.slice();
+        byte type = buf.get();
+        long requestId = buf.getLong();
+        String path = null;
+        switch (type) {
+            case REQUEST:
+                if (buf.remaining() < 2) {
+                    throw new CorruptedFrameException("the rpc request does not have the path length");
+                }
+                int pathLength = buf.getShort() & 0xFFFF;
+                if (buf.remaining() < pathLength) {
+                    throw new CorruptedFrameException("the rpc request path length " + pathLength + " exceeds the frame");
+                }
+                path = BufferUtils.toString(buf, buf.position(), pathLength, StandardCharsets.UTF_8);
+                buf.position(buf.position() + pathLength);
+                break;
+            case RESPONSE:
+            case ERROR:
+                break;
+            default:
+                throw new CorruptedFrameException("the rpc frame type " + type + " is unknown");
+        }
+        return new RpcFrame(type, requestId, path, buf.slice());
+    }
+
+    public static ByteBuffer[] encodeRequest(long requestId, String path, ByteBuffer payload) {
+        byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+        if (pathBytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("the rpc request path is too long: " + pathBytes.length);
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH + 2 + pathBytes.length);
+        header.put(REQUEST).putLong(requestId).putShort((short) pathBytes.length).put(pathBytes).flip();
+        return encoder.encode(header, payload);
+    }
+
+    public static ByteBuffer[] encodeResponse(long requestId, ByteBuffer payload) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.put(RESPONSE).putLong(requestId).flip();
+        return encoder.encode(header, payload);
+    }
+
+    public static ByteBuffer[] encodeError(long requestId, String message) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.put(ERROR).putLong(requestId).flip();
+        return encoder.encode(header, BufferUtils.toBuffer(message == null ? "" : message, StandardCharsets.UTF_8));
+    }
+}
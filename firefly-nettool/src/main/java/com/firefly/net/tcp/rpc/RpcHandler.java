@@ -0,0 +1,23 @@
+package com.firefly.net.tcp.rpc;
+
+import com.firefly.utils.concurrent.Promise;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The server handler of a request path. It runs in the I/O thread, the slow handler should complete the response in
+ * another thread.
+ *
+ * @author Pengtao Qiu
+ */
+public interface RpcHandler {
+
+    /**
+     * Handle a request.
+     *
+     * @param request  The request payload.
+     * @param response Complete the response payload, or fail the request with an error message.
+     */
+    void handle(ByteBuffer request, Promise<ByteBuffer> response);
+
+}
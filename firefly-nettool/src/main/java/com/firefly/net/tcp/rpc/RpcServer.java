@@ -0,0 +1,132 @@
+package com.firefly.net.tcp.rpc;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.firefly.net.tcp.SimpleTcpServer;
+import com.firefly.net.tcp.TcpConnection;
+import com.firefly.net.tcp.codec.LengthFieldBasedFrameParser;
+import com.firefly.utils.concurrent.Promise;
+import com.firefly.utils.io.BufferUtils;
+import com.firefly.utils.json.Json;
+import com.firefly.utils.lang.AbstractLifeCycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * The RPC server dispatches the requests to the handlers by the request paths. The responses are written in the order
+ * that the handlers complete them, and the concurrent responses of a connection are batched to one gathering write.
+ * <p>
+ * The server reports the metrics "rpc.server.request" and "rpc.server.write.batch.size".
+ *
+ * @author Pengtao Qiu
+ */
+public class RpcServer extends AbstractLifeCycle {
+
+    private static Logger log = LoggerFactory.getLogger("firefly-system");
+
+    private final RpcConfiguration config;
+    private final SimpleTcpServer server;
+    private final Map<String, RpcHandler> handlers = new ConcurrentHashMap<>();
+    private final Meter requestMeter;
+    private final Histogram batchSize;
+
+    public RpcServer() {
+        this(new RpcConfiguration());
+    }
+
+    public RpcServer(RpcConfiguration config) {
+        this.config = config;
+        server = new SimpleTcpServer(config.getTcpConfiguration());
+        MetricRegistry metrics = config.getTcpConfiguration().getMetricReporterFactory().getMetricRegistry();
+        requestMeter = metrics.meter("rpc.server.request");
+        batchSize = metrics.histogram("rpc.server.write.batch.size");
+    }
+
+    public RpcServer register(String path, RpcHandler handler) {
+        handlers.put(path, handler);
+        return this;
+    }
+
+    /**
+     * Register a JSON handler. The request and the response are serialized by {@link Json}.
+     *
+     * @param path        The request path.
+     * @param requestType The request type.
+     * @param handler     Convert the request to the response.
+     * @param <T>         The request type.
+     * @return The RPC server.
+     */
+    public <T> RpcServer registerJson(String path, Class<T> requestType, Function<T, ?> handler) {
+        return register(path, (request, response) -> {
+            T obj = Json.toObject(BufferUtils.toString(request, StandardCharsets.UTF_8), requestType);
+            response.succeeded(BufferUtils.toBuffer(Json.toJson(handler.apply(obj)), StandardCharsets.UTF_8));
+        });
+    }
+
+    public void listen(String host, int port) {
+        config.getTcpConfiguration().setHost(host);
+        config.getTcpConfiguration().setPort(port);
+        start();
+    }
+
+    private void accept(TcpConnection connection) {
+        BatchingFrameWriter writer = new BatchingFrameWriter(connection, config.getMaxBatchSize(), batchSize, x -> {
+            log.warn("the rpc connection {} writes the responses failed", x, connection.getSessionId());
+            connection.closeNow();
+        });
+        LengthFieldBasedFrameParser parser = RpcFrame.createParser(config.getMaxFrameLength());
+        parser.complete(buf -> {
+            requestMeter.mark();
+            RpcFrame frame = RpcFrame.decode(buf);
+            long requestId = frame.getRequestId();
+            if (frame.getType() != RpcFrame.REQUEST) {
+                writer.write(RpcFrame.encodeError(requestId, "the rpc server receives the unexpected frame type " + frame.getType()));
+                return;
+            }
+
+            RpcHandler handler = handlers.get(frame.getPath());
+            if (handler == null) {
+                writer.write(RpcFrame.encodeError(requestId, "the rpc path " + frame.getPath() + " is not found"));
+            } else {
+                Promise<ByteBuffer> response = new Promise<ByteBuffer>() {
+                    @Override
+                    public void succeeded(ByteBuffer result) {
+                        writer.write(RpcFrame.encodeResponse(requestId, result));
+                    }
+
+                    @Override
+                    public void failed(Throwable x) {
+                        writer.write(RpcFrame.encodeError(requestId, x.getMessage()));
+                    }
+                };
+                try {
+                    handler.handle(frame.getPayload(), response);
+                } catch (Throwable t) {
+                    log.error("the rpc handler {} exception", t, frame.getPath());
+                    response.failed(t);
+                }
+            }
+        }).exception(x -> {
+            log.error("the rpc connection {} receives the corrupted frame", x, connection.getSessionId());
+            connection.closeNow();
+        });
+        connection.receive(parser::receive);
+    }
+
+    @Override
+    protected void init() {
+        server.accept(this::accept).listen(config.getTcpConfiguration().getHost(), config.getTcpConfiguration().getPort());
+    }
+
+    @Override
+    protected void destroy() {
+        server.stop();
+    }
+}
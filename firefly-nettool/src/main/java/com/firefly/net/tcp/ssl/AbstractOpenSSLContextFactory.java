@@ -3,13 +3,26 @@ package com.firefly.net.tcp.ssl;
 import com.firefly.net.SSLContextFactory;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.handler.ssl.OpenSslSessionContext;
+import io.netty.handler.ssl.OpenSslSessionTicketKey;
 import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSessionContext;
+import java.security.SecureRandom;
 
 /**
+ * The SSL context factory configures the session resumption. The server caches the sessions by the session id, and
+ * the OpenSSL server also issues the session tickets. The ticket keys are rotated at the rotation interval, the newest
+ * key encrypts the new tickets and the previous keys still decrypt the tickets that are not expired.
+ * <p>
+ * The client engine is created with the peer host and port, so the JDK client reuses the session of the same
+ * host:port. The OpenSSL client engine of this netty version does not cache the sessions, set the provider to
+ * {@link SslProvider#JDK} to resume the client sessions.
+ *
  * @author Pengtao Qiu
  */
 public abstract class AbstractOpenSSLContextFactory implements SSLContextFactory {
@@ -18,6 +31,17 @@ public abstract class AbstractOpenSSLContextFactory implements SSLContextFactory
 
     protected volatile SslContext sslContext;
     protected ByteBufAllocator byteBufAllocator;
+    protected SslProvider sslProvider;
+
+    // the session cache size and timeout, 0 means the default value of the provider
+    protected int sessionCacheSize;
+    protected int sessionTimeout;
+    protected long sessionTicketKeyRotationInterval = 60 * 60 * 1000L;
+    protected int maxSessionTicketKeys = 2;
+
+    private final SecureRandom random = new SecureRandom();
+    private OpenSslSessionTicketKey[] sessionTicketKeys = new OpenSslSessionTicketKey[0];
+    private volatile long nextRotationTime;
 
     public AbstractOpenSSLContextFactory() {
         byteBufAllocator = PooledByteBufAllocator.DEFAULT;
@@ -31,14 +55,88 @@ public abstract class AbstractOpenSSLContextFactory implements SSLContextFactory
         this.byteBufAllocator = byteBufAllocator;
     }
 
+    public SslProvider getSslProvider() {
+        return sslProvider;
+    }
+
+    /**
+     * Set the SSL provider. If it is null, netty uses OpenSSL when it is available.
+     *
+     * @param sslProvider The SSL provider.
+     */
+    public void setSslProvider(SslProvider sslProvider) {
+        this.sslProvider = sslProvider;
+    }
+
+    public int getSessionCacheSize() {
+        return sessionCacheSize;
+    }
+
+    /**
+     * Set the max number of the cached sessions.
+     *
+     * @param sessionCacheSize The session cache size, 0 means the default value of the provider.
+     */
+    public void setSessionCacheSize(int sessionCacheSize) {
+        this.sessionCacheSize = sessionCacheSize;
+    }
+
+    public int getSessionTimeout() {
+        return sessionTimeout;
+    }
+
+    /**
+     * Set the timeout of the cached sessions and the session tickets.
+     *
+     * @param sessionTimeout The session timeout (seconds), 0 means the default value of the provider.
+     */
+    public void setSessionTimeout(int sessionTimeout) {
+        this.sessionTimeout = sessionTimeout;
+    }
+
+    public long getSessionTicketKeyRotationInterval() {
+        return sessionTicketKeyRotationInterval;
+    }
+
+    /**
+     * Set the rotation interval of the session ticket keys. The interval should not be less than the session timeout
+     * divided by the max number of the ticket keys, otherwise the tickets are discarded before they are expired.
+     *
+     * @param sessionTicketKeyRotationInterval The rotation interval (milliseconds), 0 means the keys are not rotated.
+     */
+    public void setSessionTicketKeyRotationInterval(long sessionTicketKeyRotationInterval) {
+        this.sessionTicketKeyRotationInterval = sessionTicketKeyRotationInterval;
+    }
+
+    public int getMaxSessionTicketKeys() {
+        return maxSessionTicketKeys;
+    }
+
+    /**
+     * Set the max number of the ticket keys that decrypt the session tickets.
+     *
+     * @param maxSessionTicketKeys The max number of the ticket keys.
+     */
+    public void setMaxSessionTicketKeys(int maxSessionTicketKeys) {
+        this.maxSessionTicketKeys = maxSessionTicketKeys;
+    }
+
     @Override
     public SSLEngine createSSLEngine(boolean clientMode) {
-        return getSslContext(clientMode).newEngine(byteBufAllocator);
+        SslContext context = getSslContext(clientMode);
+        if (!clientMode) {
+            checkSessionTicketKeys(context);
+        }
+        return context.newEngine(byteBufAllocator);
     }
 
     @Override
     public SSLEngine createSSLEngine(boolean clientMode, String peerHost, int peerPort) {
-        return getSslContext(clientMode).newEngine(byteBufAllocator, peerHost, peerPort);
+        SslContext context = getSslContext(clientMode);
+        if (!clientMode) {
+            checkSessionTicketKeys(context);
+        }
+        return context.newEngine(byteBufAllocator, peerHost, peerPort);
     }
 
     public SslContext getSslContext(boolean clientMode) {
@@ -50,11 +148,73 @@ public abstract class AbstractOpenSSLContextFactory implements SSLContextFactory
         if (sslContext == null) {
             synchronized (this) {
                 if (sslContext == null) {
-                    sslContext = createSSLContext(clientMode);
+                    SslContext context = createSSLContext(clientMode);
+                    configureSessionContext(context);
+                    sslContext = context;
                 }
             }
         }
     }
 
+    private void configureSessionContext(SslContext context) {
+        SSLSessionContext sessionContext = context.sessionContext();
+        if (sessionContext == null) {
+            return;
+        }
+        if (sessionCacheSize > 0) {
+            sessionContext.setSessionCacheSize(sessionCacheSize);
+        }
+        if (sessionTimeout > 0) {
+            sessionContext.setSessionTimeout(sessionTimeout);
+        }
+        if (context.isServer()) {
+            rotateSessionTicketKeys(context, true);
+        }
+    }
+
+    private void checkSessionTicketKeys(SslContext context) {
+        if (sessionTicketKeyRotationInterval > 0 && System.currentTimeMillis() >= nextRotationTime) {
+            rotateSessionTicketKeys(context, false);
+        }
+    }
+
+    /**
+     * Generate a new session ticket key to encrypt the new tickets. The previous keys are kept to decrypt the tickets
+     * until the number of the keys exceeds the max number of the ticket keys.
+     */
+    public void rotateSessionTicketKeys() {
+        SslContext context = sslContext;
+        if (context != null && context.isServer()) {
+            rotateSessionTicketKeys(context, true);
+        }
+    }
+
+    private synchronized void rotateSessionTicketKeys(SslContext context, boolean force) {
+        long now = System.currentTimeMillis();
+        if (!force && now < nextRotationTime) {
+            // the other thread has rotated the keys
+            return;
+        }
+        nextRotationTime = sessionTicketKeyRotationInterval > 0 ? now + sessionTicketKeyRotationInterval : Long.MAX_VALUE;
+        if (!(context.sessionContext() instanceof OpenSslSessionContext)) {
+            return;
+        }
+
+        byte[] name = new byte[OpenSslSessionTicketKey.NAME_SIZE];
+        byte[] hmacKey = new byte[OpenSslSessionTicketKey.HMAC_KEY_SIZE];
+        byte[] aesKey = new byte[OpenSslSessionTicketKey.AES_KEY_SIZE];
+        random.nextBytes(name);
+        random.nextBytes(hmacKey);
+        random.nextBytes(aesKey);
+
+        int size = Math.min(sessionTicketKeys.length + 1, Math.max(maxSessionTicketKeys, 1));
+        OpenSslSessionTicketKey[] keys = new OpenSslSessionTicketKey[size];
+        keys[0] = new OpenSslSessionTicketKey(name, hmacKey, aesKey);
+        System.arraycopy(sessionTicketKeys, 0, keys, 1, size - 1);
+        ((OpenSslSessionContext) context.sessionContext()).setTicketKeys(keys);
+        sessionTicketKeys = keys;
+        log.info("rotate the session ticket keys, the key number is {}", keys.length);
+    }
+
     abstract public SslContext createSSLContext(boolean clientMode);
 }
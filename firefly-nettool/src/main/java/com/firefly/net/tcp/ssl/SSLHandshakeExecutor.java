@@ -0,0 +1,122 @@
+package com.firefly.net.tcp.ssl;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.firefly.net.MetricReporterFactory;
+import com.firefly.utils.concurrent.Callback;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The bounded executor runs the delegated tasks of the TLS handshakes, such as the RSA and ECDHE computations, so the
+ * I/O threads keep reading and writing the established connections when many clients connect at the same time.
+ * <p>
+ * The number of the threads is the max number of the handshakes that compute at the same time. The other handshakes
+ * wait in the queue, and the handshake fails if the queue is full. The executor reports the metrics
+ * "ssl.handshake.executor.queue.size", "ssl.handshake.executor.active", "ssl.handshake.executor.wait",
+ * "ssl.handshake.executor.task" and "ssl.handshake.executor.rejected". If the executors share a metric registry, the
+ * gauges describe the latest executor, and they are removed when that executor is shut down.
+ *
+ * @author Pengtao Qiu
+ */
+public class SSLHandshakeExecutor {
+
+    public static final int DEFAULT_MAX_QUEUED_HANDSHAKES = 1024;
+
+    private final ThreadPoolExecutor executor;
+    private final MetricRegistry metrics;
+    private final Gauge<Integer> queueSizeGauge;
+    private final Gauge<Integer> activeGauge;
+    private final Timer waitTimer;
+    private final Timer taskTimer;
+    private final Meter rejected;
+
+    public SSLHandshakeExecutor(MetricReporterFactory metricReporterFactory) {
+        this(metricReporterFactory, Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_QUEUED_HANDSHAKES);
+    }
+
+    /**
+     * Create a handshake executor.
+     *
+     * @param metricReporterFactory  The metric registry provider.
+     * @param maxConcurrentHandshakes The max number of the handshakes that run the delegated tasks at the same time.
+     * @param maxQueuedHandshakes     The max number of the handshakes that wait for running the delegated tasks.
+     */
+    public SSLHandshakeExecutor(MetricReporterFactory metricReporterFactory, int maxConcurrentHandshakes, int maxQueuedHandshakes) {
+        if (maxConcurrentHandshakes <= 0 || maxQueuedHandshakes <= 0) {
+            throw new IllegalArgumentException("the max concurrent handshakes and the max queued handshakes must be positive");
+        }
+
+        AtomicInteger threadId = new AtomicInteger();
+        executor = new ThreadPoolExecutor(maxConcurrentHandshakes, maxConcurrentHandshakes,
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(maxQueuedHandshakes), r -> {
+            Thread thread = new Thread(r, "firefly ssl handshake " + threadId.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+
+        metrics = metricReporterFactory.getMetricRegistry();
+        queueSizeGauge = this::getQueueSize;
+        activeGauge = executor::getActiveCount;
+        replaceGauge("ssl.handshake.executor.queue.size", queueSizeGauge);
+        replaceGauge("ssl.handshake.executor.active", activeGauge);
+        waitTimer = metrics.timer("ssl.handshake.executor.wait");
+        taskTimer = metrics.timer("ssl.handshake.executor.task");
+        rejected = metrics.meter("ssl.handshake.executor.rejected");
+    }
+
+    /**
+     * Run the delegated tasks of a handshake.
+     *
+     * @param tasks    The delegated tasks.
+     * @param callback The callback is called in the executor thread when the tasks are finished.
+     * @return False if the queue is full, and the tasks are not run.
+     */
+    public boolean execute(Runnable tasks, Callback callback) {
+        final long submitTime = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                long start = System.nanoTime();
+                waitTimer.update(start - submitTime, TimeUnit.NANOSECONDS);
+                try {
+                    tasks.run();
+                } catch (Throwable t) {
+                    taskTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    callback.failed(t);
+                    return;
+                }
+                taskTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                callback.succeeded();
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejected.mark();
+            return false;
+        }
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public long getRejectedCount() {
+        return rejected.getCount();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        metrics.removeMatching((name, metric) -> metric == queueSizeGauge || metric == activeGauge);
+    }
+
+    private void replaceGauge(String name, Gauge<Integer> gauge) {
+        metrics.remove(name);
+        metrics.register(name, gauge);
+    }
+}
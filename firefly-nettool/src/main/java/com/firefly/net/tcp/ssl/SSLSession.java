@@ -1,15 +1,23 @@
 package com.firefly.net.tcp.ssl;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Timer;
 import com.firefly.net.BufferPool;
+import com.firefly.net.MetricReporterFactory;
 import com.firefly.net.SSLContextFactory;
 import com.firefly.net.SSLEventHandler;
 import com.firefly.net.Session;
 import com.firefly.net.buffer.FileRegion;
+import com.firefly.net.buffer.SizeClassedBufferPool;
 import com.firefly.net.buffer.ThreadSafeIOBufferPool;
 import com.firefly.utils.concurrent.Callback;
 import com.firefly.utils.concurrent.CountingCallback;
 import com.firefly.utils.io.BufferReaderHandler;
 import com.firefly.utils.io.BufferUtils;
+import io.netty.handler.ssl.ReferenceCountedOpenSslEngine;
 import io.netty.handler.ssl.SslHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,25 +25,53 @@ import org.slf4j.LoggerFactory;
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLEngineResult;
 import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLException;
 import java.io.Closeable;
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
-
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The TLS session wraps the application data and unwraps the network data by the SSLEngine.
+ * <p>
+ * The packet buffers and the network buffers are direct buffers that are acquired from a shared size classed pool,
+ * the packet buffers are released when the session finishes writing them. The application data of a read is
+ * unwrapped to a pooled heap buffer, and then it is copied to a plaintext buffer that has the exact size.
+ * The multiple application buffers of a write are wrapped to the records of one packet buffer, so they are flushed
+ * by one socket write.
+ * <p>
+ * The session reports the metrics "ssl.SSLSession.in.bytes", "ssl.SSLSession.out.bytes", "ssl.SSLSession.wrap" and
+ * "ssl.SSLSession.unwrap". The handshakes are counted by "ssl.SSLSession.handshake.full" and
+ * "ssl.SSLSession.handshake.resumed", and "ssl.SSLSession.handshake.resumption.ratio" is the ratio of the resumed
+ * handshakes.
+ */
 public class SSLSession implements Closeable {
 
     protected static final Logger log = LoggerFactory.getLogger("firefly-system");
 
     private static final BufferPool bufferPool = new ThreadSafeIOBufferPool();
 
+    private static volatile SizeClassedBufferPool packetBufferPool;
+    private static volatile SizeClassedBufferPool appBufferPool;
+
     private final Session session;
     private final SSLEngine sslEngine;
+    private final SizeClassedBufferPool packetPool;
+    private final SizeClassedBufferPool appPool;
 
+    // the network data that is not a whole record, it is a pooled direct buffer
     private ByteBuffer inNetBuffer;
+    // the application buffer of the current read, it is a pooled heap buffer
     private ByteBuffer outAppBuffer;
 
-    private static final int requestBufferSize = 1024 * 8;
-    private static final int writeBufferSize = 1024 * 8;
+    // the max size of the packet buffer that is written by one socket write
+    private static final int maxPacketBufferSize = 1024 * 64;
+
+    // the max plaintext size of a TLS record, every slice of the file region is wrapped to one record
+    private static final int fileSliceSize = 1024 * 16;
 
     /*
      * An empty ByteBuffer for use when one isn't available, say as a source
@@ -60,31 +96,155 @@ public class SSLSession implements Closeable {
      */
     private HandshakeStatus initialHSStatus;
 
-    private boolean initialHSComplete;
+    private volatile boolean initialHSComplete;
+
+    // the delegated tasks run in the handshake executor, the session does not unwrap the received data until they are finished
+    private boolean delegatedTaskRunning;
 
     private final SSLEventHandler sslEventHandler;
 
     private final SslHandler sslHandler;
 
+    private final Meter fileRegionBytes;
+    private final Meter inBytes;
+    private final Meter outBytes;
+    private final Timer wrapTimer;
+    private final Timer unwrapTimer;
+    private final Meter fullHandshake;
+    private final Meter resumedHandshake;
+    private final Timer handshakeTimer;
+    private final long handshakeStartTime;
+    private final long handshakeStartNanoTime;
+
+    private final SSLHandshakeExecutor handshakeExecutor;
+
     public SSLSession(SSLContextFactory factory, boolean clientMode, Session session, SSLEventHandler sslEventHandler) throws IOException {
-        this(factory.createSSLEngine(clientMode), session, sslEventHandler);
+        this(factory, clientMode, session, null, sslEventHandler);
+    }
+
+    /**
+     * Create a TLS session.
+     *
+     * @param factory           The SSL context factory.
+     * @param clientMode        If true, the session is the client side.
+     * @param session           The TCP session.
+     * @param handshakeExecutor The executor runs the delegated tasks of the handshake. If it is null, the tasks run in
+     *                          the current I/O thread.
+     * @param sslEventHandler   The handshake listener.
+     * @throws IOException The handshake error.
+     */
+    public SSLSession(SSLContextFactory factory, boolean clientMode, Session session,
+                      SSLHandshakeExecutor handshakeExecutor, SSLEventHandler sslEventHandler) throws IOException {
+        this(createSSLEngine(factory, clientMode, session), session, handshakeExecutor, sslEventHandler);
+    }
+
+    /**
+     * The client engine is created with the peer host and port, so the SSL context reuses the session of the same
+     * host:port.
+     */
+    private static SSLEngine createSSLEngine(SSLContextFactory factory, boolean clientMode, Session session) {
+        InetSocketAddress remoteAddress = clientMode ? session.getRemoteAddress() : null;
+        if (remoteAddress != null) {
+            return factory.createSSLEngine(true, remoteAddress.getHostString(), remoteAddress.getPort());
+        } else {
+            return factory.createSSLEngine(clientMode);
+        }
     }
 
-    private SSLSession(SSLEngine sslEngine, Session session, SSLEventHandler sslEventHandler) throws IOException {
+    private SSLSession(SSLEngine sslEngine, Session session, SSLHandshakeExecutor handshakeExecutor,
+                       SSLEventHandler sslEventHandler) throws IOException {
         this.session = session;
+        // the received buffers are copied to the packet buffer and released
+        session.enableReadBufferPool();
         this.sslEventHandler = sslEventHandler;
         this.sslEngine = sslEngine;
+        this.handshakeExecutor = handshakeExecutor;
 
-        outAppBuffer = ByteBuffer.allocate(requestBufferSize);
         initialHSComplete = false;
         sslHandler = new SslHandler(sslEngine);
+        MetricRegistry metrics = session.getMetricRegistry();
+        fileRegionBytes = metrics.meter("ssl.SSLSession.fileRegion.bytes");
+        inBytes = metrics.meter("ssl.SSLSession.in.bytes");
+        outBytes = metrics.meter("ssl.SSLSession.out.bytes");
+        wrapTimer = metrics.timer("ssl.SSLSession.wrap");
+        unwrapTimer = metrics.timer("ssl.SSLSession.unwrap");
+        Meter full = metrics.meter("ssl.SSLSession.handshake.full");
+        Meter resumed = metrics.meter("ssl.SSLSession.handshake.resumed");
+        metrics.gauge("ssl.SSLSession.handshake.resumption.ratio", () -> new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                return Ratio.of(resumed.getCount(), full.getCount() + resumed.getCount());
+            }
+        });
+        fullHandshake = full;
+        resumedHandshake = resumed;
+        handshakeTimer = metrics.timer("ssl.SSLSession.handshake");
+        handshakeStartTime = System.currentTimeMillis();
+        handshakeStartNanoTime = System.nanoTime();
+        packetPool = getPacketBufferPool(metrics);
+        appPool = getAppBufferPool(metrics);
 
         // start tls
         this.sslEngine.beginHandshake();
         initialHSStatus = sslEngine.getHandshakeStatus();
         if (sslEngine.getUseClientMode()) {
-            doHandshakeResponse();
+            // the session is not attached to the connection yet, so the delegated tasks of the client hello run here
+            while (initialHSStatus == HandshakeStatus.NEED_WRAP || initialHSStatus == HandshakeStatus.NEED_TASK) {
+                if (initialHSStatus == HandshakeStatus.NEED_TASK) {
+                    initialHSStatus = doTasks();
+                } else {
+                    doHandshakeResponse();
+                }
+            }
+        }
+    }
+
+    /**
+     * The pools are shared by all the TLS sessions, they report the metrics to the registry of the first session.
+     */
+    private static SizeClassedBufferPool getPacketBufferPool(MetricRegistry metrics) {
+        SizeClassedBufferPool pool = packetBufferPool;
+        if (pool == null) {
+            synchronized (SSLSession.class) {
+                pool = packetBufferPool;
+                if (pool == null) {
+                    pool = createBufferPool(metrics, "ssl.packet", true);
+                    packetBufferPool = pool;
+                }
+            }
         }
+        return pool;
+    }
+
+    private static SizeClassedBufferPool getAppBufferPool(MetricRegistry metrics) {
+        SizeClassedBufferPool pool = appBufferPool;
+        if (pool == null) {
+            synchronized (SSLSession.class) {
+                pool = appBufferPool;
+                if (pool == null) {
+                    pool = createBufferPool(metrics, "ssl.application", false);
+                    appBufferPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    private static SizeClassedBufferPool createBufferPool(MetricRegistry metrics, String name, boolean direct) {
+        MetricReporterFactory metricReporterFactory = new MetricReporterFactory() {
+            @Override
+            public ScheduledReporter getScheduledReporter() {
+                return null;
+            }
+
+            @Override
+            public MetricRegistry getMetricRegistry() {
+                return metrics;
+            }
+        };
+        return new SizeClassedBufferPool(metricReporterFactory, name, direct,
+                SizeClassedBufferPool.DEFAULT_MIN_SIZE, maxPacketBufferSize * 2,
+                SizeClassedBufferPool.DEFAULT_MAX_BUFFERS_PER_CLASS, Runtime.getRuntime().availableProcessors() * 2);
     }
 
     /**
@@ -92,11 +252,10 @@ public class SSLSession implements Closeable {
      * communication parameters until an SSLSession is established. Application
      * data can not be sent during this phase.
      *
-     * @param receiveBuffer Encrypted message
      * @return True means handshake success
      * @throws IOException A runtime exception
      */
-    private boolean doHandshake(ByteBuffer receiveBuffer) throws IOException {
+    private boolean doHandshake() throws IOException {
         if (!session.isOpen()) {
             sslEngine.closeInbound();
             return (initialHSComplete = false);
@@ -106,107 +265,126 @@ public class SSLSession implements Closeable {
             return true;
         }
 
-        switch (initialHSStatus) {
-            case NOT_HANDSHAKING:
-            case FINISHED: {
-                handshakeFinish();
-                return initialHSComplete;
-            }
+        // keep handshaking until the handshake is finished or the remaining data is not a whole record
+        while (!initialHSComplete) {
+            switch (initialHSStatus) {
+                case NOT_HANDSHAKING:
+                case FINISHED:
+                    handshakeFinish();
+                    break;
 
-            case NEED_UNWRAP:
-                doHandshakeReceive(receiveBuffer);
-                if (initialHSStatus != HandshakeStatus.NEED_WRAP)
+                case NEED_UNWRAP:
+                    if (!doHandshakeReceive()) {
+                        return initialHSComplete;
+                    }
                     break;
 
-            case NEED_WRAP:
-                doHandshakeResponse();
-                break;
+                case NEED_WRAP:
+                    doHandshakeResponse();
+                    break;
 
-            default: // NEED_TASK
-                throw new RuntimeException("Invalid Handshaking State" + initialHSStatus);
+                default: // NEED_TASK
+                    if (handshakeExecutor == null) {
+                        initialHSStatus = doTasks();
+                        break;
+                    } else {
+                        delegateTasks();
+                        return false;
+                    }
+            }
         }
-        return initialHSComplete;
+        return true;
     }
 
-    private void doHandshakeReceive(ByteBuffer receiveBuffer) throws IOException {
-        SSLEngineResult result;
+    /**
+     * Run the delegated tasks in the handshake executor. The session stops reading until the tasks are finished, and
+     * then it continues the handshake by decoding an empty buffer in the executor thread, so the decoder receives the
+     * plaintext that follows the handshake messages.
+     *
+     * @throws IOException The handshake executor rejects the tasks.
+     */
+    private void delegateTasks() throws IOException {
+        delegatedTaskRunning = true;
+        session.suspendRead();
+        boolean accepted = handshakeExecutor.execute(() -> {
+            Runnable runnable;
+            while ((runnable = sslEngine.getDelegatedTask()) != null) {
+                runnable.run();
+            }
+        }, new Callback() {
+            @Override
+            public void succeeded() {
+                synchronized (SSLSession.this) {
+                    delegatedTaskRunning = false;
+                    initialHSStatus = sslEngine.getHandshakeStatus();
+                }
+                session.decode(BufferUtils.EMPTY_BUFFER);
+                session.resumeRead();
+            }
 
-        merge(receiveBuffer);
+            @Override
+            public void failed(Throwable x) {
+                log.error("session {} runs the handshake tasks exception", x, session.getSessionId());
+                session.closeNow();
+            }
+        });
+        if (!accepted) {
+            throw new IOException("the handshake executor is busy, the session " + session.getSessionId() + " is rejected");
+        }
+    }
 
-        needIO:
+    /**
+     * Unwrap the handshake messages.
+     *
+     * @return False means the remaining data is not a whole record, and the session waits for more data.
+     * @throws IOException The SSLEngine error.
+     */
+    private boolean doHandshakeReceive() throws IOException {
         while (initialHSStatus == HandshakeStatus.NEED_UNWRAP) {
-
-            unwrap:
-            while (true) {
-                int netSize = sslEngine.getSession().getPacketBufferSize();
-                List<ByteBuffer> inNetBuffers = BufferUtils.split(inNetBuffer, netSize);
-                for (ByteBuffer net : inNetBuffers) {
-                    //FIXME using direct buffer avoid netty ByteBufAllocator bug
-                    ByteBuffer directTmpBuffer = bufferPool.acquire(net.remaining());
-                    try {
-                        directTmpBuffer.put(net.slice()).flip();
-                        result = sslEngine.unwrap(directTmpBuffer, outAppBuffer);
-                    } finally {
-                        bufferPool.release(directTmpBuffer);
+            SSLEngineResult result = unwrap();
+            initialHSStatus = result.getHandshakeStatus();
+            if (log.isDebugEnabled()) {
+                log.debug("session {} handshake receives data, init: {} | ret: {} | complete: {} ",
+                        session.getSessionId(), initialHSStatus, result.getStatus(), initialHSComplete);
+            }
+            switch (result.getStatus()) {
+                case OK:
+                    if (initialHSStatus == HandshakeStatus.NEED_TASK) {
+                        return true;
                     }
+                    break;
 
-                    int consumed = result.bytesConsumed();
-                    inNetBuffer.position(inNetBuffer.position() + consumed);
-                    net.position(net.position() + consumed);
-
-                    initialHSStatus = result.getHandshakeStatus();
-                    if (log.isDebugEnabled()) {
-                        log.debug("session {} handshake receives data, init: {} | ret: {} | complete: {} ",
-                                session.getSessionId(), initialHSStatus, result.getStatus(), initialHSComplete);
-                    }
-                    switch (result.getStatus()) {
-                        case OK:
-                            switch (initialHSStatus) {
-                                case NEED_TASK:
-                                    initialHSStatus = doTasks();
-                                    break;
-
-                                case NOT_HANDSHAKING:
-                                case FINISHED:
-                                    handshakeFinish();
-                                    break needIO;
-                                default:
-                                    break;
-                            }
-                            break unwrap;
-
-                        case BUFFER_UNDERFLOW:
-                            switch (initialHSStatus) {
-                                case NOT_HANDSHAKING:
-                                case FINISHED:
-                                    handshakeFinish();
-                                    break needIO;
-                            }
-                            break needIO;
-
-                        case BUFFER_OVERFLOW:
-                            // Reset the application buffer size.
-                            int appSize = sslEngine.getSession().getApplicationBufferSize();
-                            ByteBuffer b = ByteBuffer.allocate(appSize + outAppBuffer.position());
-                            outAppBuffer.flip();
-                            b.put(outAppBuffer);
-                            outAppBuffer = b;
-                            // retry the operation.
-                            break;
-
-                        default: // CLOSED:
-                            throw new IOException("Received" + result.getStatus() + "during initial handshaking");
+                case BUFFER_UNDERFLOW:
+                    switch (initialHSStatus) {
+                        case NOT_HANDSHAKING:
+                        case FINISHED:
+                            handshakeFinish();
+                            return true;
+                        default:
+                            return false;
                     }
 
-                }
-
+                case BUFFER_OVERFLOW:
+                    growOutAppBuffer();
+                    // retry the operation.
+                    break;
 
-            } // "unwrap" block.
-        } // "needIO" block.
+                default: // CLOSED:
+                    throw new IOException("Received" + result.getStatus() + "during initial handshaking");
+            }
+        }
+        return true;
     }
 
     private void handshakeFinish() {
-        log.info("session {} handshake success!", session.getSessionId());
+        handshakeTimer.update(System.nanoTime() - handshakeStartNanoTime, TimeUnit.NANOSECONDS);
+        boolean resumed = isSessionResumed();
+        log.info("session {} handshake success! resumed: {}", session.getSessionId(), resumed);
+        if (resumed) {
+            resumedHandshake.mark();
+        } else {
+            fullHandshake.mark();
+        }
         initialHSComplete = true;
         sslEventHandler.handshakeFinished(this);
     }
@@ -214,11 +392,16 @@ public class SSLSession implements Closeable {
     private void doHandshakeResponse() throws IOException {
         while (initialHSStatus == HandshakeStatus.NEED_WRAP) {
             SSLEngineResult result;
-            ByteBuffer writeBuf = ByteBuffer.allocateDirect(sslEngine.getSession().getPacketBufferSize());
+            ByteBuffer writeBuf = packetPool.acquire(sslEngine.getSession().getPacketBufferSize());
 
             wrap:
             while (true) {
-                result = sslEngine.wrap(hsBuffer, writeBuf);
+                try {
+                    result = wrap(hsBuffer, writeBuf);
+                } catch (IOException | RuntimeException e) {
+                    packetPool.release(writeBuf);
+                    throw e;
+                }
                 initialHSStatus = result.getHandshakeStatus();
                 if (log.isDebugEnabled()) {
                     log.debug("session {} handshake response, init: {} | ret: {} | complete: {} ",
@@ -226,43 +409,109 @@ public class SSLSession implements Closeable {
                 }
                 switch (result.getStatus()) {
                     case OK:
-                        if (initialHSStatus == HandshakeStatus.NEED_TASK) {
-                            initialHSStatus = doTasks();
-                        }
-
                         writeBuf.flip();
-                        session.write(writeBuf, Callback.NOOP);
+                        outBytes.mark(writeBuf.remaining());
+                        session.write(writeBuf, new ReleasePacketCallback(Callback.NOOP, writeBuf));
                         break wrap;
 
                     case BUFFER_OVERFLOW:
-                        int netSize = sslEngine.getSession().getPacketBufferSize();
-                        ByteBuffer b = ByteBuffer.allocate(writeBuf.position() + netSize);
-                        writeBuf.flip();
-                        b.put(writeBuf);
-                        writeBuf = b;
+                        writeBuf = growPacketBuffer(writeBuf);
                         break;
 
                     default: // BUFFER_UNDERFLOW, CLOSED:
+                        packetPool.release(writeBuf);
                         throw new IOException("Received " + result.getStatus() + " during initial handshaking");
                 }
             }
         }
     }
 
+    private SSLEngineResult wrap(ByteBuffer src, ByteBuffer dst) throws SSLException {
+        long start = System.nanoTime();
+        try {
+            return sslEngine.wrap(src, dst);
+        } finally {
+            wrapTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private SSLEngineResult wrap(ByteBuffer[] srcs, int offset, ByteBuffer dst) throws SSLException {
+        long start = System.nanoTime();
+        try {
+            return sslEngine.wrap(srcs, offset, srcs.length - offset, dst);
+        } finally {
+            wrapTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Unwrap at most one packet size of the network buffer to the application buffer.
+     *
+     * @return The result of the SSLEngine.
+     * @throws SSLException The SSLEngine error.
+     */
+    private SSLEngineResult unwrap() throws SSLException {
+        int limit = inNetBuffer.limit();
+        int netSize = sslEngine.getSession().getPacketBufferSize();
+        if (inNetBuffer.remaining() > netSize) {
+            inNetBuffer.limit(inNetBuffer.position() + netSize);
+        }
+        long start = System.nanoTime();
+        try {
+            return sslEngine.unwrap(inNetBuffer, outAppBuffer);
+        } finally {
+            unwrapTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            inNetBuffer.limit(limit);
+        }
+    }
+
+    private ByteBuffer growPacketBuffer(ByteBuffer packet) {
+        ByteBuffer b = packetPool.acquire(packet.position() + sslEngine.getSession().getPacketBufferSize());
+        packet.flip();
+        b.put(packet);
+        packetPool.release(packet);
+        return b;
+    }
+
+    private void growOutAppBuffer() {
+        // Reset the application buffer size.
+        // the OpenSSL engine requires the space of the whole record, it may exceed the application buffer size
+        int appSize = Math.max(sslEngine.getSession().getApplicationBufferSize(), sslEngine.getSession().getPacketBufferSize());
+        ByteBuffer b = appPool.acquire(appSize + outAppBuffer.position());
+        outAppBuffer.flip();
+        b.put(outAppBuffer);
+        appPool.release(outAppBuffer);
+        outAppBuffer = b;
+    }
+
+    /**
+     * Append the received data to the remaining network data. The network buffer is always a pooled direct buffer,
+     * because the receive buffer may be released to the read buffer pool after this read.
+     *
+     * @param now The received data.
+     */
     private void merge(ByteBuffer now) {
-        if (!now.hasRemaining())
-            return;
-
-        if (inNetBuffer != null) {
-            if (inNetBuffer.hasRemaining()) {
-                ByteBuffer ret = ByteBuffer.allocate(inNetBuffer.remaining() + now.remaining());
-                ret.put(inNetBuffer).put(now).flip();
-                inNetBuffer = ret;
-            } else {
-                inNetBuffer = now;
-            }
+        //FIXME using direct buffer avoid netty ByteBufAllocator bug
+        int remaining = inNetBuffer != null ? inNetBuffer.remaining() : 0;
+        if (inNetBuffer != null && inNetBuffer.capacity() - inNetBuffer.limit() >= now.remaining()) {
+            int position = inNetBuffer.position();
+            inNetBuffer.position(inNetBuffer.limit()).limit(inNetBuffer.capacity());
+            inNetBuffer.put(now).limit(inNetBuffer.position()).position(position);
         } else {
-            inNetBuffer = now;
+            ByteBuffer b = packetPool.acquire(remaining + now.remaining());
+            if (inNetBuffer != null) {
+                b.put(inNetBuffer);
+                packetPool.release(inNetBuffer);
+            }
+            b.put(now).flip();
+            inNetBuffer = b;
+        }
+    }
+
+    private void releaseInNetBuffer() {
+        if (inNetBuffer != null && !inNetBuffer.hasRemaining()) {
+            packetPool.release(inNetBuffer);
+            inNetBuffer = null;
         }
     }
 
@@ -271,7 +520,6 @@ public class SSLSession implements Closeable {
         if (outAppBuffer.hasRemaining()) {
             ByteBuffer buf = ByteBuffer.allocate(outAppBuffer.remaining());
             buf.put(outAppBuffer).flip();
-            outAppBuffer = ByteBuffer.allocate(requestBufferSize);
             if (log.isDebugEnabled()) {
                 log.debug("SSL session {} unwrap, app buffer -> {}", session.getSessionId(), buf.remaining());
             }
@@ -281,6 +529,21 @@ public class SSLSession implements Closeable {
         }
     }
 
+    /**
+     * The resumed session keeps the creation time of the session that is cached or that issues the ticket, so it is
+     * created before this handshake starts. The OpenSSL session reports the creation time in seconds.
+     *
+     * @return True if the handshake resumes a previous session.
+     */
+    private boolean isSessionResumed() {
+        long creationTime = sslEngine.getSession().getCreationTime();
+        if (sslEngine instanceof ReferenceCountedOpenSslEngine) {
+            return creationTime < handshakeStartTime - handshakeStartTime % 1000;
+        } else {
+            return creationTime < handshakeStartTime;
+        }
+    }
+
     /**
      * Do all the outstanding handshake tasks in the current Thread.
      *
@@ -316,65 +579,47 @@ public class SSLSession implements Closeable {
     }
 
     /**
-     * This method is used to decrypt data, it implied do handshake
+     * This method is used to decrypt data, it implied do handshake. The received buffer is copied to the packet
+     * buffer, and then it is returned to the read buffer pool of the session.
      *
      * @param receiveBuffer Encrypted message
      * @return plaintext
      * @throws IOException sslEngine error during data read
      */
-    public ByteBuffer read(ByteBuffer receiveBuffer) throws IOException {
-        if (!doHandshake(receiveBuffer))
-            return null;
-
-        if (!initialHSComplete)
-            throw new IllegalStateException("The initial handshake is not complete.");
-
-        if (log.isDebugEnabled()) {
-            log.debug("SSL read current session {} status -> {}", session.getSessionId(), session.isOpen());
-        }
+    public synchronized ByteBuffer read(ByteBuffer receiveBuffer) throws IOException {
+        inBytes.mark(receiveBuffer.remaining());
         merge(receiveBuffer);
-        if (!inNetBuffer.hasRemaining()) {
+        session.releaseBuffer(receiveBuffer);
+        if (delegatedTaskRunning) {
+            releaseInNetBuffer();
             return null;
         }
+        int appSize = Math.max(sslEngine.getSession().getApplicationBufferSize(), sslEngine.getSession().getPacketBufferSize());
+        outAppBuffer = appPool.acquire(inNetBuffer.remaining() + appSize);
+        try {
+            if (!doHandshake())
+                return null;
 
-        //split net buffer when the net buffer remaining great than the net size
-        int netSize = sslEngine.getSession().getPacketBufferSize();
-        List<ByteBuffer> inNetBuffers = BufferUtils.split(inNetBuffer, netSize);
-        for (ByteBuffer net : inNetBuffers) {
-            SSLEngineResult result;
-            while (true) {
-                if (log.isDebugEnabled()) {
-                    log.debug("SSL session {} unwrap, pocket -> {},  in -> {}, out -> {}, temp -> {}",
-                            session.getSessionId(), netSize, inNetBuffer.remaining(), outAppBuffer.remaining(),
-                            net.remaining());
-                }
+            if (!initialHSComplete)
+                throw new IllegalStateException("The initial handshake is not complete.");
 
-                //FIXME using direct buffer avoid netty ByteBufAllocator bug
-                ByteBuffer directTmpBuffer = bufferPool.acquire(net.remaining());
-                try {
-                    directTmpBuffer.put(net.slice()).flip();
-                    result = sslEngine.unwrap(directTmpBuffer, outAppBuffer);
-                } finally {
-                    bufferPool.release(directTmpBuffer);
-                }
+            if (log.isDebugEnabled()) {
+                log.debug("SSL read current session {} status -> {}", session.getSessionId(), session.isOpen());
+            }
 
+            // unwrap at most one packet size every time, and keep unwrapping until the remaining data is not a whole record
+            while (inNetBuffer.hasRemaining()) {
+                SSLEngineResult result = unwrap();
                 int consumed = result.bytesConsumed();
-                inNetBuffer.position(inNetBuffer.position() + consumed);
-                net.position(net.position() + consumed);
                 if (log.isDebugEnabled()) {
-                    log.debug("SSL session {} unwrap, status -> {}, in -> {}, out -> {}, temp -> {}, consumed -> {}",
-                            session.getSessionId(), result.getStatus(), inNetBuffer.remaining(), outAppBuffer.remaining(),
-                            net.remaining(), consumed);
+                    log.debug("SSL session {} unwrap, status -> {}, in -> {}, out -> {}, consumed -> {}",
+                            session.getSessionId(), result.getStatus(), inNetBuffer.remaining(), outAppBuffer.position(),
+                            consumed);
                 }
 
                 switch (result.getStatus()) {
                     case BUFFER_OVERFLOW:
-                        // Reset the application buffer size.
-                        int appSize = sslEngine.getSession().getApplicationBufferSize();
-                        ByteBuffer b = ByteBuffer.allocate(appSize + outAppBuffer.position());
-                        outAppBuffer.flip();
-                        b.put(outAppBuffer);
-                        outAppBuffer = b;
+                        growOutAppBuffer();
                         // retry the operation.
                         break;
 
@@ -385,7 +630,7 @@ public class SSLSession implements Closeable {
                         if (result.getHandshakeStatus() == HandshakeStatus.NEED_TASK) {
                             doTasks();
                         }
-                        if (!inNetBuffer.hasRemaining()) {
+                        if (consumed == 0 && result.bytesProduced() == 0) {
                             return getOutAppBuffer();
                         }
                         break;
@@ -394,53 +639,63 @@ public class SSLSession implements Closeable {
                         throw new IOException("sslEngine error during data read: " + result.getStatus());
                 }
             }
-        }
-
-        return getOutAppBuffer();
-    }
 
-    public int write(ByteBuffer[] outputBuffers, Callback callback) throws IOException {
-        int ret = 0;
-        CountingCallback countingCallback = new CountingCallback(callback, outputBuffers.length);
-        for (ByteBuffer outputBuffer : outputBuffers) {
-            ret += write(outputBuffer, countingCallback);
+            return getOutAppBuffer();
+        } finally {
+            appPool.release(outAppBuffer);
+            outAppBuffer = null;
+            releaseInNetBuffer();
         }
-        return ret;
     }
 
     /**
-     * This method is used to encrypt and flush to socket channel
+     * This method is used to encrypt and flush to socket channel. All the buffers are wrapped to the records of the
+     * pooled packet buffers, and the packet buffers are written by one socket write.
      *
-     * @param outputBuffer Plaintext message
+     * @param outputBuffers Plaintext messages
+     * @param callback      The callback is succeeded when all the records are written
      * @return writen length
      * @throws IOException sslEngine error during data write
      */
-    public int write(ByteBuffer outputBuffer, Callback callback) throws IOException {
+    public int write(ByteBuffer[] outputBuffers, Callback callback) throws IOException {
         if (!initialHSComplete)
             throw new IllegalStateException("The initial handshake is not complete.");
 
-        int ret = 0;
-        if (!outputBuffer.hasRemaining())
-            return ret;
-
-        final int remain = outputBuffer.remaining();
+        int remain = 0;
+        boolean direct = true;
+        // advance the sources without changing the positions of the caller's buffers
+        ByteBuffer[] srcs = new ByteBuffer[outputBuffers.length];
+        for (int i = 0; i < outputBuffers.length; i++) {
+            srcs[i] = outputBuffers[i].slice();
+            remain += srcs[i].remaining();
+            direct &= srcs[i].isDirect();
+        }
+        if (remain == 0) {
+            callback.succeeded();
+            return 0;
+        }
 
-        while (ret < remain) {
-            ByteBuffer writeBuf = ByteBuffer.allocateDirect(writeBufferSize);
+        int ret = 0;
+        int offset = 0;
+        ByteBuffer packet = acquirePacketBuffer(remain);
+        ByteBuffer directTmpBuffer = direct ? null : bufferPool.acquire(Math.min(remain, fileSliceSize));
+        List<ByteBuffer> packets = new ArrayList<>(1);
+        try {
+            while (ret < remain) {
+                if (!srcs[offset].hasRemaining()) {
+                    offset++;
+                    continue;
+                }
 
-            wrap:
-            while (true) {
                 SSLEngineResult result;
-
-                //FIXME using direct buffer avoid netty ByteBufAllocator bug
-                ByteBuffer directTmpBuffer = bufferPool.acquire(outputBuffer.remaining());
-                try {
-                    directTmpBuffer.put(outputBuffer.slice()).flip();
-                    result = sslEngine.wrap(directTmpBuffer, writeBuf);
-                } finally {
-                    bufferPool.release(directTmpBuffer);
+                if (direct) {
+                    result = wrap(srcs, offset, packet);
+                } else {
+                    //FIXME using direct buffer avoid netty ByteBufAllocator bug
+                    copy(srcs, offset, directTmpBuffer);
+                    result = wrap(directTmpBuffer, packet);
+                    skip(srcs, offset, result.bytesConsumed());
                 }
-
                 ret += result.bytesConsumed();
 
                 switch (result.getStatus()) {
@@ -448,28 +703,137 @@ public class SSLSession implements Closeable {
                         if (result.getHandshakeStatus() == HandshakeStatus.NEED_TASK) {
                             doTasks();
                         }
-
-                        writeBuf.flip();
-                        session.write(writeBuf, callback);
-                        break wrap;
+                        if (result.bytesConsumed() == 0 && result.bytesProduced() == 0) {
+                            throw new IOException("sslEngine can not wrap the data, handshake status: " + result.getHandshakeStatus());
+                        }
+                        break;
 
                     case BUFFER_OVERFLOW:
-                        int netSize = sslEngine.getSession().getPacketBufferSize();
-                        ByteBuffer b = ByteBuffer.allocateDirect(writeBuf.position() + netSize);
-                        writeBuf.flip();
-                        b.put(writeBuf);
-                        writeBuf = b;
+                        if (packet.position() > 0) {
+                            // the packet buffer is full, wrap the remaining data to a new packet buffer
+                            packet.flip();
+                            packets.add(packet);
+                            packet = acquirePacketBuffer(remain - ret);
+                        } else {
+                            packet = growPacketBuffer(packet);
+                        }
                         // retry the operation.
                         break;
                     default:
                         throw new IOException("sslEngine error during data write: " + result.getStatus());
                 }
             }
+            packet.flip();
+            packets.add(packet);
+            packet = null;
+        } catch (IOException | RuntimeException e) {
+            packetPool.release(packet);
+            packets.forEach(packetPool::release);
+            throw e;
+        } finally {
+            if (directTmpBuffer != null) {
+                bufferPool.release(directTmpBuffer);
+            }
         }
 
+        if (packets.size() == 1) {
+            ByteBuffer buf = packets.get(0);
+            outBytes.mark(buf.remaining());
+            session.write(buf, new ReleasePacketCallback(callback, buf));
+        } else {
+            ByteBuffer[] bufs = packets.toArray(BufferUtils.EMPTY_BYTE_BUFFER_ARRAY);
+            for (ByteBuffer buf : bufs) {
+                outBytes.mark(buf.remaining());
+            }
+            session.write(bufs, new ReleasePacketCallback(callback, bufs));
+        }
         return ret;
     }
 
+    /**
+     * This method is used to encrypt and flush to socket channel
+     *
+     * @param outputBuffer Plaintext message
+     * @return writen length
+     * @throws IOException sslEngine error during data write
+     */
+    public int write(ByteBuffer outputBuffer, Callback callback) throws IOException {
+        return write(new ByteBuffer[]{outputBuffer}, callback);
+    }
+
+    private ByteBuffer acquirePacketBuffer(int remain) {
+        // every record has the header, the padding and the MAC, the record overhead is the packet size minus the max plaintext size
+        int packetSize = sslEngine.getSession().getPacketBufferSize();
+        int overhead = Math.max(packetSize - fileSliceSize, 512);
+        int records = (remain + fileSliceSize - 1) / fileSliceSize;
+        long size = Math.max((long) remain + (long) records * overhead, packetSize);
+        return packetPool.acquire((int) Math.min(size, Math.max(maxPacketBufferSize, packetSize)));
+    }
+
+    private static void copy(ByteBuffer[] srcs, int offset, ByteBuffer dst) {
+        dst.clear();
+        for (int i = offset; i < srcs.length && dst.hasRemaining(); i++) {
+            ByteBuffer src = srcs[i];
+            int position = src.position();
+            int limit = src.limit();
+            src.limit(position + Math.min(src.remaining(), dst.remaining()));
+            dst.put(src);
+            src.limit(limit);
+            src.position(position);
+        }
+        dst.flip();
+    }
+
+    private static void skip(ByteBuffer[] srcs, int offset, int length) {
+        for (int i = offset; i < srcs.length && length > 0; i++) {
+            ByteBuffer src = srcs[i];
+            int n = Math.min(src.remaining(), length);
+            src.position(src.position() + n);
+            length -= n;
+        }
+    }
+
+    private class ReleasePacketCallback implements Callback {
+
+        private final Callback callback;
+        private final ByteBuffer packet;
+        private final ByteBuffer[] packets;
+
+        private ReleasePacketCallback(Callback callback, ByteBuffer packet) {
+            this.callback = callback;
+            this.packet = packet;
+            this.packets = null;
+        }
+
+        private ReleasePacketCallback(Callback callback, ByteBuffer[] packets) {
+            this.callback = callback;
+            this.packet = null;
+            this.packets = packets;
+        }
+
+        private void release() {
+            if (packet != null) {
+                packetPool.release(packet);
+            } else {
+                for (ByteBuffer buf : packets) {
+                    packetPool.release(buf);
+                }
+            }
+        }
+
+        @Override
+        public void succeeded() {
+            release();
+            callback.succeeded();
+        }
+
+        @Override
+        public void failed(Throwable x) {
+            release();
+            callback.failed(x);
+        }
+    }
+
     private class FileBufferReaderHandler implements BufferReaderHandler {
 
         private final long len;
@@ -481,21 +845,40 @@ public class SSLSession implements Closeable {
         @Override
         public void readBuffer(ByteBuffer buf, CountingCallback countingCallback, long count) {
             log.debug("write file,  count: {} , lenth: {}", count, len);
+            final int size = buf.remaining();
             try {
-                write(buf, countingCallback);
+                write(buf, new Callback() {
+                    @Override
+                    public void succeeded() {
+                        fileRegionBytes.mark(size);
+                        countingCallback.succeeded();
+                    }
+
+                    @Override
+                    public void failed(Throwable x) {
+                        countingCallback.failed(x);
+                    }
+                });
             } catch (Throwable e) {
                 log.error("ssl session writing error", e);
+                countingCallback.failed(e);
             }
         }
 
     }
 
+    /**
+     * The file region is mapped to the direct buffers, and every slice is wrapped to one TLS record.
+     *
+     * @param file     The file region
+     * @param callback The callback is succeeded when all the records are written
+     * @return The transferred bytes
+     * @throws Throwable Mapping file error
+     */
     public long transferFileRegion(FileRegion file, Callback callback) throws Throwable {
-        long ret = 0;
         try (FileRegion fileRegion = file) {
-            fileRegion.transferTo(callback, new FileBufferReaderHandler(file.getLength()));
+            return fileRegion.transferMappedBuffers(callback, new FileBufferReaderHandler(file.getLength()), fileSliceSize);
         }
-        return ret;
     }
 
     public boolean isHandshakeFinished() {
@@ -56,12 +56,16 @@ public class SelfSignedCertificateOpenSSLContextFactory extends AbstractOpenSSLC
         SslContextBuilder sslContextBuilder = clientMode ? SslContextBuilder.forClient().trustManager(InsecureTrustManagerFactory.INSTANCE)
                 : SslContextBuilder.forServer(selfSignedCertificate.certificate(), selfSignedCertificate.privateKey());
 
+        sslContextBuilder.sslProvider(sslProvider).ciphers(SecurityUtils.CIPHERS, SupportedCipherSuiteFilter.INSTANCE);
+        // the JDK provider of Java 8 does not support ALPN, the empty protocol list disables ALPN
+        if (supportedProtocols != null && !supportedProtocols.isEmpty()) {
+            sslContextBuilder.applicationProtocolConfig(new ApplicationProtocolConfig(ApplicationProtocolConfig.Protocol.ALPN,
+                    ApplicationProtocolConfig.SelectorFailureBehavior.CHOOSE_MY_LAST_PROTOCOL,
+                    ApplicationProtocolConfig.SelectedListenerFailureBehavior.CHOOSE_MY_LAST_PROTOCOL,
+                    supportedProtocols));
+        }
         try {
-            return sslContextBuilder.ciphers(SecurityUtils.CIPHERS, SupportedCipherSuiteFilter.INSTANCE)
-                                    .applicationProtocolConfig(new ApplicationProtocolConfig(ApplicationProtocolConfig.Protocol.ALPN,
-                                            ApplicationProtocolConfig.SelectorFailureBehavior.CHOOSE_MY_LAST_PROTOCOL,
-                                            ApplicationProtocolConfig.SelectedListenerFailureBehavior.CHOOSE_MY_LAST_PROTOCOL,
-                                            supportedProtocols)).build();
+            return sslContextBuilder.build();
         } catch (SSLException e) {
             log.error("create ssl context exception", e);
             throw new CommonRuntimeException(e);
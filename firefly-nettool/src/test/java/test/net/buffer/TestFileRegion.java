@@ -0,0 +1,160 @@
+package test.net.buffer;
+
+import com.firefly.net.buffer.FileRegion;
+import com.firefly.net.tcp.SimpleTcpClient;
+import com.firefly.net.tcp.SimpleTcpServer;
+import com.firefly.net.tcp.TcpConfiguration;
+import com.firefly.net.tcp.TcpServerConfiguration;
+import com.firefly.utils.concurrent.Callback;
+import com.firefly.utils.concurrent.CountingCallback;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.is;
+
+/**
+ * @author Pengtao Qiu
+ */
+public class TestFileRegion {
+
+    private static File createFile(int length) throws IOException {
+        File file = File.createTempFile("firefly-file-region", ".bin");
+        file.deleteOnExit();
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) i;
+        }
+        Files.write(file.toPath(), data);
+        return file;
+    }
+
+    @Test
+    public void testMappedBuffers() throws Exception {
+        int length = 300 * 1024;
+        File file = createFile(length);
+        byte[] data = Files.readAllBytes(file.toPath());
+
+        int position = 1000;
+        int regionLength = 200 * 1024;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger buffers = new AtomicInteger();
+        try (FileRegion fileRegion = new FileRegion(file, position, regionLength)) {
+            long count = fileRegion.transferMappedBuffers(new Callback() {
+                @Override
+                public void succeeded() {
+                    succeeded.incrementAndGet();
+                }
+            }, (buf, countingCallback, c) -> {
+                Assert.assertThat(buf.isDirect(), is(true));
+                Assert.assertThat(buf.remaining() <= 16 * 1024, is(true));
+                byte[] b = new byte[buf.remaining()];
+                buf.get(b);
+                out.write(b);
+                buffers.incrementAndGet();
+                countingCallback.succeeded();
+            }, 16 * 1024);
+            Assert.assertThat(count, is((long) regionLength));
+        }
+
+        Assert.assertThat(succeeded.get(), is(1));
+        Assert.assertThat(buffers.get(), is(13));
+        byte[] expected = new byte[regionLength];
+        System.arraycopy(data, position, expected, 0, regionLength);
+        Assert.assertArrayEquals(expected, out.toByteArray());
+    }
+
+    @Test
+    public void testMappedBuffersBackpressure() throws Exception {
+        int length = 300 * 1024;
+        File file = createFile(length);
+
+        List<CountingCallback> pending = new ArrayList<>();
+        AtomicInteger succeeded = new AtomicInteger();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (FileRegion fileRegion = new FileRegion(file)) {
+            fileRegion.transferMappedBuffers(new Callback() {
+                @Override
+                public void succeeded() {
+                    succeeded.incrementAndGet();
+                }
+            }, (buf, countingCallback, c) -> {
+                byte[] b = new byte[buf.remaining()];
+                buf.get(b);
+                out.write(b);
+                pending.add(countingCallback);
+            }, 64 * 1024);
+        }
+
+        // the next slice is passed to the handler after the previous slice is completed
+        int buffers = 0;
+        while (!pending.isEmpty()) {
+            Assert.assertThat(pending.size(), is(1));
+            buffers++;
+            pending.remove(0).succeeded();
+        }
+        Assert.assertThat(buffers, is(5));
+        Assert.assertThat(succeeded.get(), is(1));
+        Assert.assertArrayEquals(Files.readAllBytes(file.toPath()), out.toByteArray());
+    }
+
+    @Test
+    public void testTransferFile() throws Exception {
+        testTransferFile(false, 1215);
+        testTransferFile(true, 1216);
+    }
+
+    private void testTransferFile(boolean secure, int port) throws Exception {
+        int length = 1024 * 1024 + 100;
+        File file = createFile(length);
+
+        TcpServerConfiguration serverConfig = new TcpServerConfiguration();
+        serverConfig.setSecureConnectionEnabled(secure);
+        TcpConfiguration clientConfig = new TcpConfiguration();
+        clientConfig.setSecureConnectionEnabled(secure);
+
+        CountDownLatch written = new CountDownLatch(1);
+        SimpleTcpServer server = new SimpleTcpServer(serverConfig);
+        server.accept(connection -> {
+            try {
+                connection.write(new FileRegion(file), written::countDown);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }).listen("localhost", port);
+
+        CountDownLatch received = new CountDownLatch(1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SimpleTcpClient client = new SimpleTcpClient(clientConfig);
+        client.connect("localhost", port).thenAccept(c -> c.receive(buf -> {
+            synchronized (out) {
+                ByteBuffer b = buf.duplicate();
+                while (b.hasRemaining()) {
+                    out.write(b.get());
+                }
+                if (out.size() >= length) {
+                    received.countDown();
+                }
+            }
+        }).write("hello")); // the server side TLS handshake finishes when it receives the client data
+
+        Assert.assertThat(written.await(10, TimeUnit.SECONDS), is(true));
+        Assert.assertThat(received.await(10, TimeUnit.SECONDS), is(true));
+        synchronized (out) {
+            Assert.assertArrayEquals(Files.readAllBytes(file.toPath()), out.toByteArray());
+        }
+        client.stop();
+        server.stop();
+    }
+}
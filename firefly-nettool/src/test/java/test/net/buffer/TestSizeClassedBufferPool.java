@@ -0,0 +1,97 @@
+package test.net.buffer;
+
+import com.firefly.net.DefaultMetricReporterFactory;
+import com.firefly.net.buffer.SizeClassedBufferPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.Matchers.is;
+
+/**
+ * @author Pengtao Qiu
+ */
+public class TestSizeClassedBufferPool {
+
+    @Test
+    public void testSizeClass() {
+        SizeClassedBufferPool pool = new SizeClassedBufferPool(new DefaultMetricReporterFactory());
+        ByteBuffer buffer = pool.acquire(100);
+        Assert.assertThat(buffer.isDirect(), is(true));
+        Assert.assertThat(buffer.capacity(), is(1024));
+
+        buffer = pool.acquire(3000);
+        Assert.assertThat(buffer.capacity(), is(4096));
+
+        buffer = pool.acquire(64 * 1024);
+        Assert.assertThat(buffer.capacity(), is(64 * 1024));
+
+        buffer = pool.acquire(100 * 1024);
+        Assert.assertThat(buffer.capacity(), is(100 * 1024));
+        pool.release(buffer);
+        Assert.assertThat(pool.size(), is(0));
+    }
+
+    @Test
+    public void testReuse() {
+        SizeClassedBufferPool pool = new SizeClassedBufferPool(new DefaultMetricReporterFactory(), false);
+        ByteBuffer buffer = pool.acquire(2000);
+        Assert.assertThat(buffer.isDirect(), is(false));
+        Assert.assertThat(pool.getMissCount(), is(1L));
+        Assert.assertThat(pool.getOutstandingCount(), is(1L));
+
+        buffer.put((byte) 1).flip();
+        pool.release(buffer);
+        Assert.assertThat(pool.size(), is(1));
+        Assert.assertThat(pool.getOutstandingCount(), is(0L));
+
+        ByteBuffer buffer2 = pool.acquire(1500);
+        Assert.assertThat(buffer2 == buffer, is(true));
+        Assert.assertThat(buffer2.remaining(), is(2048));
+        Assert.assertThat(pool.getHitCount(), is(1L));
+        Assert.assertThat(pool.size(), is(0));
+
+        // the small size class does not take the large buffer
+        pool.release(buffer2);
+        ByteBuffer buffer3 = pool.acquire(1024);
+        Assert.assertThat(buffer3 == buffer, is(false));
+        Assert.assertThat(buffer3.capacity(), is(1024));
+    }
+
+    @Test
+    public void testBounded() {
+        SizeClassedBufferPool pool = new SizeClassedBufferPool(new DefaultMetricReporterFactory(), true,
+                1024, 8 * 1024, 2, 1);
+        ByteBuffer[] buffers = new ByteBuffer[4];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = pool.acquire(1024);
+        }
+        for (ByteBuffer buffer : buffers) {
+            pool.release(buffer);
+        }
+        Assert.assertThat(pool.size(), is(2));
+
+        // the foreign buffer is not pooled
+        pool.release(ByteBuffer.allocate(1024));
+        pool.release(ByteBuffer.allocateDirect(1000));
+        Assert.assertThat(pool.size(), is(2));
+    }
+
+    @Test
+    public void testOutstanding() {
+        SizeClassedBufferPool pool = new SizeClassedBufferPool(new DefaultMetricReporterFactory(), false);
+        ByteBuffer buffer = pool.acquire(1024);
+        ByteBuffer oversize = pool.acquire(100 * 1024);
+        Assert.assertThat(pool.getOutstandingCount(), is(1L));
+
+        // the oversize and foreign buffers do not change the outstanding count
+        pool.release(oversize);
+        pool.release(ByteBuffer.allocateDirect(1024));
+        pool.release(ByteBuffer.allocate(1000));
+        Assert.assertThat(pool.getOutstandingCount(), is(1L));
+
+        pool.release(buffer);
+        Assert.assertThat(pool.getOutstandingCount(), is(0L));
+    }
+}
@@ -0,0 +1,105 @@
+package test.net.ssl;
+
+import com.firefly.net.tcp.ssl.SelfSignedCertificateOpenSSLContextFactory;
+import io.netty.handler.ssl.SslProvider;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+
+/**
+ * Compare the full handshakes with the resumed handshakes. The client and the server engines exchange the handshake
+ * messages in memory, so the benchmark measures the cost of the handshake computation only.
+ * <p>
+ * The JDK client reuses the session when the engine is created with the same peer host and port, the client engine
+ * that is created without the peer does a full handshake every time.
+ *
+ * @author Pengtao Qiu
+ */
+public class TLSResumptionBenchmark {
+
+    private static final int HANDSHAKES = 2000;
+
+    public static void main(String[] args) throws Exception {
+        SelfSignedCertificateOpenSSLContextFactory serverFactory = new SelfSignedCertificateOpenSSLContextFactory();
+        serverFactory.setSessionCacheSize(1024);
+        serverFactory.setSessionTimeout(300);
+        SelfSignedCertificateOpenSSLContextFactory clientFactory = new SelfSignedCertificateOpenSSLContextFactory(Collections.emptyList());
+        clientFactory.setSslProvider(SslProvider.JDK);
+
+        for (int i = 0; i < 3; i++) {
+            System.out.println("round " + i);
+            run("full handshake", serverFactory, clientFactory, false);
+            run("resumed handshake", serverFactory, clientFactory, true);
+        }
+        // stop the log thread
+        System.exit(0);
+    }
+
+    private static void run(String name, SelfSignedCertificateOpenSSLContextFactory serverFactory,
+                            SelfSignedCertificateOpenSSLContextFactory clientFactory, boolean resume) throws SSLException {
+        long start = System.nanoTime();
+        for (int i = 0; i < HANDSHAKES; i++) {
+            SSLEngine client = resume ? clientFactory.createSSLEngine(true, "localhost", 443) : clientFactory.createSSLEngine(true);
+            SSLEngine server = serverFactory.createSSLEngine(false);
+            handshake(client, server);
+        }
+        long time = System.nanoTime() - start;
+        System.out.println(name + ": " + (HANDSHAKES * 1000_000_000L / time) + " handshakes/s, "
+                + (time / HANDSHAKES / 1000) + "us/handshake");
+    }
+
+    private static void handshake(SSLEngine client, SSLEngine server) throws SSLException {
+        int packetSize = Math.max(client.getSession().getPacketBufferSize(), server.getSession().getPacketBufferSize());
+        int appSize = Math.max(client.getSession().getApplicationBufferSize(), server.getSession().getApplicationBufferSize());
+        ByteBuffer clientToServer = ByteBuffer.allocateDirect(packetSize * 4);
+        ByteBuffer serverToClient = ByteBuffer.allocateDirect(packetSize * 4);
+        ByteBuffer app = ByteBuffer.allocateDirect(Math.max(appSize, packetSize));
+        ByteBuffer empty = ByteBuffer.allocateDirect(0);
+
+        client.beginHandshake();
+        server.beginHandshake();
+        for (int i = 0; i < 100 && (isHandshaking(client) || isHandshaking(server)); i++) {
+            step(client, empty, clientToServer, serverToClient, app);
+            step(server, empty, serverToClient, clientToServer, app);
+        }
+        if (isHandshaking(client) || isHandshaking(server)) {
+            throw new IllegalStateException("the handshake is not finished");
+        }
+    }
+
+    private static void step(SSLEngine engine, ByteBuffer empty, ByteBuffer out, ByteBuffer in, ByteBuffer app) throws SSLException {
+        in.flip();
+        while (true) {
+            HandshakeStatus status = engine.getHandshakeStatus();
+            SSLEngineResult result;
+            if (status == HandshakeStatus.NEED_TASK) {
+                Runnable task;
+                while ((task = engine.getDelegatedTask()) != null) {
+                    task.run();
+                }
+                continue;
+            } else if (status == HandshakeStatus.NEED_WRAP) {
+                result = engine.wrap(empty, out);
+            } else if (status == HandshakeStatus.NEED_UNWRAP) {
+                // the OpenSSL engine updates the handshake status when it unwraps, even if there is no data
+                app.clear();
+                result = engine.unwrap(in, app);
+            } else {
+                break;
+            }
+            if (result.getStatus() != SSLEngineResult.Status.OK) {
+                break;
+            }
+        }
+        in.compact();
+    }
+
+    private static boolean isHandshaking(SSLEngine engine) {
+        HandshakeStatus status = engine.getHandshakeStatus();
+        return status != HandshakeStatus.NOT_HANDSHAKING && status != HandshakeStatus.FINISHED;
+    }
+}
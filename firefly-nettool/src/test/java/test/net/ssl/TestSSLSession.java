@@ -0,0 +1,229 @@
+package test.net.ssl;
+
+import com.codahale.metrics.MetricRegistry;
+import com.firefly.net.buffer.SizeClassedBufferPool;
+import com.firefly.net.tcp.SimpleTcpClient;
+import com.firefly.net.tcp.SimpleTcpServer;
+import com.firefly.net.tcp.TcpConfiguration;
+import com.firefly.net.tcp.TcpServerConfiguration;
+import com.firefly.net.tcp.ssl.SSLHandshakeExecutor;
+import com.firefly.net.tcp.ssl.SelfSignedCertificateOpenSSLContextFactory;
+import com.firefly.utils.io.BufferUtils;
+import io.netty.handler.ssl.SslProvider;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+
+/**
+ * @author Pengtao Qiu
+ */
+public class TestSSLSession {
+
+    @Test
+    public void testGatheringWrite() throws Exception {
+        // the heap and direct buffers are wrapped to the records of the pooled packet buffers
+        int[] sizes = {0, 10, 20 * 1024, 1, 100 * 1024, 0, 16 * 1024, 5};
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        ByteBuffer[] buffers = new ByteBuffer[sizes.length];
+        for (int i = 0; i < sizes.length; i++) {
+            byte[] data = new byte[sizes[i]];
+            for (int j = 0; j < data.length; j++) {
+                data[j] = (byte) (i + j);
+            }
+            expected.write(data);
+            buffers[i] = i % 2 == 0 ? ByteBuffer.wrap(data) : (ByteBuffer) ByteBuffer.allocateDirect(data.length).put(data).flip();
+        }
+        int length = expected.size();
+
+        TcpServerConfiguration serverConfig = new TcpServerConfiguration();
+        serverConfig.setSecureConnectionEnabled(true);
+        TcpConfiguration clientConfig = new TcpConfiguration();
+        clientConfig.setSecureConnectionEnabled(true);
+
+        CountDownLatch written = new CountDownLatch(1);
+        SimpleTcpServer server = new SimpleTcpServer(serverConfig);
+        server.accept(connection -> connection.write(buffers, written::countDown)).listen("localhost", 1217);
+
+        CountDownLatch received = new CountDownLatch(1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SimpleTcpClient client = new SimpleTcpClient(clientConfig);
+        client.connect("localhost", 1217).thenAccept(c -> c.receive(buf -> {
+            synchronized (out) {
+                ByteBuffer b = buf.duplicate();
+                while (b.hasRemaining()) {
+                    out.write(b.get());
+                }
+                if (out.size() >= length) {
+                    received.countDown();
+                }
+            }
+        }).write("hello"));
+
+        Assert.assertThat(written.await(10, TimeUnit.SECONDS), is(true));
+        Assert.assertThat(received.await(10, TimeUnit.SECONDS), is(true));
+        synchronized (out) {
+            Assert.assertArrayEquals(expected.toByteArray(), out.toByteArray());
+        }
+        // the caller's buffers are not changed
+        for (int i = 0; i < sizes.length; i++) {
+            Assert.assertThat(buffers[i].remaining(), is(sizes[i]));
+        }
+
+        MetricRegistry serverMetrics = serverConfig.getMetricReporterFactory().getMetricRegistry();
+        Assert.assertThat(serverMetrics.meter("ssl.SSLSession.out.bytes").getCount() > length, is(true));
+        Assert.assertThat(serverMetrics.timer("ssl.SSLSession.wrap").getCount() > 0, is(true));
+        MetricRegistry clientMetrics = clientConfig.getMetricReporterFactory().getMetricRegistry();
+        Assert.assertThat(clientMetrics.meter("ssl.SSLSession.in.bytes").getCount() > length, is(true));
+        Assert.assertThat(clientMetrics.timer("ssl.SSLSession.unwrap").getCount() > 0, is(true));
+        client.stop();
+        server.stop();
+    }
+
+    @Test
+    public void testReadBufferPool() throws Exception {
+        // only the TLS sessions release the received buffers, the plaintext sessions do not use the pool
+        TcpServerConfiguration secureConfig = new TcpServerConfiguration();
+        secureConfig.setSecureConnectionEnabled(true);
+        SizeClassedBufferPool securePool = new SizeClassedBufferPool(secureConfig.getMetricReporterFactory(),
+                "test.secure.read", false, 1024, 64 * 1024, 16, 1);
+        secureConfig.setReadBufferPool(securePool);
+        TcpServerConfiguration plaintextConfig = new TcpServerConfiguration();
+        SizeClassedBufferPool plaintextPool = new SizeClassedBufferPool(plaintextConfig.getMetricReporterFactory(),
+                "test.plaintext.read", false, 1024, 64 * 1024, 16, 1);
+        plaintextConfig.setReadBufferPool(plaintextPool);
+
+        SimpleTcpServer secureServer = new SimpleTcpServer(secureConfig);
+        secureServer.accept(connection -> connection.receive(buf -> connection.write("ok"))).listen("localhost", 1222);
+        SimpleTcpServer plaintextServer = new SimpleTcpServer(plaintextConfig);
+        plaintextServer.accept(connection -> connection.receive(buf -> connection.write("ok"))).listen("localhost", 1223);
+
+        TcpConfiguration secureClientConfig = new TcpConfiguration();
+        secureClientConfig.setSecureConnectionEnabled(true);
+        SimpleTcpClient secureClient = new SimpleTcpClient(secureClientConfig);
+        SimpleTcpClient plaintextClient = new SimpleTcpClient(new TcpConfiguration());
+        CountDownLatch received = new CountDownLatch(2);
+        secureClient.connect("localhost", 1222).thenAccept(c -> c.receive(buf -> received.countDown()).write("hello"));
+        plaintextClient.connect("localhost", 1223).thenAccept(c -> c.receive(buf -> received.countDown()).write("hello"));
+        Assert.assertThat(received.await(10, TimeUnit.SECONDS), is(true));
+
+        MetricRegistry secureMetrics = secureConfig.getMetricReporterFactory().getMetricRegistry();
+        Assert.assertThat(secureMetrics.counter("buffer.test.secure.read.hit").getCount() > 0, is(true));
+        MetricRegistry plaintextMetrics = plaintextConfig.getMetricReporterFactory().getMetricRegistry();
+        Assert.assertThat(plaintextMetrics.counter("buffer.test.plaintext.read.hit").getCount(), is(0L));
+        Assert.assertThat(plaintextMetrics.counter("buffer.test.plaintext.read.miss").getCount(), is(0L));
+        secureClient.stop();
+        plaintextClient.stop();
+        secureServer.stop();
+        plaintextServer.stop();
+    }
+
+    @Test
+    public void testSessionResumption() throws Exception {
+        TcpServerConfiguration serverConfig = new TcpServerConfiguration();
+        serverConfig.setSecureConnectionEnabled(true);
+        TcpConfiguration clientConfig = new TcpConfiguration();
+        clientConfig.setSecureConnectionEnabled(true);
+        // the OpenSSL client engine does not cache the sessions
+        SelfSignedCertificateOpenSSLContextFactory clientContextFactory = new SelfSignedCertificateOpenSSLContextFactory(Collections.emptyList());
+        clientContextFactory.setSslProvider(SslProvider.JDK);
+        clientConfig.setSslContextFactory(clientContextFactory);
+
+        SimpleTcpServer server = new SimpleTcpServer(serverConfig);
+        server.accept(connection -> connection.receive(buf -> connection.write("ok"))).listen("localhost", 1218);
+        SimpleTcpClient client = new SimpleTcpClient(clientConfig);
+
+        for (int i = 0; i < 3; i++) {
+            CountDownLatch received = new CountDownLatch(1);
+            client.connect("localhost", 1218).thenAccept(c -> c.receive(buf -> {
+                received.countDown();
+                c.closeNow();
+            }).write("hello"));
+            Assert.assertThat(received.await(10, TimeUnit.SECONDS), is(true));
+            // the OpenSSL server reports the session creation time in seconds
+            Thread.sleep(1100L);
+        }
+
+        MetricRegistry clientMetrics = clientConfig.getMetricReporterFactory().getMetricRegistry();
+        Assert.assertThat(clientMetrics.meter("ssl.SSLSession.handshake.full").getCount(), is(1L));
+        Assert.assertThat(clientMetrics.meter("ssl.SSLSession.handshake.resumed").getCount(), is(2L));
+        MetricRegistry serverMetrics = serverConfig.getMetricReporterFactory().getMetricRegistry();
+        Assert.assertThat(serverMetrics.meter("ssl.SSLSession.handshake.full").getCount(), is(1L));
+        Assert.assertThat(serverMetrics.meter("ssl.SSLSession.handshake.resumed").getCount(), is(2L));
+        Assert.assertThat(serverMetrics.getGauges().get("ssl.SSLSession.handshake.resumption.ratio").getValue(), is(2.0 / 3.0));
+        client.stop();
+        server.stop();
+    }
+
+    @Test
+    public void testHandshakeExecutor() throws Exception {
+        // the JDK engines delegate the key exchange computations to the handshake executor
+        TcpServerConfiguration serverConfig = new TcpServerConfiguration();
+        serverConfig.setSecureConnectionEnabled(true);
+        SelfSignedCertificateOpenSSLContextFactory serverContextFactory = new SelfSignedCertificateOpenSSLContextFactory(Collections.emptyList());
+        serverContextFactory.setSslProvider(SslProvider.JDK);
+        serverConfig.setSslContextFactory(serverContextFactory);
+        SSLHandshakeExecutor serverExecutor = new SSLHandshakeExecutor(serverConfig.getMetricReporterFactory(), 2, 16);
+        serverConfig.setSslHandshakeExecutor(serverExecutor);
+
+        TcpConfiguration clientConfig = new TcpConfiguration();
+        clientConfig.setSecureConnectionEnabled(true);
+        SelfSignedCertificateOpenSSLContextFactory clientContextFactory = new SelfSignedCertificateOpenSSLContextFactory(Collections.emptyList());
+        clientContextFactory.setSslProvider(SslProvider.JDK);
+        clientConfig.setSslContextFactory(clientContextFactory);
+        SSLHandshakeExecutor clientExecutor = new SSLHandshakeExecutor(clientConfig.getMetricReporterFactory(), 1, 16);
+        clientConfig.setSslHandshakeExecutor(clientExecutor);
+
+        SimpleTcpServer server = new SimpleTcpServer(serverConfig);
+        server.accept(connection -> connection.receive(buf -> connection.write(buf.duplicate()))).listen("localhost", 1219);
+        SimpleTcpClient client = new SimpleTcpClient(clientConfig);
+
+        int connections = 5;
+        CountDownLatch received = new CountDownLatch(connections);
+        for (int i = 0; i < connections; i++) {
+            String message = "hello " + i;
+            client.connect("localhost", 1219).thenAccept(c -> c.receive(buf -> {
+                if (message.equals(BufferUtils.toString(buf, StandardCharsets.UTF_8))) {
+                    received.countDown();
+                }
+                c.closeNow();
+            }).write(message));
+        }
+        Assert.assertThat(received.await(10, TimeUnit.SECONDS), is(true));
+
+        MetricRegistry serverMetrics = serverConfig.getMetricReporterFactory().getMetricRegistry();
+        Assert.assertThat(serverMetrics.timer("ssl.handshake.executor.task").getCount() > 0, is(true));
+        Assert.assertThat(serverMetrics.timer("ssl.SSLSession.handshake").getCount(), is((long) connections));
+        Assert.assertThat(serverExecutor.getRejectedCount(), is(0L));
+        MetricRegistry clientMetrics = clientConfig.getMetricReporterFactory().getMetricRegistry();
+        Assert.assertThat(clientMetrics.timer("ssl.handshake.executor.task").getCount() > 0, is(true));
+        Assert.assertThat(clientMetrics.timer("ssl.SSLSession.handshake").getCount(), is((long) connections));
+        client.stop();
+        server.stop();
+        clientExecutor.shutdown();
+        serverExecutor.shutdown();
+    }
+
+    @Test
+    public void testHandshakeExecutorsShareMetricRegistry() {
+        TcpConfiguration config = new TcpConfiguration();
+        SSLHandshakeExecutor first = new SSLHandshakeExecutor(config.getMetricReporterFactory(), 1, 16);
+        SSLHandshakeExecutor second = new SSLHandshakeExecutor(config.getMetricReporterFactory(), 1, 16);
+        MetricRegistry metrics = config.getMetricReporterFactory().getMetricRegistry();
+        Assert.assertThat(metrics.getGauges().get("ssl.handshake.executor.queue.size").getValue(), is(0));
+
+        // the first executor does not remove the gauges of the second one
+        first.shutdown();
+        Assert.assertThat(metrics.getGauges().containsKey("ssl.handshake.executor.queue.size"), is(true));
+        second.shutdown();
+        Assert.assertThat(metrics.getGauges().containsKey("ssl.handshake.executor.queue.size"), is(false));
+        Assert.assertThat(metrics.getGauges().containsKey("ssl.handshake.executor.active"), is(false));
+    }
+}
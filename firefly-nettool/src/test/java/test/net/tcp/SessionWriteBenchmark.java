@@ -0,0 +1,94 @@
+package test.net.tcp;
+
+import com.firefly.net.tcp.SimpleTcpClient;
+import com.firefly.net.tcp.SimpleTcpServer;
+import com.firefly.net.tcp.TcpConfiguration;
+import com.firefly.net.tcp.TcpConnection;
+import com.firefly.net.tcp.TcpServerConfiguration;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * N writer threads write the small messages to one session concurrently.
+ *
+ * @author Pengtao Qiu
+ */
+public class SessionWriteBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int messageNum = 2_000_000;
+        int messageSize = 64;
+
+        System.out.println("warm up start");
+        benchmark(4, messageNum / 4, messageSize, false, 1313);
+        System.out.println("warm up end");
+
+        for (int threadNum : new int[]{1, 2, 4, 8, 16}) {
+            benchmark(threadNum, messageNum, messageSize, false, 1314 + threadNum);
+            benchmark(threadNum, messageNum, messageSize, true, 1334 + threadNum);
+        }
+    }
+
+    public static void benchmark(int threadNum, int messageNum, int messageSize,
+                                 boolean gatheringWrite, int port) throws Exception {
+        TcpServerConfiguration serverConfig = new TcpServerConfiguration();
+        serverConfig.setMonitorEnable(false);
+        TcpConfiguration clientConfig = new TcpConfiguration();
+        clientConfig.setMonitorEnable(false);
+        clientConfig.setGatheringWriteEnabled(gatheringWrite);
+
+        int size = messageNum / threadNum;
+        long totalBytes = (long) size * threadNum * messageSize;
+        AtomicLong receivedBytes = new AtomicLong();
+        CountDownLatch received = new CountDownLatch(1);
+        SimpleTcpServer server = new SimpleTcpServer(serverConfig);
+        server.accept(connection -> connection.receive(buf -> {
+            if (receivedBytes.addAndGet(buf.remaining()) >= totalBytes) {
+                received.countDown();
+            }
+        })).listen("localhost", port);
+
+        SimpleTcpClient client = new SimpleTcpClient(clientConfig);
+        TcpConnection connection = client.connect("localhost", port).get();
+
+        byte[] message = new byte[messageSize];
+        Phaser phaser = new Phaser(threadNum + 1);
+        for (int i = 0; i < threadNum; i++) {
+            new Thread(() -> {
+                phaser.arriveAndAwaitAdvance();
+                for (int j = 0; j < size; j++) {
+                    connection.write(ByteBuffer.wrap(message));
+                }
+                phaser.arrive();
+            }, "benchmark-writer-" + i).start();
+        }
+
+        phaser.arriveAndAwaitAdvance();
+        long start = System.nanoTime();
+        phaser.arriveAndAwaitAdvance();
+        long written = System.nanoTime();
+        boolean completed = received.await(60, TimeUnit.SECONDS);
+        long end = System.nanoTime();
+        if (!completed) {
+            client.stop();
+            server.stop();
+            throw new IllegalStateException("threads: " + threadNum + ", gathering write: " + gatheringWrite
+                    + ", the server receives " + receivedBytes.get() + " of " + totalBytes + " bytes in 60s");
+        }
+
+        long writeTime = TimeUnit.NANOSECONDS.toMillis(written - start);
+        long totalTime = Math.max(TimeUnit.NANOSECONDS.toMillis(end - start), 1);
+        System.out.println("threads: " + threadNum
+                + ", gathering write: " + gatheringWrite
+                + ", write call time: " + writeTime + "ms"
+                + ", total time: " + totalTime + "ms"
+                + ", msg/sec: " + (size * threadNum * 1000L / totalTime));
+
+        client.stop();
+        server.stop();
+    }
+}
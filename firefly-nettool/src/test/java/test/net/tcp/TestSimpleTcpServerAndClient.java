@@ -64,6 +64,16 @@ public class TestSimpleTcpServerAndClient {
         run.testName = "Test TCP server and client with TLS";
         data.add(run);
 
+        run = new Run();
+        run.clientConfig = new TcpConfiguration();
+        run.clientConfig.setGatheringWriteEnabled(true);
+        run.serverConfig = new TcpServerConfiguration();
+        run.serverConfig.setGatheringWriteEnabled(true);
+        run.port = 1214;
+        run.maxMsg = 200;
+        run.testName = "Test TCP server and client with gathering write";
+        data.add(run);
+
         return data;
     }
 
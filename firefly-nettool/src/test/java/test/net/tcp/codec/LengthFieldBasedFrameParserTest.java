@@ -0,0 +1,184 @@
+package test.net.tcp.codec;
+
+import com.firefly.net.exception.CorruptedFrameException;
+import com.firefly.net.tcp.SimpleTcpClient;
+import com.firefly.net.tcp.SimpleTcpServer;
+import com.firefly.net.tcp.TcpConfiguration;
+import com.firefly.net.tcp.TcpServerConfiguration;
+import com.firefly.net.tcp.codec.LengthFieldBasedFrameEncoder;
+import com.firefly.net.tcp.codec.LengthFieldBasedFrameParser;
+import com.firefly.utils.io.BufferUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * @author Pengtao Qiu
+ */
+public class LengthFieldBasedFrameParserTest {
+
+    private static byte[] encode(LengthFieldBasedFrameEncoder encoder, String... messages) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String message : messages) {
+            for (ByteBuffer buf : encoder.encode(BufferUtils.toBuffer(message, StandardCharsets.UTF_8))) {
+                out.write(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static List<String> parse(LengthFieldBasedFrameParser parser, byte[] data, int chunkSize) {
+        List<String> frames = new ArrayList<>();
+        parser.complete(frame -> frames.add(BufferUtils.toString(frame, StandardCharsets.UTF_8)));
+        for (int i = 0; i < data.length; i += chunkSize) {
+            parser.receive(ByteBuffer.wrap(data, i, Math.min(chunkSize, data.length - i)));
+        }
+        return frames;
+    }
+
+    @Test
+    public void testFixedLengthField() {
+        String[] messages = {"hello", "", "测试的字符串", "world"};
+        for (int lengthFieldLength : new int[]{1, 2, 3, 4, 8}) {
+            for (ByteOrder byteOrder : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+                byte[] data = encode(new LengthFieldBasedFrameEncoder(lengthFieldLength, byteOrder, 0), messages);
+                // the frames are split at every position
+                for (int chunkSize = 1; chunkSize <= data.length; chunkSize++) {
+                    LengthFieldBasedFrameParser parser = new LengthFieldBasedFrameParser(1024, byteOrder,
+                            0, lengthFieldLength, 0, LengthFieldBasedFrameParser.STRIP_HEADER);
+                    List<String> frames = parse(parser, data, chunkSize);
+                    Assert.assertThat(frames.size(), is(messages.length));
+                    for (int i = 0; i < messages.length; i++) {
+                        Assert.assertThat(frames.get(i), is(messages[i]));
+                    }
+                    Assert.assertThat(parser.getCumulatedLength(), is(0));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testVarintLengthField() {
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            large.append(i % 10);
+        }
+        String[] messages = {"a", large.toString(), "b"};
+        byte[] data = encode(new LengthFieldBasedFrameEncoder(LengthFieldBasedFrameParser.VARINT_LENGTH_FIELD), messages);
+        // 1 + 1, 2 + 300, 1 + 1
+        Assert.assertThat(data.length, is(306));
+        for (int chunkSize = 1; chunkSize <= data.length; chunkSize += 7) {
+            List<String> frames = parse(new LengthFieldBasedFrameParser(1024, LengthFieldBasedFrameParser.VARINT_LENGTH_FIELD), data, chunkSize);
+            Assert.assertThat(frames.size(), is(messages.length));
+            for (int i = 0; i < messages.length; i++) {
+                Assert.assertThat(frames.get(i), is(messages[i]));
+            }
+        }
+    }
+
+    @Test
+    public void testHeaderAndAdjustment() {
+        // magic(2) | length(2, the whole frame length) | payload, the frame keeps the header
+        byte[] data = {(byte) 0xCA, (byte) 0xFE, 0, 7, 'a', 'b', 'c', (byte) 0xCA, (byte) 0xFE, 0, 5, 'd'};
+        LengthFieldBasedFrameParser parser = new LengthFieldBasedFrameParser(64, ByteOrder.BIG_ENDIAN, 2, 2, -4, 0);
+        List<ByteBuffer> frames = new ArrayList<>();
+        parser.complete(frames::add);
+        parser.receive(ByteBuffer.wrap(data));
+        Assert.assertThat(frames.size(), is(2));
+        Assert.assertThat(frames.get(0).remaining(), is(7));
+        Assert.assertThat(frames.get(0).get(6), is((byte) 'c'));
+        Assert.assertThat(frames.get(1).remaining(), is(5));
+        Assert.assertThat(frames.get(1).get(4), is((byte) 'd'));
+    }
+
+    @Test
+    public void testNoCopy() {
+        byte[] data = encode(new LengthFieldBasedFrameEncoder(4), "hello", "world");
+        ByteBuffer received = ByteBuffer.wrap(data);
+        List<ByteBuffer> frames = new ArrayList<>();
+        LengthFieldBasedFrameParser parser = new LengthFieldBasedFrameParser(1024, 4);
+        parser.complete(frames::add);
+        parser.receive(received);
+        Assert.assertThat(frames.size(), is(2));
+        // the frames share the received buffer
+        for (ByteBuffer frame : frames) {
+            Assert.assertThat(frame.array() == data, is(true));
+        }
+        Assert.assertThat(received.remaining(), is(data.length));
+    }
+
+    @Test
+    public void testMaxFrameLength() {
+        byte[] data = encode(new LengthFieldBasedFrameEncoder(4), "hello", "the frame is too long", "world");
+        List<Throwable> exceptions = new ArrayList<>();
+        LengthFieldBasedFrameParser parser = new LengthFieldBasedFrameParser(10, 4);
+        parser.exception(exceptions::add);
+        List<String> frames = parse(parser, data, 3);
+        Assert.assertThat(frames.size(), is(1));
+        Assert.assertThat(frames.get(0), is("hello"));
+        Assert.assertThat(exceptions.size(), is(1));
+        Assert.assertThat(exceptions.get(0), instanceOf(CorruptedFrameException.class));
+        Assert.assertThat(parser.getCumulatedLength(), is(0));
+    }
+
+    @Test
+    public void testEncoderRange() {
+        try {
+            new LengthFieldBasedFrameEncoder(1).encode(ByteBuffer.allocate(256));
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertThat(e.getMessage(), is("the length field value 256 exceeds 1 bytes"));
+        }
+    }
+
+    @Test
+    public void testTcpConnection() throws Exception {
+        int maxMsg = 100;
+        LengthFieldBasedFrameEncoder encoder = new LengthFieldBasedFrameEncoder(4);
+        SimpleTcpServer server = new SimpleTcpServer(new TcpServerConfiguration());
+        server.accept(connection -> {
+            LengthFieldBasedFrameParser parser = new LengthFieldBasedFrameParser(1024 * 1024, 4);
+            parser.complete(frame -> encoder.write(connection, frame));
+            connection.receive(parser::receive);
+        }).listen("localhost", 1220);
+
+        SimpleTcpClient client = new SimpleTcpClient(new TcpConfiguration());
+        CountDownLatch latch = new CountDownLatch(maxMsg);
+        List<String> messages = new CopyOnWriteArrayList<>();
+        client.connect("localhost", 1220).thenAccept(c -> {
+            LengthFieldBasedFrameParser parser = new LengthFieldBasedFrameParser(1024 * 1024, 4);
+            parser.complete(frame -> {
+                messages.add(BufferUtils.toString(frame, StandardCharsets.UTF_8));
+                latch.countDown();
+            });
+            c.receive(parser::receive);
+            for (int i = 0; i < maxMsg; i++) {
+                StringBuilder message = new StringBuilder("message " + i + " ");
+                for (int j = 0; j < i * 100; j++) {
+                    message.append('x');
+                }
+                encoder.write(c, BufferUtils.toBuffer(message.toString(), StandardCharsets.UTF_8));
+            }
+        });
+
+        Assert.assertThat(latch.await(10, TimeUnit.SECONDS), is(true));
+        for (int i = 0; i < maxMsg; i++) {
+            Assert.assertThat(messages.get(i).startsWith("message " + i + " "), is(true));
+            Assert.assertThat(messages.get(i).length(), is(("message " + i + " ").length() + i * 100));
+        }
+        client.stop();
+        server.stop();
+    }
+}
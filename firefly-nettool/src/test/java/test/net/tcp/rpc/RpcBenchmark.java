@@ -0,0 +1,88 @@
+package test.net.tcp.rpc;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.firefly.net.tcp.rpc.RpcClient;
+import com.firefly.net.tcp.rpc.RpcConfiguration;
+import com.firefly.net.tcp.rpc.RpcServer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The throughput and latency of the echo requests against the loopback server. Every caller thread keeps a window of
+ * in-flight requests, and the requests are multiplexed on the connections of the endpoint.
+ *
+ * @author Pengtao Qiu
+ */
+public class RpcBenchmark {
+
+    private static final int PORT = 1230;
+    private static final int THREADS = 4;
+    private static final int WINDOW = 64;
+    private static final int PAYLOAD_SIZE = 128;
+    private static final long DURATION = TimeUnit.SECONDS.toNanos(5);
+
+    public static void main(String[] args) throws Exception {
+        RpcServer server = new RpcServer();
+        server.register("echo", (request, response) -> response.succeeded(request)).listen("localhost", PORT);
+
+        // warm up
+        run(2);
+        for (int connections : new int[]{1, 2, 4}) {
+            run(connections);
+        }
+        server.stop();
+        // stop the log thread
+        System.exit(0);
+    }
+
+    private static void run(int connections) throws Exception {
+        RpcConfiguration config = new RpcConfiguration();
+        config.setConnectionsPerEndpoint(connections);
+        RpcClient client = new RpcClient(config);
+        byte[] payload = new byte[PAYLOAD_SIZE];
+        AtomicLong errors = new AtomicLong();
+
+        Thread[] threads = new Thread[THREADS];
+        long start = System.nanoTime();
+        for (int i = 0; i < THREADS; i++) {
+            threads[i] = new Thread(() -> {
+                Semaphore window = new Semaphore(WINDOW);
+                try {
+                    while (System.nanoTime() - start < DURATION) {
+                        window.acquire();
+                        client.call("localhost", PORT, "echo", ByteBuffer.wrap(payload)).whenComplete((r, x) -> {
+                            if (x != null) {
+                                errors.incrementAndGet();
+                            }
+                            window.release();
+                        });
+                    }
+                    window.acquire(WINDOW);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long time = System.nanoTime() - start;
+
+        MetricRegistry metrics = config.getTcpConfiguration().getMetricReporterFactory().getMetricRegistry();
+        long requests = metrics.timer("rpc.client.request").getCount();
+        Snapshot latency = metrics.timer("rpc.client.request").getSnapshot();
+        Snapshot batchSize = metrics.histogram("rpc.client.write.batch.size").getSnapshot();
+        System.out.println("connections: " + connections
+                + ", throughput: " + (requests * 1000_000_000L / time) + " requests/s"
+                + ", latency p50: " + TimeUnit.NANOSECONDS.toMicros((long) latency.getMedian()) + "us"
+                + ", p99: " + TimeUnit.NANOSECONDS.toMicros((long) latency.get99thPercentile()) + "us"
+                + ", mean write batch: " + String.format("%.1f", batchSize.getMean())
+                + ", errors: " + errors.get());
+        client.stop();
+    }
+}
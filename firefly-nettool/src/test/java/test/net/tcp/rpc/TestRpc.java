@@ -0,0 +1,175 @@
+package test.net.tcp.rpc;
+
+import com.codahale.metrics.MetricRegistry;
+import com.firefly.net.tcp.rpc.RpcClient;
+import com.firefly.net.tcp.rpc.RpcConfiguration;
+import com.firefly.net.tcp.rpc.RpcException;
+import com.firefly.net.tcp.rpc.RpcServer;
+import com.firefly.utils.io.BufferUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * @author Pengtao Qiu
+ */
+public class TestRpc {
+
+    private static final int PORT = 1221;
+
+    public static class Request {
+        private int a;
+        private int b;
+
+        public int getA() {
+            return a;
+        }
+
+        public void setA(int a) {
+            this.a = a;
+        }
+
+        public int getB() {
+            return b;
+        }
+
+        public void setB(int b) {
+            this.b = b;
+        }
+    }
+
+    public static class Response {
+        private int sum;
+
+        public int getSum() {
+            return sum;
+        }
+
+        public void setSum(int sum) {
+            this.sum = sum;
+        }
+    }
+
+    private static RpcServer server;
+    private static RpcClient client;
+    private static RpcConfiguration clientConfig;
+
+    @BeforeClass
+    public static void init() {
+        server = new RpcServer();
+        server.register("echo", (request, response) -> response.succeeded(request))
+              .register("never", (request, response) -> {
+              })
+              .register("error", (request, response) -> {
+                  throw new IllegalStateException("the handler fails");
+              })
+              .registerJson("sum", Request.class, request -> {
+                  Response response = new Response();
+                  response.setSum(request.getA() + request.getB());
+                  return response;
+              })
+              .listen("localhost", PORT);
+
+        clientConfig = new RpcConfiguration();
+        clientConfig.setConnectionsPerEndpoint(2);
+        client = new RpcClient(clientConfig);
+    }
+
+    @AfterClass
+    public static void destroy() {
+        client.stop();
+        server.stop();
+    }
+
+    @Test
+    public void testJson() throws Exception {
+        Request request = new Request();
+        request.setA(3);
+        request.setB(4);
+        Response response = client.callJson("localhost", PORT, "sum", request, Response.class).get(5, TimeUnit.SECONDS);
+        Assert.assertThat(response.getSum(), is(7));
+    }
+
+    @Test
+    public void testMultiplexing() throws Exception {
+        // the responses complete the requests by the request ids
+        int count = 2000;
+        MetricRegistry metrics = clientConfig.getTcpConfiguration().getMetricReporterFactory().getMetricRegistry();
+        long batches = metrics.histogram("rpc.client.write.batch.size").getCount();
+        List<CompletableFuture<ByteBuffer>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            futures.add(client.call("localhost", PORT, "echo", BufferUtils.toBuffer("message " + i, StandardCharsets.UTF_8)));
+        }
+        for (int i = 0; i < count; i++) {
+            ByteBuffer response = futures.get(i).get(5, TimeUnit.SECONDS);
+            Assert.assertThat(BufferUtils.toString(response, StandardCharsets.UTF_8), is("message " + i));
+        }
+
+        // the concurrent requests are batched
+        Assert.assertThat(metrics.histogram("rpc.client.write.batch.size").getCount() - batches < count, is(true));
+        Assert.assertThat(metrics.timer("rpc.client.request").getCount() > 0, is(true));
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        long start = System.currentTimeMillis();
+        try {
+            client.call("localhost", PORT, "never", BufferUtils.toBuffer("hello"), 200).get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertThat(e.getCause(), instanceOf(TimeoutException.class));
+        }
+        Assert.assertThat(System.currentTimeMillis() - start >= 200, is(true));
+
+        // the connection is still available
+        ByteBuffer response = client.call("localhost", PORT, "echo", BufferUtils.toBuffer("hello")).get(5, TimeUnit.SECONDS);
+        Assert.assertThat(BufferUtils.toString(response), is("hello"));
+    }
+
+    @Test
+    public void testError() throws Exception {
+        try {
+            client.call("localhost", PORT, "error", BufferUtils.toBuffer("hello")).get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertThat(e.getCause(), instanceOf(RpcException.class));
+            Assert.assertThat(e.getCause().getMessage(), is("the handler fails"));
+        }
+
+        try {
+            client.call("localhost", PORT, "unknown", BufferUtils.toBuffer("hello")).get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertThat(e.getCause(), instanceOf(RpcException.class));
+            Assert.assertThat(e.getCause().getMessage(), is("the rpc path unknown is not found"));
+        }
+    }
+
+    @Test
+    public void testConnectionClosed() throws Exception {
+        // the in-flight requests fail when the connection is closed
+        RpcClient rpcClient = new RpcClient();
+        CompletableFuture<ByteBuffer> future = rpcClient.call("localhost", PORT, "never", BufferUtils.toBuffer("hello"), 10000);
+        Thread.sleep(500L);
+        rpcClient.stop();
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertThat(e.getCause(), instanceOf(RpcException.class));
+        }
+    }
+}
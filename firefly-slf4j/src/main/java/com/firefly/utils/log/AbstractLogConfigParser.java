@@ -16,6 +16,18 @@ public abstract class AbstractLogConfigParser implements LogConfigParser {
         fileLog.setMaxFileSize(c.getMaxFileSize());
         fileLog.setCharset(Charset.forName(c.getCharset()));
 
+        if (MAPPED_OUTPUT.equalsIgnoreCase(c.getOutput())) {
+            fileLog.setMemoryMapped(true);
+        } else if (StringUtils.hasText(c.getOutput()) && !CHANNEL_OUTPUT.equalsIgnoreCase(c.getOutput())) {
+            System.err.println("the log output " + c.getOutput() + " is not supported, use the default output");
+        }
+
+        if (GZIP_COMPRESSION.equalsIgnoreCase(c.getCompression())) {
+            fileLog.setCompressRotatedFile(true);
+        } else if (StringUtils.hasText(c.getCompression()) && !NO_COMPRESSION.equalsIgnoreCase(c.getCompression())) {
+            System.err.println("the log compression " + c.getCompression() + " is not supported, the rotated files are not compressed");
+        }
+
         boolean createLogDirectorySuccess;
         if (VerifyUtils.isNotEmpty(c.getPath())) {
             File file = new File(c.getPath());
@@ -81,6 +93,8 @@ public abstract class AbstractLogConfigParser implements LogConfigParser {
         c.setMaxFileSize(DEFAULT_MAX_FILE_SIZE);
         c.setCharset(DEFAULT_CHARSET.name());
         c.setFormatter(DEFAULT_LOG_FORMATTER);
+        c.setOutput(DEFAULT_OUTPUT);
+        c.setCompression(DEFAULT_COMPRESSION);
         return createLog(c);
     }
 
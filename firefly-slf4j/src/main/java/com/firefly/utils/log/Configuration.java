@@ -12,6 +12,8 @@ public class Configuration {
     private long maxFileSize;
     private String charset;
     private String formatter;
+    private String output;
+    private String compression;
 
     public String getName() {
         return name;
@@ -69,4 +71,20 @@ public class Configuration {
         this.formatter = formatter;
     }
 
+    public String getOutput() {
+        return output;
+    }
+
+    public void setOutput(String output) {
+        this.output = output;
+    }
+
+    public String getCompression() {
+        return compression;
+    }
+
+    public void setCompression(String compression) {
+        this.compression = compression;
+    }
+
 }
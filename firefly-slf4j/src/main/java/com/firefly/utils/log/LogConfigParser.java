@@ -17,6 +17,12 @@ public interface LogConfigParser {
     boolean DEFAULT_CONSOLE_ENABLED = false;
     Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
     String DEFAULT_LOG_FORMATTER = "com.firefly.utils.log.DefaultLogFormatter";
+    String CHANNEL_OUTPUT = "channel";
+    String MAPPED_OUTPUT = "mapped";
+    String DEFAULT_OUTPUT = CHANNEL_OUTPUT;
+    String NO_COMPRESSION = "none";
+    String GZIP_COMPRESSION = "gzip";
+    String DEFAULT_COMPRESSION = NO_COMPRESSION;
 
     boolean parse(Action1<FileLog> action);
 
@@ -13,7 +13,7 @@ public class LogFactory extends AbstractLifeCycle {
     public static final SafeSimpleDateFormat DAY_DATE_FORMAT = new SafeSimpleDateFormat("yyyy-MM-dd");
 
     private final Trie<Log> logTree = new TreeTrie<>();
-    private final LogTask logTask;
+    private final FileLogTask logTask;
 
     private static class Holder {
         private static LogFactory instance = new LogFactory();
@@ -53,7 +53,7 @@ public class LogFactory extends AbstractLifeCycle {
         return new ClassNameLogWrap(log, name);
     }
 
-    public LogTask getLogTask() {
+    public FileLogTask getLogTask() {
         return logTask;
     }
 
@@ -8,6 +8,10 @@ import java.io.StringWriter;
 import java.util.Date;
 import java.util.Map;
 
+/**
+ * The log event. The asynchronous log task preallocates the items in its ring buffer and reuses them, so an item is
+ * only valid until the formatter returns.
+ */
 public class LogItem {
 
     private String name;
@@ -94,6 +98,19 @@ public class LogItem {
         this.date = date;
     }
 
+    /**
+     * Set the time of the event. It reuses the date of the item instead of creating a new one.
+     *
+     * @param time The milliseconds since the epoch.
+     */
+    public void setTime(long time) {
+        if (date == null) {
+            date = new Date(time);
+        } else {
+            date.setTime(time);
+        }
+    }
+
     public String getThreadName() {
         return threadName;
     }
@@ -117,6 +134,22 @@ public class LogItem {
         return ret;
     }
 
+    /**
+     * Release the references of the event and the cached log string before the item is reused.
+     */
+    public void clear() {
+        name = null;
+        className = null;
+        content = null;
+        level = null;
+        objs = null;
+        throwable = null;
+        stackTraceElement = null;
+        logStr = null;
+        mdcData = null;
+        threadName = null;
+    }
+
     @Override
     public String toString() {
         if (logStr == null) {
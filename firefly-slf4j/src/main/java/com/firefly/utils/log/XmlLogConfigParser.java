@@ -36,6 +36,8 @@ public class XmlLogConfigParser extends AbstractLogConfigParser {
                 }
                 c.setCharset(dom.getTextValueByTagName(e, "charset", DEFAULT_CHARSET.name()));
                 c.setFormatter(dom.getTextValueByTagName(e, "formatter", DEFAULT_LOG_FORMATTER));
+                c.setOutput(dom.getTextValueByTagName(e, "output", DEFAULT_OUTPUT));
+                c.setCompression(dom.getTextValueByTagName(e, "compression", DEFAULT_COMPRESSION));
                 action.call(createLog(c));
             }
         }
@@ -2,11 +2,21 @@ package com.firefly.utils.log.file;
 
 import com.firefly.utils.log.*;
 
-import java.io.*;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Calendar;
 import java.util.Date;
 import java.util.Objects;
 
@@ -22,70 +32,176 @@ public class FileLog implements Log, Closeable {
     private long maxFileSize;
     private Charset charset = LogConfigParser.DEFAULT_CHARSET;
     private LogFormatter logFormatter;
+    private boolean memoryMapped;
+    private int mappedChunkSize = MappedLogOutput.DEFAULT_CHUNK_SIZE;
+    private boolean compressRotatedFile;
+
+    private LogOutput output;
+
+    /**
+     * Format the log item and write it to the buffer of the log. The consumer thread of the log task calls it.
+     *
+     * @param logItem The log item.
+     * @return If it returns true, the log buffer is empty before writing, and the log task needs to flush it.
+     */
+    boolean write(LogItem logItem) {
+        if (!consoleOutput && !fileOutput) {
+            return false;
+        }
 
-    private LogOutputStream output = new LogOutputStream();
-
-    void write(LogItem logItem) {
+        String text = logFormatter.format(logItem);
         if (consoleOutput) {
-            System.out.println(logFormatter.format(logItem));
+            System.out.println(text);
         }
 
-        if (fileOutput) {
-            output.write(logFormatter.format(logItem), logItem.getDate());
+        return fileOutput && getOutput().write(text, logItem.getDate().getTime());
+    }
+
+    private LogOutput getOutput() {
+        if (output == null) {
+            output = memoryMapped ? new MappedLogOutput(this, mappedChunkSize) : new LogOutputStream();
         }
+        return output;
     }
 
-    private class LogOutputStream {
+    String getLogFileName(String date) {
+        return name + "." + date + ".txt";
+    }
 
-        private static final int bufferSize = 4 * 1024;
-        private BufferedOutputStream bufferedOutputStream;
+    String getBackupLogFileName(String date, int index) {
+        return getLogFileName(date) + "." + index + ".bak";
+    }
+
+    /**
+     * Get the start time of the next day, the log rotates the file at this time.
+     *
+     * @param time The milliseconds since the epoch.
+     * @return The start time of the next day.
+     */
+    static long getStartOfNextDay(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        return calendar.getTimeInMillis();
+    }
+
+    private class LogOutputStream implements LogOutput {
+
+        private static final int bufferSize = 32 * 1024;
+        private FileChannel channel;
+        private ByteBuffer buffer;
+        private CharsetEncoder encoder;
 
         private String currentDate = LogFactory.DAY_DATE_FORMAT.format(new Date());
         private long writeSize;
         private int currentBakIndex;
 
-        public void write(String str, Date date) {
-            byte[] text = (str + CL).getBytes(charset);
-            boolean success = initializeBufferedWriter(LogFactory.DAY_DATE_FORMAT.format(date), writeSize + text.length);
+        private Path backupPath;
+
+        private String day;
+        private long dayEnd;
+
+        @Override
+        public boolean write(String str, long time) {
+            boolean empty = buffer == null || buffer.position() == 0;
+            String newDate = getDay(time);
+            long currentWriteSize = writeSize + str.length() + CL.length();
+            // check the log file at the first item of a batch, the date changing and the size exceeding only
+            boolean success = (!empty && currentDate.equals(newDate) && (maxFileSize <= 0 || currentWriteSize <= maxFileSize))
+                    || initializeChannel(newDate, currentWriteSize);
             if (success) {
                 try {
-                    bufferedOutputStream.write(text);
-                    writeSize += text.length;
+                    writeSize += encode(str);
+                    writeSize += encode(CL);
                 } catch (IOException e) {
                     System.err.println("writer log exception, " + e.getMessage());
                 }
+                return empty;
             } else {
-                System.err.println("The log " + toString() + " can not get buffered writer!");
+                System.err.println("The log " + toString() + " can not get file channel!");
+                return false;
             }
         }
 
+        private String getDay(long time) {
+            // format the date when the day changes only, the items of the previous day that arrive late are
+            // written to the current file
+            if (day == null || time >= dayEnd) {
+                dayEnd = getStartOfNextDay(time);
+                day = LogFactory.DAY_DATE_FORMAT.format(new Date(time));
+            }
+            return day;
+        }
+
+        private int encode(String str) throws IOException {
+            CharBuffer chars = CharBuffer.wrap(str);
+            int size = 0;
+            encoder.reset();
+            boolean flushed = false;
+            while (true) {
+                int position = buffer.position();
+                CoderResult result = flushed ? encoder.flush(buffer) : encoder.encode(chars, buffer, true);
+                size += buffer.position() - position;
+                if (result.isOverflow()) {
+                    writeBuffer();
+                } else if (!flushed) {
+                    flushed = true;
+                } else {
+                    return size;
+                }
+            }
+        }
+
+        private void writeBuffer() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
         public void flush() {
-            if (bufferedOutputStream != null) {
+            if (channel != null && buffer.position() > 0) {
                 try {
-                    bufferedOutputStream.flush();
+                    writeBuffer();
                 } catch (IOException e) {
+                    buffer.clear();
                     System.err.println("flush log buffer exception, " + e.getMessage());
                 }
             }
         }
 
+        @Override
         public void close() {
-            if (bufferedOutputStream != null) {
+            if (channel != null) {
+                flush();
                 try {
-                    bufferedOutputStream.close();
+                    channel.close();
                 } catch (IOException e) {
                     System.err.println("close log writer exception, " + e.getMessage());
                 }
+                channel = null;
             }
         }
 
-        private boolean createNewBufferedOutputStream(String newDate) {
+        private boolean createNewChannel(String newDate) {
             try {
                 File file = new File(path, getLogFileName(newDate));
-                bufferedOutputStream = new BufferedOutputStream(new FileOutputStream(file, true), bufferSize);
+                channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                if (buffer == null) {
+                    buffer = ByteBuffer.allocateDirect(bufferSize);
+                    encoder = charset.newEncoder()
+                                     .onMalformedInput(CodingErrorAction.REPLACE)
+                                     .onUnmappableCharacter(CodingErrorAction.REPLACE);
+                }
                 currentDate = newDate;
-                writeSize = file.length();
-                System.out.println("get new log buffer, the file path is " + file.getAbsolutePath() + " and the size is " + file.length());
+                writeSize = channel.size();
+                System.out.println("get new log channel, the file path is " + file.getAbsolutePath() + " and the size is " + writeSize);
                 return true;
             } catch (IOException e) {
                 System.err.println("create log writer exception, " + e.getMessage());
@@ -93,14 +209,6 @@ public class FileLog implements Log, Closeable {
             }
         }
 
-        private String getLogFileName(String date) {
-            return name + "." + date + ".txt";
-        }
-
-        private String getBackupLogFileName(String date, int index) {
-            return getLogFileName(date) + "." + index + ".bak";
-        }
-
         private boolean createNewLogFile(String date, long currentWriteSize) {
             boolean ret;
             try {
@@ -117,7 +225,7 @@ public class FileLog implements Log, Closeable {
                                 while (Files.exists(Paths.get(path, getBackupLogFileName(date, currentBakIndex)))) {
                                     currentBakIndex++;
                                 }
-                                Files.move(logPath, Paths.get(path, getBackupLogFileName(date, currentBakIndex)));
+                                backupPath = Files.move(logPath, Paths.get(path, getBackupLogFileName(date, currentBakIndex)));
                                 ret = true;
                             } else {
                                 ret = false;
@@ -137,23 +245,38 @@ public class FileLog implements Log, Closeable {
             return ret;
         }
 
-        private boolean initializeBufferedWriter(String newDate, long currentWriteSize) {
+        private boolean initializeChannel(String newDate, long currentWriteSize) {
+            String previousDate = currentDate;
+            boolean opened = channel != null;
             if (createNewLogFile(newDate, currentWriteSize)) {
                 close();
-                return createNewBufferedOutputStream(newDate);
+                if (compressRotatedFile) {
+                    // compress the file after the buffer is flushed to it
+                    if (backupPath != null) {
+                        LogFileCompressor.compress(backupPath);
+                    } else if (opened && !previousDate.equals(newDate)) {
+                        LogFileCompressor.compress(Paths.get(path, getLogFileName(previousDate)));
+                    }
+                }
+                backupPath = null;
+                return createNewChannel(newDate);
             } else {
-                return bufferedOutputStream != null || createNewBufferedOutputStream(newDate);
+                return channel != null || createNewChannel(newDate);
             }
         }
     }
 
     public void flush() {
-        output.flush();
+        if (output != null) {
+            output.flush();
+        }
     }
 
     @Override
     public void close() {
-        output.close();
+        if (output != null) {
+            output.close();
+        }
     }
 
     public boolean isConsoleOutput() {
@@ -213,6 +336,46 @@ public class FileLog implements Log, Closeable {
         this.charset = charset;
     }
 
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * Append the log items to a memory-mapped region of the log file instead of writing them through the file
+     * channel.
+     *
+     * @param memoryMapped If it is true, the log uses the memory-mapped file.
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+    public int getMappedChunkSize() {
+        return mappedChunkSize;
+    }
+
+    /**
+     * Set the size of the mapped region. The memory-mapped file grows in this size.
+     *
+     * @param mappedChunkSize The size of the mapped region.
+     */
+    public void setMappedChunkSize(int mappedChunkSize) {
+        this.mappedChunkSize = mappedChunkSize;
+    }
+
+    public boolean isCompressRotatedFile() {
+        return compressRotatedFile;
+    }
+
+    /**
+     * Compress the rotated log files with gzip in a background thread.
+     *
+     * @param compressRotatedFile If it is true, the log compresses the rotated files.
+     */
+    public void setCompressRotatedFile(boolean compressRotatedFile) {
+        this.compressRotatedFile = compressRotatedFile;
+    }
+
     public LogFormatter getLogFormatter() {
         return logFormatter;
     }
@@ -222,20 +385,30 @@ public class FileLog implements Log, Closeable {
     }
 
     private void add(String str, String level, Throwable throwable, Object... objs) {
-        LogItem item = new LogItem();
-        item.setLevel(level);
-        item.setName(name);
-        item.setContent(str);
-        item.setObjs(objs);
-        item.setThrowable(throwable);
-        item.setDate(new Date());
-        item.setMdcData(mdc.getCopyOfContextMap());
-        item.setClassName(ClassNameLogWrap.name.get());
-        item.setThreadName(Thread.currentThread().getName());
-        if (stackTrace) {
-            item.setStackTraceElement(getStackTraceElement());
-        }
-        LogFactory.getInstance().getLogTask().add(item);
+        FileLogTask logTask = LogFactory.getInstance().getLogTask();
+        long sequence = logTask.next();
+        if (sequence < 0) {
+            return;
+        }
+
+        // fill the preallocated item, the consumer thread renders the content template
+        LogItem item = logTask.get(sequence);
+        try {
+            item.setLevel(level);
+            item.setName(name);
+            item.setContent(str);
+            item.setObjs(objs);
+            item.setThrowable(throwable);
+            item.setTime(System.currentTimeMillis());
+            item.setMdcData(mdc.getCopyOfContextMap());
+            item.setClassName(ClassNameLogWrap.name.get());
+            item.setThreadName(Thread.currentThread().getName());
+            if (stackTrace) {
+                item.setStackTraceElement(getStackTraceElement());
+            }
+        } finally {
+            logTask.publish(sequence, this);
+        }
     }
 
     @Override
@@ -378,6 +551,8 @@ public class FileLog implements Log, Closeable {
                 ", fileOutput=" + fileOutput +
                 ", maxFileSize=" + maxFileSize +
                 ", charset=" + charset +
+                ", memoryMapped=" + memoryMapped +
+                ", compressRotatedFile=" + compressRotatedFile +
                 ", logFormatter=" + logFormatter.getClass().getName() +
                 '}';
     }
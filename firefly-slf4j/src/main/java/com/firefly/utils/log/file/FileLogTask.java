@@ -4,86 +4,258 @@ import com.firefly.utils.VerifyUtils;
 import com.firefly.utils.collection.Trie;
 import com.firefly.utils.concurrent.ThreadUtils;
 import com.firefly.utils.lang.AbstractLifeCycle;
-import com.firefly.utils.log.*;
-import com.firefly.utils.time.Millisecond100Clock;
+import com.firefly.utils.log.Log;
+import com.firefly.utils.log.LogItem;
+import com.firefly.utils.log.LogTask;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedTransferQueue;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * The asynchronous log task. The producers claim the preallocated log items of a ring buffer, fill them and publish
+ * them. The single consumer thread formats the items, writes a batch of items to the buffers of the logs, and then
+ * it flushes the logs that are written in this batch.
+ * <p>
+ * The queue size, the policy of the full queue and the sample rate are set by the system properties "logQueueSize",
+ * "logQueueFullPolicy" and "logQueueSampleRate".
+ */
 public class FileLogTask extends AbstractLifeCycle implements LogTask {
 
     public static final long maxLogFlushInterval = Long.getLong("maxLogFlushInterval", 1000L);
+    public static final int logQueueSize = Integer.getInteger("logQueueSize", 32 * 1024);
+    public static final QueueFullPolicy logQueueFullPolicy = QueueFullPolicy.valueOf(System.getProperty("logQueueFullPolicy", QueueFullPolicy.BLOCK.name()));
+    public static final int logQueueSampleRate = Integer.getInteger("logQueueSampleRate", 100);
 
-    private BlockingQueue<LogItem> queue = new LinkedTransferQueue<>();
-    private Thread thread = new Thread(this, "firefly asynchronous log thread");
+    /**
+     * The policy when the producer finds the queue is full.
+     */
+    public enum QueueFullPolicy {
+        /**
+         * The producer waits until the consumer releases a slot.
+         */
+        BLOCK,
+        /**
+         * The producer drops the log item.
+         */
+        DROP,
+        /**
+         * The producer waits for one of the sample rate log items and drops the others, so the log keeps the samples
+         * of the items when the consumer falls behind.
+         */
+        SAMPLE
+    }
+
+    private final Thread thread = new Thread(this, "firefly asynchronous log thread");
     private final Trie<Log> logTree;
+    private final QueueFullPolicy queueFullPolicy;
+    private final int sampleRate;
+
+    private final LogItem[] items;
+    private final FileLog[] logs;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong(-1);
+    private final AtomicLong consumed = new AtomicLong(-1);
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile boolean waiting;
+
+    private final List<FileLog> writtenLogs = new ArrayList<>();
 
     public FileLogTask(Trie<Log> logTree) {
+        this(logTree, logQueueSize, logQueueFullPolicy, logQueueSampleRate);
+    }
+
+    /**
+     * @param logTree         The logs.
+     * @param queueSize       The ring buffer size, it is rounded up to a power of 2.
+     * @param queueFullPolicy The policy when the queue is full.
+     * @param sampleRate      The producer keeps one of the sample rate items when the queue is full and the policy is
+     *                        {@link QueueFullPolicy#SAMPLE}.
+     */
+    public FileLogTask(Trie<Log> logTree, int queueSize, QueueFullPolicy queueFullPolicy, int sampleRate) {
+        if (queueSize < 1 || queueSize > (1 << 30)) {
+            throw new IllegalArgumentException("the log queue size must be between 1 and 2^30");
+        }
         thread.setPriority(Thread.MIN_PRIORITY);
         this.logTree = logTree;
+        this.queueFullPolicy = queueFullPolicy;
+        this.sampleRate = Math.max(sampleRate, 1);
+
+        int capacity = Integer.highestOneBit(queueSize);
+        if (capacity < queueSize) {
+            capacity <<= 1;
+        }
+        mask = capacity - 1;
+        items = new LogItem[capacity];
+        logs = new FileLog[capacity];
+        published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            items[i] = new LogItem();
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * Claim a slot of the ring buffer.
+     *
+     * @return The sequence of the slot, or -1 if the task is stopped or the log item is dropped.
+     */
+    long next() {
+        while (start) {
+            long current = claimed.get();
+            long next = current + 1;
+            if (next - items.length > consumed.get()) {
+                if (!waitForSlot(next)) {
+                    dropped.increment();
+                    return -1;
+                }
+            } else if (claimed.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+        return -1;
+    }
+
+    private boolean waitForSlot(long next) {
+        if (Thread.currentThread() == thread) {
+            // the consumer logs in the formatter, it can not wait for itself
+            return false;
+        }
+        switch (queueFullPolicy) {
+            case DROP:
+                return false;
+            case SAMPLE:
+                if (rejected.getAndIncrement() % sampleRate != 0) {
+                    return false;
+                }
+                break;
+            default:
+                break;
+        }
+        while (start && next - items.length > consumed.get()) {
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        return true;
+    }
+
+    LogItem get(long sequence) {
+        return items[(int) (sequence & mask)];
     }
 
-    private long flushAllPerSecond(final long lastFlushedTime) {
-        // flush all log buffer per one second
-        long timeDifference = Millisecond100Clock.currentTimeMillis() - lastFlushedTime;
-        if (timeDifference > maxLogFlushInterval) {
-            flushAll();
-            return Millisecond100Clock.currentTimeMillis();
-        } else {
-            return lastFlushedTime;
+    /**
+     * Publish the claimed slot to the consumer.
+     *
+     * @param sequence The sequence of the slot.
+     * @param fileLog  The log that writes the item.
+     */
+    void publish(long sequence, FileLog fileLog) {
+        int index = (int) (sequence & mask);
+        logs[index] = fileLog;
+        published.set(index, sequence);
+        if (waiting) {
+            LockSupport.unpark(thread);
         }
     }
 
+    /**
+     * @return The number of the log items that wait for writing.
+     */
+    public long getQueueDepth() {
+        return Math.max(claimed.get() - consumed.get(), 0);
+    }
+
+    /**
+     * @return The number of the log items that are dropped because the queue is full.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public int getQueueCapacity() {
+        return items.length;
+    }
+
+    public QueueFullPolicy getQueueFullPolicy() {
+        return queueFullPolicy;
+    }
+
     public void flushAll() {
         for (String key : logTree.keySet()) {
-            FileLog fileLog = getFileLog(key);
-            if (fileLog != null) {
-                fileLog.flush();
+            Log log = logTree.get(key);
+            if (log instanceof FileLog) {
+                ((FileLog) log).flush();
             }
         }
     }
 
-    private FileLog getFileLog(String name) {
-        Log log = LogFactory.getInstance().getLog(name);
-        if (log instanceof ClassNameLogWrap) {
-            ClassNameLogWrap classNameLogWrap = (ClassNameLogWrap) log;
-            if (classNameLogWrap.getLog() instanceof FileLog) {
-                return (FileLog) classNameLogWrap.getLog();
+    private int drain() {
+        int count = 0;
+        long sequence = consumed.get() + 1;
+        for (int index = (int) (sequence & mask); published.get(index) == sequence; index = (int) (sequence & mask)) {
+            LogItem logItem = items[index];
+            FileLog fileLog = logs[index];
+            try {
+                if (fileLog.write(logItem)) {
+                    writtenLogs.add(fileLog);
+                }
+            } catch (Throwable e) {
+                System.err.println("write log exception, " + e.getMessage());
+            } finally {
+                logItem.clear();
+                logs[index] = null;
+                consumed.lazySet(sequence);
             }
+            sequence++;
+            count++;
+        }
+
+        for (FileLog fileLog : writtenLogs) {
+            fileLog.flush();
         }
-        return null;
+        writtenLogs.clear();
+        return count;
+    }
+
+    private boolean isEmpty() {
+        long sequence = consumed.get() + 1;
+        return published.get((int) (sequence & mask)) != sequence;
     }
 
     @Override
     public void run() {
-        long lastFlushedTime = Millisecond100Clock.currentTimeMillis();
         while (true) {
             try {
-                for (LogItem logItem; (logItem = queue.poll(maxLogFlushInterval, TimeUnit.MILLISECONDS)) != null; ) {
-                    FileLog fileLog = getFileLog(logItem.getName());
-                    if (fileLog != null) {
-                        fileLog.write(logItem);
-                    }
-                    lastFlushedTime = flushAllPerSecond(lastFlushedTime);
+                if (drain() > 0) {
+                    continue;
                 }
-
-                lastFlushedTime = flushAllPerSecond(lastFlushedTime);
             } catch (Throwable e) {
                 System.err.println("flush exception, " + e.getMessage());
                 // avoid CPU exhausting
                 ThreadUtils.sleep(1000L);
             }
 
-            if (!start && queue.isEmpty()) {
+            if (!start && isEmpty() && claimed.get() == consumed.get()) {
                 for (String key : logTree.keySet()) {
-                    FileLog fileLog = getFileLog(key);
-                    if (fileLog != null) {
-                        fileLog.close();
+                    Log log = logTree.get(key);
+                    if (log instanceof FileLog) {
+                        ((FileLog) log).close();
                     }
                 }
                 break;
             }
+
+            waiting = true;
+            if (start && isEmpty()) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(maxLogFlushInterval));
+            }
+            waiting = false;
         }
     }
 
@@ -95,7 +267,29 @@ public class FileLogTask extends AbstractLifeCycle implements LogTask {
         if (VerifyUtils.isEmpty(logItem.getName()))
             throw new IllegalArgumentException("log name is empty");
 
-        queue.offer(logItem);
+        Log log = logTree.get(logItem.getName());
+        if (!(log instanceof FileLog))
+            return;
+
+        long sequence = next();
+        if (sequence < 0)
+            return;
+
+        LogItem item = get(sequence);
+        try {
+            item.setName(logItem.getName());
+            item.setClassName(logItem.getClassName());
+            item.setContent(logItem.getContent());
+            item.setLevel(logItem.getLevel());
+            item.setObjs(logItem.getObjs());
+            item.setThrowable(logItem.getThrowable());
+            item.setStackTraceElement(logItem.getStackTraceElement());
+            item.setMdcData(logItem.getMdcData());
+            item.setTime(logItem.getDate() != null ? logItem.getDate().getTime() : System.currentTimeMillis());
+            item.setThreadName(logItem.getThreadName());
+        } finally {
+            publish(sequence, (FileLog) log);
+        }
     }
 
     @Override
@@ -107,5 +301,6 @@ public class FileLogTask extends AbstractLifeCycle implements LogTask {
     @Override
     protected void destroy() {
         start = false;
+        LockSupport.unpark(thread);
     }
 }
@@ -0,0 +1,59 @@
+package com.firefly.utils.log.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compress the rotated log files with gzip in a background thread, so the log thread does not wait for compressing.
+ *
+ * @author Pengtao Qiu
+ */
+public class LogFileCompressor {
+
+    private static final int bufferSize = 64 * 1024;
+
+    private static class Holder {
+        private static final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "firefly log compressor");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Compress the file to the file that has the ".gz" suffix and delete the original file. If the compressed file
+     * exists, it appends a new gzip member to the compressed file.
+     *
+     * @param file The rotated log file.
+     */
+    public static void compress(Path file) {
+        Holder.executor.execute(() -> {
+            Path compressedFile = file.resolveSibling(file.getFileName() + ".gz");
+            try (InputStream input = Files.newInputStream(file);
+                 OutputStream output = new GZIPOutputStream(Files.newOutputStream(compressedFile,
+                         StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND), bufferSize)) {
+                byte[] buffer = new byte[bufferSize];
+                for (int length; (length = input.read(buffer)) != -1; ) {
+                    output.write(buffer, 0, length);
+                }
+            } catch (IOException e) {
+                System.err.println("compress log file exception, " + e.getMessage());
+                return;
+            }
+
+            try {
+                Files.delete(file);
+            } catch (IOException e) {
+                System.err.println("delete compressed log file exception, " + e.getMessage());
+            }
+        });
+    }
+}
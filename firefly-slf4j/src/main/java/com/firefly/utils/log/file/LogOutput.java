@@ -0,0 +1,22 @@
+package com.firefly.utils.log.file;
+
+/**
+ * The output of a file log. The consumer thread of the log task writes the formatted log items.
+ *
+ * @author Pengtao Qiu
+ */
+interface LogOutput {
+
+    /**
+     * Write a formatted log item.
+     *
+     * @param str  The formatted log item.
+     * @param time The time of the log item.
+     * @return If it returns true, the output has the buffered data that need to flush.
+     */
+    boolean write(String str, long time);
+
+    void flush();
+
+    void close();
+}
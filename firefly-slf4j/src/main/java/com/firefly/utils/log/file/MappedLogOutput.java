@@ -0,0 +1,202 @@
+package com.firefly.utils.log.file;
+
+import com.firefly.utils.log.Log;
+import com.firefly.utils.log.LogFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+
+/**
+ * The log output appends the log items to a memory-mapped region of the log file. The region grows in large chunks,
+ * so writing a log item copies the bytes to the page cache without a system call.
+ * <p>
+ * The output rotates the file when the size exceeds the max file size or the time reaches the next rollover time that
+ * is computed when the file is opened. The closed file is truncated to the written size. If the process crashes, the
+ * file has the zero bytes at the end of the last chunk, and the output writes after the last non-zero byte when it
+ * opens the file again.
+ *
+ * @author Pengtao Qiu
+ */
+class MappedLogOutput implements LogOutput {
+
+    static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    private final FileLog fileLog;
+    private final int chunkSize;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private CharsetEncoder encoder;
+    private Path currentPath;
+    private long writeSize;
+    private int currentBakIndex;
+
+    private String currentDate;
+    private long nextRolloverTime;
+
+    MappedLogOutput(FileLog fileLog, int chunkSize) {
+        this.fileLog = fileLog;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public synchronized boolean write(String str, long time) {
+        try {
+            if (channel == null || time >= nextRolloverTime) {
+                rollover(time);
+            } else if (fileLog.getMaxFileSize() > 0
+                    && writeSize + str.length() + Log.CL.length() > fileLog.getMaxFileSize()) {
+                close();
+                backup();
+                open(currentDate);
+            }
+            encode(str);
+            encode(Log.CL);
+        } catch (IOException e) {
+            System.err.println("write mapped log exception, " + e.getMessage());
+            close();
+        }
+        // the mapped region does not need flushing
+        return false;
+    }
+
+    private void rollover(long time) throws IOException {
+        String date = LogFactory.DAY_DATE_FORMAT.format(new Date(time));
+        nextRolloverTime = FileLog.getStartOfNextDay(time);
+        if (channel != null) {
+            // the items of the previous day that arrive late are written to the current file
+            if (date.equals(currentDate)) {
+                return;
+            }
+            Path previousPath = currentPath;
+            close();
+            if (fileLog.isCompressRotatedFile()) {
+                LogFileCompressor.compress(previousPath);
+            }
+        }
+        open(date);
+    }
+
+    private void backup() throws IOException {
+        while (Files.exists(Paths.get(fileLog.getPath(), fileLog.getBackupLogFileName(currentDate, currentBakIndex)))) {
+            currentBakIndex++;
+        }
+        Path backupPath = Files.move(currentPath, Paths.get(fileLog.getPath(), fileLog.getBackupLogFileName(currentDate, currentBakIndex)));
+        if (fileLog.isCompressRotatedFile()) {
+            LogFileCompressor.compress(backupPath);
+        }
+    }
+
+    private void open(String date) throws IOException {
+        currentDate = date;
+        currentPath = Paths.get(fileLog.getPath(), fileLog.getLogFileName(date));
+        channel = FileChannel.open(currentPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        writeSize = getContentSize();
+        if (fileLog.getMaxFileSize() > 0 && writeSize >= fileLog.getMaxFileSize()) {
+            close();
+            backup();
+            channel = FileChannel.open(currentPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            writeSize = 0;
+        }
+        if (encoder == null) {
+            encoder = fileLog.getCharset().newEncoder()
+                             .onMalformedInput(CodingErrorAction.REPLACE)
+                             .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+        map();
+        System.out.println("get new mapped log file, the file path is " + currentPath.toAbsolutePath() + " and the size is " + writeSize);
+    }
+
+    private long getContentSize() throws IOException {
+        // skip the zero bytes of the last chunk that is not truncated
+        long end = channel.size();
+        while (end > 0) {
+            long start = Math.max(0, end - chunkSize);
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            try {
+                for (int i = (int) (end - start) - 1; i >= 0; i--) {
+                    if (region.get(i) != 0) {
+                        return start + i + 1;
+                    }
+                }
+            } finally {
+                unmap(region);
+            }
+            end = start;
+        }
+        return 0;
+    }
+
+    private void map() throws IOException {
+        unmap(buffer);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, writeSize, chunkSize);
+    }
+
+    private void encode(String str) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(str);
+        encoder.reset();
+        boolean flushed = false;
+        while (true) {
+            int position = buffer.position();
+            CoderResult result = flushed ? encoder.flush(buffer) : encoder.encode(chars, buffer, true);
+            writeSize += buffer.position() - position;
+            if (result.isOverflow()) {
+                map();
+            } else if (!flushed) {
+                flushed = true;
+            } else {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public synchronized void close() {
+        if (channel != null) {
+            unmap(buffer);
+            buffer = null;
+            try {
+                channel.truncate(writeSize);
+            } catch (IOException e) {
+                System.err.println("truncate mapped log file exception, " + e.getMessage());
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("close mapped log file exception, " + e.getMessage());
+            }
+            channel = null;
+        }
+    }
+
+    private static void unmap(MappedByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Throwable ignored) {
+            // the garbage collector releases the mapped region
+        }
+    }
+}
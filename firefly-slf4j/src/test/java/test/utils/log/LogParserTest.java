@@ -5,6 +5,7 @@ import com.firefly.utils.collection.Trie;
 import com.firefly.utils.log.Log;
 import com.firefly.utils.log.LogConfigParser;
 import com.firefly.utils.log.XmlLogConfigParser;
+import com.firefly.utils.log.file.FileLog;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -18,5 +19,13 @@ public class LogParserTest {
         LogConfigParser parser = new XmlLogConfigParser();
         boolean success = parser.parse((fileLog) -> xmlLogTree.put(fileLog.getName(), fileLog));
         Assert.assertThat(success, is(true));
+
+        FileLog mapped = (FileLog) xmlLogTree.get("test.mapped");
+        Assert.assertThat(mapped.isMemoryMapped(), is(true));
+        Assert.assertThat(mapped.isCompressRotatedFile(), is(true));
+
+        FileLog defaultOutput = (FileLog) xmlLogTree.get("test-request-id");
+        Assert.assertThat(defaultOutput.isMemoryMapped(), is(false));
+        Assert.assertThat(defaultOutput.isCompressRotatedFile(), is(false));
     }
 }
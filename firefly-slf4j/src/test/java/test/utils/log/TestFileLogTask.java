@@ -0,0 +1,153 @@
+package test.utils.log;
+
+import com.firefly.utils.collection.TreeTrie;
+import com.firefly.utils.collection.Trie;
+import com.firefly.utils.log.Log;
+import com.firefly.utils.log.LogFactory;
+import com.firefly.utils.log.LogItem;
+import com.firefly.utils.log.LogLevel;
+import com.firefly.utils.log.file.FileLog;
+import com.firefly.utils.log.file.FileLogTask;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+
+/**
+ * @author Pengtao Qiu
+ */
+public class TestFileLogTask {
+
+    private Path logDirectory;
+    private Trie<Log> logTree;
+    private FileLog fileLog;
+    private CountDownLatch entered;
+    private CountDownLatch release;
+
+    @Before
+    public void init() throws IOException {
+        logDirectory = Files.createTempDirectory("firefly-log-task");
+        entered = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+
+        fileLog = new FileLog();
+        fileLog.setName("test-ring-buffer");
+        fileLog.setLevel(LogLevel.INFO);
+        fileLog.setPath(logDirectory.toString());
+        fileLog.setFileOutput(true);
+        fileLog.setLogFormatter(logItem -> {
+            // block the consumer at the first item
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+            return logItem.renderContentTemplate();
+        });
+        logTree = new TreeTrie<>();
+        logTree.put(fileLog.getName(), fileLog);
+    }
+
+    @After
+    public void destroy() throws IOException {
+        File[] files = logDirectory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.delete(file.toPath());
+            }
+        }
+        Files.delete(logDirectory);
+    }
+
+    private LogItem createItem(int i) {
+        LogItem item = new LogItem();
+        item.setName(fileLog.getName());
+        item.setLevel(LogLevel.INFO.getName());
+        item.setContent("message {}");
+        item.setObjs(new Object[]{i});
+        item.setDate(new Date());
+        return item;
+    }
+
+    private List<String> readLines(int expectedLines) throws Exception {
+        Path logFile = logDirectory.resolve(fileLog.getName() + "." + LogFactory.DAY_DATE_FORMAT.format(new Date()) + ".txt");
+        long deadline = System.currentTimeMillis() + 5000;
+        List<String> lines;
+        do {
+            Thread.sleep(50);
+            lines = Files.exists(logFile) ? Files.readAllLines(logFile, StandardCharsets.UTF_8) : null;
+        } while ((lines == null || lines.size() < expectedLines) && System.currentTimeMillis() < deadline);
+        return lines;
+    }
+
+    @Test
+    public void testDrop() throws Exception {
+        FileLogTask logTask = new FileLogTask(logTree, 3, FileLogTask.QueueFullPolicy.DROP, 1);
+        Assert.assertThat(logTask.getQueueCapacity(), is(4));
+        logTask.start();
+        try {
+            logTask.add(createItem(0));
+            Assert.assertThat(entered.await(5, TimeUnit.SECONDS), is(true));
+
+            // the consumer holds a slot, so the queue accepts 3 items
+            for (int i = 1; i <= 10; i++) {
+                logTask.add(createItem(i));
+            }
+            Assert.assertThat(logTask.getQueueDepth(), is(4L));
+            Assert.assertThat(logTask.getDroppedCount(), is(7L));
+        } finally {
+            release.countDown();
+        }
+
+        List<String> lines = readLines(4);
+        Assert.assertThat(lines.size(), is(4));
+        for (int i = 0; i < lines.size(); i++) {
+            Assert.assertThat(lines.get(i), is("message " + i));
+        }
+        Assert.assertThat(logTask.getQueueDepth(), is(0L));
+        logTask.stop();
+    }
+
+    @Test
+    public void testBlock() throws Exception {
+        FileLogTask logTask = new FileLogTask(logTree, 4, FileLogTask.QueueFullPolicy.BLOCK, 1);
+        logTask.start();
+        logTask.add(createItem(0));
+        Assert.assertThat(entered.await(5, TimeUnit.SECONDS), is(true));
+
+        Thread producer = new Thread(() -> {
+            for (int i = 1; i <= 100; i++) {
+                logTask.add(createItem(i));
+            }
+        });
+        producer.start();
+        Thread.sleep(200L);
+        // the producer waits for the consumer
+        Assert.assertThat(producer.isAlive(), is(true));
+        Assert.assertThat(logTask.getQueueDepth(), is(4L));
+
+        release.countDown();
+        producer.join(5000);
+        Assert.assertThat(producer.isAlive(), is(false));
+
+        List<String> lines = readLines(101);
+        Assert.assertThat(lines.size(), is(101));
+        for (int i = 0; i < lines.size(); i++) {
+            Assert.assertThat(lines.get(i), is("message " + i));
+        }
+        Assert.assertThat(logTask.getDroppedCount(), is(0L));
+        logTask.stop();
+    }
+}
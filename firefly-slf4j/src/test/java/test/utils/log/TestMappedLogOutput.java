@@ -0,0 +1,163 @@
+package test.utils.log;
+
+import com.firefly.utils.collection.TreeTrie;
+import com.firefly.utils.collection.Trie;
+import com.firefly.utils.log.Log;
+import com.firefly.utils.log.LogFactory;
+import com.firefly.utils.log.LogItem;
+import com.firefly.utils.log.LogLevel;
+import com.firefly.utils.log.file.FileLog;
+import com.firefly.utils.log.file.FileLogTask;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.is;
+
+/**
+ * @author Pengtao Qiu
+ */
+public class TestMappedLogOutput {
+
+    private Path logDirectory;
+    private Trie<Log> logTree;
+    private FileLogTask logTask;
+
+    @Before
+    public void init() throws IOException {
+        logDirectory = Files.createTempDirectory("firefly-mapped-log");
+        logTree = new TreeTrie<>();
+        logTask = new FileLogTask(logTree, 1024, FileLogTask.QueueFullPolicy.BLOCK, 1);
+        logTask.start();
+    }
+
+    @After
+    public void destroy() throws IOException {
+        logTask.stop();
+        File[] files = logDirectory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.delete(file.toPath());
+            }
+        }
+        Files.delete(logDirectory);
+    }
+
+    private FileLog createLog(long maxFileSize, boolean compress) {
+        FileLog fileLog = new FileLog();
+        fileLog.setName("test-mapped");
+        fileLog.setLevel(LogLevel.INFO);
+        fileLog.setPath(logDirectory.toString());
+        fileLog.setFileOutput(true);
+        fileLog.setMemoryMapped(true);
+        fileLog.setMappedChunkSize(128);
+        fileLog.setMaxFileSize(maxFileSize);
+        fileLog.setCompressRotatedFile(compress);
+        fileLog.setLogFormatter(LogItem::renderContentTemplate);
+        logTree.put(fileLog.getName(), fileLog);
+        return fileLog;
+    }
+
+    private void write(FileLog fileLog, int from, int to) throws InterruptedException {
+        for (int i = from; i < to; i++) {
+            LogItem item = new LogItem();
+            item.setName(fileLog.getName());
+            item.setLevel(LogLevel.INFO.getName());
+            item.setContent("message {}");
+            item.setObjs(new Object[]{i});
+            item.setDate(new Date());
+            logTask.add(item);
+        }
+        while (logTask.getQueueDepth() > 0) {
+            Thread.sleep(10);
+        }
+    }
+
+    private Path getLogFile() {
+        return logDirectory.resolve("test-mapped." + LogFactory.DAY_DATE_FORMAT.format(new Date()) + ".txt");
+    }
+
+    private List<String> readLines(InputStream inputStream) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            for (String line; (line = reader.readLine()) != null; ) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    public void testGrowAndTruncate() throws Exception {
+        FileLog fileLog = createLog(0, false);
+        write(fileLog, 0, 100);
+        fileLog.close();
+
+        // the file grows in many chunks, and it is truncated to the written size when it is closed
+        List<String> lines = readLines(Files.newInputStream(getLogFile()));
+        Assert.assertThat(lines.size(), is(100));
+        for (int i = 0; i < lines.size(); i++) {
+            Assert.assertThat(lines.get(i), is("message " + i));
+        }
+    }
+
+    @Test
+    public void testRecoverUnclosedFile() throws Exception {
+        // the first log is not closed as the process crashes
+        FileLog fileLog = createLog(0, false);
+        write(fileLog, 0, 3);
+        // the file is not truncated, the new log appends after the written size
+        Assert.assertThat(Files.size(getLogFile()) > "message 0\r\n".length() * 3, is(true));
+
+        FileLog newFileLog = createLog(0, false);
+        write(newFileLog, 3, 5);
+        newFileLog.close();
+
+        List<String> lines = readLines(Files.newInputStream(getLogFile()));
+        Assert.assertThat(lines.size(), is(5));
+        for (int i = 0; i < lines.size(); i++) {
+            Assert.assertThat(lines.get(i), is("message " + i));
+        }
+    }
+
+    @Test
+    public void testRotateAndCompress() throws Exception {
+        FileLog fileLog = createLog(1000, true);
+        write(fileLog, 0, 500);
+        fileLog.close();
+
+        String date = LogFactory.DAY_DATE_FORMAT.format(new Date());
+        List<String> lines = new ArrayList<>();
+        int index = 0;
+        for (; ; index++) {
+            Path backup = logDirectory.resolve("test-mapped." + date + ".txt." + index + ".bak");
+            Path compressed = logDirectory.resolve(backup.getFileName() + ".gz");
+            long deadline = System.currentTimeMillis() + 5000;
+            while (Files.exists(backup) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            if (!Files.exists(compressed)) {
+                break;
+            }
+            Assert.assertThat(Files.exists(backup), is(false));
+            lines.addAll(readLines(new GZIPInputStream(Files.newInputStream(compressed))));
+        }
+        Assert.assertThat(index > 1, is(true));
+        lines.addAll(readLines(Files.newInputStream(getLogFile())));
+
+        Assert.assertThat(lines.size(), is(500));
+        for (int i = 0; i < lines.size(); i++) {
+            Assert.assertThat(lines.get(i), is("message " + i));
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.firefly.client.http2;
 
 import com.firefly.codec.http2.stream.HTTPConnection;
+import com.firefly.net.ByteBufferOutputEntry;
 import com.firefly.net.EncoderChain;
 import com.firefly.net.Session;
 import com.firefly.utils.concurrent.Callback;
@@ -23,6 +24,17 @@ public class ClientSecureEncoder extends EncoderChain {
                 if (message instanceof ByteBuffer) {
                     HTTP1ClientConnection http1ClientConnection = (HTTP1ClientConnection) connection;
                     http1ClientConnection.getSSLSession().write((ByteBuffer) message, Callback.NOOP);
+                } else if (message instanceof ByteBufferOutputEntry) {
+                    // the SSL session encrypts the buffer into its own buffers, so the entry is completed here
+                    ByteBufferOutputEntry entry = (ByteBufferOutputEntry) message;
+                    HTTP1ClientConnection http1ClientConnection = (HTTP1ClientConnection) connection;
+                    try {
+                        http1ClientConnection.getSSLSession().write(entry.getData(), Callback.NOOP);
+                    } catch (Throwable t) {
+                        entry.getCallback().failed(t);
+                        throw t;
+                    }
+                    entry.getCallback().succeeded();
                 } else {
                     throw new IllegalArgumentException(
                             "the http1 encoder must receive the ByteBuffer, but this message type is "
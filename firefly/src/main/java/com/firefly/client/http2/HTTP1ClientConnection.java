@@ -332,13 +332,18 @@ public class HTTP1ClientConnection extends AbstractHTTP1Connection implements HT
         }
 
         @Override
-        protected ByteBuffer getHeaderByteBuffer() {
-            return BufferUtils.allocate(connection.getHTTP2Configuration().getMaxRequestHeadLength());
+        protected AbstractHTTP1Connection getHTTP1Connection() {
+            return connection;
         }
 
         @Override
-        protected ByteBuffer getTrailerByteBuffer() {
-            return BufferUtils.allocate(connection.getHTTP2Configuration().getMaxRequestTrailerLength());
+        protected int getMaxHeaderLength() {
+            return connection.getHTTP2Configuration().getMaxRequestHeadLength();
+        }
+
+        @Override
+        protected int getMaxTrailerLength() {
+            return connection.getHTTP2Configuration().getMaxRequestTrailerLength();
         }
 
         @Override
@@ -3,6 +3,7 @@ package com.firefly.client.http2;
 import java.nio.ByteBuffer;
 
 import com.firefly.codec.http2.stream.HTTPConnection;
+import com.firefly.net.ByteBufferOutputEntry;
 import com.firefly.net.EncoderChain;
 import com.firefly.net.Session;
 import com.firefly.utils.concurrent.Callback;
@@ -27,6 +28,8 @@ public class HTTP1ClientEncoder extends EncoderChain {
 			} else {
 				if (message instanceof ByteBuffer) {
 					session.write((ByteBuffer) message, Callback.NOOP);
+				} else if (message instanceof ByteBufferOutputEntry) {
+					session.write((ByteBufferOutputEntry) message);
 				} else {
 					throw new IllegalArgumentException(
 							"the http1 encoder must receive the ByteBuffer, but this message type is "
@@ -79,13 +79,14 @@ public class HTTP2ClientConnection extends AbstractHTTP2Connection implements HT
                                             Listener listener) {
         HTTP2ClientSession http2ClientSession = new HTTP2ClientSession(scheduler, this.tcpSession, this.generator,
                 listener, flowControl, config.getStreamIdleTimeout());
+        http2ClientSession.setFlushQuantum(config.getFlushQuantum());
         return http2ClientSession;
     }
 
     @Override
     protected Parser initParser(HTTP2Configuration config) {
         return new Parser((HTTP2ClientSession) http2Session, config.getMaxDynamicTableSize(),
-                config.getMaxRequestHeadLength());
+                config.getMaxRequestHeadLength(), config.getFrameBufferPool());
     }
 
     Parser getParser() {
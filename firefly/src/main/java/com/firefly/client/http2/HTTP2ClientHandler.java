@@ -29,7 +29,7 @@ public class HTTP2ClientHandler extends AbstractHTTPHandler {
         }
 
         if (config.isSecureConnectionEnabled()) {
-            session.attachObject(new SSLSession(config.getSslContextFactory(), true, session, sslSession -> {
+            session.attachObject(new SSLSession(config.getSslContextFactory(), true, session, config.getSslHandshakeExecutor(), sslSession -> {
                 log.debug("client session {} SSL handshake finished", session.getSessionId());
                 if ("http/1.1".equals(sslSession.applicationProtocol())) {
                     initializeHTTP1ClientConnection(session, context, sslSession);
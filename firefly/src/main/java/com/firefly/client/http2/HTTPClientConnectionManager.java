@@ -0,0 +1,283 @@
+package com.firefly.client.http2;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.firefly.utils.concurrent.Promise;
+import com.firefly.utils.concurrent.Scheduler;
+import com.firefly.utils.concurrent.Schedulers;
+import com.firefly.utils.lang.AbstractLifeCycle;
+import com.firefly.utils.lang.pool.BoundedAsynchronousPool;
+import com.firefly.utils.lang.pool.PooledObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+/**
+ * Manage the connection pools of the origins. Every origin (host and port) has a bounded pool, the connections of
+ * all the origins are limited by the max connections. A background sweeper evicts the connections that are idle too
+ * long, expired or closed, and then it creates the connections until the idle connections reach the min idle number.
+ *
+ * @author Pengtao Qiu
+ */
+public class HTTPClientConnectionManager extends AbstractLifeCycle {
+
+    private static Logger log = LoggerFactory.getLogger("firefly-system");
+
+    private final HTTP2Client http2Client;
+    private final SimpleHTTPClientConfiguration configuration;
+    private final ConcurrentHashMap<Origin, BoundedAsynchronousPool<HTTPClientConnection>> poolMap = new ConcurrentHashMap<>();
+    private volatile Scheduler scheduler;
+    private final GlobalCapacity globalCapacity;
+    private final BoundedAsynchronousPool.PoolMetrics poolMetrics;
+    private Scheduler.Future sweeper;
+
+    private static class Origin {
+        final String host;
+        final int port;
+
+        Origin(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Origin origin = (Origin) o;
+            return port == origin.port && Objects.equals(host, origin.host);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(host, port);
+        }
+
+        @Override
+        public String toString() {
+            return host + ":" + port;
+        }
+    }
+
+    private class GlobalCapacity implements BoundedAsynchronousPool.SharedCapacity {
+
+        private final int maxConnections;
+        private final AtomicInteger connections = new AtomicInteger();
+        private final AtomicBoolean reclaiming = new AtomicBoolean();
+
+        GlobalCapacity(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        @Override
+        public boolean tryAcquire() {
+            while (true) {
+                int c = connections.get();
+                if (c >= maxConnections) {
+                    // close an idle connection of the other origins asynchronously, the pools must not be locked here
+                    if (reclaiming.compareAndSet(false, true)) {
+                        scheduler.schedule(this::reclaim, 0, TimeUnit.MILLISECONDS);
+                    }
+                    return false;
+                }
+                if (connections.compareAndSet(c, c + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        public void release() {
+            connections.decrementAndGet();
+            for (BoundedAsynchronousPool<HTTPClientConnection> pool : poolMap.values()) {
+                if (pool.getWaitingSize() > 0) {
+                    pool.createForWaiters();
+                }
+            }
+        }
+
+        private void reclaim() {
+            reclaiming.set(false);
+            for (BoundedAsynchronousPool<HTTPClientConnection> pool : poolMap.values()) {
+                if (pool.getWaitingSize() == 0 && pool.evictLeastRecentlyUsed()) {
+                    return;
+                }
+            }
+        }
+
+        int getConnections() {
+            return connections.get();
+        }
+    }
+
+    public HTTPClientConnectionManager(HTTP2Client http2Client, SimpleHTTPClientConfiguration configuration) {
+        this.http2Client = http2Client;
+        this.configuration = configuration;
+        if (configuration.getMaxConnections() > 0) {
+            globalCapacity = new GlobalCapacity(configuration.getMaxConnections());
+        } else {
+            globalCapacity = null;
+        }
+
+        MetricRegistry metrics = configuration.getTcpConfiguration()
+                                              .getMetricReporterFactory()
+                                              .getMetricRegistry();
+        Timer waitTimer = metrics.timer("http2.SimpleHTTPClient.pool.wait.time");
+        Meter timeoutMeter = metrics.meter("http2.SimpleHTTPClient.pool.timeout.count");
+        Meter createMeter = metrics.meter("http2.SimpleHTTPClient.pool.create.count");
+        Meter destroyMeter = metrics.meter("http2.SimpleHTTPClient.pool.destroy.count");
+        metrics.register("http2.SimpleHTTPClient.pool.waiting.size", (Gauge<Integer>) () -> sum(BoundedAsynchronousPool::getWaitingSize));
+        metrics.register("http2.SimpleHTTPClient.pool.leased.size", (Gauge<Integer>) () -> sum(BoundedAsynchronousPool::getLeasedSize));
+        metrics.register("http2.SimpleHTTPClient.pool.idle.size", (Gauge<Integer>) () -> sum(BoundedAsynchronousPool::size));
+        poolMetrics = new BoundedAsynchronousPool.PoolMetrics() {
+            @Override
+            public void onWaitCompleted(long waitTime) {
+                waitTimer.update(waitTime, TimeUnit.NANOSECONDS);
+            }
+
+            @Override
+            public void onWaitTimeout() {
+                timeoutMeter.mark();
+            }
+
+            @Override
+            public void onCreate() {
+                createMeter.mark();
+            }
+
+            @Override
+            public void onDestroy() {
+                destroyMeter.mark();
+            }
+        };
+        start();
+    }
+
+    private int sum(ToIntFunction<BoundedAsynchronousPool<HTTPClientConnection>> function) {
+        return poolMap.values().stream().mapToInt(function).sum();
+    }
+
+    /**
+     * Get the connection pool of the origin, the pool is created if it does not exist.
+     *
+     * @param host The host of the origin.
+     * @param port The port of the origin.
+     * @return The connection pool.
+     */
+    public BoundedAsynchronousPool<HTTPClientConnection> getPool(String host, int port) {
+        // the client can be used again after it stops
+        start();
+        return poolMap.computeIfAbsent(new Origin(host, port), this::createPool);
+    }
+
+    private BoundedAsynchronousPool<HTTPClientConnection> createPool(Origin origin) {
+        BoundedAsynchronousPool<HTTPClientConnection> pool = new BoundedAsynchronousPool<>(
+                configuration.getPoolSize(),
+                configuration.getConnectTimeout(),
+                scheduler,
+                () -> {
+                    Promise.Completable<PooledObject<HTTPClientConnection>> r = new Promise.Completable<>();
+                    Promise.Completable<HTTPClientConnection> c = http2Client.connect(origin.host, origin.port);
+                    c.thenAccept(conn -> r.succeeded(new PooledObject<>(conn)))
+                     .exceptionally(e -> {
+                         r.failed(e);
+                         return null;
+                     });
+                    return r;
+                },
+                o -> o.getObject().isOpen(),
+                (o) -> {
+                    try {
+                        o.getObject().close();
+                    } catch (IOException e) {
+                        log.error("close http connection exception", e);
+                    }
+                });
+        pool.setMinIdle(configuration.getMinIdle());
+        pool.setMaxIdleTime(configuration.getMaxIdleTime());
+        pool.setMaxLifetime(configuration.getMaxLifetime());
+        pool.setMetrics(poolMetrics);
+        pool.setSharedCapacity(globalCapacity);
+        // warm up the pool in the scheduler, the pool map can not be modified in the computing function
+        scheduler.schedule(pool::prepare, 0, TimeUnit.MILLISECONDS);
+        return pool;
+    }
+
+    public BoundedAsynchronousPool<HTTPClientConnection> getExistingPool(String host, int port) {
+        return poolMap.get(new Origin(host, port));
+    }
+
+    public void removePool(String host, int port) {
+        BoundedAsynchronousPool<HTTPClientConnection> pool = poolMap.remove(new Origin(host, port));
+        if (pool != null) {
+            pool.stop();
+        }
+    }
+
+    /**
+     * Evict the connections that are idle too long, expired or closed, and then create the connections until
+     * the idle connections reach the min idle number.
+     */
+    public void evict() {
+        poolMap.values().forEach(BoundedAsynchronousPool::evict);
+    }
+
+    /**
+     * Get the number of the connections of all the origins.
+     *
+     * @return The number of the connections.
+     */
+    public int getConnections() {
+        if (globalCapacity != null) {
+            return globalCapacity.getConnections();
+        } else {
+            return sum(BoundedAsynchronousPool::getCreatedObjectSize);
+        }
+    }
+
+    @Override
+    protected void init() {
+        scheduler = Schedulers.createScheduler();
+        for (String url : configuration.getPreWarmUrls()) {
+            try {
+                URL u = new URL(url);
+                Origin origin = new Origin(u.getHost(), u.getPort() < 0 ? u.getDefaultPort() : u.getPort());
+                poolMap.computeIfAbsent(origin, this::createPool);
+            } catch (MalformedURLException e) {
+                log.error("the pre-warm url {} exception", url, e);
+            }
+        }
+
+        long interval = configuration.getEvictionInterval();
+        if (interval > 0) {
+            sweeper = scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    evict();
+                } catch (Throwable e) {
+                    log.error("evict the http connections exception", e);
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    protected void destroy() {
+        if (sweeper != null) {
+            sweeper.cancel();
+        }
+        poolMap.forEach((k, v) -> v.stop());
+        poolMap.clear();
+        scheduler.stop();
+    }
+}
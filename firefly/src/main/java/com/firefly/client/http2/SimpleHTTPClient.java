@@ -15,8 +15,6 @@ import com.firefly.utils.io.IO;
 import com.firefly.utils.json.Json;
 import com.firefly.utils.lang.AbstractLifeCycle;
 import com.firefly.utils.lang.pool.AsynchronousPool;
-import com.firefly.utils.lang.pool.BoundedAsynchronousPool;
-import com.firefly.utils.lang.pool.PooledObject;
 import com.firefly.utils.time.Millisecond100Clock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,7 +29,6 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 public class SimpleHTTPClient extends AbstractLifeCycle {
@@ -39,10 +36,10 @@ public class SimpleHTTPClient extends AbstractLifeCycle {
     private static Logger log = LoggerFactory.getLogger("firefly-system");
 
     private final HTTP2Client http2Client;
-    private final ConcurrentHashMap<RequestBuilder, AsynchronousPool<HTTPClientConnection>> poolMap = new ConcurrentHashMap<>();
     private final SimpleHTTPClientConfiguration simpleHTTPClientConfiguration;
     private final Timer responseTimer;
     private final Meter errorMeter;
+    private final HTTPClientConnectionManager connectionManager;
 
     public SimpleHTTPClient() {
         this(new SimpleHTTPClientConfiguration());
@@ -62,6 +59,8 @@ public class SimpleHTTPClient extends AbstractLifeCycle {
                 return Ratio.of(errorMeter.getOneMinuteRate(), responseTimer.getOneMinuteRate());
             }
         });
+
+        connectionManager = new HTTPClientConnectionManager(http2Client, http2Configuration);
         start();
     }
 
@@ -309,8 +308,7 @@ public class SimpleHTTPClient extends AbstractLifeCycle {
     }
 
     private void removePool(RequestBuilder req) {
-        AsynchronousPool<HTTPClientConnection> pool = poolMap.remove(req);
-        pool.stop();
+        connectionManager.removePool(req.host, req.port);
     }
 
     public int getConnectionPoolSize(String host, int port) {
@@ -337,7 +335,7 @@ public class SimpleHTTPClient extends AbstractLifeCycle {
     }
 
     private int _getPoolSize(RequestBuilder req) {
-        AsynchronousPool<HTTPClientConnection> pool = poolMap.get(req);
+        AsynchronousPool<HTTPClientConnection> pool = connectionManager.getExistingPool(req.host, req.port);
         if (pool != null) {
             return pool.size();
         } else {
@@ -543,27 +541,11 @@ public class SimpleHTTPClient extends AbstractLifeCycle {
     }
 
     private AsynchronousPool<HTTPClientConnection> getPool(RequestBuilder request) {
-        return poolMap.computeIfAbsent(request,
-                req -> new BoundedAsynchronousPool<>(simpleHTTPClientConfiguration.getPoolSize(),
-                        simpleHTTPClientConfiguration.getConnectTimeout(),
-                        () -> {
-                            Promise.Completable<PooledObject<HTTPClientConnection>> r = new Promise.Completable<>();
-                            Promise.Completable<HTTPClientConnection> c = http2Client.connect(request.host, request.port);
-                            c.thenAccept(conn -> r.succeeded(new PooledObject<>(conn)))
-                             .exceptionally(e -> {
-                                 r.failed(e);
-                                 return null;
-                             });
-                            return r;
-                        },
-                        o -> o.getObject().isOpen(),
-                        (o) -> {
-                            try {
-                                o.getObject().close();
-                            } catch (IOException e) {
-                                log.error("close http connection exception", e);
-                            }
-                        }));
+        return connectionManager.getPool(request.host, request.port);
+    }
+
+    public HTTPClientConnectionManager getConnectionManager() {
+        return connectionManager;
     }
 
     @Override
@@ -573,7 +555,7 @@ public class SimpleHTTPClient extends AbstractLifeCycle {
 
     @Override
     protected void destroy() {
+        connectionManager.stop();
         http2Client.stop();
-        poolMap.forEach((k, v) -> v.stop());
     }
 }
@@ -2,6 +2,9 @@ package com.firefly.client.http2;
 
 import com.firefly.codec.http2.stream.HTTP2Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * @author Pengtao Qiu
  */
@@ -10,8 +13,17 @@ public class SimpleHTTPClientConfiguration extends HTTP2Configuration {
     public static final int defaultPoolSize = Integer.getInteger("com.firefly.client.http2.connection.defaultPoolSize", 64);
     public static final long defaultConnectTimeout = Long.getLong("com.firefly.client.http2.connection.defaultConnectTimeout", 30 * 1000L);
 
+    public static final long defaultMaxIdleTime = Long.getLong("com.firefly.client.http2.connection.defaultMaxIdleTime", 60 * 1000L);
+    public static final long defaultEvictionInterval = Long.getLong("com.firefly.client.http2.connection.defaultEvictionInterval", 5 * 1000L);
+
     private int poolSize = defaultPoolSize;
     private long connectTimeout = defaultConnectTimeout;
+    private int maxConnections;
+    private int minIdle;
+    private long maxIdleTime = defaultMaxIdleTime;
+    private long maxLifetime;
+    private long evictionInterval = defaultEvictionInterval;
+    private List<String> preWarmUrls = new ArrayList<>();
 
     public int getPoolSize() {
         return poolSize;
@@ -28,4 +40,84 @@ public class SimpleHTTPClientConfiguration extends HTTP2Configuration {
     public void setConnectTimeout(long connectTimeout) {
         this.connectTimeout = connectTimeout;
     }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Set the max number of the connections of all the origins.
+     *
+     * @param maxConnections The max number of the connections, 0 means no limit.
+     */
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    /**
+     * Set the min number of the idle connections of every origin. The connection pool creates the connections
+     * in the background until the idle connections reach this number.
+     *
+     * @param minIdle The min number of the idle connections.
+     */
+    public void setMinIdle(int minIdle) {
+        this.minIdle = minIdle;
+    }
+
+    public long getMaxIdleTime() {
+        return maxIdleTime;
+    }
+
+    /**
+     * Set the max time that a connection stays idle in the pool.
+     *
+     * @param maxIdleTime The max idle time in milliseconds, 0 means no limit.
+     */
+    public void setMaxIdleTime(long maxIdleTime) {
+        this.maxIdleTime = maxIdleTime;
+    }
+
+    public long getMaxLifetime() {
+        return maxLifetime;
+    }
+
+    /**
+     * Set the max lifetime of a connection.
+     *
+     * @param maxLifetime The max lifetime in milliseconds, 0 means no limit.
+     */
+    public void setMaxLifetime(long maxLifetime) {
+        this.maxLifetime = maxLifetime;
+    }
+
+    public long getEvictionInterval() {
+        return evictionInterval;
+    }
+
+    /**
+     * Set the interval of the background sweeper that evicts the idle, expired and closed connections.
+     *
+     * @param evictionInterval The eviction interval in milliseconds, 0 disables the sweeper.
+     */
+    public void setEvictionInterval(long evictionInterval) {
+        this.evictionInterval = evictionInterval;
+    }
+
+    public List<String> getPreWarmUrls() {
+        return preWarmUrls;
+    }
+
+    /**
+     * Set the origins that are warmed up when the client starts, the pools of these origins create
+     * the min idle connections.
+     *
+     * @param preWarmUrls The URLs of the origins.
+     */
+    public void setPreWarmUrls(List<String> preWarmUrls) {
+        this.preWarmUrls = preWarmUrls;
+    }
 }
@@ -3,26 +3,40 @@ package com.firefly.codec.http2.decode;
 import java.nio.ByteBuffer;
 
 import com.firefly.codec.http2.frame.PriorityFrame;
+import com.firefly.net.BufferPool;
 
 public class HeaderBlockFragments {
+	private final BufferPool bufferPool;
 	private PriorityFrame priorityFrame;
 	private boolean endStream;
 	private int streamId;
 	private ByteBuffer storage;
 
+	public HeaderBlockFragments() {
+		this(null);
+	}
+
+	/**
+	 * @param bufferPool The pool of the buffers that store the fragments. If it is null, the buffers are allocated.
+	 */
+	public HeaderBlockFragments(BufferPool bufferPool) {
+		this.bufferPool = bufferPool;
+	}
+
 	public void storeFragment(ByteBuffer fragment, int length, boolean last) {
 		if (storage == null) {
 			int space = last ? length : length * 2;
-			storage = ByteBuffer.allocate(space);
+			storage = acquire(space);
 		}
 
 		// Grow the storage if necessary.
 		if (storage.remaining() < length) {
 			int space = last ? length : length * 2;
 			int capacity = storage.position() + space;
-			ByteBuffer newStorage = ByteBuffer.allocate(capacity);
+			ByteBuffer newStorage = acquire(capacity);
 			storage.flip();
 			newStorage.put(storage);
+			release(storage);
 			storage = newStorage;
 		}
 
@@ -33,6 +47,27 @@ public class HeaderBlockFragments {
 		fragment.limit(limit);
 	}
 
+	private ByteBuffer acquire(int capacity) {
+		if (bufferPool == null) {
+			return ByteBuffer.allocate(capacity);
+		} else {
+			ByteBuffer buffer = bufferPool.acquire(capacity);
+			buffer.clear().limit(capacity);
+			return buffer;
+		}
+	}
+
+	/**
+	 * Release the header block that is returned by {@link #complete()} after it is decoded.
+	 *
+	 * @param headerBlock The header block.
+	 */
+	public void release(ByteBuffer headerBlock) {
+		if (bufferPool != null) {
+			bufferPool.release(headerBlock);
+		}
+	}
+
 	public PriorityFrame getPriorityFrame() {
 		return priorityFrame;
 	}
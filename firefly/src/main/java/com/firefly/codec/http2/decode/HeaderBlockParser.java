@@ -4,14 +4,26 @@ import java.nio.ByteBuffer;
 
 import com.firefly.codec.http2.hpack.HpackDecoder;
 import com.firefly.codec.http2.model.MetaData;
+import com.firefly.net.BufferPool;
 import com.firefly.utils.io.BufferUtils;
 
 public class HeaderBlockParser {
 	private final HpackDecoder hpackDecoder;
+	private final BufferPool bufferPool;
 	private ByteBuffer blockBuffer;
 
 	public HeaderBlockParser(HpackDecoder hpackDecoder) {
+		this(hpackDecoder, null);
+	}
+
+	/**
+	 * @param hpackDecoder The HPACK decoder.
+	 * @param bufferPool   The pool of the buffers that accumulate the partial header blocks. If it is null, the buffers
+	 *                     are allocated.
+	 */
+	public HeaderBlockParser(HpackDecoder hpackDecoder, BufferPool bufferPool) {
 		this.hpackDecoder = hpackDecoder;
+		this.bufferPool = bufferPool;
 	}
 
 	public MetaData parse(ByteBuffer buffer, int blockLength) {
@@ -24,8 +36,14 @@ public class HeaderBlockParser {
 
 		if (buffer.remaining() < remaining) {
 			if (blockBuffer == null) {
-				blockBuffer = ByteBuffer.allocate(blockLength);
-				BufferUtils.clearToFill(blockBuffer);
+				if (bufferPool == null) {
+					blockBuffer = ByteBuffer.allocate(blockLength);
+					BufferUtils.clearToFill(blockBuffer);
+				} else {
+					blockBuffer = bufferPool.acquire(blockLength);
+					BufferUtils.clearToFill(blockBuffer);
+					blockBuffer.limit(blockLength);
+				}
 			}
 			blockBuffer.put(buffer);
 			return null;
@@ -41,13 +59,18 @@ public class HeaderBlockParser {
 				toDecode = buffer;
 			}
 
-			MetaData result = hpackDecoder.decode(toDecode);
-			buffer.limit(limit);
-			
-			if(blockBuffer != null) {
-				blockBuffer = null;
+			try {
+				MetaData result = hpackDecoder.decode(toDecode);
+				buffer.limit(limit);
+				return result;
+			} finally {
+				if (blockBuffer != null) {
+					if (bufferPool != null) {
+						bufferPool.release(blockBuffer);
+					}
+					blockBuffer = null;
+				}
 			}
-			return result;
 		}
 	}
 }
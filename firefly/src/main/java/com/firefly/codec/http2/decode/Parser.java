@@ -2,6 +2,7 @@ package com.firefly.codec.http2.decode;
 
 import com.firefly.codec.http2.frame.*;
 import com.firefly.codec.http2.hpack.HpackDecoder;
+import com.firefly.net.BufferPool;
 import com.firefly.utils.io.BufferUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,12 +28,23 @@ public class Parser {
 	private State state = State.HEADER;
 
 	public Parser(Listener listener, int maxDynamicTableSize, int maxHeaderSize) {
+		this(listener, maxDynamicTableSize, maxHeaderSize, null);
+	}
+
+	/**
+	 * @param listener            The frame listener.
+	 * @param maxDynamicTableSize The max size of the HPACK dynamic table.
+	 * @param maxHeaderSize       The max size of the header block.
+	 * @param bufferPool          The pool of the buffers that accumulate the header blocks. If it is null, the
+	 *                            buffers are allocated.
+	 */
+	public Parser(Listener listener, int maxDynamicTableSize, int maxHeaderSize, BufferPool bufferPool) {
 		this.listener = listener;
 		this.headerParser = new HeaderParser();
 		this.bodyParsers = new BodyParser[FrameType.values().length];
 		
-		HeaderBlockParser headerBlockParser = new HeaderBlockParser(new HpackDecoder(maxDynamicTableSize, maxHeaderSize));
-        HeaderBlockFragments headerBlockFragments = new HeaderBlockFragments();
+		HeaderBlockParser headerBlockParser = new HeaderBlockParser(new HpackDecoder(maxDynamicTableSize, maxHeaderSize), bufferPool);
+        HeaderBlockFragments headerBlockFragments = new HeaderBlockFragments(bufferPool);
 
 		bodyParsers[FrameType.DATA.getType()] = new DataBodyParser(headerParser, listener);
 		bodyParsers[FrameType.HEADERS.getType()] = new HeadersBodyParser(headerParser, listener, headerBlockParser, headerBlockFragments);
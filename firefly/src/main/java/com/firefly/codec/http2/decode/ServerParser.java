@@ -3,6 +3,7 @@ package com.firefly.codec.http2.decode;
 import com.firefly.codec.http2.frame.ErrorCode;
 import com.firefly.codec.http2.frame.Flags;
 import com.firefly.codec.http2.frame.FrameType;
+import com.firefly.net.BufferPool;
 import com.firefly.utils.io.BufferUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,7 +19,11 @@ public class ServerParser extends Parser {
 	private boolean notifyPreface = true;
 
 	public ServerParser(Listener listener, int maxDynamicTableSize, int maxHeaderSize) {
-		super(listener, maxDynamicTableSize, maxHeaderSize);
+		this(listener, maxDynamicTableSize, maxHeaderSize, null);
+	}
+
+	public ServerParser(Listener listener, int maxDynamicTableSize, int maxHeaderSize, BufferPool bufferPool) {
+		super(listener, maxDynamicTableSize, maxHeaderSize, bufferPool);
 		this.listener = listener;
 		this.prefaceParser = new PrefaceParser(listener);
 	}
@@ -55,8 +55,7 @@ public class DataGenerator {
 		if (last)
 			flags |= Flags.END_STREAM;
 
-		ByteBuffer header = headerGenerator.generate(FrameType.DATA, Frame.HEADER_LENGTH + length, length, flags,
-				streamId);
+		ByteBuffer header = headerGenerator.generate(FrameType.DATA, Frame.HEADER_LENGTH, length, flags, streamId);
 
 		BufferUtils.flipToFlush(header, 0);
 		list.add(header);
@@ -5,6 +5,9 @@ import java.util.List;
 
 import com.firefly.codec.http2.frame.Frame;
 import com.firefly.codec.http2.frame.FrameType;
+import com.firefly.codec.http2.hpack.HpackEncoder;
+import com.firefly.codec.http2.model.MetaData;
+import com.firefly.utils.io.BufferUtils;
 
 public abstract class FrameGenerator {
 	private final HeaderGenerator headerGenerator;
@@ -21,5 +24,41 @@ public abstract class FrameGenerator {
 		return headerGenerator.generate(frameType, Frame.HEADER_LENGTH + length, length, flags, streamId);
 	}
 
+	/**
+	 * Encode the header block. If the generator has a buffer pool, the block
+	 * is encoded into a temporary buffer of the max length and then copied
+	 * into a leased buffer that fits the encoded bytes, so the header block
+	 * does not hold a buffer of the max frame size until it is written.
+	 * 
+	 * @param encoder
+	 *            The HPACK encoder.
+	 * @param metaData
+	 *            The header fields.
+	 * @param maxLength
+	 *            The max length of the header block.
+	 * @return The encoded header block in flush mode.
+	 */
+	protected ByteBuffer encodeHeaderBlock(HpackEncoder encoder, MetaData metaData, int maxLength) {
+		if (headerGenerator.getBufferPool() == null) {
+			ByteBuffer hpacked = ByteBuffer.allocate(maxLength);
+			BufferUtils.clearToFill(hpacked);
+			encoder.encode(hpacked, metaData);
+			BufferUtils.flipToFlush(hpacked, 0);
+			return hpacked;
+		}
+
+		ByteBuffer temporary = headerGenerator.acquireTemporary(maxLength);
+		try {
+			encoder.encode(temporary, metaData);
+			temporary.flip();
+			ByteBuffer hpacked = headerGenerator.acquire(temporary.remaining());
+			hpacked.put(temporary);
+			hpacked.flip();
+			return hpacked;
+		} finally {
+			headerGenerator.releaseTemporary(temporary);
+		}
+	}
+
 	public abstract List<ByteBuffer> generate(Frame frame);
 }
@@ -1,12 +1,14 @@
 package com.firefly.codec.http2.encode;
 
 import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.List;
 
 import com.firefly.codec.http2.frame.DataFrame;
 import com.firefly.codec.http2.frame.Frame;
 import com.firefly.codec.http2.frame.FrameType;
 import com.firefly.codec.http2.hpack.HpackEncoder;
+import com.firefly.net.BufferPool;
 import com.firefly.utils.lang.Pair;
 
 public class Generator {
@@ -20,8 +22,26 @@ public class Generator {
 	}
 
 	public Generator(int maxDynamicTableSize, int maxHeaderBlockFragment) {
+		this(maxDynamicTableSize, maxHeaderBlockFragment, null);
+	}
+
+	/**
+	 * Create the HTTP2 frame generator.
+	 * 
+	 * @param maxDynamicTableSize
+	 *            The max HPACK dynamic table size.
+	 * @param maxHeaderBlockFragment
+	 *            The max length of the header block fragment.
+	 * @param bufferPool
+	 *            The heap buffer pool of the frame headers and the header
+	 *            blocks. The generated buffers are leased, the writer takes
+	 *            them by {@link #takeLeasedBuffers(Collection)} and releases
+	 *            them after the frames are written. If it is null, the
+	 *            generator allocates the buffers.
+	 */
+	public Generator(int maxDynamicTableSize, int maxHeaderBlockFragment, BufferPool bufferPool) {
 
-		headerGenerator = new HeaderGenerator();
+		headerGenerator = new HeaderGenerator(bufferPool);
 		hpackEncoder = new HpackEncoder(maxDynamicTableSize);
 
 		this.generators = new FrameGenerator[FrameType.values().length];
@@ -40,6 +60,14 @@ public class Generator {
 		this.dataGenerator = new DataGenerator(headerGenerator);
 	}
 
+	public void takeLeasedBuffers(Collection<ByteBuffer> buffers) {
+		headerGenerator.takeLeasedBuffers(buffers);
+	}
+
+	public void release(Collection<ByteBuffer> buffers) {
+		headerGenerator.release(buffers);
+	}
+
 	public void setHeaderTableSize(int headerTableSize) {
 		hpackEncoder.setRemoteMaxDynamicTableSize(headerTableSize);
 	}
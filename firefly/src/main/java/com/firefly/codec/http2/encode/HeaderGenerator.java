@@ -1,15 +1,36 @@
 package com.firefly.codec.http2.encode;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 import com.firefly.codec.http2.frame.Frame;
 import com.firefly.codec.http2.frame.FrameType;
+import com.firefly.net.BufferPool;
 
 public class HeaderGenerator {
 	private int maxFrameSize = Frame.DEFAULT_MAX_LENGTH;
-	
+	private final BufferPool bufferPool;
+	private final List<ByteBuffer> leased = new ArrayList<>();
+
+	public HeaderGenerator() {
+		this(null);
+	}
+
+	/**
+	 * Create the frame header generator.
+	 * 
+	 * @param bufferPool
+	 *            The pool of the generated buffers, it must allocate the heap
+	 *            buffers. If it is null, the generator allocates the buffers.
+	 */
+	public HeaderGenerator(BufferPool bufferPool) {
+		this.bufferPool = bufferPool;
+	}
+
 	public ByteBuffer generate(FrameType frameType, int capacity, int length, int flags, int streamId) {
-		ByteBuffer header = ByteBuffer.allocate(capacity);
+		ByteBuffer header = acquire(capacity);
 		header.put((byte)((length & 0x00_FF_00_00) >>> 16));
         header.put((byte)((length & 0x00_00_FF_00) >>> 8));
         header.put((byte)((length & 0x00_00_00_FF)));
@@ -19,6 +40,78 @@ public class HeaderGenerator {
         return header;
 	}
 
+	/**
+	 * Acquire a buffer for the generated frame. The pooled buffer is leased
+	 * until the writer releases it.
+	 * 
+	 * @param capacity
+	 *            The min capacity.
+	 * @return The buffer in fill mode, its limit is the capacity.
+	 */
+	public ByteBuffer acquire(int capacity) {
+		if (bufferPool == null) {
+			return ByteBuffer.allocate(capacity);
+		}
+
+		ByteBuffer buffer = bufferPool.acquire(capacity);
+		buffer.limit(capacity);
+		leased.add(buffer);
+		return buffer;
+	}
+
+	/**
+	 * Acquire a temporary buffer that is released by the generator itself.
+	 * 
+	 * @param capacity
+	 *            The min capacity.
+	 * @return The buffer in fill mode, its limit is the capacity.
+	 */
+	ByteBuffer acquireTemporary(int capacity) {
+		if (bufferPool == null) {
+			return ByteBuffer.allocate(capacity);
+		}
+
+		ByteBuffer buffer = bufferPool.acquire(capacity);
+		buffer.limit(capacity);
+		return buffer;
+	}
+
+	void releaseTemporary(ByteBuffer buffer) {
+		if (bufferPool != null) {
+			bufferPool.release(buffer);
+		}
+	}
+
+	/**
+	 * Move the leased buffers that are generated since the last call to the
+	 * collection. They must not be released until the frames are written.
+	 * 
+	 * @param buffers
+	 *            Receives the leased buffers.
+	 */
+	public void takeLeasedBuffers(Collection<ByteBuffer> buffers) {
+		if (!leased.isEmpty()) {
+			buffers.addAll(leased);
+			leased.clear();
+		}
+	}
+
+	/**
+	 * Return the leased buffers to the pool.
+	 * 
+	 * @param buffers
+	 *            The leased buffers.
+	 */
+	public void release(Collection<ByteBuffer> buffers) {
+		if (bufferPool != null) {
+			buffers.forEach(bufferPool::release);
+		}
+	}
+
+	public BufferPool getBufferPool() {
+		return bufferPool;
+	}
+
 	public int getMaxFrameSize() {
 		return maxFrameSize;
 	}
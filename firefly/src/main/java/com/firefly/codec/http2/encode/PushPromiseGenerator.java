@@ -39,11 +39,8 @@ public class PushPromiseGenerator extends FrameGenerator {
 		int extraSpace = 4;
 		maxFrameSize -= extraSpace;
 
-		ByteBuffer hpacked = ByteBuffer.allocate(maxFrameSize);
-		BufferUtils.clearToFill(hpacked);
-		encoder.encode(hpacked, metaData);
-		int hpackedLength = hpacked.position();
-		BufferUtils.flipToFlush(hpacked, 0);
+		ByteBuffer hpacked = encodeHeaderBlock(encoder, metaData, maxFrameSize);
+		int hpackedLength = hpacked.remaining();
 
 		int length = hpackedLength + extraSpace;
 		int flags = Flags.END_HEADERS;
@@ -6,15 +6,23 @@ import com.firefly.codec.http2.decode.HttpParser.ResponseHandler;
 import com.firefly.codec.http2.encode.Generator;
 import com.firefly.codec.http2.encode.HttpGenerator;
 import com.firefly.codec.http2.model.HttpVersion;
+import com.firefly.net.BufferPool;
 import com.firefly.net.Session;
 import com.firefly.net.tcp.ssl.SSLSession;
+import com.firefly.utils.io.BufferUtils;
+
+import java.nio.ByteBuffer;
 
 abstract public class AbstractHTTP1Connection extends AbstractHTTPConnection {
 
+    public static final int DEFAULT_HEADER_SIZE_ESTIMATE = 256;
+
     protected final HttpParser parser;
     protected final HttpGenerator generator;
     protected final Generator http2Generator;
     protected final HTTP2Configuration config;
+    protected final BufferPool bufferPool;
+    private volatile int headerSizeEstimate = DEFAULT_HEADER_SIZE_ESTIMATE;
 
     public AbstractHTTP1Connection(HTTP2Configuration config, SSLSession sslSession, Session tcpSession,
                                    RequestHandler requestHandler, ResponseHandler responseHandler) {
@@ -24,6 +32,60 @@ abstract public class AbstractHTTP1Connection extends AbstractHTTPConnection {
         parser = initHttpParser(config, requestHandler, responseHandler);
         generator = initHttpGenerator();
         http2Generator = new Generator(config.getMaxDynamicTableSize(), config.getMaxHeaderBlockFragment());
+        bufferPool = config.getHttp1BufferPool();
+    }
+
+    /**
+     * Acquire the buffer of the message head. The capacity is estimated from the heads that the connection generated
+     * before, so the small messages do not take the buffers of the max head length.
+     *
+     * @param maxLength The max length of the message head.
+     * @return The empty buffer in the flush mode.
+     */
+    public ByteBuffer acquireHeaderBuffer(int maxLength) {
+        int estimate = headerSizeEstimate;
+        return acquireBuffer(Math.min(maxLength, estimate + (estimate >> 1)));
+    }
+
+    /**
+     * Update the estimate of the head size. The estimate grows to the larger head immediately, and decays slowly
+     * to the smaller head.
+     *
+     * @param size The length of the generated message head.
+     */
+    public void updateHeaderSizeEstimate(int size) {
+        int estimate = headerSizeEstimate;
+        if (size > estimate) {
+            headerSizeEstimate = size;
+        } else {
+            headerSizeEstimate = Math.max(DEFAULT_HEADER_SIZE_ESTIMATE, estimate - ((estimate - size) >> 3));
+        }
+    }
+
+    public int getHeaderSizeEstimate() {
+        return headerSizeEstimate;
+    }
+
+    /**
+     * Acquire the buffer from the HTTP1 buffer pool.
+     *
+     * @param capacity The min capacity of the buffer.
+     * @return The empty buffer in the flush mode.
+     */
+    public ByteBuffer acquireBuffer(int capacity) {
+        if (bufferPool == null) {
+            return BufferUtils.allocate(capacity);
+        } else {
+            ByteBuffer buffer = bufferPool.acquire(capacity);
+            BufferUtils.clear(buffer);
+            return buffer;
+        }
+    }
+
+    public void releaseBuffer(ByteBuffer buffer) {
+        if (bufferPool != null) {
+            bufferPool.release(buffer);
+        }
     }
 
     @Override
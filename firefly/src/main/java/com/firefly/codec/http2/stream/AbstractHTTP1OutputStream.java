@@ -1,15 +1,20 @@
 package com.firefly.codec.http2.stream;
 
 import com.firefly.codec.http2.encode.HttpGenerator;
+import com.firefly.codec.http2.model.BadMessageException;
 import com.firefly.codec.http2.model.MetaData;
+import com.firefly.net.ByteBufferOutputEntry;
 import com.firefly.net.Session;
-import com.firefly.utils.io.BufferUtils;
+import com.firefly.utils.concurrent.Callback;
 
 import java.io.IOException;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 
 abstract public class AbstractHTTP1OutputStream extends HTTPOutputStream {
 
+    private ByteBuffer header;
+
     public AbstractHTTP1OutputStream(MetaData info, boolean clientMode) {
         super(info, clientMode);
     }
@@ -29,16 +34,16 @@ abstract public class AbstractHTTP1OutputStream extends HTTPOutputStream {
         final HttpGenerator generator = getHttpGenerator();
         final Session tcpSession = getSession();
         HttpGenerator.Result generatorResult;
-        ByteBuffer header = getHeaderByteBuffer();
 
-        generatorResult = generate(info, header, null, data, false);
+        generatorResult = generateHeader(info, data, false);
         if (generatorResult == HttpGenerator.Result.FLUSH && generator.getState() == HttpGenerator.State.COMMITTED) {
-            tcpSession.encode(header);
+            writePooledBuffer(takeHeader());
             if (data != null) {
                 tcpSession.encode(data);
             }
             committed = true;
         } else {
+            releaseBuffer(takeHeader());
             generateHTTPMessageExceptionally(generatorResult, generator.getState());
         }
     }
@@ -59,13 +64,14 @@ abstract public class AbstractHTTP1OutputStream extends HTTPOutputStream {
             commit(data);
         } else {
             if (generator.isChunking()) {
-                ByteBuffer chunk = BufferUtils.allocate(HttpGenerator.CHUNK_SIZE);
+                ByteBuffer chunk = getChunkByteBuffer();
 
                 generatorResult = generate(null, null, chunk, data, false);
                 if (generatorResult == HttpGenerator.Result.FLUSH && generator.getState() == HttpGenerator.State.COMMITTED) {
-                    tcpSession.encode(chunk);
+                    writePooledBuffer(chunk);
                     tcpSession.encode(data);
                 } else {
+                    releaseBuffer(chunk);
                     generateHTTPMessageExceptionally(generatorResult, generator.getState());
                 }
             } else {
@@ -91,12 +97,12 @@ abstract public class AbstractHTTP1OutputStream extends HTTPOutputStream {
             HttpGenerator.Result generatorResult;
 
             if (!committed) {
-                ByteBuffer header = getHeaderByteBuffer();
-                generatorResult = generate(info, header, null, null, true);
+                generatorResult = generateHeader(info, null, true);
                 if (generatorResult == HttpGenerator.Result.FLUSH && generator.getState() == HttpGenerator.State.COMPLETING) {
-                    tcpSession.encode(header);
+                    writePooledBuffer(takeHeader());
                     generateLastData(generator);
                 } else {
+                    releaseBuffer(takeHeader());
                     generateHTTPMessageExceptionally(generatorResult, generator.getState());
                 }
                 committed = true;
@@ -129,12 +135,13 @@ abstract public class AbstractHTTP1OutputStream extends HTTPOutputStream {
     }
 
     private void generateLastChunk(HttpGenerator generator, Session tcpSession) throws IOException {
-        ByteBuffer chunk = BufferUtils.allocate(HttpGenerator.CHUNK_SIZE);
+        ByteBuffer chunk = getChunkByteBuffer();
         HttpGenerator.Result generatorResult = generate(null, null, chunk, null, true);
         if (generatorResult == HttpGenerator.Result.FLUSH && generator.getState() == HttpGenerator.State.COMPLETING) {
-            tcpSession.encode(chunk);
+            writePooledBuffer(chunk);
             generateLastData(generator);
         } else {
+            releaseBuffer(chunk);
             generateHTTPMessageExceptionally(generatorResult, generator.getState());
         }
     }
@@ -143,9 +150,10 @@ abstract public class AbstractHTTP1OutputStream extends HTTPOutputStream {
         ByteBuffer trailer = getTrailerByteBuffer();
         HttpGenerator.Result generatorResult = generate(null, null, trailer, null, true);
         if (generatorResult == HttpGenerator.Result.FLUSH && generator.getState() == HttpGenerator.State.COMPLETING) {
-            tcpSession.encode(trailer);
+            writePooledBuffer(trailer);
             generateLastData(generator);
         } else {
+            releaseBuffer(trailer);
             generateHTTPMessageExceptionally(generatorResult, generator.getState());
         }
     }
@@ -156,7 +164,7 @@ abstract public class AbstractHTTP1OutputStream extends HTTPOutputStream {
             if (generatorResult == HttpGenerator.Result.DONE) {
                 generateHTTPMessageSuccessfully();
             } else if (generatorResult == HttpGenerator.Result.SHUTDOWN_OUT) {
-                getSession().close();
+                closeSession();
             } else {
                 generateHTTPMessageExceptionally(generatorResult, generator.getState());
             }
@@ -165,6 +173,10 @@ abstract public class AbstractHTTP1OutputStream extends HTTPOutputStream {
         }
     }
 
+    protected void closeSession() {
+        getSession().close();
+    }
+
     protected HttpGenerator.Result generate(MetaData info, ByteBuffer header, ByteBuffer chunk, ByteBuffer content,
                                             boolean last) throws IOException {
         final HttpGenerator generator = getHttpGenerator();
@@ -175,9 +187,87 @@ abstract public class AbstractHTTP1OutputStream extends HTTPOutputStream {
         }
     }
 
-    abstract protected ByteBuffer getHeaderByteBuffer();
+    /**
+     * Generate the message head into a buffer of the estimated size. If the head overflows the buffer, it is generated
+     * again into a buffer of the max head length. The generated head is taken by {@link #takeHeader()}.
+     *
+     * @param info    The message head.
+     * @param content The content that is written with the head.
+     * @param last    Whether the message is completed.
+     * @return The generator result.
+     * @throws IOException The generator error.
+     */
+    protected HttpGenerator.Result generateHeader(MetaData info, ByteBuffer content, boolean last) throws IOException {
+        final AbstractHTTP1Connection connection = getHTTP1Connection();
+        final int maxLength = getMaxHeaderLength();
+        header = connection.acquireHeaderBuffer(maxLength);
+        HttpGenerator.Result generatorResult;
+        try {
+            generatorResult = generate(info, header, null, content, last);
+        } catch (BadMessageException e) {
+            if (!(e.getCause() instanceof BufferOverflowException) || header.capacity() >= maxLength) {
+                releaseBuffer(takeHeader());
+                throw e;
+            }
+
+            // the generator is still in the START state, the head is generated again
+            releaseBuffer(header);
+            header = connection.acquireBuffer(maxLength);
+            try {
+                generatorResult = generate(info, header, null, content, last);
+            } catch (BadMessageException x) {
+                releaseBuffer(takeHeader());
+                throw x;
+            }
+        }
+        connection.updateHeaderSizeEstimate(header.remaining());
+        return generatorResult;
+    }
+
+    protected ByteBuffer takeHeader() {
+        ByteBuffer buffer = header;
+        header = null;
+        return buffer;
+    }
+
+    protected ByteBuffer getTrailerByteBuffer() {
+        return getHTTP1Connection().acquireBuffer(getMaxTrailerLength());
+    }
+
+    protected ByteBuffer getChunkByteBuffer() {
+        return getHTTP1Connection().acquireBuffer(HttpGenerator.CHUNK_SIZE);
+    }
+
+    /**
+     * Write the pooled buffer, the buffer is returned to the pool after the TCP session writes it.
+     *
+     * @param buffer The buffer that is acquired from the HTTP1 connection.
+     */
+    protected void writePooledBuffer(ByteBuffer buffer) {
+        getSession().encode(new ByteBufferOutputEntry(new Callback() {
+            @Override
+            public void succeeded() {
+                releaseBuffer(buffer);
+            }
+
+            @Override
+            public void failed(Throwable x) {
+                releaseBuffer(buffer);
+            }
+        }, buffer));
+    }
+
+    protected void releaseBuffer(ByteBuffer buffer) {
+        if (buffer != null) {
+            getHTTP1Connection().releaseBuffer(buffer);
+        }
+    }
+
+    abstract protected AbstractHTTP1Connection getHTTP1Connection();
+
+    abstract protected int getMaxHeaderLength();
 
-    abstract protected ByteBuffer getTrailerByteBuffer();
+    abstract protected int getMaxTrailerLength();
 
     abstract protected Session getSession();
 
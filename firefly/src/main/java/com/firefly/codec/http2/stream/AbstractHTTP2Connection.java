@@ -39,7 +39,8 @@ abstract public class AbstractHTTP2Connection extends AbstractHTTPConnection {
                 flowControl = new SimpleFlowControlStrategy(config.getInitialStreamSendWindow());
                 break;
         }
-        this.generator = new Generator(config.getMaxDynamicTableSize(), config.getMaxHeaderBlockFragment());
+        this.generator = new Generator(config.getMaxDynamicTableSize(), config.getMaxHeaderBlockFragment(),
+                config.getFrameBufferPool());
         this.http2Session = initHTTP2Session(config, flowControl, listener);
         this.parser = initParser(config);
     }
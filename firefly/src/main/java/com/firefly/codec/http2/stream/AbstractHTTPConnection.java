@@ -76,6 +76,16 @@ abstract public class AbstractHTTPConnection implements HTTPConnection {
         return sslSession != null;
     }
 
+    @Override
+    public void suspendRead() {
+        tcpSession.suspendRead();
+    }
+
+    @Override
+    public void resumeRead() {
+        tcpSession.resumeRead();
+    }
+
     @Override
     public int getSessionId() {
         return tcpSession.getSessionId();
@@ -2,6 +2,7 @@ package com.firefly.codec.http2.stream;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * @author Pengtao Qiu
@@ -53,6 +54,22 @@ public class BufferedHTTPOutputStream extends OutputStream {
         count += length;
     }
 
+    /**
+     * Flush the buffered data and write the buffer to the HTTP output stream without copying it.
+     * The buffer must not be modified until it is written.
+     *
+     * @param buffer The data buffer.
+     * @throws IOException Write data exception
+     */
+    public synchronized void write(ByteBuffer buffer) throws IOException {
+        if (buffer == null || !buffer.hasRemaining()) {
+            return;
+        }
+
+        flush();
+        output.write(buffer);
+    }
+
     @Override
     public synchronized void flush() throws IOException {
         if (count > 0) {
@@ -1,6 +1,9 @@
 package com.firefly.codec.http2.stream;
 
+import com.firefly.net.BufferPool;
 import com.firefly.net.SSLContextFactory;
+import com.firefly.net.buffer.SizeClassedBufferPool;
+import com.firefly.net.tcp.ssl.SSLHandshakeExecutor;
 import com.firefly.net.tcp.ssl.SelfSignedCertificateOpenSSLContextFactory;
 
 public class HTTP2Configuration {
@@ -11,6 +14,7 @@ public class HTTP2Configuration {
     // SSL/TLS settings
     private boolean isSecureConnectionEnabled;
     private SSLContextFactory sslContextFactory = new SelfSignedCertificateOpenSSLContextFactory();
+    private SSLHandshakeExecutor sslHandshakeExecutor;
 
     // HTTP settings
     private int maxDynamicTableSize = 4096;
@@ -19,7 +23,11 @@ public class HTTP2Configuration {
     private int initialStreamSendWindow = FlowControlStrategy.DEFAULT_WINDOW_SIZE;
     private int initialSessionRecvWindow = FlowControlStrategy.DEFAULT_WINDOW_SIZE;
     private int maxConcurrentStreams = -1;
+    private int flushQuantum = HTTP2Flusher.DEFAULT_QUANTUM;
+    private boolean pipelinedResponseBatching;
     private int maxHeaderBlockFragment = 0;
+    private BufferPool frameBufferPool;
+    private BufferPool http1BufferPool;
     private int maxRequestHeadLength = 4 * 1024;
     private int maxRequestTrailerLength = 4 * 1024;
     private int maxResponseHeadLength = 4 * 1024;
@@ -83,6 +91,36 @@ public class HTTP2Configuration {
         this.maxConcurrentStreams = maxConcurrentStreams;
     }
 
+    public int getFlushQuantum() {
+        return flushQuantum;
+    }
+
+    /**
+     * Set the max bytes of the DATA frames that a connection writes in one flush. The bytes are divided among
+     * the streams by their priorities. The smaller quantum lets the new streams start sooner, the larger quantum
+     * writes the bulk data with fewer system calls.
+     *
+     * @param flushQuantum The max bytes of the DATA frames in one flush.
+     */
+    public void setFlushQuantum(int flushQuantum) {
+        this.flushQuantum = flushQuantum;
+    }
+
+    public boolean isPipelinedResponseBatching() {
+        return pipelinedResponseBatching;
+    }
+
+    /**
+     * Enable the pipelined response batching of the HTTP1 server. The responses that are completed while the server
+     * parses the requests of a read buffer are written as one gathered write at the end of the buffer. It saves the
+     * system calls of the pipelined requests. It does not apply to the TLS connections.
+     *
+     * @param pipelinedResponseBatching If true, the HTTP1 server batches the pipelined responses.
+     */
+    public void setPipelinedResponseBatching(boolean pipelinedResponseBatching) {
+        this.pipelinedResponseBatching = pipelinedResponseBatching;
+    }
+
     public int getMaxHeaderBlockFragment() {
         return maxHeaderBlockFragment;
     }
@@ -91,6 +129,49 @@ public class HTTP2Configuration {
         this.maxHeaderBlockFragment = maxHeaderBlockFragment;
     }
 
+    /**
+     * Get the buffer pool of the frame headers and the HPACK header blocks. If the pool is not set, a heap buffer
+     * pool that reports the metrics "buffer.http2.frame.*" is created.
+     *
+     * @return The buffer pool of the HTTP2 frames.
+     */
+    public synchronized BufferPool getFrameBufferPool() {
+        if (frameBufferPool == null) {
+            // the HPACK encoder writes the backing array directly, so the buffers are heap buffers
+            frameBufferPool = new SizeClassedBufferPool(tcpConfiguration.getMetricReporterFactory(), "http2.frame",
+                    false, 64, 64 * 1024, 64, Runtime.getRuntime().availableProcessors() * 2);
+        }
+        return frameBufferPool;
+    }
+
+    /**
+     * Set the buffer pool of the frame headers and the HPACK header blocks. The pool must allocate the heap buffers.
+     *
+     * @param frameBufferPool The buffer pool of the HTTP2 frames.
+     */
+    public void setFrameBufferPool(BufferPool frameBufferPool) {
+        this.frameBufferPool = frameBufferPool;
+    }
+
+    /**
+     * Get the buffer pool of the HTTP1 message heads, trailers and chunk sizes. If the pool is not set, a heap buffer
+     * pool that reports the metrics "buffer.http1.message.*" is created. The pool is striped by the thread, so the
+     * connections that run in the same thread reuse the same buffers.
+     *
+     * @return The buffer pool of the HTTP1 messages.
+     */
+    public synchronized BufferPool getHttp1BufferPool() {
+        if (http1BufferPool == null) {
+            http1BufferPool = new SizeClassedBufferPool(tcpConfiguration.getMetricReporterFactory(), "http1.message",
+                    false, 64, 64 * 1024, 64, Runtime.getRuntime().availableProcessors() * 2);
+        }
+        return http1BufferPool;
+    }
+
+    public void setHttp1BufferPool(BufferPool http1BufferPool) {
+        this.http1BufferPool = http1BufferPool;
+    }
+
     public int getMaxRequestHeadLength() {
         return maxRequestHeadLength;
     }
@@ -147,6 +228,20 @@ public class HTTP2Configuration {
         this.sslContextFactory = sslContextFactory;
     }
 
+    public SSLHandshakeExecutor getSslHandshakeExecutor() {
+        return sslHandshakeExecutor;
+    }
+
+    /**
+     * Set the executor that runs the delegated tasks of the TLS handshakes. If it is null, the tasks run in the I/O
+     * threads.
+     *
+     * @param sslHandshakeExecutor The handshake executor.
+     */
+    public void setSslHandshakeExecutor(SSLHandshakeExecutor sslHandshakeExecutor) {
+        this.sslHandshakeExecutor = sslHandshakeExecutor;
+    }
+
     public String getProtocol() {
         return protocol;
     }
@@ -1,6 +1,7 @@
 package com.firefly.codec.http2.stream;
 
 import com.firefly.codec.http2.frame.Frame;
+import com.firefly.codec.http2.frame.FrameType;
 import com.firefly.codec.http2.frame.WindowUpdateFrame;
 import com.firefly.net.ByteBufferArrayOutputEntry;
 import com.firefly.utils.concurrent.Callback;
@@ -13,22 +14,57 @@ import org.slf4j.LoggerFactory;
 import java.nio.ByteBuffer;
 import java.util.*;
 
+/**
+ * The flusher writes the control frames first in the FIFO order. The DATA frames are scheduled by the stream
+ * priorities, every iteration writes at most the quantum bytes of DATA, the quantum is divided among the streams
+ * in proportion to their shares of the {@link HTTP2PriorityTree}. So the small responses are not delayed by a large
+ * response of the same connection.
+ */
 public class HTTP2Flusher extends IteratingCallback {
     private static Logger log = LoggerFactory.getLogger("firefly-system");
 
+    public static final int DEFAULT_QUANTUM = 64 * 1024;
+
+    /**
+     * The min bytes that a stream writes in one round, it avoids generating too many small DATA frames for
+     * the streams that have the low weights.
+     */
+    public static final int MIN_CHUNK_SIZE = 1024;
+
     private final Queue<WindowEntry> windows = new ArrayDeque<>();
     private final Deque<Entry> frames = new ArrayDeque<>();
     private final Queue<Entry> entries = new ArrayDeque<>();
+    private final List<Entry> dataEntries = new ArrayList<>();
+    private final List<Entry> candidates = new ArrayList<>();
     private final List<Entry> actives = new ArrayList<>();
     private final HTTP2Session session;
     private final Queue<ByteBuffer> buffers = new LinkedList<>();
-    private Entry stalled;
+    private final List<ByteBuffer> leased = new ArrayList<>();
+    private int[] streamIds = new int[8];
+    private double[] shares = new double[8];
+    private volatile int quantum = DEFAULT_QUANTUM;
     private Throwable terminated;
 
     public HTTP2Flusher(HTTP2Session session) {
         this.session = session;
     }
 
+    public int getQuantum() {
+        return quantum;
+    }
+
+    /**
+     * Set the max bytes of the DATA frames that are written in one iteration.
+     *
+     * @param quantum The max bytes of the DATA frames.
+     */
+    public void setQuantum(int quantum) {
+        if (quantum <= 0) {
+            throw new IllegalArgumentException("the quantum must be greater than 0");
+        }
+        this.quantum = quantum;
+    }
+
     public void window(StreamSPI stream, WindowUpdateFrame frame) {
         Throwable closed;
         synchronized (this) {
@@ -75,7 +111,7 @@ public class HTTP2Flusher extends IteratingCallback {
 
     public int getQueueSize() {
         synchronized (this) {
-            return frames.size();
+            return frames.size() + dataEntries.size();
         }
     }
 
@@ -93,27 +129,64 @@ public class HTTP2Flusher extends IteratingCallback {
                 entry.perform();
             }
 
-            if (!frames.isEmpty()) {
-                for (Entry entry : frames) {
-                    entries.offer(entry);
-                    actives.add(entry);
-                }
-                frames.clear();
-            }
+            take(false);
         }
 
-
-        if (entries.isEmpty()) {
+        if (entries.isEmpty() && dataEntries.isEmpty()) {
             if (log.isDebugEnabled())
                 log.debug("Flushed {}", session);
             return Action.IDLE;
         }
 
+        if (!generateControl() || !generateData())
+            return Action.SUCCEEDED;
+
+        if (buffers.isEmpty()) {
+            // All the DATA frames are stalled by the flow control windows,
+            // the control frames queued behind them need not wait anymore.
+            synchronized (this) {
+                take(true);
+            }
+            if (!generateControl())
+                return Action.SUCCEEDED;
+        }
+
+        if (buffers.isEmpty()) {
+            complete();
+            return Action.IDLE;
+        }
+
+        if (log.isDebugEnabled())
+            log.debug("Writing {} buffers ({} bytes) for {} frames {}", buffers.size(), getBufferTotalLength(),
+                    actives.size(), actives.toString());
+
+        ByteBufferArrayOutputEntry outputEntry = new ByteBufferArrayOutputEntry(this,
+                buffers.toArray(BufferUtils.EMPTY_BYTE_BUFFER_ARRAY));
+        session.getEndPoint().encode(outputEntry);
+        return Action.SCHEDULED;
+    }
+
+    private void take(boolean all) {
+        while (!frames.isEmpty()) {
+            Entry entry = frames.peek();
+            if (entry.frame.getType() == FrameType.DATA) {
+                dataEntries.add(frames.poll());
+            } else {
+                // The GO_AWAY and DISCONNECT frames must not overtake the queued DATA frames.
+                if (!all && entry.isClosing() && !dataEntries.isEmpty())
+                    break;
+                entries.offer(frames.poll());
+            }
+        }
+    }
+
+    private boolean generateControl() {
         while (!entries.isEmpty()) {
             Entry entry = entries.poll();
             if (log.isDebugEnabled())
                 log.debug("Processing {}", entry);
 
+            actives.add(entry);
             // If the stream has been reset, don't send the frame.
             if (entry.reset()) {
                 if (log.isDebugEnabled())
@@ -122,35 +195,95 @@ public class HTTP2Flusher extends IteratingCallback {
             }
 
             try {
-                if (entry.generate(buffers)) {
-                    if (entry.dataRemaining() > 0)
-                        entries.offer(entry);
-                } else {
-                    if (stalled == null)
-                        stalled = entry;
-                }
+                entry.generate(buffers);
             } catch (Throwable failure) {
                 // Failure to generate the entry is catastrophic.
                 if (log.isDebugEnabled())
                     log.debug("Failure generating frame " + entry.frame, failure);
                 failed(failure);
-                return Action.SUCCEEDED;
+                return false;
             }
         }
+        return true;
+    }
 
-        if (buffers.isEmpty()) {
-            complete();
-            return Action.IDLE;
+    private boolean generateData() {
+        for (Iterator<Entry> iterator = dataEntries.iterator(); iterator.hasNext(); ) {
+            Entry entry = iterator.next();
+            entry.stalled = false;
+            if (entry.reset()) {
+                if (log.isDebugEnabled())
+                    log.debug("Resetting {}", entry);
+                iterator.remove();
+                if (!entry.active) {
+                    entry.active = true;
+                    actives.add(entry);
+                }
+            }
         }
 
-        if (log.isDebugEnabled())
-            log.debug("Writing {} buffers ({} bytes) for {} frames {}", buffers.size(), getBufferTotalLength(),
-                    actives.size(), actives.toString());
+        int budget = quantum;
+        while (budget > 0) {
+            candidates.clear();
+            for (Entry entry : dataEntries) {
+                if (!entry.stalled)
+                    candidates.add(entry);
+            }
+            int count = candidates.size();
+            if (count == 0)
+                break;
 
-        ByteBufferArrayOutputEntry outputEntry = new ByteBufferArrayOutputEntry(this,
-                buffers.toArray(BufferUtils.EMPTY_BYTE_BUFFER_ARRAY));
-        session.getEndPoint().encode(outputEntry);
-        return Action.SCHEDULED;
+            if (streamIds.length < count) {
+                streamIds = new int[Math.max(count, streamIds.length * 2)];
+                shares = new double[streamIds.length];
+            }
+            for (int i = 0; i < count; i++) {
+                streamIds[i] = candidates.get(i).stream.getId();
+            }
+            session.getPriorityTree().share(streamIds, count, shares);
+
+            boolean progress = false;
+            int round = budget;
+            for (int i = 0; i < count && budget > 0; i++) {
+                if (shares[i] <= 0D)
+                    continue;
+
+                Entry entry = candidates.get(i);
+                int length = Math.min(budget, Math.max(MIN_CHUNK_SIZE, (int) (round * shares[i])));
+                int written = 0;
+                try {
+                    do {
+                        int remaining = entry.dataRemaining();
+                        if (!entry.generate(buffers, length - written)) {
+                            // The stalled stream is skipped in the next round,
+                            // its share is given to the other streams.
+                            entry.stalled = true;
+                            progress = true;
+                            break;
+                        }
+                        progress = true;
+                        if (!entry.active) {
+                            entry.active = true;
+                            actives.add(entry);
+                        }
+                        written += remaining - entry.dataRemaining();
+                    } while (entry.dataRemaining() > 0 && written < length);
+                } catch (Throwable failure) {
+                    // Failure to generate the entry is catastrophic.
+                    if (log.isDebugEnabled())
+                        log.debug("Failure generating frame " + entry.frame, failure);
+                    failed(failure);
+                    return false;
+                }
+                budget -= written;
+                if (entry.active && entry.dataRemaining() <= 0)
+                    dataEntries.remove(entry);
+            }
+            if (!progress)
+                break;
+        }
+        candidates.clear();
+        return true;
     }
 
     private int getBufferTotalLength() {
@@ -173,28 +306,14 @@ public class HTTP2Flusher extends IteratingCallback {
 
     private void complete() {
         buffers.clear();
-
-        actives.forEach(Entry::complete);
-
-        if (stalled != null) {
-            // We have written part of the frame, but there is more to write.
-            // The API will not allow to send two data frames for the same
-            // stream so we append the unfinished frame at the end to allow
-            // better interleaving with other streams.
-            int index = actives.indexOf(stalled);
-            for (int i = index; i < actives.size(); ++i) {
-                Entry entry = actives.get(i);
-                if (entry.dataRemaining() > 0)
-                    append(entry);
-            }
-            for (int i = 0; i < index; ++i) {
-                Entry entry = actives.get(i);
-                if (entry.dataRemaining() > 0)
-                    append(entry);
-            }
-            stalled = null;
-        }
-
+        releaseLeasedBuffers();
+
+        // The DATA entries that have more to write stay in the data entries,
+        // they are scheduled again by the priorities in the next iteration.
+        actives.forEach(entry -> {
+            entry.active = false;
+            entry.complete();
+        });
         actives.clear();
     }
 
@@ -203,9 +322,17 @@ public class HTTP2Flusher extends IteratingCallback {
         throw new IllegalStateException();
     }
 
+    private void releaseLeasedBuffers() {
+        // The frame headers and the header blocks are written, so the pooled buffers can be reused.
+        session.getGenerator().takeLeasedBuffers(leased);
+        session.getGenerator().release(leased);
+        leased.clear();
+    }
+
     @Override
     protected void onCompleteFailure(Throwable x) {
         buffers.clear();
+        releaseLeasedBuffers();
 
         Throwable closed;
         synchronized (this) {
@@ -215,6 +342,13 @@ public class HTTP2Flusher extends IteratingCallback {
                 log.debug("{}, active/queued={}/{}", closed != null ? "Closing" : "Failing", actives.size(), frames.size());
             actives.addAll(frames);
             frames.clear();
+            for (Entry entry : dataEntries) {
+                if (!entry.active)
+                    actives.add(entry);
+            }
+            dataEntries.clear();
+            actives.addAll(entries);
+            entries.clear();
         }
 
         actives.forEach(entry -> entry.failed(x));
@@ -246,6 +380,8 @@ public class HTTP2Flusher extends IteratingCallback {
         protected final Frame frame;
         protected final StreamSPI stream;
         private boolean reset;
+        private boolean active;
+        private boolean stalled;
 
         protected Entry(Frame frame, StreamSPI stream, Callback callback) {
             super(callback);
@@ -259,6 +395,17 @@ public class HTTP2Flusher extends IteratingCallback {
 
         protected abstract boolean generate(Queue<ByteBuffer> buffers);
 
+        /**
+         * Generate the frame, the DATA frame writes at most the max length bytes.
+         *
+         * @param buffers   Receives the generated buffers.
+         * @param maxLength The max bytes of the data.
+         * @return If false, the frame is stalled by the flow control window.
+         */
+        protected boolean generate(Queue<ByteBuffer> buffers, int maxLength) {
+            return generate(buffers);
+        }
+
         private void complete() {
             if (reset)
                 failed(new EofException("reset"));
@@ -279,6 +426,10 @@ public class HTTP2Flusher extends IteratingCallback {
             return this.reset = stream != null && stream.isReset() && !isProtocol();
         }
 
+        private boolean isClosing() {
+            return frame.getType() == FrameType.GO_AWAY || frame.getType() == FrameType.DISCONNECT;
+        }
+
         private boolean isProtocol() {
             switch (frame.getType()) {
                 case PRIORITY:
@@ -0,0 +1,287 @@
+package com.firefly.codec.http2.stream;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The stream dependency tree of RFC 7540 section 5.3. It is built from the priority information of the received
+ * HEADERS and PRIORITY frames. The root is the stream 0, the streams that have not any priority information depend
+ * on the root with the default weight.
+ * <p>
+ * The flusher uses the tree to compute the share of the connection that every stream can use. A stream that has
+ * data to send takes the whole share of its node, and its dependent streams get nothing. If a stream has not any
+ * data, its share is divided among its children that have data in their subtrees, in proportion to their weights.
+ * <p>
+ * The PRIORITY frames can create the nodes for the streams that are never opened. These idle nodes are kept in the
+ * creation order, and the oldest one is evicted when the tree is full, so the placeholders can not stop the
+ * prioritization of the new streams.
+ *
+ * @author Pengtao Qiu
+ */
+public class HTTP2PriorityTree {
+
+    public static final int DEFAULT_WEIGHT = 16;
+
+    /**
+     * The max number of the nodes. When the tree is full, the oldest node of the streams that are not opened is
+     * evicted. If all the nodes are the open streams, the new node is not created.
+     */
+    public static final int MAX_NODES = 1024;
+
+    private final Node root = new Node(0);
+    private final Map<Integer, Node> nodes = new HashMap<>();
+    // the nodes of the streams that are not opened, in the creation order
+    private final LinkedHashMap<Integer, Node> idleNodes = new LinkedHashMap<>();
+    private int epoch;
+
+    private static class Node {
+        final int streamId;
+        boolean open;
+        Node parent;
+        int weight = DEFAULT_WEIGHT;
+        final List<Node> children = new ArrayList<>(2);
+
+        // the states of the share computing
+        int activeEpoch;
+        int markEpoch;
+        int sumEpoch;
+        int activeWeight;
+
+        Node(int streamId) {
+            this.streamId = streamId;
+        }
+
+        void addChild(Node child) {
+            child.parent = this;
+            children.add(child);
+        }
+
+        void removeChild(Node child) {
+            children.remove(child);
+            child.parent = null;
+        }
+
+        boolean isDescendantOf(Node node) {
+            for (Node n = parent; n != null; n = n.parent) {
+                if (n == node) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Change the priority of the stream.
+     *
+     * @param streamId       The stream id.
+     * @param parentStreamId The stream that the stream depends on.
+     * @param weight         The weight, from 1 to 256.
+     * @param exclusive      If true, the stream becomes the sole dependency of the parent, and the other dependencies
+     *                       of the parent become the dependencies of the stream.
+     */
+    public synchronized void prioritize(int streamId, int parentStreamId, int weight, boolean exclusive) {
+        if (streamId <= 0 || streamId == parentStreamId) {
+            return;
+        }
+
+        Node node = nodes.get(streamId);
+        Node oldParent = root;
+        if (node == null) {
+            node = createNode(streamId, false);
+            if (node == null) {
+                return;
+            }
+        } else {
+            oldParent = node.parent;
+            oldParent.removeChild(node);
+        }
+
+        // SPEC: if the parent is not in the tree, the stream is assigned the default priority.
+        Node parent = parentStreamId == 0 ? root : nodes.get(parentStreamId);
+        if (parent == null) {
+            parent = root;
+            weight = DEFAULT_WEIGHT;
+            exclusive = false;
+        }
+
+        // SPEC: if the stream is made dependent on one of its own dependencies, the formerly dependent stream is
+        // first moved to be dependent on the previous parent of the reprioritized stream.
+        if (parent.isDescendantOf(node)) {
+            parent.parent.removeChild(parent);
+            oldParent.addChild(parent);
+        }
+
+        if (exclusive) {
+            List<Node> children = new ArrayList<>(parent.children);
+            for (Node child : children) {
+                parent.removeChild(child);
+                node.addChild(child);
+            }
+        }
+        node.weight = Math.max(1, Math.min(256, weight));
+        parent.addChild(node);
+    }
+
+    /**
+     * Mark the stream opened. The node of the open stream is not evicted until the stream is removed. If the stream
+     * has not any priority information, it depends on the root with the default weight.
+     *
+     * @param streamId The stream id.
+     */
+    public synchronized void open(int streamId) {
+        if (streamId <= 0) {
+            return;
+        }
+
+        Node node = nodes.get(streamId);
+        if (node == null) {
+            node = createNode(streamId, true);
+            if (node != null) {
+                root.addChild(node);
+            }
+        } else if (!node.open) {
+            node.open = true;
+            idleNodes.remove(streamId);
+        }
+    }
+
+    /**
+     * Remove the closed stream. The dependencies of the stream become the dependencies of its parent, and the weight
+     * of the stream is distributed to them in proportion to their weights.
+     *
+     * @param streamId The stream id.
+     */
+    public synchronized void remove(int streamId) {
+        Node node = nodes.remove(streamId);
+        if (node == null) {
+            return;
+        }
+        idleNodes.remove(streamId);
+        removeNode(node);
+    }
+
+    private void removeNode(Node node) {
+        Node parent = node.parent;
+        parent.removeChild(node);
+        int sum = 0;
+        for (Node child : node.children) {
+            sum += child.weight;
+        }
+        for (Node child : new ArrayList<>(node.children)) {
+            child.weight = Math.max(1, child.weight * node.weight / sum);
+            parent.addChild(child);
+        }
+        node.children.clear();
+    }
+
+    public synchronized int getParent(int streamId) {
+        Node node = nodes.get(streamId);
+        return node == null ? 0 : node.parent.streamId;
+    }
+
+    public synchronized int getWeight(int streamId) {
+        Node node = nodes.get(streamId);
+        return node == null ? DEFAULT_WEIGHT : node.weight;
+    }
+
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    public synchronized boolean contains(int streamId) {
+        return nodes.containsKey(streamId);
+    }
+
+    /**
+     * Compute the shares of the streams that have data to send.
+     *
+     * @param streamIds The streams that have data to send.
+     * @param count     The number of the streams.
+     * @param shares    Receives the shares of the streams, the sum of the shares is 1. The share is 0 if an ancestor of
+     *                  the stream has data to send.
+     */
+    public synchronized void share(int[] streamIds, int count, double[] shares) {
+        if (++epoch == 0) {
+            epoch = 1;
+        }
+
+        // create the nodes first, the creating may evict the idle nodes and change the tree
+        for (int i = 0; i < count; i++) {
+            if (!nodes.containsKey(streamIds[i])) {
+                // the stream that has data to send is open
+                Node node = createNode(streamIds[i], true);
+                if (node != null) {
+                    root.addChild(node);
+                }
+            }
+        }
+
+        // mark the active streams and their ancestors, and sum the weights of the active subtrees of every node
+        for (int i = 0; i < count; i++) {
+            Node node = nodes.get(streamIds[i]);
+            if (node == null) {
+                // the stream that can not be put in the tree has the default priority
+                addActiveWeight(root, DEFAULT_WEIGHT);
+                continue;
+            }
+            node.activeEpoch = epoch;
+            while (node != root && node.markEpoch != epoch) {
+                node.markEpoch = epoch;
+                addActiveWeight(node.parent, node.weight);
+                node = node.parent;
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            Node node = nodes.get(streamIds[i]);
+            if (node == null) {
+                shares[i] = (double) DEFAULT_WEIGHT / root.activeWeight;
+                continue;
+            }
+            double share = 1D;
+            for (Node n = node; n != root; n = n.parent) {
+                Node parent = n.parent;
+                if (parent != root && parent.activeEpoch == epoch) {
+                    share = 0D;
+                    break;
+                }
+                share = share * n.weight / parent.activeWeight;
+            }
+            shares[i] = share;
+        }
+    }
+
+    private void addActiveWeight(Node node, int weight) {
+        if (node.sumEpoch != epoch) {
+            node.sumEpoch = epoch;
+            node.activeWeight = 0;
+        }
+        node.activeWeight += weight;
+    }
+
+    private Node createNode(int streamId, boolean open) {
+        if (nodes.size() >= MAX_NODES) {
+            Iterator<Node> iterator = idleNodes.values().iterator();
+            if (!iterator.hasNext()) {
+                return null;
+            }
+            Node eldest = iterator.next();
+            iterator.remove();
+            nodes.remove(eldest.streamId);
+            removeNode(eldest);
+        }
+
+        Node node = new Node(streamId);
+        node.open = open;
+        nodes.put(streamId, node);
+        if (!open) {
+            idleNodes.put(streamId, node);
+        }
+        return node;
+    }
+}
@@ -39,6 +39,7 @@ public abstract class HTTP2Session implements SessionSPI, Parser.Listener {
     private final Session.Listener listener;
     private final FlowControlStrategy flowControl;
     private final HTTP2Flusher flusher;
+    private final HTTP2PriorityTree priorityTree = new HTTP2PriorityTree();
     private int maxLocalStreams;
     private int maxRemoteStreams;
     private long streamIdleTimeout;
@@ -100,6 +101,19 @@ public abstract class HTTP2Session implements SessionSPI, Parser.Listener {
         this.initialSessionRecvWindow = initialSessionRecvWindow;
     }
 
+    public HTTP2PriorityTree getPriorityTree() {
+        return priorityTree;
+    }
+
+    /**
+     * Set the max bytes of the DATA frames that are written in one flush.
+     *
+     * @param quantum The max bytes of the DATA frames.
+     */
+    public void setFlushQuantum(int quantum) {
+        flusher.setQuantum(quantum);
+    }
+
     public com.firefly.net.Session getEndPoint() {
         return endPoint;
     }
@@ -166,6 +180,8 @@ public abstract class HTTP2Session implements SessionSPI, Parser.Listener {
     public void onPriority(PriorityFrame frame) {
         if (log.isDebugEnabled())
             log.debug("Received {}", frame);
+
+        priorityTree.prioritize(frame.getStreamId(), frame.getParentStreamId(), frame.getWeight(), frame.isExclusive());
     }
 
     @Override
@@ -530,6 +546,7 @@ public abstract class HTTP2Session implements SessionSPI, Parser.Listener {
         if (streams.putIfAbsent(streamId, stream) == null) {
             stream.setIdleTimeout(getStreamIdleTimeout());
             flowControl.onStreamCreated(stream);
+            priorityTree.open(streamId);
             if (log.isDebugEnabled())
                 log.debug("Created local {}", stream);
             return stream;
@@ -559,6 +576,7 @@ public abstract class HTTP2Session implements SessionSPI, Parser.Listener {
             updateLastStreamId(streamId);
             stream.setIdleTimeout(getStreamIdleTimeout());
             flowControl.onStreamCreated(stream);
+            priorityTree.open(streamId);
             if (log.isDebugEnabled())
                 log.debug("Created remote {}", stream);
             return stream;
@@ -587,6 +605,7 @@ public abstract class HTTP2Session implements SessionSPI, Parser.Listener {
             onStreamClosed(stream);
 
             flowControl.onStreamDestroyed(stream);
+            priorityTree.remove(stream.getId());
 
             if (log.isDebugEnabled())
                 log.debug("Removed {} {}", local ? "local" : "remote", stream);
@@ -979,25 +998,29 @@ public abstract class HTTP2Session implements SessionSPI, Parser.Listener {
         }
 
         protected boolean generate(Queue<ByteBuffer> buffers) {
-            int toWrite = dataRemaining();
+            return generate(buffers, Integer.MAX_VALUE);
+        }
 
+        @Override
+        protected boolean generate(Queue<ByteBuffer> buffers, int maxLength) {
             int sessionSendWindow = getSendWindow();
             int streamSendWindow = stream.updateSendWindow(0);
             int window = Math.min(streamSendWindow, sessionSendWindow);
             if (window <= 0 && dataRemaining > 0)
                 return false;
 
-            int length = Math.min(dataRemaining, window);
+            int length = Math.min(dataRemaining, Math.min(window, maxLength));
 
             Pair<Integer, List<ByteBuffer>> pair = generator.data((DataFrame) frame, length);
             buffers.addAll(pair.second);
-            // Only one DATA frame is generated.
-            bytes = pair.first;
-            int written = bytes;
+            // Only one DATA frame is generated, the entry may be generated
+            // several times before the buffers are written.
+            int written = pair.first;
+            bytes += written;
             if (log.isDebugEnabled())
                 log.debug("Generated {}, length/window/data={}/{}/{}", frame, written, window, dataRemaining);
 
-            this.dataWritten = written;
+            this.dataWritten += written;
             this.dataRemaining -= written;
 
             flowControl.onDataSending(stream, written);
@@ -1009,6 +1032,8 @@ public abstract class HTTP2Session implements SessionSPI, Parser.Listener {
         public void succeeded() {
             bytesWritten.addAndGet(bytes);
             flowControl.onDataSent(stream, dataWritten);
+            bytes = 0;
+            dataWritten = 0;
 
             // Do we have more to send ?
             DataFrame dataFrame = (DataFrame) frame;
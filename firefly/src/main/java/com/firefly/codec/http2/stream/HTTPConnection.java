@@ -20,4 +20,12 @@ public interface HTTPConnection extends Connection {
 
     HTTPConnection exception(Action2<HTTPConnection, Throwable> exception);
 
+    /**
+     * Stop reading the connection until {@link #resumeRead()} is called. The content consumer uses it when it falls
+     * behind the received data.
+     */
+    void suspendRead();
+
+    void resumeRead();
+
 }
\ No newline at end of file
@@ -0,0 +1,111 @@
+package com.firefly.server.http2;
+
+import com.firefly.net.Session;
+import com.firefly.utils.concurrent.Callback;
+import com.firefly.utils.io.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Aggregate the responses of the pipelined requests. While the decoder parses the requests of a read buffer, the
+ * buffers of the completed responses are collected, and they are flushed as one gathered write when the decoder
+ * finishes the read buffer. The buffers are written in the order they are received, so the responses are in the
+ * order of the requests.
+ *
+ * @author Pengtao Qiu
+ */
+public class HTTP1ResponseBatch {
+
+    /**
+     * The batch is flushed before the end of the read buffer if it exceeds this size.
+     */
+    public static final int MAX_BATCH_SIZE = 64 * 1024;
+
+    private final Session tcpSession;
+    private final List<ByteBuffer> buffers = new ArrayList<>();
+    private final List<Callback> callbacks = new ArrayList<>();
+    private boolean batching;
+    private long size;
+
+    public HTTP1ResponseBatch(Session tcpSession) {
+        this.tcpSession = tcpSession;
+    }
+
+    /**
+     * Start collecting the response buffers.
+     */
+    public synchronized void begin() {
+        batching = true;
+    }
+
+    /**
+     * Flush the collected buffers and stop collecting.
+     */
+    public synchronized void end() {
+        flush();
+        batching = false;
+    }
+
+    /**
+     * Write the buffer. If the batch is collecting, the buffer is written when the batch is flushed, otherwise it is
+     * written immediately.
+     *
+     * @param buffer   The response buffer.
+     * @param callback The callback is completed when the buffer is written.
+     */
+    public synchronized void write(ByteBuffer buffer, Callback callback) {
+        if (!batching) {
+            tcpSession.write(buffer, callback);
+            return;
+        }
+
+        buffers.add(buffer);
+        if (callback != Callback.NOOP) {
+            callbacks.add(callback);
+        }
+        size += buffer.remaining();
+        if (size >= MAX_BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * Write the collected buffers as one gathered write.
+     */
+    public synchronized void flush() {
+        if (buffers.isEmpty()) {
+            return;
+        }
+
+        ByteBuffer[] array = buffers.toArray(BufferUtils.EMPTY_BYTE_BUFFER_ARRAY);
+        buffers.clear();
+        size = 0;
+        if (callbacks.isEmpty()) {
+            tcpSession.write(array, Callback.NOOP);
+        } else {
+            Callback[] completions = callbacks.toArray(new Callback[0]);
+            callbacks.clear();
+            tcpSession.write(array, new Callback() {
+                @Override
+                public void succeeded() {
+                    for (Callback c : completions) {
+                        c.succeeded();
+                    }
+                }
+
+                @Override
+                public void failed(Throwable x) {
+                    for (Callback c : completions) {
+                        c.failed(x);
+                    }
+                }
+            });
+        }
+    }
+
+    public synchronized boolean isBatching() {
+        return batching;
+    }
+}
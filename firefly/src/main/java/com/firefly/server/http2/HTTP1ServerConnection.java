@@ -20,7 +20,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
 
 public class HTTP1ServerConnection extends AbstractHTTP1Connection implements HTTPServerConnection {
 
@@ -28,6 +27,7 @@ public class HTTP1ServerConnection extends AbstractHTTP1Connection implements HT
 
     private final ServerSessionListener serverSessionListener;
     private final HTTP1ServerRequestHandler serverRequestHandler;
+    private final HTTP1ResponseBatch responseBatch;
     boolean upgradeHTTP2Successfully = false;
     Promise<HTTPTunnelConnection> tunnelConnectionPromise;
 
@@ -37,6 +37,11 @@ public class HTTP1ServerConnection extends AbstractHTTP1Connection implements HT
         requestHandler.connection = this;
         this.serverSessionListener = serverSessionListener;
         this.serverRequestHandler = requestHandler;
+        if (config.isPipelinedResponseBatching() && sslSession == null) {
+            responseBatch = new HTTP1ResponseBatch(tcpSession);
+        } else {
+            responseBatch = null;
+        }
     }
 
     @Override
@@ -70,6 +75,28 @@ public class HTTP1ServerConnection extends AbstractHTTP1Connection implements HT
         return config;
     }
 
+    /**
+     * Get the batch of the pipelined responses.
+     *
+     * @return The response batch, or null if the pipelined response batching is disabled.
+     */
+    HTTP1ResponseBatch getResponseBatch() {
+        return responseBatch;
+    }
+
+    void flushResponseBatch() {
+        if (responseBatch != null) {
+            responseBatch.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // the batched responses are written before the connection closes
+        flushResponseBatch();
+        super.close();
+    }
+
     public MetaData.Request getRequest() {
         return serverRequestHandler.request;
     }
@@ -132,11 +159,10 @@ public class HTTP1ServerConnection extends AbstractHTTP1Connection implements HT
         }
 
         void responseH2c() throws IOException {
-            ByteBuffer header = getHeaderByteBuffer();
             HttpGenerator gen = getHttpGenerator();
-            HttpGenerator.Result result = gen.generateResponse(H2C_RESPONSE, false, header, null, null, true);
+            HttpGenerator.Result result = generateHeader(H2C_RESPONSE, null, true);
             if (result == HttpGenerator.Result.FLUSH && gen.getState() == HttpGenerator.State.COMPLETING) {
-                getSession().encode(header);
+                writePooledBuffer(takeHeader());
                 result = gen.generateResponse(null, false, null, null, null, true);
                 if (result == HttpGenerator.Result.DONE && gen.getState() == HttpGenerator.State.END) {
                     log.debug("the server session {} sends 101 switching protocols successfully",
@@ -145,17 +171,16 @@ public class HTTP1ServerConnection extends AbstractHTTP1Connection implements HT
                     generateHTTPMessageExceptionally(result, gen.getState());
                 }
             } else {
+                releaseBuffer(takeHeader());
                 generateHTTPMessageExceptionally(result, gen.getState());
             }
         }
 
         void response100Continue() throws IOException {
-            ByteBuffer header = getHeaderByteBuffer();
             HttpGenerator gen = getHttpGenerator();
-            HttpGenerator.Result result = gen.generateResponse(HttpGenerator.CONTINUE_100_INFO, false, header, null, null,
-                    false);
+            HttpGenerator.Result result = generateHeader(HttpGenerator.CONTINUE_100_INFO, null, false);
             if (result == HttpGenerator.Result.FLUSH && gen.getState() == HttpGenerator.State.COMPLETING_1XX) {
-                getSession().encode(header);
+                writePooledBuffer(takeHeader());
                 result = gen.generateResponse(null, false, null, null, null, false);
                 if (result == HttpGenerator.Result.DONE && gen.getState() == HttpGenerator.State.START) {
                     log.debug("the server session {} sends 100 continue successfully", getSession().getSessionId());
@@ -163,6 +188,7 @@ public class HTTP1ServerConnection extends AbstractHTTP1Connection implements HT
                     generateHTTPMessageExceptionally(result, gen.getState());
                 }
             } else {
+                releaseBuffer(takeHeader());
                 generateHTTPMessageExceptionally(result, gen.getState());
             }
 
@@ -226,13 +252,18 @@ public class HTTP1ServerConnection extends AbstractHTTP1Connection implements HT
         }
 
         @Override
-        protected ByteBuffer getHeaderByteBuffer() {
-            return BufferUtils.allocate(connection.getHTTP2Configuration().getMaxResponseHeadLength());
+        protected AbstractHTTP1Connection getHTTP1Connection() {
+            return connection;
+        }
+
+        @Override
+        protected int getMaxHeaderLength() {
+            return connection.getHTTP2Configuration().getMaxResponseHeadLength();
         }
 
         @Override
-        protected ByteBuffer getTrailerByteBuffer() {
-            return BufferUtils.allocate(connection.getHTTP2Configuration().getMaxResponseTrailerLength());
+        protected int getMaxTrailerLength() {
+            return connection.getHTTP2Configuration().getMaxResponseTrailerLength();
         }
 
         @Override
@@ -240,6 +271,12 @@ public class HTTP1ServerConnection extends AbstractHTTP1Connection implements HT
             return connection.getTcpSession();
         }
 
+        @Override
+        protected void closeSession() {
+            connection.flushResponseBatch();
+            super.closeSession();
+        }
+
         @Override
         protected HttpGenerator getHttpGenerator() {
             return connection.getGenerator();
@@ -252,6 +289,7 @@ public class HTTP1ServerConnection extends AbstractHTTP1Connection implements HT
             // XXX need test
             HTTP2ServerConnection http2ServerConnection = new HTTP2ServerConnection(config, tcpSession, sslSession,
                     serverSessionListener);
+            flushResponseBatch();
             tcpSession.attachObject(http2ServerConnection);
             http2ServerConnection.getParser().directUpgrade();
             upgradeHTTP2Successfully = true;
@@ -281,6 +319,8 @@ public class HTTP1ServerConnection extends AbstractHTTP1Connection implements HT
                                 throw new BadMessageException("settings frame parsing error");
                             } else {
                                 responseH2c();
+                                // the 101 response is written before the HTTP2 frames
+                                flushResponseBatch();
 
                                 HTTP2ServerConnection http2ServerConnection = new HTTP2ServerConnection(config,
                                         tcpSession, sslSession, serverSessionListener);
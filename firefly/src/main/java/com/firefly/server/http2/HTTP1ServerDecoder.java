@@ -26,8 +26,21 @@ public class HTTP1ServerDecoder extends DecoderChain {
                 final HTTP1ServerConnection http1Connection = (HTTP1ServerConnection) connection;
                 if (http1Connection.tunnelConnectionPromise == null) {
                     final HttpParser parser = http1Connection.getParser();
-                    while (buf.hasRemaining()) {
-                        parser.parseNext(buf);
+                    final HTTP1ResponseBatch responseBatch = http1Connection.getResponseBatch();
+                    if (responseBatch == null) {
+                        while (buf.hasRemaining()) {
+                            parser.parseNext(buf);
+                        }
+                    } else {
+                        // the responses of the pipelined requests in the buffer are flushed together
+                        responseBatch.begin();
+                        try {
+                            while (buf.hasRemaining()) {
+                                parser.parseNext(buf);
+                            }
+                        } finally {
+                            responseBatch.end();
+                        }
                     }
                 } else {
                     HTTP1ServerTunnelConnection tunnelConnection = http1Connection.createHTTPTunnel();
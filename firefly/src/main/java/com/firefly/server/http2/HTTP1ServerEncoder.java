@@ -1,6 +1,7 @@
 package com.firefly.server.http2;
 
 import com.firefly.codec.http2.stream.HTTPConnection;
+import com.firefly.net.ByteBufferOutputEntry;
 import com.firefly.net.EncoderChain;
 import com.firefly.net.Session;
 import com.firefly.utils.concurrent.Callback;
@@ -29,8 +30,22 @@ public class HTTP1ServerEncoder extends EncoderChain {
 			if (connection.isEncrypted()) {
 				next.encode(message, session);
 			} else {
+				HTTP1ResponseBatch responseBatch = connection instanceof HTTP1ServerConnection
+						? ((HTTP1ServerConnection) connection).getResponseBatch()
+						: null;
 				if (message instanceof ByteBuffer) {
-					session.write((ByteBuffer) message, Callback.NOOP);
+					if (responseBatch == null) {
+						session.write((ByteBuffer) message, Callback.NOOP);
+					} else {
+						responseBatch.write((ByteBuffer) message, Callback.NOOP);
+					}
+				} else if (message instanceof ByteBufferOutputEntry) {
+					ByteBufferOutputEntry entry = (ByteBufferOutputEntry) message;
+					if (responseBatch == null) {
+						session.write(entry);
+					} else {
+						responseBatch.write(entry.getData(), entry.getCallback());
+					}
 				} else {
 					throw new IllegalArgumentException(
 							"the http1 encoder must receive the ByteBuffer, but this message type is "
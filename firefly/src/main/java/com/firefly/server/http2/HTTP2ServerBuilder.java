@@ -36,7 +36,7 @@ public class HTTP2ServerBuilder {
     public HTTP2ServerBuilder httpServer(SimpleHTTPServerConfiguration serverConfiguration,
                                          HTTPBodyConfiguration httpBodyConfiguration) {
         server = new SimpleHTTPServer(serverConfiguration);
-        routerManager = RouterManager.create(httpBodyConfiguration);
+        routerManager = RouterManager.create(httpBodyConfiguration, serverConfiguration.getRouterMatchCacheSize());
         return this;
     }
 
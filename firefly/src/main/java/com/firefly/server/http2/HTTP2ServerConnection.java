@@ -27,6 +27,7 @@ public class HTTP2ServerConnection extends AbstractHTTP2Connection implements HT
 		http2ServerSession.setMaxLocalStreams(config.getMaxConcurrentStreams());
 		http2ServerSession.setMaxRemoteStreams(config.getMaxConcurrentStreams());
 		http2ServerSession.setInitialSessionRecvWindow(config.getInitialSessionRecvWindow());
+		http2ServerSession.setFlushQuantum(config.getFlushQuantum());
 		return http2ServerSession;
 	}
 
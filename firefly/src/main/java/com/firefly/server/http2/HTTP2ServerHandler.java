@@ -22,7 +22,7 @@ public class HTTP2ServerHandler extends AbstractHTTPHandler {
     @Override
     public void sessionOpened(final Session session) throws Throwable {
         if (config.isSecureConnectionEnabled()) {
-            session.attachObject(new SSLSession(config.getSslContextFactory(), false, session, sslSession -> {
+            session.attachObject(new SSLSession(config.getSslContextFactory(), false, session, config.getSslHandshakeExecutor(), sslSession -> {
                 log.debug("server session {} SSL handshake finished", session.getSessionId());
                 HTTPConnection httpConnection;
                 if ("http/1.1".equals(sslSession.applicationProtocol())) {
@@ -91,8 +91,8 @@ public class HTTP2ServerRequestHandler extends ServerSessionListener.Adapter {
             @Override
             public void onData(Stream stream, DataFrame dataFrame, Callback callback) {
                 try {
-                    serverHTTPHandler.content(dataFrame.getData(), request, response, output, connection);
-                    callback.succeeded();
+                    // the flow control window is returned when the handler consumes the content
+                    serverHTTPHandler.content(dataFrame.getData(), callback, request, response, output, connection);
                 } catch (Throwable t) {
                     callback.failed(t);
                 }
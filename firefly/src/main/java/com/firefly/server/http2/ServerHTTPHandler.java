@@ -7,6 +7,7 @@ import com.firefly.codec.http2.stream.HTTPConnection;
 import com.firefly.codec.http2.stream.HTTPHandler;
 import com.firefly.codec.http2.stream.HTTPOutputStream;
 import com.firefly.codec.http2.stream.HTTPTunnelConnection;
+import com.firefly.utils.concurrent.Callback;
 import com.firefly.utils.function.*;
 
 import java.nio.ByteBuffer;
@@ -23,11 +24,34 @@ public interface ServerHTTPHandler extends HTTPHandler {
                                        HTTPOutputStream output,
                                        HTTPServerConnection connection);
 
+    /**
+     * Receive the content that is released by the callback. The HTTP2 stream returns the flow control window of the
+     * content when the callback is completed, so the handler that keeps the content completes the callback after it
+     * consumes the content. The default implementation completes the callback after the content method returns.
+     *
+     * @param item       The content.
+     * @param callback   The callback is completed when the content is consumed.
+     * @param request    The request.
+     * @param response   The response.
+     * @param output     The output stream.
+     * @param connection The connection.
+     * @return If true, stop processing the request.
+     */
+    default boolean content(ByteBuffer item, Callback callback,
+                            MetaData.Request request, MetaData.Response response,
+                            HTTPOutputStream output,
+                            HTTPConnection connection) {
+        boolean ret = content(item, request, response, output, connection);
+        callback.succeeded();
+        return ret;
+    }
+
     class Adapter extends HTTPHandler.Adapter implements ServerHTTPHandler {
 
         protected Action1<HTTPConnection> acceptConnection;
         protected Func4<Request, Response, HTTPOutputStream, HTTPConnection, Boolean> accept100Continue;
         protected Func4<Request, Response, HTTPOutputStream, HTTPServerConnection, Boolean> acceptHTTPTunnelConnection;
+        protected Func6<ByteBuffer, Callback, Request, Response, HTTPOutputStream, HTTPConnection, Boolean> contentWithCallback;
 
         public ServerHTTPHandler.Adapter headerComplete(
                 Func4<Request, Response, HTTPOutputStream, HTTPConnection, Boolean> headerComplete) {
@@ -47,6 +71,12 @@ public interface ServerHTTPHandler extends HTTPHandler {
             return this;
         }
 
+        public ServerHTTPHandler.Adapter contentWithCallback(
+                Func6<ByteBuffer, Callback, Request, Response, HTTPOutputStream, HTTPConnection, Boolean> contentWithCallback) {
+            this.contentWithCallback = contentWithCallback;
+            return this;
+        }
+
         public ServerHTTPHandler.Adapter contentComplete(
                 Func4<Request, Response, HTTPOutputStream, HTTPConnection, Boolean> contentComplete) {
             this.contentComplete = contentComplete;
@@ -89,6 +119,16 @@ public interface ServerHTTPHandler extends HTTPHandler {
             }
         }
 
+        @Override
+        public boolean content(ByteBuffer item, Callback callback, Request request, Response response,
+                               HTTPOutputStream output, HTTPConnection connection) {
+            if (contentWithCallback != null) {
+                return contentWithCallback.call(item, callback, request, response, output, connection);
+            } else {
+                return ServerHTTPHandler.super.content(item, callback, request, response, output, connection);
+            }
+        }
+
         @Override
         public boolean accept100Continue(Request request, Response response, HTTPOutputStream output,
                                          HTTPConnection connection) {
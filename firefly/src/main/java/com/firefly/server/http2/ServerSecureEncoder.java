@@ -1,6 +1,7 @@
 package com.firefly.server.http2;
 
 import com.firefly.codec.http2.stream.HTTPConnection;
+import com.firefly.net.ByteBufferOutputEntry;
 import com.firefly.net.EncoderChain;
 import com.firefly.net.Session;
 import com.firefly.utils.concurrent.Callback;
@@ -23,6 +24,17 @@ public class ServerSecureEncoder extends EncoderChain {
                 if (message instanceof ByteBuffer) {
                     HTTP1ServerConnection http1ServerConnection = (HTTP1ServerConnection) connection;
                     http1ServerConnection.getSSLSession().write((ByteBuffer) message, Callback.NOOP);
+                } else if (message instanceof ByteBufferOutputEntry) {
+                    // the SSL session encrypts the buffer into its own buffers, so the entry is completed here
+                    ByteBufferOutputEntry entry = (ByteBufferOutputEntry) message;
+                    HTTP1ServerConnection http1ServerConnection = (HTTP1ServerConnection) connection;
+                    try {
+                        http1ServerConnection.getSSLSession().write(entry.getData(), Callback.NOOP);
+                    } catch (Throwable t) {
+                        entry.getCallback().failed(t);
+                        throw t;
+                    }
+                    entry.getCallback().succeeded();
                 } else {
                     throw new IllegalArgumentException(
                             "the http1 encoder must receive the ByteBuffer, but this message type is "
@@ -1,13 +1,17 @@
 package com.firefly.server.http2;
 
 import com.codahale.metrics.Meter;
+import com.firefly.codec.http2.model.MetaData;
 import com.firefly.codec.http2.stream.HTTPConnection;
+import com.firefly.utils.concurrent.Callback;
 import com.firefly.utils.function.Action1;
 import com.firefly.utils.function.Action2;
 import com.firefly.utils.function.Action3;
 import com.firefly.utils.io.IO;
 import com.firefly.utils.lang.AbstractLifeCycle;
 
+import java.nio.ByteBuffer;
+
 public class SimpleHTTPServer extends AbstractLifeCycle {
 
     private HTTP2Server http2Server;
@@ -72,6 +76,7 @@ public class SimpleHTTPServer extends AbstractLifeCycle {
                 new ServerHTTPHandler.Adapter().acceptHTTPTunnelConnection((request, response, out, connection) -> {
                     SimpleRequest r = new SimpleRequest(request, response, out);
                     request.setAttachment(r);
+                    r.connection = connection;
                     if (tunnel != null) {
                         tunnel.call(r, connection);
                     }
@@ -79,18 +84,17 @@ public class SimpleHTTPServer extends AbstractLifeCycle {
                 }).headerComplete((request, response, out, connection) -> {
                     SimpleRequest r = new SimpleRequest(request, response, out);
                     request.setAttachment(r);
+                    r.connection = connection;
                     if (headerComplete != null) {
                         headerComplete.call(r);
                     }
                     requestMeter.mark();
                     return false;
                 }).content((buffer, request, response, out, connection) -> {
-                    SimpleRequest r = (SimpleRequest) request.getAttachment();
-                    if (r.content != null) {
-                        r.content.call(buffer);
-                    } else {
-                        r.requestBody.add(buffer);
-                    }
+                    content(buffer, Callback.NOOP, request);
+                    return false;
+                }).contentWithCallback((buffer, callback, request, response, out, connection) -> {
+                    content(buffer, callback, request);
                     return false;
                 }).contentComplete((request, response, out, connection) -> {
                     SimpleRequest r = (SimpleRequest) request.getAttachment();
@@ -133,6 +137,21 @@ public class SimpleHTTPServer extends AbstractLifeCycle {
         http2Server.start();
     }
 
+    private void content(ByteBuffer buffer, Callback callback, MetaData.Request request) {
+        SimpleRequest r = (SimpleRequest) request.getAttachment();
+        if (r.contentWithCallback != null) {
+            r.contentWithCallback.call(buffer, callback);
+            return;
+        }
+
+        if (r.content != null) {
+            r.content.call(buffer);
+        } else {
+            r.requestBody.add(buffer);
+        }
+        callback.succeeded();
+    }
+
     @Override
     protected void destroy() {
         http2Server.stop();
@@ -6,6 +6,7 @@ public class SimpleHTTPServerConfiguration extends HTTP2Configuration {
 
 	private String host;
 	private int port;
+	private int routerMatchCacheSize;
 
 	public String getHost() {
 		return host;
@@ -23,4 +24,17 @@ public class SimpleHTTPServerConfiguration extends HTTP2Configuration {
 		this.port = port;
 	}
 
+	public int getRouterMatchCacheSize() {
+		return routerMatchCacheSize;
+	}
+
+	/**
+	 * Set the max entries of the router match cache, the cache is disabled if the value is 0.
+	 *
+	 * @param routerMatchCacheSize The max entries of the router match cache.
+	 */
+	public void setRouterMatchCacheSize(int routerMatchCacheSize) {
+		this.routerMatchCacheSize = routerMatchCacheSize;
+	}
+
 }
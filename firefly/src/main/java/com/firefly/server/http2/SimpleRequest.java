@@ -6,7 +6,9 @@ import com.firefly.codec.http2.model.MetaData.Response;
 import com.firefly.codec.http2.stream.HTTPConnection;
 import com.firefly.codec.http2.stream.HTTPOutputStream;
 import com.firefly.utils.StringUtils;
+import com.firefly.utils.concurrent.Callback;
 import com.firefly.utils.function.Action1;
+import com.firefly.utils.function.Action2;
 import com.firefly.utils.io.BufferUtils;
 import com.firefly.utils.json.Json;
 import com.firefly.utils.json.JsonArray;
@@ -24,6 +26,7 @@ public class SimpleRequest {
     SimpleResponse response;
     HTTPConnection connection;
     Action1<ByteBuffer> content;
+    Action2<ByteBuffer, Callback> contentWithCallback;
     Action1<SimpleRequest> contentComplete;
     Action1<SimpleRequest> messageComplete;
     List<ByteBuffer> requestBody = new ArrayList<>();
@@ -127,6 +130,19 @@ public class SimpleRequest {
         return this;
     }
 
+    /**
+     * Receive the content and complete the callback when the content is consumed. The HTTP2 stream returns the flow
+     * control window of the content when the callback is completed, so the client can not send more data than the
+     * window until the handler consumes the content.
+     *
+     * @param contentWithCallback The content handler.
+     * @return The request.
+     */
+    public SimpleRequest contentWithCallback(Action2<ByteBuffer, Callback> contentWithCallback) {
+        this.contentWithCallback = contentWithCallback;
+        return this;
+    }
+
     public SimpleRequest contentComplete(Action1<SimpleRequest> contentComplete) {
         this.contentComplete = contentComplete;
         return this;
@@ -83,7 +83,11 @@ public class SimpleResponse implements Closeable {
         this.asynchronous = asynchronous;
     }
 
-    public synchronized OutputStream getOutputStream() {
+    public OutputStream getOutputStream() {
+        return getBufferedHTTPOutputStream();
+    }
+
+    public synchronized BufferedHTTPOutputStream getBufferedHTTPOutputStream() {
         if (printWriter != null) {
             throw new IllegalStateException("the response has used print writer");
         }
@@ -0,0 +1,52 @@
+package com.firefly.server.http2.router;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The subscriber of the request content. The content buffers are delivered as the subscriber requests them. If the
+ * subscriber falls behind the received data, the HTTP1 connection stops reading until the subscriber requests more
+ * buffers. The HTTP2 stream returns the flow control window of a buffer when the buffer is delivered, so the client
+ * can not send more than the stream window ahead of the subscriber.
+ * <p>
+ * The delivered buffers are retained without copying, so the subscriber may keep them until it consumes them.
+ *
+ * @author Pengtao Qiu
+ */
+public interface ContentSubscriber {
+
+    /**
+     * The default max bytes that are received but not delivered.
+     */
+    int DEFAULT_MAX_PENDING_SIZE = 256 * 1024;
+
+    /**
+     * It is invoked before any other method, the subscriber requests the buffers by the subscription.
+     *
+     * @param subscription The subscription of the request content.
+     */
+    void onSubscribe(Subscription subscription);
+
+    void onNext(ByteBuffer buffer);
+
+    void onError(Throwable t);
+
+    /**
+     * The request content is completed and all the buffers are delivered.
+     */
+    void onComplete();
+
+    interface Subscription {
+
+        /**
+         * Request more buffers.
+         *
+         * @param n The number of the buffers.
+         */
+        void request(long n);
+
+        /**
+         * Stop the delivery. The buffers that are not delivered are discarded, and the connection continues reading.
+         */
+        void cancel();
+    }
+}
@@ -67,7 +67,19 @@ public interface RouterManager extends RequestAcceptor {
     }
 
     static RouterManager create(HTTPBodyConfiguration configuration) {
+        return create(configuration, 0);
+    }
+
+    /**
+     * Create the router manager.
+     *
+     * @param configuration  The HTTP body configuration.
+     * @param matchCacheSize The max entries of the router match cache, the cache is disabled if the value is 0.
+     * @return The router manager.
+     */
+    static RouterManager create(HTTPBodyConfiguration configuration, int matchCacheSize) {
         RouterManagerImpl routerManager = new RouterManagerImpl();
+        routerManager.setMatchCacheSize(matchCacheSize);
         routerManager.register().path("*").handler(new HTTPBodyHandler(configuration));
         routerManager.registerLast().path("*").handler(DefaultErrorResponseHandlerLoader.getInstance().getHandler());
         return routerManager;
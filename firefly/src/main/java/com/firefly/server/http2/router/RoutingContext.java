@@ -54,6 +54,21 @@ public interface RoutingContext extends Closeable {
 
     RoutingContext messageComplete(Action1<SimpleRequest> messageComplete);
 
+    /**
+     * Subscribe the request content. The content buffers are delivered without copying as the subscriber requests
+     * them, and the connection stops reading when the undelivered bytes exceed the max pending size. The response
+     * becomes asynchronous, the subscriber ends the response after it consumes the content.
+     *
+     * @param subscriber     The content subscriber.
+     * @param maxPendingSize The max bytes that are received but not delivered.
+     * @return RoutingContext
+     */
+    RoutingContext contentSubscribe(ContentSubscriber subscriber, int maxPendingSize);
+
+    default RoutingContext contentSubscribe(ContentSubscriber subscriber) {
+        return contentSubscribe(subscriber, ContentSubscriber.DEFAULT_MAX_PENDING_SIZE);
+    }
+
     boolean isAsynchronousRead();
 
     boolean next();
@@ -12,6 +12,7 @@ public class HTTPBodyConfiguration {
     private int maxFileSize = 64 * 1024 * 1024;
     private String tempFilePath = System.getProperty("java.io.tmpdir");
     private String charset = "UTF-8";
+    private boolean streamingBodyEnabled;
     private MultipartConfigElement multipartConfigElement = new MultipartConfigElement(tempFilePath, maxFileSize, maxRequestSize, bodyBufferThreshold);
 
     public int getBodyBufferThreshold() {
@@ -53,4 +54,18 @@ public class HTTPBodyConfiguration {
     public void setMultipartConfigElement(MultipartConfigElement multipartConfigElement) {
         this.multipartConfigElement = multipartConfigElement;
     }
+
+    /**
+     * If it is true, the body handler retains the received buffers without copying and writes them to the temp file
+     * by the gathering writes when they exceed the body buffer threshold.
+     *
+     * @return Whether the body handler streams the content buffers.
+     */
+    public boolean isStreamingBodyEnabled() {
+        return streamingBodyEnabled;
+    }
+
+    public void setStreamingBodyEnabled(boolean streamingBodyEnabled) {
+        this.streamingBodyEnabled = streamingBodyEnabled;
+    }
 }
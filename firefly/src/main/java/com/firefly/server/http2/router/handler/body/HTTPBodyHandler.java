@@ -12,6 +12,7 @@ import com.firefly.server.http2.router.impl.RoutingContextImpl;
 import com.firefly.utils.StringUtils;
 import com.firefly.utils.io.BufferUtils;
 import com.firefly.utils.io.ByteArrayPipedStream;
+import com.firefly.utils.io.ByteBufferPipedStream;
 import com.firefly.utils.io.FilePipedStream;
 import com.firefly.utils.io.IO;
 import org.slf4j.Logger;
@@ -67,6 +68,15 @@ public class HTTPBodyHandler implements Handler {
         }
 
         String transferEncoding = request.getFields().get(HttpHeader.TRANSFER_ENCODING);
+        if (configuration.isStreamingBodyEnabled()) {
+            if (!HttpHeaderValue.CHUNKED.asString().equals(transferEncoding) && request.getContentLength() <= 0) {
+                ctx.next();
+                return;
+            }
+            streamBody(ctx, request, httpBodyHandlerSPI);
+            return;
+        }
+
         if (HttpHeaderValue.CHUNKED.asString().equals(transferEncoding)) {
             httpBodyHandlerSPI.pipedStream = new ByteArrayPipedStream(4 * 1024);
         } else {
@@ -108,26 +118,49 @@ public class HTTPBodyHandler implements Handler {
             } catch (IOException e) {
                 log.error("http server receives http body exception", e);
             }
-        }).contentComplete(req -> {
+        }).contentComplete(req -> parseBody(request, httpBodyHandlerSPI)).messageComplete(req -> ctx.next());
+    }
+
+    /**
+     * Retain the content buffers without copying, the buffers are written to the temp file when they exceed the body
+     * buffer threshold.
+     */
+    private void streamBody(RoutingContextImpl ctx, SimpleRequest request, HTTPBodyHandlerSPIImpl httpBodyHandlerSPI) {
+        ByteBufferPipedStream pipedStream = new ByteBufferPipedStream(configuration.getBodyBufferThreshold(),
+                configuration.getTempFilePath());
+        httpBodyHandlerSPI.pipedStream = pipedStream;
+        ctx.content(buf -> {
+            if (log.isDebugEnabled()) {
+                log.debug("http body handler received content size -> {}", buf.remaining());
+            }
+
             try {
-                String contentType = MimeTypes.getContentTypeMIMEType(request.getFields().get(HttpHeader.CONTENT_TYPE));
-                httpBodyHandlerSPI.pipedStream.getOutputStream().close();
-                if ("application/x-www-form-urlencoded".equals(contentType)) {
-                    try (InputStream inputStream = httpBodyHandlerSPI.pipedStream.getInputStream()) {
-                        httpBodyHandlerSPI.urlEncodedMap.decode(IO.toString(inputStream, configuration.getCharset()),
-                                Charset.forName(configuration.getCharset()));
-                    }
-                } else if ("multipart/form-data".equals(contentType)) {
-                    httpBodyHandlerSPI.multiPartInputStreamParser = new MultiPartInputStreamParser(
-                            httpBodyHandlerSPI.getInputStream(),
-                            request.getFields().get(HttpHeader.CONTENT_TYPE),
-                            configuration.getMultipartConfigElement(),
-                            new File(configuration.getTempFilePath()));
-                }
+                pipedStream.write(buf);
             } catch (IOException e) {
-                log.error("http server ends receiving data exception", e);
+                log.error("http server receives http body exception", e);
             }
-        }).messageComplete(req -> ctx.next());
+        }).contentComplete(req -> parseBody(request, httpBodyHandlerSPI)).messageComplete(req -> ctx.next());
+    }
+
+    private void parseBody(SimpleRequest request, HTTPBodyHandlerSPIImpl httpBodyHandlerSPI) {
+        try {
+            String contentType = MimeTypes.getContentTypeMIMEType(request.getFields().get(HttpHeader.CONTENT_TYPE));
+            httpBodyHandlerSPI.pipedStream.getOutputStream().close();
+            if ("application/x-www-form-urlencoded".equals(contentType)) {
+                try (InputStream inputStream = httpBodyHandlerSPI.pipedStream.getInputStream()) {
+                    httpBodyHandlerSPI.urlEncodedMap.decode(IO.toString(inputStream, configuration.getCharset()),
+                            Charset.forName(configuration.getCharset()));
+                }
+            } else if ("multipart/form-data".equals(contentType)) {
+                httpBodyHandlerSPI.multiPartInputStreamParser = new MultiPartInputStreamParser(
+                        httpBodyHandlerSPI.getInputStream(),
+                        request.getFields().get(HttpHeader.CONTENT_TYPE),
+                        configuration.getMultipartConfigElement(),
+                        new File(configuration.getTempFilePath()));
+            }
+        } catch (IOException e) {
+            log.error("http server ends receiving data exception", e);
+        }
     }
 
 }
@@ -0,0 +1,278 @@
+package com.firefly.server.http2.router.handler.file;
+
+import com.firefly.net.BufferPool;
+import com.firefly.net.MetricReporterFactory;
+import com.firefly.net.buffer.SizeClassedBufferPool;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compress the static files to the gzip format and cache the compressed content. The cache is bounded by the total
+ * size of the compressed content, and the least recently used content is evicted first. The cached content is
+ * invalidated when the ETag of the file changes. The concurrent requests that miss the cache of the same file wait for
+ * one compression.
+ *
+ * @author Pengtao Qiu
+ */
+public class CompressedContentCache {
+
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    private final StaticFileConfiguration configuration;
+    private final BufferPool bufferPool;
+    private final ArrayBlockingQueue<Deflater> deflaters = new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors() * 2);
+    private final LinkedHashMap<String, CompressedContent> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<String, CompletableFuture<CompressedContent>> compressions = new ConcurrentHashMap<>();
+    private long size;
+
+    private static class CompressedContent {
+        final String eTag;
+        final ByteBuffer content;
+
+        CompressedContent(String eTag, ByteBuffer content) {
+            this.eTag = eTag;
+            this.content = content;
+        }
+    }
+
+    /**
+     * Create the cache of the compressed content.
+     *
+     * @param configuration         The static file configuration.
+     * @param metricReporterFactory The metric reporter factory of the server, the intermediate buffer pool reports
+     *                              the metrics "buffer.http.static.gzip.*".
+     */
+    public CompressedContentCache(StaticFileConfiguration configuration, MetricReporterFactory metricReporterFactory) {
+        this.configuration = configuration;
+        bufferPool = new SizeClassedBufferPool(metricReporterFactory, "http.static.gzip", false,
+                SizeClassedBufferPool.DEFAULT_MIN_SIZE, SizeClassedBufferPool.DEFAULT_MAX_SIZE,
+                SizeClassedBufferPool.DEFAULT_MAX_BUFFERS_PER_CLASS, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    /**
+     * Check whether the file is compressed on the fly.
+     *
+     * @param resource The static file.
+     * @return If true, the compression is enabled and the file length and mime type are eligible.
+     */
+    public boolean isCompressible(StaticResource resource) {
+        if (!configuration.isCompressionEnabled()) {
+            return false;
+        }
+
+        long length = resource.getLength();
+        String mimeType = resource.getMimeType();
+        if (length < configuration.getMinCompressionSize() || length > configuration.getMaxCompressionSize()
+                || mimeType == null) {
+            return false;
+        }
+
+        int i = mimeType.indexOf(';');
+        if (i >= 0) {
+            mimeType = mimeType.substring(0, i);
+        }
+        return configuration.getCompressibleMimeTypes().contains(mimeType.trim().toLowerCase());
+    }
+
+    /**
+     * Get the gzip content of the file. The file is compressed when the content is not cached or the file is changed.
+     *
+     * @param path     The canonical path of the file.
+     * @param resource The static file.
+     * @return A new read-only view of the gzip content.
+     * @throws IOException Read file exception
+     */
+    public ByteBuffer get(String path, StaticResource resource) throws IOException {
+        CompressedContent compressedContent;
+        synchronized (this) {
+            compressedContent = cache.get(path);
+        }
+        if (compressedContent != null && compressedContent.eTag.equals(resource.getETag())) {
+            return compressedContent.content.duplicate();
+        }
+
+        CompletableFuture<CompressedContent> future = new CompletableFuture<>();
+        CompletableFuture<CompressedContent> inFlight = compressions.putIfAbsent(path, future);
+        if (inFlight != null) {
+            compressedContent = await(inFlight);
+            if (compressedContent.eTag.equals(resource.getETag())) {
+                return compressedContent.content.duplicate();
+            }
+            // the file is changed during the compression
+            ByteBuffer content = compress(resource);
+            put(path, new CompressedContent(resource.getETag(), content));
+            return content.duplicate();
+        }
+
+        try {
+            compressedContent = new CompressedContent(resource.getETag(), compress(resource));
+            put(path, compressedContent);
+            future.complete(compressedContent);
+            return compressedContent.content.duplicate();
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+            throw t;
+        } finally {
+            compressions.remove(path, future);
+        }
+    }
+
+    private static CompressedContent await(CompletableFuture<CompressedContent> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("wait for the compression interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else {
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    public synchronized long getContentSize() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+        size = 0;
+    }
+
+    protected ByteBuffer compress(StaticResource resource) throws IOException {
+        ByteBuffer content = resource.getContent();
+        if (content != null) {
+            return compress(content);
+        }
+
+        try (FileChannel fc = FileChannel.open(resource.getFile().toPath(), StandardOpenOption.READ)) {
+            return compress(fc.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(resource.getLength(), fc.size())));
+        }
+    }
+
+    /**
+     * Compress the data to the gzip format. The deflater and the intermediate buffers are pooled.
+     *
+     * @param src The data to compress.
+     * @return The read-only direct buffer of the gzip data.
+     */
+    public ByteBuffer compress(ByteBuffer src) {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater(configuration.getCompressionLevel(), true);
+        }
+
+        CRC32 crc = new CRC32();
+        int length = src.remaining();
+        ByteBuffer input = bufferPool.acquire(BUFFER_SIZE);
+        List<ByteBuffer> output = new ArrayList<>();
+        try {
+            ByteBuffer chunk = bufferPool.acquire(BUFFER_SIZE);
+            output.add(chunk);
+            chunk.put(GZIP_HEADER);
+
+            byte[] in = input.array();
+            int offset = input.arrayOffset();
+            while (src.hasRemaining()) {
+                int len = Math.min(input.capacity(), src.remaining());
+                src.get(in, offset, len);
+                crc.update(in, offset, len);
+                deflater.setInput(in, offset, len);
+                while (!deflater.needsInput()) {
+                    chunk = deflate(deflater, chunk, output);
+                }
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                chunk = deflate(deflater, chunk, output);
+            }
+
+            if (chunk.remaining() < 8) {
+                chunk = bufferPool.acquire(BUFFER_SIZE);
+                output.add(chunk);
+            }
+            putIntLE(chunk, (int) crc.getValue());
+            putIntLE(chunk, length);
+
+            int size = 0;
+            for (ByteBuffer buf : output) {
+                size += buf.position();
+            }
+            ByteBuffer result = ByteBuffer.allocateDirect(size);
+            for (ByteBuffer buf : output) {
+                buf.flip();
+                result.put(buf);
+            }
+            result.flip();
+            return result.asReadOnlyBuffer();
+        } finally {
+            bufferPool.release(input);
+            output.forEach(bufferPool::release);
+            deflater.reset();
+            if (!deflaters.offer(deflater)) {
+                deflater.end();
+            }
+        }
+    }
+
+    private ByteBuffer deflate(Deflater deflater, ByteBuffer chunk, List<ByteBuffer> output) {
+        ByteBuffer buf = chunk;
+        if (!buf.hasRemaining()) {
+            buf = bufferPool.acquire(BUFFER_SIZE);
+            output.add(buf);
+        }
+        int len = deflater.deflate(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+        buf.position(buf.position() + len);
+        return buf;
+    }
+
+    private static void putIntLE(ByteBuffer buf, int value) {
+        buf.put((byte) value)
+           .put((byte) (value >>> 8))
+           .put((byte) (value >>> 16))
+           .put((byte) (value >>> 24));
+    }
+
+    private synchronized void put(String path, CompressedContent compressedContent) {
+        long length = compressedContent.content.remaining();
+        if (length > configuration.getMaxCompressedCacheSize()) {
+            return;
+        }
+
+        CompressedContent previous = cache.put(path, compressedContent);
+        if (previous != null) {
+            size -= previous.content.remaining();
+        }
+        size += length;
+
+        Iterator<CompressedContent> iterator = cache.values().iterator();
+        while (size > configuration.getMaxCompressedCacheSize() && iterator.hasNext()) {
+            CompressedContent eldest = iterator.next();
+            iterator.remove();
+            size -= eldest.content.remaining();
+        }
+    }
+
+}
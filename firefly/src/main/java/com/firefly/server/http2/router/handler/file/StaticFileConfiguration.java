@@ -1,5 +1,10 @@
 package com.firefly.server.http2.router.handler.file;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.Deflater;
+
 /**
  * @author Pengtao Qiu
  */
@@ -7,6 +12,19 @@ public class StaticFileConfiguration {
 
     private String rootPath;
     private int maxRangePart = 8;
+    private int maxCachedFileNumber = 1024;
+    private int maxCachedFileSize = 64 * 1024;
+    private long maxCacheSize = 32 * 1024 * 1024;
+    private long cacheValidationInterval = 1000L;
+    private boolean precompressedEnabled;
+    private boolean compressionEnabled;
+    private Set<String> compressibleMimeTypes = new HashSet<>(Arrays.asList(
+            "text/html", "text/css", "text/plain", "text/xml", "text/javascript",
+            "application/javascript", "application/json", "application/xml", "image/svg+xml"));
+    private int minCompressionSize = 1024;
+    private int maxCompressionSize = 4 * 1024 * 1024;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private long maxCompressedCacheSize = 16 * 1024 * 1024;
 
     public String getRootPath() {
         return rootPath;
@@ -23,4 +41,145 @@ public class StaticFileConfiguration {
     public void setMaxRangePart(int maxRangePart) {
         this.maxRangePart = maxRangePart;
     }
+
+    public int getMaxCachedFileNumber() {
+        return maxCachedFileNumber;
+    }
+
+    /**
+     * Set the max number of the file metadata (length, last modified time, mime type and ETag) in the cache.
+     *
+     * @param maxCachedFileNumber The max number of the cached files. If it is 0, the cache is disabled.
+     */
+    public void setMaxCachedFileNumber(int maxCachedFileNumber) {
+        this.maxCachedFileNumber = maxCachedFileNumber;
+    }
+
+    public int getMaxCachedFileSize() {
+        return maxCachedFileSize;
+    }
+
+    /**
+     * Set the max length of the file whose content is cached in the memory.
+     *
+     * @param maxCachedFileSize The max length of the file content that is cached. If it is 0, only the metadata is cached.
+     */
+    public void setMaxCachedFileSize(int maxCachedFileSize) {
+        this.maxCachedFileSize = maxCachedFileSize;
+    }
+
+    public long getMaxCacheSize() {
+        return maxCacheSize;
+    }
+
+    /**
+     * Set the total size of the cached file content.
+     *
+     * @param maxCacheSize The total size of the cached file content.
+     */
+    public void setMaxCacheSize(long maxCacheSize) {
+        this.maxCacheSize = maxCacheSize;
+    }
+
+    public long getCacheValidationInterval() {
+        return cacheValidationInterval;
+    }
+
+    /**
+     * Set the interval of checking the cached file changes. The cache entry is reloaded when the file length or
+     * the last modified time changes.
+     *
+     * @param cacheValidationInterval The validation interval in milliseconds.
+     */
+    public void setCacheValidationInterval(long cacheValidationInterval) {
+        this.cacheValidationInterval = cacheValidationInterval;
+    }
+
+    public boolean isPrecompressedEnabled() {
+        return precompressedEnabled;
+    }
+
+    /**
+     * If true, the handler serves the ".gz" sibling of the file when the client accepts the gzip encoding.
+     *
+     * @param precompressedEnabled Enable the precompressed files.
+     */
+    public void setPrecompressedEnabled(boolean precompressedEnabled) {
+        this.precompressedEnabled = precompressedEnabled;
+    }
+
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    /**
+     * If true, the handler compresses the file of the compressible mime types when the client accepts
+     * the gzip encoding, and caches the compressed content.
+     *
+     * @param compressionEnabled Enable the on-the-fly compression.
+     */
+    public void setCompressionEnabled(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+
+    public Set<String> getCompressibleMimeTypes() {
+        return compressibleMimeTypes;
+    }
+
+    public void setCompressibleMimeTypes(Set<String> compressibleMimeTypes) {
+        this.compressibleMimeTypes = compressibleMimeTypes;
+    }
+
+    public int getMinCompressionSize() {
+        return minCompressionSize;
+    }
+
+    /**
+     * Set the min length of the file that is compressed on the fly.
+     *
+     * @param minCompressionSize The min file length.
+     */
+    public void setMinCompressionSize(int minCompressionSize) {
+        this.minCompressionSize = minCompressionSize;
+    }
+
+    public int getMaxCompressionSize() {
+        return maxCompressionSize;
+    }
+
+    /**
+     * Set the max length of the file that is compressed on the fly.
+     *
+     * @param maxCompressionSize The max file length.
+     */
+    public void setMaxCompressionSize(int maxCompressionSize) {
+        this.maxCompressionSize = maxCompressionSize;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Set the compression level (0-9) of the {@link Deflater}.
+     *
+     * @param compressionLevel The compression level.
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public long getMaxCompressedCacheSize() {
+        return maxCompressedCacheSize;
+    }
+
+    /**
+     * Set the total size of the cached compressed content. The least recently used content is evicted
+     * when the size is exceeded.
+     *
+     * @param maxCompressedCacheSize The total size of the compressed content.
+     */
+    public void setMaxCompressedCacheSize(long maxCompressedCacheSize) {
+        this.maxCompressedCacheSize = maxCompressedCacheSize;
+    }
 }
@@ -1,6 +1,10 @@
 package com.firefly.server.http2.router.handler.file;
 
 import com.firefly.codec.http2.model.*;
+import com.firefly.codec.http2.stream.BufferedHTTPOutputStream;
+import com.firefly.codec.http2.stream.HTTP2Configuration;
+import com.firefly.net.DefaultMetricReporterFactory;
+import com.firefly.net.MetricReporterFactory;
 import com.firefly.net.buffer.FileRegion;
 import com.firefly.server.http2.router.Handler;
 import com.firefly.server.http2.router.RoutingContext;
@@ -8,11 +12,13 @@ import com.firefly.server.http2.router.handler.error.AbstractErrorResponseHandle
 import com.firefly.server.http2.router.handler.error.DefaultErrorResponseHandlerLoader;
 import com.firefly.utils.StringUtils;
 import com.firefly.utils.concurrent.Callback;
-import com.firefly.utils.io.BufferUtils;
 import com.firefly.utils.io.IO;
 import com.firefly.utils.lang.URIUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 /**
@@ -20,45 +26,91 @@ import java.util.List;
  */
 public class StaticFileHandler implements Handler {
 
+    private static Logger log = LoggerFactory.getLogger("firefly-system");
+
     private StaticFileConfiguration configuration;
     private AbstractErrorResponseHandler errorResponseHandler;
+    private StaticResourceCache resourceCache;
+    private CompressedContentCache compressedContentCache;
 
     public StaticFileHandler(StaticFileConfiguration configuration) {
+        this(configuration, new DefaultMetricReporterFactory());
+    }
+
+    /**
+     * Create the static file handler that reports the metrics to the registry of the server.
+     *
+     * @param configuration       The static file configuration.
+     * @param serverConfiguration The HTTP server configuration.
+     */
+    public StaticFileHandler(StaticFileConfiguration configuration, HTTP2Configuration serverConfiguration) {
+        this(configuration, serverConfiguration.getTcpConfiguration().getMetricReporterFactory());
+    }
+
+    private StaticFileHandler(StaticFileConfiguration configuration, MetricReporterFactory metricReporterFactory) {
         this.configuration = configuration;
         errorResponseHandler = DefaultErrorResponseHandlerLoader.getInstance().getHandler();
+        resourceCache = new StaticResourceCache(configuration);
+        compressedContentCache = new CompressedContentCache(configuration, metricReporterFactory);
     }
 
     public StaticFileHandler(String rootPath) {
         this(new StaticFileConfiguration());
         configuration.setRootPath(rootPath);
-        errorResponseHandler = DefaultErrorResponseHandlerLoader.getInstance().getHandler();
+    }
+
+    public StaticResourceCache getResourceCache() {
+        return resourceCache;
+    }
+
+    public CompressedContentCache getCompressedContentCache() {
+        return compressedContentCache;
     }
 
     @Override
     public void handle(RoutingContext ctx) {
-        File file = new File(configuration.getRootPath(), URIUtils.canonicalPath(ctx.getURI().getPath()));
-        if (file.exists()) {
-            long contentLength = file.length();
-            String mimetype = MimeTypes.getDefaultMimeByExtension(file.getName());
+        String path = URIUtils.canonicalPath(ctx.getURI().getPath());
+        StaticResource resource = path != null ? resourceCache.get(path) : null;
+        if (resource != null) {
+            File file = resource.getFile();
+            long contentLength = resource.getLength();
+            String mimetype = resource.getMimeType();
 
             List<String> reqRanges = ctx.getFields().getValuesList(HttpHeader.RANGE.asString());
-            if (reqRanges == null || reqRanges.isEmpty()) {
+            boolean rangeRequest = reqRanges != null && !reqRanges.isEmpty();
+            StaticResource precompressed = resource.getPrecompressed();
+            boolean compressible = compressedContentCache.isCompressible(resource);
+            if (precompressed != null || compressible) {
+                ctx.put(HttpHeader.VARY, HttpHeader.ACCEPT_ENCODING.asString());
+                // the range request is served by the identity content, because the ranges of the gzip content are meaningless to the client
+                if (!rangeRequest && acceptGzip(ctx)) {
+                    if (precompressed != null) {
+                        writeGzipContent(ctx, resource, precompressed.getETag(), precompressed, null);
+                        return;
+                    } else {
+                        ByteBuffer gzipContent = compress(path, resource);
+                        if (gzipContent != null && gzipContent.remaining() < contentLength) {
+                            writeGzipContent(ctx, resource, resource.getGzipETag(), null, gzipContent);
+                            return;
+                        }
+                    }
+                }
+            }
+
+            ctx.put(HttpHeader.ETAG, resource.getETag());
+            ctx.put(HttpHeader.LAST_MODIFIED, resource.getLastModifiedDate());
+            if (isNotModified(ctx, resource.getETag(), resource.getLastModified())) {
+                ctx.setStatus(HttpStatus.NOT_MODIFIED_304).end();
+                return;
+            }
+
+            if (!rangeRequest) {
                 ctx.setStatus(HttpStatus.OK_200);
                 ctx.put(HttpHeader.CONTENT_LENGTH, String.valueOf(contentLength));
                 if (StringUtils.hasText(mimetype)) {
                     ctx.put(HttpHeader.CONTENT_TYPE, mimetype);
                 }
-
-                try (OutputStream out = ctx.getResponse().getOutputStream();
-                     BufferedInputStream in = new BufferedInputStream(new FileInputStream(file))) {
-                    IO.copy(in, out, contentLength);
-                } catch (FileNotFoundException e) {
-                    errorResponseHandler.render(ctx, HttpStatus.NOT_FOUND_404, null);
-                } catch (IOException e) {
-                    if (ctx.getResponse().isCommitted()) {
-                        errorResponseHandler.render(ctx, HttpStatus.INTERNAL_SERVER_ERROR_500, e);
-                    }
-                }
+                writeContent(ctx, resource, 0, contentLength);
             } else {
                 // Parse the satisfiable ranges
                 List<InclusiveByteRange> ranges = InclusiveByteRange.satisfiableRanges(reqRanges, contentLength);
@@ -79,18 +131,7 @@ public class StaticFileHandler implements Handler {
                         if (StringUtils.hasText(mimetype)) {
                             ctx.put(HttpHeader.CONTENT_TYPE, mimetype);
                         }
-
-                        long position = singleSatisfiableRange.getFirst(contentLength);
-                        try (FileRegion fileRegion = new FileRegion(file, position, singleLength);
-                             OutputStream out = ctx.getResponse().getOutputStream()) {
-                            fileRegion.transferTo(Callback.NOOP, (buf, callback, count) -> out.write(BufferUtils.toArray(buf)));
-                        } catch (FileNotFoundException e) {
-                            errorResponseHandler.render(ctx, HttpStatus.NOT_FOUND_404, null);
-                        } catch (IOException e) {
-                            if (ctx.getResponse().isCommitted()) {
-                                errorResponseHandler.render(ctx, HttpStatus.INTERNAL_SERVER_ERROR_500, e);
-                            }
-                        }
+                        writeContent(ctx, resource, singleSatisfiableRange.getFirst(contentLength), singleLength);
                     } else {
                         //  multiple non-overlapping valid ranges cause a multipart
                         //  206 response which does not require an overall content-length header
@@ -163,4 +204,146 @@ public class StaticFileHandler implements Handler {
         }
     }
 
+    /**
+     * Write the file content without copying it to the response buffer. The cached content is written as a view of
+     * the read-only buffer, and the other file is written as the memory mapped buffers.
+     */
+    protected void writeContent(RoutingContext ctx, StaticResource resource, long position, long length) {
+        try (BufferedHTTPOutputStream out = ctx.getResponse().getBufferedHTTPOutputStream()) {
+            if (length <= 0) {
+                return;
+            }
+
+            ByteBuffer content = resource.getContent();
+            if (content != null) {
+                content.position((int) position).limit((int) (position + length));
+                out.write(content);
+            } else {
+                try (FileRegion fileRegion = new FileRegion(resource.getFile(), position, length)) {
+                    fileRegion.transferMappedBuffers(Callback.NOOP, (buf, countingCallback, count) -> {
+                        out.write(buf);
+                        countingCallback.succeeded();
+                    }, FileRegion.MAPPED_CHUNK_SIZE);
+                }
+            }
+        } catch (FileNotFoundException e) {
+            errorResponseHandler.render(ctx, HttpStatus.NOT_FOUND_404, null);
+        } catch (IOException e) {
+            if (ctx.getResponse().isCommitted()) {
+                errorResponseHandler.render(ctx, HttpStatus.INTERNAL_SERVER_ERROR_500, e);
+            }
+        }
+    }
+
+    private ByteBuffer compress(String path, StaticResource resource) {
+        try {
+            return compressedContentCache.get(path, resource);
+        } catch (IOException e) {
+            log.warn("compress static file {} exception", resource.getFile(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Write the gzip content. The gzip content is either the precompressed file or the content compressed on the fly.
+     */
+    protected void writeGzipContent(RoutingContext ctx, StaticResource resource, String eTag,
+                                    StaticResource precompressed, ByteBuffer gzipContent) {
+        ctx.put(HttpHeader.ETAG, eTag);
+        ctx.put(HttpHeader.LAST_MODIFIED, resource.getLastModifiedDate());
+        if (isNotModified(ctx, eTag, resource.getLastModified())) {
+            ctx.setStatus(HttpStatus.NOT_MODIFIED_304).end();
+            return;
+        }
+
+        long length = precompressed != null ? precompressed.getLength() : gzipContent.remaining();
+        ctx.setStatus(HttpStatus.OK_200);
+        ctx.put(HttpHeader.CONTENT_ENCODING, HttpHeaderValue.GZIP.asString());
+        ctx.put(HttpHeader.CONTENT_LENGTH, String.valueOf(length));
+        if (StringUtils.hasText(resource.getMimeType())) {
+            ctx.put(HttpHeader.CONTENT_TYPE, resource.getMimeType());
+        }
+
+        if (precompressed != null) {
+            writeContent(ctx, precompressed, 0, length);
+        } else {
+            try (BufferedHTTPOutputStream out = ctx.getResponse().getBufferedHTTPOutputStream()) {
+                out.write(gzipContent);
+            } catch (IOException e) {
+                if (ctx.getResponse().isCommitted()) {
+                    errorResponseHandler.render(ctx, HttpStatus.INTERNAL_SERVER_ERROR_500, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether the client accepts the gzip encoding. The coding with the zero quality value is not acceptable.
+     */
+    protected boolean acceptGzip(RoutingContext ctx) {
+        List<String> values = ctx.getFields().getValuesList(HttpHeader.ACCEPT_ENCODING.asString());
+        if (values == null || values.isEmpty()) {
+            return false;
+        }
+
+        boolean acceptAny = false;
+        for (String value : values) {
+            for (String encoding : StringUtils.split(value, ',')) {
+                String[] params = StringUtils.split(encoding, ';');
+                if (params.length == 0) {
+                    continue;
+                }
+
+                String coding = params[0].trim().toLowerCase();
+                boolean accepted = true;
+                for (int i = 1; i < params.length; i++) {
+                    String param = params[i].trim();
+                    if (param.startsWith("q=")) {
+                        try {
+                            accepted = Double.parseDouble(param.substring(2).trim()) > 0;
+                        } catch (NumberFormatException e) {
+                            accepted = false;
+                        }
+                    }
+                }
+
+                if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                    return accepted;
+                } else if (coding.equals("*")) {
+                    acceptAny = accepted;
+                }
+            }
+        }
+        return acceptAny;
+    }
+
+    /**
+     * Evaluate the conditional request headers. The If-Modified-Since header is ignored when the request contains
+     * the If-None-Match header.
+     */
+    protected boolean isNotModified(RoutingContext ctx, String eTag, long lastModified) {
+        String ifNoneMatch = ctx.getFields().get(HttpHeader.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String tag : StringUtils.split(ifNoneMatch, ',')) {
+                String t = tag.trim();
+                if (t.equals("*") || weakETag(t).equals(weakETag(eTag))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        String ifModifiedSince = ctx.getFields().get(HttpHeader.IF_MODIFIED_SINCE);
+        if (ifModifiedSince != null) {
+            long date = DateParser.parseDate(ifModifiedSince);
+            // the HTTP date is precise to the second
+            return date != -1 && lastModified / 1000 <= date / 1000;
+        }
+        return false;
+    }
+
+    private static String weakETag(String eTag) {
+        return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+    }
+
 }
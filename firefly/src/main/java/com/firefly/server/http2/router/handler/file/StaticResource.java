@@ -0,0 +1,145 @@
+package com.firefly.server.http2.router.handler.file;
+
+import com.firefly.codec.http2.model.DateGenerator;
+import com.firefly.codec.http2.model.MimeTypes;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+/**
+ * The cached metadata of the static file. The small file content is cached as a read-only direct buffer.
+ *
+ * @author Pengtao Qiu
+ */
+public class StaticResource {
+
+    private final File file;
+    private final long length;
+    private final long lastModified;
+    private final String mimeType;
+    private final String eTag;
+    private final String lastModifiedDate;
+    private final ByteBuffer content;
+    private final File precompressedFile;
+    private final StaticResource precompressed;
+    private volatile long lastValidated;
+
+    public StaticResource(File file, long length, long lastModified, ByteBuffer content) {
+        this(file, length, lastModified, content, null, null);
+    }
+
+    /**
+     * Create a static resource.
+     *
+     * @param file              The file.
+     * @param length            The file length.
+     * @param lastModified      The last modified time of the file.
+     * @param content           The cached content, it may be null.
+     * @param precompressedFile The gzip sibling of the file to watch, it is null if the precompressed file is disabled.
+     * @param precompressed     The existing gzip sibling of the file, it may be null.
+     */
+    public StaticResource(File file, long length, long lastModified, ByteBuffer content,
+                          File precompressedFile, StaticResource precompressed) {
+        this.file = file;
+        this.length = length;
+        this.lastModified = lastModified;
+        this.mimeType = MimeTypes.getDefaultMimeByExtension(file.getName());
+        this.eTag = "W/\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length) + "\"";
+        this.lastModifiedDate = DateGenerator.formatDate(lastModified);
+        this.content = content;
+        this.precompressedFile = precompressedFile;
+        this.precompressed = precompressed;
+        this.lastValidated = System.currentTimeMillis();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public String getLastModifiedDate() {
+        return lastModifiedDate;
+    }
+
+    public boolean hasContent() {
+        return content != null;
+    }
+
+    /**
+     * Get the cached content.
+     *
+     * @return A new read-only view of the cached content, or null if the content is not cached.
+     */
+    public ByteBuffer getContent() {
+        return content != null ? content.duplicate() : null;
+    }
+
+    /**
+     * Get the precompressed gzip file.
+     *
+     * @return The gzip sibling of the file, or null if it does not exist.
+     */
+    public StaticResource getPrecompressed() {
+        return precompressed;
+    }
+
+    /**
+     * Get the ETag of the content compressed on the fly. It differs from the ETag of the identity content.
+     *
+     * @return The ETag of the gzip content.
+     */
+    public String getGzipETag() {
+        return eTag.substring(0, eTag.length() - 1) + "-gzip\"";
+    }
+
+    public long getLastValidated() {
+        return lastValidated;
+    }
+
+    public void setLastValidated(long lastValidated) {
+        this.lastValidated = lastValidated;
+    }
+
+    /**
+     * Check whether the file or its precompressed sibling is changed since it was cached.
+     *
+     * @return If true, the file is deleted or modified.
+     */
+    public boolean isModified() {
+        if (!file.isFile() || file.lastModified() != lastModified || file.length() != length) {
+            return true;
+        }
+        if (precompressedFile != null) {
+            return precompressed == null ? precompressedFile.isFile() : precompressed.isModified();
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "StaticResource{" +
+                "file=" + file +
+                ", length=" + length +
+                ", lastModified=" + lastModified +
+                ", mimeType='" + mimeType + '\'' +
+                ", eTag='" + eTag + '\'' +
+                ", cached=" + hasContent() +
+                ", precompressed=" + (precompressed != null) +
+                '}';
+    }
+}
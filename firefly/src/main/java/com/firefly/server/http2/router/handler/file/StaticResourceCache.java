@@ -0,0 +1,184 @@
+package com.firefly.server.http2.router.handler.file;
+
+import com.firefly.utils.collection.ConcurrentLinkedHashMap;
+import com.firefly.utils.collection.ConcurrentLinkedHashMap.MapEventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded LRU cache of the static files. The cache entry is revalidated when it is accessed after the validation
+ * interval, and it is reloaded if the file length or the last modified time changes.
+ *
+ * @author Pengtao Qiu
+ */
+public class StaticResourceCache {
+
+    private static Logger log = LoggerFactory.getLogger("firefly-system");
+
+    private final StaticFileConfiguration configuration;
+    private final ConcurrentLinkedHashMap<String, StaticResource> cache;
+    private final AtomicLong contentSize = new AtomicLong();
+
+    public StaticResourceCache(StaticFileConfiguration configuration) {
+        this.configuration = configuration;
+        if (configuration.getMaxCachedFileNumber() > 0) {
+            cache = new ConcurrentLinkedHashMap<>(true, configuration.getMaxCachedFileNumber(), new MapEventListener<String, StaticResource>() {
+
+                @Override
+                public boolean onEliminateEntry(String key, StaticResource value) {
+                    releaseContent(value);
+                    return true;
+                }
+
+                @Override
+                public StaticResource onGetEntry(String key, StaticResource value) {
+                    return value;
+                }
+
+                @Override
+                public StaticResource onPutEntry(String key, StaticResource value, StaticResource previousValue) {
+                    if (previousValue != null && previousValue != value) {
+                        releaseContent(previousValue);
+                    }
+                    return previousValue;
+                }
+
+                @Override
+                public StaticResource onRemoveEntry(String key, StaticResource value) {
+                    if (value != null) {
+                        releaseContent(value);
+                    }
+                    return value;
+                }
+            });
+        } else {
+            cache = null;
+        }
+    }
+
+    /**
+     * Get the static file.
+     *
+     * @param path The canonical path relative to the root path.
+     * @return The static file, or null if the file does not exist.
+     */
+    public StaticResource get(String path) {
+        if (cache == null) {
+            return load(new File(configuration.getRootPath(), path), false);
+        }
+
+        StaticResource resource = cache.get(path);
+        if (resource != null) {
+            long now = System.currentTimeMillis();
+            if (now - resource.getLastValidated() < configuration.getCacheValidationInterval()) {
+                return resource;
+            }
+            if (!resource.isModified()) {
+                resource.setLastValidated(now);
+                return resource;
+            }
+            cache.remove(path);
+        }
+
+        resource = load(new File(configuration.getRootPath(), path), true);
+        if (resource != null) {
+            cache.put(path, resource);
+        }
+        return resource;
+    }
+
+    public int size() {
+        return cache == null ? 0 : cache.size();
+    }
+
+    public long getContentSize() {
+        return contentSize.get();
+    }
+
+    public void clear() {
+        if (cache != null) {
+            cache.clear();
+            contentSize.set(0);
+        }
+    }
+
+    private StaticResource load(File file, boolean cacheContent) {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        File precompressedFile = null;
+        StaticResource precompressed = null;
+        if (configuration.isPrecompressedEnabled()) {
+            precompressedFile = new File(file.getPath() + ".gz");
+            if (precompressedFile.isFile()) {
+                precompressed = newResource(precompressedFile, cacheContent, null, null);
+            }
+        }
+        return newResource(file, cacheContent, precompressedFile, precompressed);
+    }
+
+    private StaticResource newResource(File file, boolean cacheContent,
+                                       File precompressedFile, StaticResource precompressed) {
+        long lastModified = file.lastModified();
+        long length = file.length();
+        ByteBuffer content = null;
+        if (cacheContent && length <= configuration.getMaxCachedFileSize() && reserveContent(length)) {
+            content = readContent(file, length);
+            if (content == null) {
+                contentSize.addAndGet(-length);
+            }
+        }
+        return new StaticResource(file, length, lastModified, content, precompressedFile, precompressed);
+    }
+
+    private ByteBuffer readContent(File file, long length) {
+        ByteBuffer buf = ByteBuffer.allocateDirect((int) length);
+        try (FileChannel fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (buf.hasRemaining()) {
+                if (fc.read(buf) == -1) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("read static file {} exception", file, e);
+            return null;
+        }
+
+        if (buf.hasRemaining()) {
+            // the file is truncated during reading
+            return null;
+        }
+        buf.flip();
+        return buf.asReadOnlyBuffer();
+    }
+
+    private boolean reserveContent(long length) {
+        while (true) {
+            long size = contentSize.get();
+            if (size + length > configuration.getMaxCacheSize()) {
+                return false;
+            }
+            if (contentSize.compareAndSet(size, size + length)) {
+                return true;
+            }
+        }
+    }
+
+    private void releaseContent(StaticResource resource) {
+        if (resource.hasContent()) {
+            contentSize.addAndGet(-resource.getLength());
+        }
+        if (resource.getPrecompressed() != null) {
+            releaseContent(resource.getPrecompressed());
+        }
+    }
+
+}
@@ -16,11 +16,14 @@ abstract public class AbstractSessionHandler extends AbstractLifeCycle implement
     protected final SessionStore sessionStore;
     protected final HTTPSessionConfiguration configuration;
     protected final Scheduler scheduler;
+    protected final SessionExpiryWheel expiryWheel;
+    protected final SessionIdGenerator sessionIdGenerator = new SessionIdGenerator();
 
     public AbstractSessionHandler(HTTPSessionConfiguration configuration) {
         this.configuration = configuration;
         this.sessionStore = createSessionStore();
         this.scheduler = Schedulers.createScheduler(configuration.getSchedulerPoolSize());
+        this.expiryWheel = new SessionExpiryWheel(sessionStore, scheduler, configuration);
         start();
     }
 
@@ -29,7 +32,8 @@ abstract public class AbstractSessionHandler extends AbstractLifeCycle implement
     @Override
     public void handle(RoutingContext context) {
         RoutingContextImpl ctx = (RoutingContextImpl) context;
-        HTTPSessionHandlerSPI sessionHandlerSPI = new HTTPSessionHandlerSPIImpl(sessionStore, ctx, scheduler, configuration);
+        HTTPSessionHandlerSPI sessionHandlerSPI = new HTTPSessionHandlerSPIImpl(sessionStore, ctx,
+                expiryWheel, sessionIdGenerator, configuration);
         ctx.setHTTPSessionHandlerSPI(sessionHandlerSPI);
         ctx.next();
     }
@@ -40,6 +44,7 @@ abstract public class AbstractSessionHandler extends AbstractLifeCycle implement
 
     @Override
     protected void destroy() {
+        expiryWheel.stop();
         scheduler.stop();
     }
 }
@@ -1,5 +1,8 @@
 package com.firefly.server.http2.router.handler.session;
 
+import com.firefly.net.DefaultMetricReporterFactory;
+import com.firefly.net.MetricReporterFactory;
+
 /**
  * @author Pengtao Qiu
  */
@@ -8,6 +11,13 @@ public class HTTPSessionConfiguration {
     private String sessionIdParameterName = "jsessionid";
     private int defaultMaxInactiveInterval = 10 * 60; //unit second
     private int schedulerPoolSize = 1;
+    private long expiryTickInterval = 1000; //unit millisecond
+    private int expiryWheelLevels = 4;
+    private MetricReporterFactory metricReporterFactory = new DefaultMetricReporterFactory();
+    private long maxOffHeapSize = 64 * 1024 * 1024;
+    private int offHeapSegmentSize = 1024 * 1024;
+    private long passivationIdleTime = 60 * 1000; //unit millisecond
+    private long passivationInterval = 10 * 1000; //unit millisecond
 
     public String getSessionIdParameterName() {
         return sessionIdParameterName;
@@ -32,4 +42,87 @@ public class HTTPSessionConfiguration {
     public void setSchedulerPoolSize(int schedulerPoolSize) {
         this.schedulerPoolSize = schedulerPoolSize;
     }
+
+    /**
+     * Get the tick interval of the session expiry wheel. The expired sessions are removed in a batch every tick.
+     *
+     * @return The tick interval in milliseconds.
+     */
+    public long getExpiryTickInterval() {
+        return expiryTickInterval;
+    }
+
+    public void setExpiryTickInterval(long expiryTickInterval) {
+        this.expiryTickInterval = expiryTickInterval;
+    }
+
+    /**
+     * Get the levels of the session expiry wheel. Every level has 64 slots, the wheel holds the deadlines in
+     * 64^levels ticks directly, the later deadlines are checked again when they come in range.
+     *
+     * @return The levels of the session expiry wheel.
+     */
+    public int getExpiryWheelLevels() {
+        return expiryWheelLevels;
+    }
+
+    public void setExpiryWheelLevels(int expiryWheelLevels) {
+        this.expiryWheelLevels = expiryWheelLevels;
+    }
+
+    public MetricReporterFactory getMetricReporterFactory() {
+        return metricReporterFactory;
+    }
+
+    public void setMetricReporterFactory(MetricReporterFactory metricReporterFactory) {
+        this.metricReporterFactory = metricReporterFactory;
+    }
+
+    /**
+     * Get the max direct memory size of the off-heap session store. The store evicts the oldest passivated sessions
+     * when the size is reached.
+     *
+     * @return The max direct memory size in bytes.
+     */
+    public long getMaxOffHeapSize() {
+        return maxOffHeapSize;
+    }
+
+    public void setMaxOffHeapSize(long maxOffHeapSize) {
+        this.maxOffHeapSize = maxOffHeapSize;
+    }
+
+    /**
+     * Get the size of the direct memory segments. The attributes that are larger than the segment stay in the heap.
+     *
+     * @return The segment size in bytes.
+     */
+    public int getOffHeapSegmentSize() {
+        return offHeapSegmentSize;
+    }
+
+    public void setOffHeapSegmentSize(int offHeapSegmentSize) {
+        this.offHeapSegmentSize = offHeapSegmentSize;
+    }
+
+    /**
+     * Get the idle time after which the off-heap session store moves the session attributes out of the heap.
+     *
+     * @return The passivation idle time in milliseconds.
+     */
+    public long getPassivationIdleTime() {
+        return passivationIdleTime;
+    }
+
+    public void setPassivationIdleTime(long passivationIdleTime) {
+        this.passivationIdleTime = passivationIdleTime;
+    }
+
+    public long getPassivationInterval() {
+        return passivationInterval;
+    }
+
+    public void setPassivationInterval(long passivationInterval) {
+        this.passivationInterval = passivationInterval;
+    }
 }
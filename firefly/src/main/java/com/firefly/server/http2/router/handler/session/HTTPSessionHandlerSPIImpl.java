@@ -4,14 +4,10 @@ import com.firefly.codec.http2.model.Cookie;
 import com.firefly.server.http2.router.RoutingContext;
 import com.firefly.server.http2.router.spi.HTTPSessionHandlerSPI;
 import com.firefly.utils.StringUtils;
-import com.firefly.utils.concurrent.Scheduler;
-import com.firefly.utils.time.Millisecond100Clock;
 
 import javax.servlet.http.HttpSession;
 import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
-import java.util.concurrent.TimeUnit;
 
 /**
  * @author Pengtao Qiu
@@ -21,7 +17,8 @@ public class HTTPSessionHandlerSPIImpl implements HTTPSessionHandlerSPI {
     private final HTTPSessionConfiguration configuration;
     private final SessionStore sessionStore;
     private final RoutingContext routingContext;
-    private final Scheduler scheduler;
+    private final SessionExpiryWheel expiryWheel;
+    private final SessionIdGenerator sessionIdGenerator;
     private boolean requestedSessionIdFromURL;
     private boolean requestedSessionIdFromCookie;
     private String requestedSessionId;
@@ -29,12 +26,14 @@ public class HTTPSessionHandlerSPIImpl implements HTTPSessionHandlerSPI {
 
     public HTTPSessionHandlerSPIImpl(SessionStore sessionStore,
                                      RoutingContext routingContext,
-                                     Scheduler scheduler,
+                                     SessionExpiryWheel expiryWheel,
+                                     SessionIdGenerator sessionIdGenerator,
                                      HTTPSessionConfiguration configuration) {
         this.sessionStore = sessionStore;
         this.routingContext = routingContext;
         this.configuration = configuration;
-        this.scheduler = scheduler;
+        this.expiryWheel = expiryWheel;
+        this.sessionIdGenerator = sessionIdGenerator;
         init();
     }
 
@@ -93,10 +92,11 @@ public class HTTPSessionHandlerSPIImpl implements HTTPSessionHandlerSPI {
         httpSession = (HTTPSessionImpl) sessionStore.get(requestedSessionId);
         if (httpSession != null) {
             if (httpSession.check()) {
-                httpSession.setLastAccessedTime(Millisecond100Clock.currentTimeMillis());
+                httpSession.setLastAccessedTime(System.currentTimeMillis());
                 httpSession.setNewSession(false);
-                scheduleCheck(httpSession, httpSession.getRemainInactiveInterval());
+                expiryWheel.touch(httpSession);
             } else {
+                expiryWheel.cancel(httpSession);
                 httpSession = null;
                 sessionStore.remove(requestedSessionId);
             }
@@ -112,12 +112,12 @@ public class HTTPSessionHandlerSPIImpl implements HTTPSessionHandlerSPI {
     public HttpSession getSession(boolean create) {
         if (create) {
             if (httpSession == null) {
-                String id = UUID.randomUUID().toString();
+                String id = sessionIdGenerator.generate();
                 httpSession = new HTTPSessionImpl(id);
                 httpSession.setMaxInactiveInterval(configuration.getDefaultMaxInactiveInterval());
                 routingContext.addCookie(new Cookie(configuration.getSessionIdParameterName(), id));
                 sessionStore.put(id, httpSession);
-                scheduleCheck(httpSession, httpSession.getMaxInactiveInterval());
+                expiryWheel.schedule(httpSession);
                 return httpSession;
             } else {
                 return httpSession;
@@ -127,16 +127,6 @@ public class HTTPSessionHandlerSPIImpl implements HTTPSessionHandlerSPI {
         }
     }
 
-    private void scheduleCheck(final HTTPSessionImpl session, final long remainInactiveInterval) {
-        scheduler.schedule(() -> {
-            if (!session.check()) {
-                sessionStore.remove(session.getId());
-            } else {
-                scheduleCheck(session, session.getRemainInactiveInterval());
-            }
-        }, remainInactiveInterval, TimeUnit.MILLISECONDS);
-    }
-
     @Override
     public boolean isRequestedSessionIdFromURL() {
         return requestedSessionIdFromURL;
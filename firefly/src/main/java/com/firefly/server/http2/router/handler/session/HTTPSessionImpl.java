@@ -1,16 +1,16 @@
 package com.firefly.server.http2.router.handler.session;
 
 import com.firefly.utils.exception.CommonRuntimeException;
-import com.firefly.utils.time.Millisecond100Clock;
+import com.firefly.utils.time.TimingWheel;
 
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpSession;
 import javax.servlet.http.HttpSessionContext;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.util.Enumeration;
-import java.util.Iterator;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.*;
+import java.util.function.Function;
 
 /**
  * @author Pengtao Qiu
@@ -18,7 +18,9 @@ import java.util.concurrent.ConcurrentMap;
 public class HTTPSessionImpl implements HttpSession, Serializable {
 
     private volatile int maxInactiveInterval;
-    private final ConcurrentMap<String, Object> attributes = new ConcurrentHashMap<>();
+    // the attributes are null after they are passivated, they are guarded by this session
+    private Map<String, Object> attributes = new HashMap<>();
+    private transient PassivatedAttributes passivatedAttributes;
     private final long createTime;
     private final String id;
 
@@ -26,9 +28,12 @@ public class HTTPSessionImpl implements HttpSession, Serializable {
     private volatile long lastAccessedTime;
     private volatile boolean invalid;
 
+    // the position in the session expiry wheel, it is guarded by the wheel
+    transient volatile TimingWheel.Entry<HTTPSessionImpl> expiryEntry;
+
     public HTTPSessionImpl(String id) {
         this.id = id;
-        createTime = Millisecond100Clock.currentTimeMillis();
+        createTime = System.currentTimeMillis();
         newSession = true;
         invalid = false;
         lastAccessedTime = createTime;
@@ -75,8 +80,8 @@ public class HTTPSessionImpl implements HttpSession, Serializable {
     }
 
     @Override
-    public Object getAttribute(String name) {
-        return attributes.get(name);
+    public synchronized Object getAttribute(String name) {
+        return attributes().get(name);
     }
 
     @Deprecated
@@ -87,9 +92,13 @@ public class HTTPSessionImpl implements HttpSession, Serializable {
 
     @Override
     public Enumeration<String> getAttributeNames() {
+        List<String> names;
+        synchronized (this) {
+            names = new ArrayList<>(attributes().keySet());
+        }
         return new Enumeration<String>() {
 
-            final Iterator<String> iterator = attributes.keySet().iterator();
+            final Iterator<String> iterator = names.iterator();
 
             @Override
             public boolean hasMoreElements() {
@@ -110,8 +119,8 @@ public class HTTPSessionImpl implements HttpSession, Serializable {
     }
 
     @Override
-    public void setAttribute(String name, Object value) {
-        attributes.put(name, value);
+    public synchronized void setAttribute(String name, Object value) {
+        attributes().put(name, value);
     }
 
     @Deprecated
@@ -121,8 +130,8 @@ public class HTTPSessionImpl implements HttpSession, Serializable {
     }
 
     @Override
-    public void removeAttribute(String name) {
-        attributes.remove(name);
+    public synchronized void removeAttribute(String name) {
+        attributes().remove(name);
     }
 
     @Deprecated
@@ -158,8 +167,66 @@ public class HTTPSessionImpl implements HttpSession, Serializable {
     }
 
     public long getRemainInactiveInterval() {
-        long currentTime = Millisecond100Clock.currentTimeMillis();
+        long currentTime = System.currentTimeMillis();
         long inactiveInterval = currentTime - getLastAccessedTime();
         return getMaxInactiveInterval() * 1000 - inactiveInterval;
     }
+
+    private Map<String, Object> attributes() {
+        if (attributes == null) {
+            attributes = passivatedAttributes != null ? passivatedAttributes.activate() : new HashMap<>();
+            passivatedAttributes = null;
+        }
+        return attributes;
+    }
+
+    /**
+     * Move the attributes out of the heap. The attributes are restored when they are accessed.
+     *
+     * @param passivator Store the attributes, it returns null if the attributes can not be stored.
+     * @return If the attributes are passivated, return true.
+     */
+    synchronized boolean passivate(Function<Map<String, Object>, PassivatedAttributes> passivator) {
+        if (attributes == null) {
+            return false;
+        }
+        if (!attributes.isEmpty()) {
+            PassivatedAttributes passivated = passivator.apply(attributes);
+            if (passivated == null) {
+                return false;
+            }
+            passivatedAttributes = passivated;
+        }
+        attributes = null;
+        return true;
+    }
+
+    synchronized boolean isPassivated() {
+        return attributes == null;
+    }
+
+    /**
+     * Release the passivated attributes when the session is removed.
+     */
+    synchronized void releasePassivatedAttributes() {
+        if (passivatedAttributes != null) {
+            passivatedAttributes.release();
+            passivatedAttributes = null;
+        }
+    }
+
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        attributes();
+        out.defaultWriteObject();
+    }
+
+    /**
+     * The attributes that are stored out of the heap.
+     */
+    interface PassivatedAttributes {
+
+        Map<String, Object> activate();
+
+        void release();
+    }
 }
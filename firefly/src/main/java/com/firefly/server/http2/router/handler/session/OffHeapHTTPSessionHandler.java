@@ -0,0 +1,24 @@
+package com.firefly.server.http2.router.handler.session;
+
+/**
+ * The session handler that keeps the attributes of the idle sessions out of the heap.
+ *
+ * @author Pengtao Qiu
+ */
+public class OffHeapHTTPSessionHandler extends AbstractSessionHandler {
+
+    public OffHeapHTTPSessionHandler(HTTPSessionConfiguration configuration) {
+        super(configuration);
+    }
+
+    @Override
+    public SessionStore createSessionStore() {
+        return new OffHeapSessionStore(configuration);
+    }
+
+    @Override
+    protected void destroy() {
+        super.destroy();
+        ((OffHeapSessionStore) sessionStore).stop();
+    }
+}
@@ -0,0 +1,439 @@
+package com.firefly.server.http2.router.handler.session;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.firefly.utils.concurrent.Scheduler;
+import com.firefly.utils.concurrent.Schedulers;
+import com.firefly.utils.exception.CommonRuntimeException;
+import com.firefly.utils.lang.AbstractLifeCycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.HttpSession;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The session store that keeps the attributes of the idle sessions out of the heap. The sessions that are not
+ * accessed in the passivation idle time are passivated, their attributes are serialized into the direct memory
+ * segments, and they are deserialized when the session is accessed again. The sessions stay in the heap as the
+ * small objects without the attribute maps.
+ * <p>
+ * The serialized attributes are appended to the segments. The memory of a segment is reused when all its attributes
+ * are activated or removed. When the store reaches the max off-heap size, it evicts the oldest segment, so the
+ * sessions that are passivated earliest and not accessed after that are removed. It is an approximate LRU.
+ *
+ * @author Pengtao Qiu
+ */
+public class OffHeapSessionStore extends AbstractLifeCycle implements SessionStore {
+
+    private static final Logger log = LoggerFactory.getLogger("firefly-system");
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte INTEGER = 2;
+    private static final byte LONG = 3;
+    private static final byte BOOLEAN = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte BYTES = 6;
+    private static final byte SERIALIZABLE = 7;
+
+    private final ConcurrentMap<String, HttpSession> sessionMap = new ConcurrentHashMap<>();
+    private final int segmentSize;
+    private final int maxSegments;
+    private final long passivationIdleTime;
+    private final long passivationInterval;
+
+    // the segments are guarded by this store
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private final ArrayDeque<Segment> freeSegments = new ArrayDeque<>();
+    private Segment current;
+    private int allocatedSegments;
+    private long usedSize;
+
+    private final ByteArrayOutputStream encodingBuffer = new ByteArrayOutputStream(1024);
+    private final Scheduler scheduler = Schedulers.createScheduler();
+
+    private final MetricRegistry metrics;
+    private final Gauge<Integer> sizeGauge;
+    private final Gauge<Long> usedSizeGauge;
+    private final Gauge<Long> allocatedSizeGauge;
+    private final Meter hitMeter;
+    private final Meter missMeter;
+    private final Meter evictionMeter;
+    private final Meter passivationMeter;
+    private final Meter activationMeter;
+
+    public OffHeapSessionStore(HTTPSessionConfiguration configuration) {
+        this.segmentSize = configuration.getOffHeapSegmentSize();
+        this.maxSegments = Math.max(1, (int) (configuration.getMaxOffHeapSize() / segmentSize));
+        this.passivationIdleTime = configuration.getPassivationIdleTime();
+        this.passivationInterval = configuration.getPassivationInterval();
+
+        metrics = configuration.getMetricReporterFactory().getMetricRegistry();
+        hitMeter = metrics.meter("http2.session.store.hit.count");
+        missMeter = metrics.meter("http2.session.store.miss.count");
+        evictionMeter = metrics.meter("http2.session.store.eviction.count");
+        passivationMeter = metrics.meter("http2.session.store.passivation.count");
+        activationMeter = metrics.meter("http2.session.store.activation.count");
+        sizeGauge = this::size;
+        usedSizeGauge = this::getUsedSize;
+        allocatedSizeGauge = this::getAllocatedSize;
+        // a new store takes over the gauges of a shared registry, the store removes its own gauges when it stops
+        replaceGauge("http2.session.store.size", sizeGauge);
+        replaceGauge("http2.session.store.offHeap.used", usedSizeGauge);
+        replaceGauge("http2.session.store.offHeap.allocated", allocatedSizeGauge);
+        start();
+    }
+
+    @Override
+    public HttpSession remove(String key) {
+        HttpSession session = sessionMap.remove(key);
+        if (session instanceof HTTPSessionImpl) {
+            ((HTTPSessionImpl) session).releasePassivatedAttributes();
+        }
+        return session;
+    }
+
+    @Override
+    public HttpSession put(String key, HttpSession value) {
+        HttpSession old = sessionMap.put(key, value);
+        if (old != value && old instanceof HTTPSessionImpl) {
+            ((HTTPSessionImpl) old).releasePassivatedAttributes();
+        }
+        return old;
+    }
+
+    @Override
+    public HttpSession get(String key) {
+        HttpSession session = sessionMap.get(key);
+        if (session != null) {
+            hitMeter.mark();
+        } else {
+            missMeter.mark();
+        }
+        return session;
+    }
+
+    @Override
+    public int size() {
+        return sessionMap.size();
+    }
+
+    /**
+     * @return The bytes of the passivated attributes that are not activated or removed.
+     */
+    public synchronized long getUsedSize() {
+        return usedSize;
+    }
+
+    /**
+     * @return The bytes of the allocated direct memory segments.
+     */
+    public synchronized long getAllocatedSize() {
+        return (long) allocatedSegments * segmentSize;
+    }
+
+    /**
+     * Passivate the sessions that are not accessed in the passivation idle time.
+     *
+     * @return The number of the passivated sessions.
+     */
+    public int passivate() {
+        long deadline = System.currentTimeMillis() - passivationIdleTime;
+        int count = 0;
+        for (HttpSession s : sessionMap.values()) {
+            if (s instanceof HTTPSessionImpl && s.getLastAccessedTime() <= deadline) {
+                HTTPSessionImpl session = (HTTPSessionImpl) s;
+                try {
+                    if (session.passivate(attributes -> store(session, attributes))) {
+                        count++;
+                    }
+                } catch (Throwable t) {
+                    log.error("passivate the session {} exception", t, session.getId());
+                }
+            }
+        }
+        if (count > 0) {
+            passivationMeter.mark(count);
+        }
+        return count;
+    }
+
+    private Block store(HTTPSessionImpl session, Map<String, Object> attributes) {
+        byte[] data;
+        synchronized (encodingBuffer) {
+            encodingBuffer.reset();
+            try {
+                encode(attributes, new DataOutputStream(encodingBuffer));
+            } catch (IOException e) {
+                log.warn("the session {} attributes can not be serialized, keep them in the heap. {}",
+                        session.getId(), e.getMessage());
+                return null;
+            }
+            data = encodingBuffer.toByteArray();
+        }
+        if (data.length > segmentSize) {
+            return null;
+        }
+
+        synchronized (this) {
+            if (current == null || current.position + data.length > segmentSize) {
+                nextSegment();
+            }
+            Block block = new Block(session, current, current.position, data.length);
+            ByteBuffer buffer = current.buffer.duplicate();
+            buffer.position(current.position);
+            buffer.put(data);
+            current.position += data.length;
+            current.used += data.length;
+            current.blocks.add(block);
+            usedSize += data.length;
+            return block;
+        }
+    }
+
+    private void nextSegment() {
+        Segment segment = freeSegments.poll();
+        if (segment == null) {
+            if (allocatedSegments < maxSegments) {
+                segment = new Segment(ByteBuffer.allocateDirect(segmentSize));
+                allocatedSegments++;
+            } else {
+                segment = evict();
+            }
+        }
+        segments.offer(segment);
+        current = segment;
+    }
+
+    private Segment evict() {
+        Segment oldest = segments.poll();
+        int count = 0;
+        for (Block block : oldest.blocks) {
+            if (!block.released) {
+                block.released = true;
+                sessionMap.remove(block.session.getId(), block.session);
+                count++;
+            }
+        }
+        usedSize -= oldest.used;
+        oldest.reset();
+        evictionMeter.mark(count);
+        if (log.isDebugEnabled()) {
+            log.debug("the off-heap session store evicts {} sessions", count);
+        }
+        return oldest;
+    }
+
+    private synchronized byte[] read(Block block) {
+        if (block.released) {
+            return null;
+        }
+        byte[] data = new byte[block.length];
+        ByteBuffer buffer = block.segment.buffer.duplicate();
+        buffer.position(block.offset);
+        buffer.get(data);
+        release(block);
+        return data;
+    }
+
+    private synchronized void release(Block block) {
+        if (block.released) {
+            return;
+        }
+        block.released = true;
+        Segment segment = block.segment;
+        segment.used -= block.length;
+        usedSize -= block.length;
+        if (segment.used == 0 && segment != current) {
+            segments.remove(segment);
+            segment.reset();
+            freeSegments.offer(segment);
+        }
+    }
+
+    private static void encode(Map<String, Object> attributes, DataOutputStream out) throws IOException {
+        out.writeInt(attributes.size());
+        for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+            writeString(entry.getKey(), out);
+            Object value = entry.getValue();
+            if (value == null) {
+                out.writeByte(NULL);
+            } else if (value instanceof String) {
+                out.writeByte(STRING);
+                writeString((String) value, out);
+            } else if (value instanceof Integer) {
+                out.writeByte(INTEGER);
+                out.writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                out.writeByte(LONG);
+                out.writeLong((Long) value);
+            } else if (value instanceof Boolean) {
+                out.writeByte(BOOLEAN);
+                out.writeBoolean((Boolean) value);
+            } else if (value instanceof Double) {
+                out.writeByte(DOUBLE);
+                out.writeDouble((Double) value);
+            } else if (value instanceof byte[]) {
+                out.writeByte(BYTES);
+                out.writeInt(((byte[]) value).length);
+                out.write((byte[]) value);
+            } else if (value instanceof Serializable) {
+                out.writeByte(SERIALIZABLE);
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream objectOut = new ObjectOutputStream(bytes)) {
+                    objectOut.writeObject(value);
+                }
+                out.writeInt(bytes.size());
+                bytes.writeTo(out);
+            } else {
+                throw new NotSerializableException(value.getClass().getName());
+            }
+        }
+    }
+
+    private static Map<String, Object> decode(DataInputStream in) throws IOException, ClassNotFoundException {
+        int size = in.readInt();
+        Map<String, Object> attributes = new HashMap<>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            String key = readString(in);
+            byte type = in.readByte();
+            switch (type) {
+                case NULL:
+                    attributes.put(key, null);
+                    break;
+                case STRING:
+                    attributes.put(key, readString(in));
+                    break;
+                case INTEGER:
+                    attributes.put(key, in.readInt());
+                    break;
+                case LONG:
+                    attributes.put(key, in.readLong());
+                    break;
+                case BOOLEAN:
+                    attributes.put(key, in.readBoolean());
+                    break;
+                case DOUBLE:
+                    attributes.put(key, in.readDouble());
+                    break;
+                case BYTES: {
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    attributes.put(key, bytes);
+                }
+                break;
+                case SERIALIZABLE: {
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                        attributes.put(key, objectIn.readObject());
+                    }
+                }
+                break;
+                default:
+                    throw new IOException("unknown attribute type " + type);
+            }
+        }
+        return attributes;
+    }
+
+    private static void writeString(String value, DataOutputStream out) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected void init() {
+        scheduler.scheduleWithFixedDelay(this::passivate, passivationInterval, passivationInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    protected void destroy() {
+        scheduler.stop();
+        metrics.removeMatching((name, metric) ->
+                metric == sizeGauge || metric == usedSizeGauge || metric == allocatedSizeGauge);
+        synchronized (this) {
+            segments.clear();
+            freeSegments.clear();
+            current = null;
+            allocatedSegments = 0;
+            usedSize = 0;
+        }
+    }
+
+    private void replaceGauge(String name, Gauge<?> gauge) {
+        metrics.remove(name);
+        metrics.register(name, gauge);
+    }
+
+    private static class Segment {
+        final ByteBuffer buffer;
+        final List<Block> blocks = new ArrayList<>();
+        int position;
+        int used;
+
+        Segment(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        void reset() {
+            blocks.clear();
+            position = 0;
+            used = 0;
+        }
+    }
+
+    private class Block implements HTTPSessionImpl.PassivatedAttributes {
+        final HTTPSessionImpl session;
+        final Segment segment;
+        final int offset;
+        final int length;
+        boolean released;
+
+        Block(HTTPSessionImpl session, Segment segment, int offset, int length) {
+            this.session = session;
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public Map<String, Object> activate() {
+            byte[] data = read(this);
+            if (data == null) {
+                // the session has been evicted
+                return new HashMap<>();
+            }
+            activationMeter.mark();
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+                return decode(in);
+            } catch (IOException | ClassNotFoundException e) {
+                throw new CommonRuntimeException(e);
+            }
+        }
+
+        @Override
+        public void release() {
+            OffHeapSessionStore.this.release(this);
+        }
+    }
+}
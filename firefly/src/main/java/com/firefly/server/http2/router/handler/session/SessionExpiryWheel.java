@@ -0,0 +1,149 @@
+package com.firefly.server.http2.router.handler.session;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.firefly.utils.concurrent.Scheduler;
+import com.firefly.utils.time.TimingWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expire the sessions by a hierarchical timing wheel. A session is put in the wheel at its deadline, and the
+ * accessing only updates the last accessed time of the session. When the deadline comes, the sweeper checks the
+ * session again, the session that is still active is put back at its new deadline. So the scheduling, touching and
+ * cancelling are O(1), and the expired sessions are removed in a batch every tick.
+ *
+ * @author Pengtao Qiu
+ */
+public class SessionExpiryWheel {
+
+    private static final Logger log = LoggerFactory.getLogger("firefly-system");
+
+    private final SessionStore sessionStore;
+    private final long tickInterval;
+    private final TimingWheel<HTTPSessionImpl> wheel;
+    private final MetricRegistry metrics;
+    private final Meter expirationMeter;
+    private final Gauge<Integer> liveSizeGauge;
+    private final Gauge<Integer> scheduledSizeGauge;
+    private final Scheduler.Future sweeper;
+
+    public SessionExpiryWheel(SessionStore sessionStore, Scheduler scheduler, HTTPSessionConfiguration configuration) {
+        this.sessionStore = sessionStore;
+        this.tickInterval = configuration.getExpiryTickInterval();
+        this.wheel = new TimingWheel<>(configuration.getExpiryWheelLevels(), currentTick());
+
+        metrics = configuration.getMetricReporterFactory().getMetricRegistry();
+        expirationMeter = metrics.meter("http2.session.expiration.count");
+        liveSizeGauge = sessionStore::size;
+        scheduledSizeGauge = this::size;
+        // the gauges report the latest wheel of the registry, and they are removed when the wheel is stopped
+        replaceGauge("http2.session.live.size", liveSizeGauge);
+        replaceGauge("http2.session.expiry.scheduled.size", scheduledSizeGauge);
+        sweeper = scheduler.scheduleAtFixedRate(this::sweep, tickInterval, tickInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Put the session in the wheel at its deadline.
+     *
+     * @param session The new session.
+     */
+    public void schedule(HTTPSessionImpl session) {
+        long deadlineTick = deadlineTick(session);
+        synchronized (this) {
+            if (session.expiryEntry != null) {
+                wheel.cancel(session.expiryEntry);
+            }
+            session.expiryEntry = wheel.add(session, deadlineTick);
+        }
+    }
+
+    /**
+     * The session is accessed. The later deadline is checked when the session comes to the current deadline, so the
+     * session is moved only if the max inactive interval is shortened.
+     *
+     * @param session The accessed session.
+     */
+    public void touch(HTTPSessionImpl session) {
+        TimingWheel.Entry<HTTPSessionImpl> entry = session.expiryEntry;
+        if (entry == null || deadlineTick(session) < entry.getDeadlineTick()) {
+            schedule(session);
+        }
+    }
+
+    /**
+     * Remove the session from the wheel.
+     *
+     * @param session The removed session.
+     */
+    public synchronized void cancel(HTTPSessionImpl session) {
+        if (session.expiryEntry != null) {
+            wheel.cancel(session.expiryEntry);
+            session.expiryEntry = null;
+        }
+    }
+
+    public synchronized int size() {
+        return wheel.size();
+    }
+
+    public void stop() {
+        sweeper.cancel();
+        metrics.removeMatching((name, metric) -> metric == liveSizeGauge || metric == scheduledSizeGauge);
+    }
+
+    private void replaceGauge(String name, Gauge<Integer> gauge) {
+        metrics.remove(name);
+        metrics.register(name, gauge);
+    }
+
+    void sweep() {
+        List<HTTPSessionImpl> due = new ArrayList<>();
+        synchronized (this) {
+            wheel.advance(currentTick(), session -> {
+                session.expiryEntry = null;
+                due.add(session);
+            });
+        }
+
+        int expired = 0;
+        for (HTTPSessionImpl session : due) {
+            try {
+                if (session.check()) {
+                    long deadlineTick = deadlineTick(session);
+                    synchronized (this) {
+                        if (session.expiryEntry == null) {
+                            session.expiryEntry = wheel.add(session, deadlineTick);
+                        }
+                    }
+                } else {
+                    sessionStore.remove(session.getId());
+                    expired++;
+                }
+            } catch (Throwable t) {
+                log.error("sweep the session {} exception", t, session.getId());
+            }
+        }
+
+        if (expired > 0) {
+            expirationMeter.mark(expired);
+            if (log.isDebugEnabled()) {
+                log.debug("the session expiry wheel removes {} sessions", expired);
+            }
+        }
+    }
+
+    private long currentTick() {
+        return System.currentTimeMillis() / tickInterval;
+    }
+
+    private long deadlineTick(HTTPSessionImpl session) {
+        long deadline = session.getLastAccessedTime() + session.getMaxInactiveInterval() * 1000L;
+        return (deadline + tickInterval - 1) / tickInterval;
+    }
+}
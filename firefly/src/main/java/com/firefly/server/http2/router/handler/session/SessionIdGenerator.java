@@ -0,0 +1,60 @@
+package com.firefly.server.http2.router.handler.session;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Generate the session id from 128 random bits. Every thread has its own SecureRandom instance, so the generating
+ * does not contend on the shared SecureRandom like UUID.randomUUID(). The instances are seeded from one shared
+ * SecureRandom when they are created, and they are reseeded after generating a number of ids. The seeding reads
+ * the bytes of the shared instance instead of the blocking seed generator.
+ *
+ * @author Pengtao Qiu
+ */
+public class SessionIdGenerator {
+
+    private static final int ID_BYTES = 16;
+    private static final int RESEED_INTERVAL = 1 << 20;
+    private static final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+
+    private static final SecureRandom seedRandom = new SecureRandom();
+    private static final ThreadLocal<ThreadRandom> random = ThreadLocal.withInitial(ThreadRandom::new);
+
+    public String generate() {
+        byte[] bytes = new byte[ID_BYTES];
+        random.get().nextBytes(bytes);
+        return encoder.encodeToString(bytes);
+    }
+
+    private static class ThreadRandom {
+        private final SecureRandom secureRandom;
+        private int count;
+
+        ThreadRandom() {
+            SecureRandom r;
+            try {
+                // the SHA1PRNG instance does not read the shared native source after it is seeded
+                r = SecureRandom.getInstance("SHA1PRNG");
+            } catch (NoSuchAlgorithmException e) {
+                r = new SecureRandom();
+            }
+            r.setSeed(seed());
+            secureRandom = r;
+        }
+
+        void nextBytes(byte[] bytes) {
+            if (++count >= RESEED_INTERVAL) {
+                count = 0;
+                secureRandom.setSeed(seed());
+            }
+            secureRandom.nextBytes(bytes);
+        }
+
+        private static byte[] seed() {
+            byte[] seed = new byte[ID_BYTES];
+            seedRandom.nextBytes(seed);
+            return seed;
+        }
+    }
+}
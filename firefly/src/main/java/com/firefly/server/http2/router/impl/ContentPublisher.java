@@ -0,0 +1,236 @@
+package com.firefly.server.http2.router.impl;
+
+import com.firefly.codec.http2.stream.ConnectionType;
+import com.firefly.codec.http2.stream.HTTPConnection;
+import com.firefly.server.http2.router.ContentSubscriber;
+import com.firefly.utils.concurrent.Callback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Deliver the request content to a {@link ContentSubscriber} by the demand of the subscriber. The received buffers
+ * are queued without copying. When the queued bytes exceed the max pending size, the HTTP1 connection suspends
+ * reading, and it resumes reading when the subscriber drains the queue to the half of the max pending size.
+ * <p>
+ * The callback of the buffer is completed when the buffer is delivered to the subscriber. The HTTP2 stream returns
+ * the flow control window at that time, so the queue of a HTTP2 stream is bounded by the stream window.
+ *
+ * @author Pengtao Qiu
+ */
+public class ContentPublisher implements ContentSubscriber.Subscription {
+
+    private static final Logger log = LoggerFactory.getLogger("firefly-system");
+
+    private final ContentSubscriber subscriber;
+    private final HTTPConnection connection;
+    private final int maxPendingSize;
+    private final LinkedList<Content> queue = new LinkedList<>();
+    private long pendingSize;
+    private long demand;
+    private boolean completed;
+    private boolean cancelled;
+    private boolean terminated;
+    private boolean draining;
+    private boolean suspended;
+
+    private static class Content {
+        final ByteBuffer buffer;
+        final Callback callback;
+
+        Content(ByteBuffer buffer, Callback callback) {
+            this.buffer = buffer;
+            this.callback = callback;
+        }
+    }
+
+    public ContentPublisher(ContentSubscriber subscriber, HTTPConnection connection, int maxPendingSize) {
+        this.subscriber = subscriber;
+        this.connection = connection;
+        this.maxPendingSize = maxPendingSize;
+    }
+
+    public void subscribe() {
+        subscriber.onSubscribe(this);
+    }
+
+    /**
+     * Receive the content buffer from the connection.
+     *
+     * @param buffer The content buffer.
+     */
+    public void offer(ByteBuffer buffer) {
+        offer(buffer, Callback.NOOP);
+    }
+
+    /**
+     * Receive the content buffer from the connection.
+     *
+     * @param buffer   The content buffer.
+     * @param callback The callback is completed when the buffer is delivered or discarded.
+     */
+    public void offer(ByteBuffer buffer, Callback callback) {
+        synchronized (this) {
+            if (cancelled || terminated || !buffer.hasRemaining()) {
+                callback.succeeded();
+                return;
+            }
+            queue.offer(new Content(buffer.slice(), callback));
+            pendingSize += buffer.remaining();
+            if (!suspended && pendingSize > maxPendingSize && canSuspend()) {
+                suspended = true;
+                connection.suspendRead();
+            }
+        }
+        drain();
+    }
+
+    public void complete() {
+        synchronized (this) {
+            completed = true;
+        }
+        drain();
+    }
+
+    public void fail(Throwable t) {
+        List<Content> discarded;
+        synchronized (this) {
+            if (cancelled || terminated) {
+                return;
+            }
+            terminated = true;
+            discarded = discard();
+        }
+        discarded.forEach(c -> c.callback.succeeded());
+        subscriber.onError(t);
+    }
+
+    @Override
+    public void request(long n) {
+        if (n <= 0) {
+            fail(new IllegalArgumentException("the request number must be positive"));
+            return;
+        }
+        synchronized (this) {
+            demand += n;
+            if (demand < 0) {
+                demand = Long.MAX_VALUE;
+            }
+        }
+        drain();
+    }
+
+    @Override
+    public void cancel() {
+        List<Content> discarded;
+        synchronized (this) {
+            cancelled = true;
+            discarded = discard();
+        }
+        // the discarded content returns the flow control window, the connection continues reading
+        discarded.forEach(c -> c.callback.succeeded());
+    }
+
+    private List<Content> discard() {
+        List<Content> discarded = new ArrayList<>(queue);
+        queue.clear();
+        pendingSize = 0;
+        resume();
+        return discarded;
+    }
+
+    public synchronized boolean isSuspended() {
+        return suspended;
+    }
+
+    /**
+     * Get the bytes that are received but not delivered.
+     *
+     * @return The pending bytes.
+     */
+    public synchronized long getPendingSize() {
+        return pendingSize;
+    }
+
+    private void drain() {
+        synchronized (this) {
+            // the subscriber may request in the onNext method, the delivering thread continues the loop
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+
+        try {
+            while (true) {
+                Content content;
+                boolean complete = false;
+                synchronized (this) {
+                    if (cancelled || terminated) {
+                        draining = false;
+                        return;
+                    }
+                    if (queue.isEmpty()) {
+                        if (completed) {
+                            terminated = true;
+                            complete = true;
+                        } else {
+                            draining = false;
+                            return;
+                        }
+                    }
+
+                    if (complete) {
+                        content = null;
+                    } else if (demand > 0) {
+                        content = queue.poll();
+                        demand--;
+                        pendingSize -= content.buffer.remaining();
+                        if (suspended && pendingSize <= maxPendingSize / 2) {
+                            resume();
+                        }
+                    } else {
+                        draining = false;
+                        return;
+                    }
+                }
+
+                if (complete) {
+                    subscriber.onComplete();
+                    synchronized (this) {
+                        draining = false;
+                    }
+                    return;
+                } else {
+                    try {
+                        subscriber.onNext(content.buffer);
+                    } finally {
+                        content.callback.succeeded();
+                    }
+                }
+            }
+        } catch (Throwable t) {
+            log.error("the content subscriber exception", t);
+            synchronized (this) {
+                draining = false;
+            }
+            fail(t);
+        }
+    }
+
+    private boolean canSuspend() {
+        // the HTTP2 streams share the connection, they are limited by the flow control windows
+        return connection != null && connection.getConnectionType() == ConnectionType.HTTP1;
+    }
+
+    private void resume() {
+        if (suspended) {
+            suspended = false;
+            connection.resumeRead();
+        }
+    }
+}
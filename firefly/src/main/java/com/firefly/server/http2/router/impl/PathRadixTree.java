@@ -0,0 +1,379 @@
+package com.firefly.server.http2.router.impl;
+
+import com.firefly.server.http2.router.Router;
+import com.firefly.server.http2.router.utils.PathUtils;
+import com.firefly.utils.pattern.Pattern;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * The compiled path index of the routers. It is a segment radix tree, the path is split by '/' in the same way as
+ * the {@link PathUtils#split(String)}.
+ * <ul>
+ * <li>The precise path is stored at the leaf of the static segments.</li>
+ * <li>The parameter path ("/user/:id") is stored at the leaf, the parameter segment follows the parameter child.</li>
+ * <li>The wildcard path that ends with only one '*' ("/static/*") is stored at the node of its static prefix segments,
+ * so the request only evaluates the wildcard rules along its own path. The other wildcard rules are not anchored at
+ * the beginning of the path, they are stored at the root.</li>
+ * <li>The regex paths are the fallback bucket, they are evaluated for every request.</li>
+ * </ul>
+ * Matching the path does not allocate anything except the parameter maps of the matched routers.
+ *
+ * @author Pengtao Qiu
+ */
+public class PathRadixTree {
+
+    private final Node root = new Node();
+    private final List<RegexRoute> regexRoutes = new ArrayList<>();
+    private boolean hasParameterRoute;
+
+    private static class PreciseRoute {
+        final String rule;
+        final Router router;
+
+        PreciseRoute(String rule, Router router) {
+            this.rule = rule;
+            this.router = router;
+        }
+    }
+
+    private static class ParameterRoute {
+        final String[] names;
+        final Router router;
+
+        ParameterRoute(String[] names, Router router) {
+            this.names = names;
+            this.router = router;
+        }
+    }
+
+    private static class PatternRoute {
+        final Pattern pattern;
+        final Router router;
+
+        PatternRoute(String rule, Router router) {
+            this.pattern = Pattern.compile(rule, "*");
+            this.router = router;
+        }
+    }
+
+    private static class RegexRoute {
+        final java.util.regex.Pattern pattern;
+        final Router router;
+
+        RegexRoute(String rule, Router router) {
+            this.pattern = java.util.regex.Pattern.compile(rule);
+            this.router = router;
+        }
+    }
+
+    private static class Node {
+        // the static children, open addressing hash table
+        String[] keys;
+        Node[] children;
+        int size;
+
+        Node parameterChild;
+        List<PreciseRoute> preciseRoutes;
+        List<ParameterRoute> parameterRoutes;
+        List<PatternRoute> patternRoutes;
+
+        Node child(String path, int start, int end) {
+            if (keys == null) {
+                return null;
+            }
+
+            int mask = keys.length - 1;
+            int len = end - start;
+            for (int i = hash(path, start, end) & mask; keys[i] != null; i = (i + 1) & mask) {
+                String key = keys[i];
+                if (key.length() == len && key.regionMatches(0, path, start, len)) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node addChild(String segment) {
+            Node node = child(segment, 0, segment.length());
+            if (node != null) {
+                return node;
+            }
+
+            if (keys == null) {
+                keys = new String[4];
+                children = new Node[4];
+            } else if ((size + 1) * 2 > keys.length) {
+                String[] oldKeys = keys;
+                Node[] oldChildren = children;
+                keys = new String[oldKeys.length * 2];
+                children = new Node[oldKeys.length * 2];
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldKeys[i] != null) {
+                        put(oldKeys[i], oldChildren[i]);
+                    }
+                }
+            }
+
+            node = new Node();
+            put(segment, node);
+            size++;
+            return node;
+        }
+
+        private void put(String key, Node node) {
+            int mask = keys.length - 1;
+            int i = hash(key, 0, key.length()) & mask;
+            while (keys[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            children[i] = node;
+        }
+
+        Node addParameterChild() {
+            if (parameterChild == null) {
+                parameterChild = new Node();
+            }
+            return parameterChild;
+        }
+    }
+
+    private static int hash(String s, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Add the precise path.
+     *
+     * @param rule   The path ends with '/'.
+     * @param router The router.
+     */
+    public void addPrecisePath(String rule, Router router) {
+        Node node = root;
+        for (String segment : split(rule)) {
+            node = node.addChild(segment);
+        }
+        if (node.preciseRoutes == null) {
+            node.preciseRoutes = new ArrayList<>();
+        }
+        node.preciseRoutes.add(new PreciseRoute(rule, router));
+    }
+
+    /**
+     * Add the parameter path.
+     *
+     * @param rule   The path ends with '/', the parameter segment starts with ':'.
+     * @param router The router.
+     */
+    public void addParameterPath(String rule, Router router) {
+        List<String> segments = split(rule);
+        String[] names = new String[segments.size()];
+        Node node = root;
+        for (int i = 0; i < segments.size(); i++) {
+            String segment = segments.get(i);
+            if (segment.charAt(0) == ':') {
+                names[i] = segment.substring(1);
+                node = node.addParameterChild();
+            } else {
+                node = node.addChild(segment);
+            }
+        }
+        if (node.parameterRoutes == null) {
+            node.parameterRoutes = new ArrayList<>();
+        }
+        node.parameterRoutes.add(new ParameterRoute(names, router));
+        hasParameterRoute = true;
+    }
+
+    /**
+     * Add the wildcard path.
+     *
+     * @param rule   The path contains '*'.
+     * @param router The router.
+     */
+    public void addPatternPath(String rule, Router router) {
+        Node node = root;
+        int wildcard = rule.indexOf('*');
+        if (wildcard == rule.length() - 1 && rule.length() > 1 && rule.charAt(0) == '/') {
+            // the prefix of the rule is anchored, all the paths that match the rule pass through the prefix node
+            String prefix = rule.substring(0, rule.lastIndexOf('/') + 1);
+            for (String segment : split(prefix)) {
+                node = node.addChild(segment);
+            }
+        }
+        if (node.patternRoutes == null) {
+            node.patternRoutes = new ArrayList<>();
+        }
+        node.patternRoutes.add(new PatternRoute(rule, router));
+    }
+
+    /**
+     * Add the regex path.
+     *
+     * @param rule   The regular expression.
+     * @param router The router.
+     */
+    public void addRegexPath(String rule, Router router) {
+        regexRoutes.add(new RegexRoute(rule, router));
+    }
+
+    /**
+     * Find the routers that match the path.
+     *
+     * @param path     The request path.
+     * @param consumer Receives the matched router and its parameters. The parameters are null if the path has not any
+     *                 parameter.
+     */
+    public void match(String path, BiConsumer<Router, Map<String, String>> consumer) {
+        if (path.length() == 1 && path.charAt(0) != '/' && hasParameterRoute) {
+            throw new IllegalArgumentException("the path: [" + path + "] format error");
+        }
+
+        // the wildcard rules along the static segments
+        matchPattern(root, path, consumer);
+        int count = segmentCount(path);
+        int[] segments = count > 0 ? new int[count * 2] : null;
+        int start = 1;
+        int max = path.length() - 1;
+        int index = 0;
+        Node node = root;
+        for (int i = 1; i <= max; i++) {
+            if (path.charAt(i) == '/') {
+                index = addSegment(path, segments, index, start, i);
+                start = i + 1;
+            }
+        }
+        if (path.charAt(max) != '/') {
+            addSegment(path, segments, index, start, path.length());
+        }
+
+        for (int i = 0; i < count && node != null; i++) {
+            node = node.child(path, segments[i * 2], segments[i * 2 + 1]);
+            if (node != null) {
+                matchPattern(node, path, consumer);
+            }
+        }
+
+        // the precise and parameter rules
+        matchSegment(root, path, segments, 0, count, consumer);
+
+        for (RegexRoute route : regexRoutes) {
+            java.util.regex.Matcher m = route.pattern.matcher(path);
+            if (m.matches()) {
+                m.reset();
+                Map<String, String> param = null;
+                while (m.find()) {
+                    for (int i = 1; i <= m.groupCount(); i++) {
+                        if (param == null) {
+                            param = new HashMap<>();
+                        }
+                        param.put("group" + i, m.group(i));
+                    }
+                }
+                consumer.accept(route.router, param);
+            }
+        }
+    }
+
+    private void matchSegment(Node node, String path, int[] segments, int depth, int count,
+                              BiConsumer<Router, Map<String, String>> consumer) {
+        if (depth == count) {
+            if (node.preciseRoutes != null) {
+                for (PreciseRoute route : node.preciseRoutes) {
+                    if (isPrecise(route.rule, path)) {
+                        consumer.accept(route.router, null);
+                    }
+                }
+            }
+            if (node.parameterRoutes != null && count > 0) {
+                for (ParameterRoute route : node.parameterRoutes) {
+                    Map<String, String> param = new HashMap<>();
+                    for (int i = 0; i < route.names.length; i++) {
+                        if (route.names[i] != null) {
+                            param.put(route.names[i], path.substring(segments[i * 2], segments[i * 2 + 1]));
+                        }
+                    }
+                    consumer.accept(route.router, param);
+                }
+            }
+            return;
+        }
+
+        Node child = node.child(path, segments[depth * 2], segments[depth * 2 + 1]);
+        if (child != null) {
+            matchSegment(child, path, segments, depth + 1, count, consumer);
+        }
+        if (node.parameterChild != null) {
+            matchSegment(node.parameterChild, path, segments, depth + 1, count, consumer);
+        }
+    }
+
+    private static void matchPattern(Node node, String path, BiConsumer<Router, Map<String, String>> consumer) {
+        if (node.patternRoutes == null) {
+            return;
+        }
+
+        for (PatternRoute route : node.patternRoutes) {
+            String[] strings = route.pattern.match(path);
+            if (strings != null) {
+                Map<String, String> param = null;
+                if (strings.length > 0) {
+                    param = new HashMap<>();
+                    for (int i = 0; i < strings.length; i++) {
+                        param.put("param" + i, strings[i]);
+                    }
+                }
+                consumer.accept(route.router, param);
+            }
+        }
+    }
+
+    private static boolean isPrecise(String rule, String path) {
+        // the precise rule always ends with '/'
+        if (path.charAt(path.length() - 1) == '/') {
+            return rule.equals(path);
+        } else {
+            return rule.length() == path.length() + 1 && rule.regionMatches(0, path, 0, path.length());
+        }
+    }
+
+    private static int segmentCount(String path) {
+        int count = 0;
+        int max = path.length() - 1;
+        for (int i = 1; i <= max; i++) {
+            if (path.charAt(i) == '/') {
+                count++;
+            }
+        }
+        if (path.charAt(max) != '/') {
+            count++;
+        }
+        return count;
+    }
+
+    private static int addSegment(String path, int[] segments, int index, int start, int end) {
+        // trim the segment like the String.trim()
+        while (start < end && path.charAt(start) <= ' ') {
+            start++;
+        }
+        while (start < end && path.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        segments[index * 2] = start;
+        segments[index * 2 + 1] = end;
+        return index + 1;
+    }
+
+    private static List<String> split(String path) {
+        return PathUtils.split(path);
+    }
+}
@@ -6,12 +6,11 @@ import com.firefly.server.http2.router.Matcher.MatchType;
 import com.firefly.server.http2.router.Router;
 import com.firefly.server.http2.router.RoutingContext;
 import com.firefly.server.http2.router.utils.PathUtils;
+import com.firefly.utils.StringUtils;
 import com.firefly.utils.function.Action1;
+import com.firefly.utils.pattern.Pattern;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Objects;
-import java.util.Set;
+import java.util.*;
 
 /**
  * @author Pengtao Qiu
@@ -21,6 +20,11 @@ public class RouterImpl implements Router {
     private final int id;
     private final RouterManagerImpl routerManager;
     private final Set<MatchType> matchTypes;
+    private final Set<String> methods = new HashSet<>();
+    private final Set<String> contentTypes = new HashSet<>();
+    private final List<Pattern> contentTypePatterns = new ArrayList<>();
+    private final Set<String> accepts = new HashSet<>();
+    private final List<String[]> acceptTypes = new ArrayList<>();
 
     private Handler handler;
     private boolean enable = true;
@@ -41,9 +45,11 @@ public class RouterImpl implements Router {
             switch (url.charAt(0)) {
                 case '/':
                     routerManager.getPrecisePathMather().add(url, this);
+                    routerManager.getPathRadixTree().addPrecisePath(url, this);
                     break;
                 case '*':
                     routerManager.getPatternPathMatcher().add(url, this);
+                    routerManager.getPathRadixTree().addPatternPath(url, this);
                     break;
                 default:
                     throw new IllegalArgumentException("the url: [" + url + "] format error");
@@ -55,6 +61,7 @@ public class RouterImpl implements Router {
 
             if (url.contains("*")) {
                 routerManager.getPatternPathMatcher().add(url, this);
+                routerManager.getPathRadixTree().addPatternPath(url, this);
             } else {
                 if (url.charAt(url.length() - 1) != '/') {
                     url = url + "/";
@@ -63,13 +70,17 @@ public class RouterImpl implements Router {
                 List<String> paths = PathUtils.split(url);
                 if (isParameterPath(paths)) {
                     routerManager.getParameterPathMatcher().add(url, this);
+                    routerManager.getPathRadixTree().addParameterPath(url, this);
                 } else {
                     routerManager.getPrecisePathMather().add(url, this);
+                    routerManager.getPathRadixTree().addPrecisePath(url, this);
                 }
             }
         }
         this.url = url;
         matchTypes.add(MatchType.PATH);
+        routerManager.removePathlessRouter(this);
+        routerManager.invalidateMatchCache();
         return this;
     }
 
@@ -97,8 +108,11 @@ public class RouterImpl implements Router {
         checkPath(regex);
         regex = regex.trim();
         routerManager.getRegexPathMatcher().add(regex, this);
+        routerManager.getPathRadixTree().addRegexPath(regex, this);
         this.url = regex;
         matchTypes.add(MatchType.PATH);
+        routerManager.removePathlessRouter(this);
+        routerManager.invalidateMatchCache();
         return this;
     }
 
@@ -110,7 +124,8 @@ public class RouterImpl implements Router {
     @Override
     public Router method(String method) {
         routerManager.getHttpMethodMatcher().add(method, this);
-        matchTypes.add(MatchType.METHOD);
+        methods.add(method);
+        addMatchType(MatchType.METHOD);
         return this;
     }
 
@@ -138,20 +153,117 @@ public class RouterImpl implements Router {
     public Router consumes(String contentType) {
         if (!contentType.contains("*")) {
             routerManager.getContentTypePreciseMatcher().add(contentType, this);
+            contentTypes.add(contentType);
         } else {
             routerManager.getContentTypePatternMatcher().add(contentType, this);
+            contentTypePatterns.add(Pattern.compile(contentType, "*"));
         }
-        matchTypes.add(MatchType.CONTENT_TYPE);
+        addMatchType(MatchType.CONTENT_TYPE);
         return this;
     }
 
     @Override
     public Router produces(String accept) {
         routerManager.getAcceptHeaderMatcher().add(accept, this);
-        matchTypes.add(MatchType.ACCEPT);
+        if (accepts.add(accept)) {
+            String[] t = StringUtils.split(accept, '/');
+            acceptTypes.add(new String[]{t[0].trim(), t[1].trim()});
+        }
+        addMatchType(MatchType.ACCEPT);
         return this;
     }
 
+    private void addMatchType(MatchType matchType) {
+        matchTypes.add(matchType);
+        if (!matchTypes.contains(MatchType.PATH)) {
+            routerManager.addPathlessRouter(this);
+        }
+        routerManager.invalidateMatchCache();
+    }
+
+    /**
+     * Check whether the request method matches this router. It is equivalent to the {@link HTTPMethodMatcher}.
+     *
+     * @param method The upper case HTTP method.
+     * @return If true, the method matches this router.
+     */
+    public boolean matchMethod(String method) {
+        return methods.contains(method);
+    }
+
+    /**
+     * Check whether the MIME type of the request content type matches this router. It is equivalent to
+     * the {@link ContentTypePreciseMatcher} and the {@link ContentTypePatternMatcher}.
+     *
+     * @param mimeType The MIME type of the request content type.
+     * @return If true, the content type matches this router.
+     */
+    public boolean matchContentType(String mimeType) {
+        if (contentTypes.contains(mimeType)) {
+            return true;
+        }
+        for (Pattern pattern : contentTypePatterns) {
+            if (pattern.match(mimeType) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Put the wildcard parameters of the content type into the router parameters.
+     *
+     * @param mimeType   The MIME type of the request content type.
+     * @param parameters The router parameters, it may be null.
+     * @return The router parameters, it is null if there are not any parameters.
+     */
+    public Map<String, String> putContentTypeParameters(String mimeType, Map<String, String> parameters) {
+        for (Pattern pattern : contentTypePatterns) {
+            String[] strings = pattern.match(mimeType);
+            if (strings != null && strings.length > 0) {
+                if (parameters == null) {
+                    parameters = new HashMap<>();
+                }
+                for (int i = 0; i < strings.length; i++) {
+                    parameters.put("param" + i, strings[i]);
+                }
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Check whether the accepted MIME types match this router. It is equivalent to the {@link AcceptHeaderMatcher}.
+     *
+     * @param acceptTypes The accepted MIME types of the request, every element contains the trimmed parent type,
+     *                    the trimmed child type and the MIME type.
+     * @return If true, the accepted MIME types match this router.
+     */
+    public boolean matchAccept(List<String[]> acceptTypes) {
+        for (String[] acceptType : acceptTypes) {
+            String parentType = acceptType[0];
+            String childType = acceptType[1];
+            if (parentType.equals("*")) {
+                if (!childType.equals("*")) {
+                    for (String[] t : this.acceptTypes) {
+                        if (t[1].equals(childType)) {
+                            return true;
+                        }
+                    }
+                }
+            } else if (childType.equals("*")) {
+                for (String[] t : this.acceptTypes) {
+                    if (t[0].equals(parentType)) {
+                        return true;
+                    }
+                }
+            } else if (accepts.contains(acceptType[2])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public Router handler(Handler handler) {
         this.handler = handler;
@@ -161,12 +273,14 @@ public class RouterImpl implements Router {
     @Override
     public Router enable() {
         enable = true;
+        routerManager.invalidateMatchCache();
         return this;
     }
 
     @Override
     public Router disable() {
         enable = false;
+        routerManager.invalidateMatchCache();
         return this;
     }
 
@@ -1,6 +1,7 @@
 package com.firefly.server.http2.router.impl;
 
 import com.firefly.codec.http2.model.HttpHeader;
+import com.firefly.codec.http2.model.MimeTypes;
 import com.firefly.server.http2.SimpleRequest;
 import com.firefly.server.http2.router.Matcher;
 import com.firefly.server.http2.router.Router;
@@ -10,7 +11,7 @@ import com.firefly.utils.StringUtils;
 
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.function.BiConsumer;
 
 /**
  * @author Pengtao Qiu
@@ -27,6 +28,9 @@ public class RouterManagerImpl implements RouterManager {
     private final Matcher contentTypePreciseMatcher;
     private final Matcher contentTypePatternMatcher;
     private final Matcher acceptHeaderMatcher;
+    private final PathRadixTree pathRadixTree = new PathRadixTree();
+    private final List<RouterImpl> pathlessRouters = new ArrayList<>();
+    private volatile RouterMatchCache matchCache;
 
     public RouterManagerImpl() {
         matcherMap = new HashMap<>();
@@ -79,76 +83,245 @@ public class RouterManagerImpl implements RouterManager {
         return contentTypePatternMatcher;
     }
 
+    public PathRadixTree getPathRadixTree() {
+        return pathRadixTree;
+    }
+
+    public RouterMatchCache getMatchCache() {
+        return matchCache;
+    }
+
+    /**
+     * Set the max entries of the router match cache.
+     *
+     * @param maxEntries The max entries of the cache. If it is less than or equals 0, the cache is disabled.
+     */
+    public void setMatchCacheSize(int maxEntries) {
+        matchCache = maxEntries > 0 ? new RouterMatchCache(maxEntries) : null;
+    }
+
+    void invalidateMatchCache() {
+        RouterMatchCache matchCache = this.matchCache;
+        if (matchCache != null) {
+            matchCache.invalidate();
+        }
+    }
+
+    void addPathlessRouter(RouterImpl router) {
+        if (!pathlessRouters.contains(router)) {
+            pathlessRouters.add(router);
+        }
+    }
+
+    void removePathlessRouter(RouterImpl router) {
+        pathlessRouters.remove(router);
+    }
+
+    /**
+     * Find the routers. The candidates are found by the path radix tree, and then the method, content type and
+     * accept rules are checked by the candidates themselves. The result is the same as the combination of
+     * all the matchers.
+     */
     @Override
     public NavigableSet<RouterMatchResult> findRouter(String method, String path, String contentType, String accept) {
-        Map<Router, Set<Matcher.MatchType>> routerMatchTypes = new HashMap<>();
-        Map<Router, Map<String, String>> routerParameters = new HashMap<>();
-        findRouter(method, Matcher.MatchType.METHOD, routerMatchTypes, routerParameters);
-        findRouter(path, Matcher.MatchType.PATH, routerMatchTypes, routerParameters);
-        findRouter(contentType, Matcher.MatchType.CONTENT_TYPE, routerMatchTypes, routerParameters);
-        findRouter(accept, Matcher.MatchType.ACCEPT, routerMatchTypes, routerParameters);
-
-        Map<Router, Set<Matcher.MatchType>> filtered = filter(routerMatchTypes);
-
-        if (filtered.isEmpty()) {
-            return Collections.emptyNavigableSet();
-        } else {
-            NavigableSet<RouterMatchResult> ret = new TreeSet<>();
-            filtered.forEach((router, value) -> {
-                Map<String, String> routerParam = routerParameters.get(router);
-                ret.add(new RouterMatchResult(router, routerParam, value));
-            });
-            return ret;
-        }
-    }
-
-    private Map<Router, Set<Matcher.MatchType>> filter(Map<Router, Set<Matcher.MatchType>> routerMatchTypes) {
-        Map<Router, Set<Matcher.MatchType>> ret = new HashMap<>();
-        routerMatchTypes.entrySet()
-                        .stream()
-                        .filter(e -> e.getKey().isEnable())
-                        .filter(e -> e.getKey().getMatchTypes().equals(e.getValue()))
-                        .forEach(e -> ret.computeIfAbsent(e.getKey(), k -> new HashSet<>()).addAll(e.getValue()));
-        return ret;
-    }
-
-    private List<Matcher.MatchResult> findRouter(String value, Matcher.MatchType matchType,
-                                                 Map<Router, Set<Matcher.MatchType>> routerMatchTypes,
-                                                 Map<Router, Map<String, String>> routerParameters) {
-        List<Matcher.MatchResult> r = findRouter(value, matchType);
-        r.forEach(result -> result.getRouters().forEach(router -> {
-            routerMatchTypes.computeIfAbsent(router, k -> new HashSet<>()).add(result.getMatchType());
-            if (result.getParameters() != null && !result.getParameters().isEmpty()) {
-                routerParameters.computeIfAbsent(router, k -> new HashMap<>())
-                                .putAll(result.getParameters().get(router));
+        RouterMatchCache matchCache = this.matchCache;
+        if (matchCache != null) {
+            return findRouter(matchCache, method, path, contentType, accept);
+        }
+
+        RouterCollector collector = new RouterCollector(method, contentType, accept);
+        if (StringUtils.hasText(path)) {
+            pathRadixTree.match(path, collector);
+        }
+        return collectPathlessRouters(collector);
+    }
+
+    private NavigableSet<RouterMatchResult> findRouter(RouterMatchCache matchCache,
+                                                       String method, String path,
+                                                       String contentType, String accept) {
+        int version = matchCache.getVersion();
+        RouterCollector collector = new RouterCollector(method, contentType, accept);
+        // the header parameters and the order of the accept types do not change the match result
+        String mimeType = collector.getMimeType();
+        String acceptTypes = collector.getNormalizedAcceptTypes();
+        RouterMatchCache.Key key = new RouterMatchCache.Key(collector.method, path, null, mimeType, acceptTypes);
+        RouterImpl[] routers = matchCache.get(key, version);
+        if (routers != null) {
+            for (RouterImpl router : routers) {
+                collector.add(router, null);
+            }
+            return collector.getResult();
+        }
+
+        PathCandidates candidates = new PathCandidates();
+        if (StringUtils.hasText(path)) {
+            pathRadixTree.match(path, candidates);
+        }
+        if (candidates.hasParameters) {
+            // the requests that match the same route templates share the cache entry
+            int[] templates = new int[candidates.routers.size()];
+            for (int i = 0; i < templates.length; i++) {
+                templates[i] = candidates.routers.get(i).getId();
             }
-        }));
-        return r;
+            key = new RouterMatchCache.Key(collector.method, null, templates, mimeType, acceptTypes);
+            routers = matchCache.get(key, version);
+            if (routers != null) {
+                for (RouterImpl router : routers) {
+                    collector.add(router, candidates.getParameters(router));
+                }
+                return collector.getResult();
+            }
+        }
+
+        for (int i = 0; i < candidates.routers.size(); i++) {
+            collector.accept(candidates.routers.get(i), candidates.parameters.get(i));
+        }
+        NavigableSet<RouterMatchResult> result = collectPathlessRouters(collector);
+        matchCache.put(key, version, result);
+        return result;
+    }
+
+    private NavigableSet<RouterMatchResult> collectPathlessRouters(RouterCollector collector) {
+        for (int i = 0; i < pathlessRouters.size(); i++) {
+            collector.accept(pathlessRouters.get(i), null);
+        }
+        return collector.getResult();
     }
 
-    private List<Matcher.MatchResult> findRouter(String value, Matcher.MatchType matchType) {
-        if (!StringUtils.hasText(value) || matchType == null) {
-            return Collections.emptyList();
+    private static class PathCandidates implements BiConsumer<Router, Map<String, String>> {
+
+        final List<RouterImpl> routers = new ArrayList<>();
+        final List<Map<String, String>> parameters = new ArrayList<>();
+        boolean hasParameters;
+
+        @Override
+        public void accept(Router router, Map<String, String> parameters) {
+            routers.add((RouterImpl) router);
+            this.parameters.add(parameters);
+            if (parameters != null) {
+                hasParameters = true;
+            }
         }
 
-        List<Matcher.MatchResult> ret = matcherMap.get(matchType)
-                                                  .stream()
-                                                  .map(m -> m.match(value))
-                                                  .filter(Objects::nonNull)
-                                                  .collect(Collectors.toList());
-        if (ret == null) {
-            return Collections.emptyList();
-        } else {
-            return ret;
+        Map<String, String> getParameters(RouterImpl router) {
+            int i = routers.indexOf(router);
+            return i >= 0 ? parameters.get(i) : null;
+        }
+    }
+
+    private static class RouterCollector implements BiConsumer<Router, Map<String, String>> {
+
+        final String method;
+        final String contentType;
+        final String accept;
+        String mimeType;
+        List<String[]> acceptTypes;
+        NavigableSet<RouterMatchResult> result;
+
+        RouterCollector(String method, String contentType, String accept) {
+            this.method = StringUtils.hasText(method) ? method.toUpperCase() : null;
+            this.contentType = contentType;
+            this.accept = accept;
+        }
+
+        @Override
+        public void accept(Router r, Map<String, String> parameters) {
+            RouterImpl router = (RouterImpl) r;
+            if (!router.isEnable()) {
+                return;
+            }
+
+            Set<Matcher.MatchType> matchTypes = router.getMatchTypes();
+            if (matchTypes.contains(Matcher.MatchType.METHOD)) {
+                if (method == null || !router.matchMethod(method)) {
+                    return;
+                }
+            }
+
+            if (matchTypes.contains(Matcher.MatchType.CONTENT_TYPE)) {
+                String mimeType = getMimeType();
+                if (!StringUtils.hasText(mimeType) || !router.matchContentType(mimeType)) {
+                    return;
+                }
+            }
+
+            if (matchTypes.contains(Matcher.MatchType.ACCEPT)) {
+                List<String[]> acceptTypes = getAcceptTypes();
+                if (acceptTypes.isEmpty() || !router.matchAccept(acceptTypes)) {
+                    return;
+                }
+            }
+
+            add(router, parameters);
+        }
+
+        void add(RouterImpl router, Map<String, String> parameters) {
+            Set<Matcher.MatchType> matchTypes = router.getMatchTypes();
+            if (matchTypes.contains(Matcher.MatchType.CONTENT_TYPE)) {
+                parameters = router.putContentTypeParameters(getMimeType(), parameters);
+            }
+            if (result == null) {
+                result = new TreeSet<>();
+            }
+            result.add(new RouterMatchResult(router, parameters, matchTypes));
+        }
+
+        NavigableSet<RouterMatchResult> getResult() {
+            return result == null ? Collections.emptyNavigableSet() : result;
+        }
+
+        String getMimeType() {
+            if (mimeType == null && StringUtils.hasText(contentType)) {
+                mimeType = MimeTypes.getContentTypeMIMEType(contentType);
+            }
+            return mimeType;
+        }
+
+        List<String[]> getAcceptTypes() {
+            if (acceptTypes == null) {
+                acceptTypes = new ArrayList<>();
+                if (StringUtils.hasText(accept)) {
+                    List<String> acceptList = MimeTypes.getAcceptMIMETypes(accept);
+                    if (acceptList != null) {
+                        for (String s : acceptList) {
+                            String[] t = StringUtils.split(s, '/');
+                            if (t.length == 2) {
+                                acceptTypes.add(new String[]{t[0].trim(), t[1].trim(), s});
+                            }
+                        }
+                    }
+                }
+            }
+            return acceptTypes;
+        }
+
+        /**
+         * @return The distinct accept types in order, or null if the request does not accept any type.
+         */
+        String getNormalizedAcceptTypes() {
+            List<String[]> acceptTypes = getAcceptTypes();
+            if (acceptTypes.isEmpty()) {
+                return null;
+            }
+            if (acceptTypes.size() == 1) {
+                return acceptTypes.get(0)[2];
+            }
+            Set<String> types = new TreeSet<>();
+            for (String[] t : acceptTypes) {
+                types.add(t[2]);
+            }
+            return String.join(",", types);
         }
     }
 
     @Override
     public Router register() {
+        invalidateMatchCache();
         return new RouterImpl(idGenerator.getAndIncrement(), this);
     }
 
     public Router registerLast() {
+        invalidateMatchCache();
         return new RouterImpl(Integer.MAX_VALUE, this);
     }
 
@@ -0,0 +1,138 @@
+package com.firefly.server.http2.router.impl;
+
+import com.firefly.server.http2.router.RouterManager.RouterMatchResult;
+import com.firefly.utils.collection.ConcurrentLinkedHashMap;
+
+import java.util.Arrays;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded LRU cache of the matched routers. The key is the normalized request tuple (method, path, MIME type of
+ * the content type, distinct accept types), so the header parameters such as the charset and the multipart boundary
+ * do not make new entries. If the path matches any router that has the path parameters, the path of the key is
+ * replaced by the ids of the routers that match the path, so all the requests that match the same route templates
+ * share one entry. The cache only stores the matched routers, the parameters are extracted from every request.
+ * <p>
+ * The cache is invalidated when any router is changed.
+ *
+ * @author Pengtao Qiu
+ */
+public class RouterMatchCache {
+
+    private final ConcurrentLinkedHashMap<Key, Entry> cache;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private volatile int version;
+
+    static class Key {
+        final String method;
+        final String path;
+        final int[] templates;
+        final String mimeType;
+        final String acceptTypes;
+        final int hash;
+
+        Key(String method, String path, int[] templates, String mimeType, String acceptTypes) {
+            this.method = method;
+            this.path = path;
+            this.templates = templates;
+            this.mimeType = mimeType;
+            this.acceptTypes = acceptTypes;
+            int h = Objects.hash(method, path, mimeType, acceptTypes);
+            this.hash = 31 * h + Arrays.hashCode(templates);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return hash == key.hash
+                    && Objects.equals(path, key.path)
+                    && Arrays.equals(templates, key.templates)
+                    && Objects.equals(method, key.method)
+                    && Objects.equals(mimeType, key.mimeType)
+                    && Objects.equals(acceptTypes, key.acceptTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static class Entry {
+        final int version;
+        final RouterImpl[] routers;
+
+        Entry(int version, RouterImpl[] routers) {
+            this.version = version;
+            this.routers = routers;
+        }
+    }
+
+    public RouterMatchCache(int maxEntries) {
+        cache = new ConcurrentLinkedHashMap<>(true, maxEntries);
+    }
+
+    /**
+     * Get the matched routers.
+     *
+     * @param key     The request tuple.
+     * @param version The cache version when the request starts matching.
+     * @return The matched routers in order, or null if the key is not cached or the entry is stale.
+     */
+    RouterImpl[] get(Key key, int version) {
+        Entry entry = cache.get(key);
+        if (entry == null || entry.version != version) {
+            return null;
+        }
+        hitCount.increment();
+        return entry.routers;
+    }
+
+    /**
+     * Put the match result that is computed by the matchers. It counts a cache miss.
+     *
+     * @param key     The request tuple.
+     * @param version The cache version when the request starts matching.
+     * @param result  The match result.
+     */
+    void put(Key key, int version, NavigableSet<RouterMatchResult> result) {
+        missCount.increment();
+        RouterImpl[] routers = new RouterImpl[result.size()];
+        int i = 0;
+        for (RouterMatchResult r : result) {
+            routers[i++] = (RouterImpl) r.getRouter();
+        }
+        if (version == this.version) {
+            cache.put(key, new Entry(version, routers));
+        }
+    }
+
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * Remove all the entries. The matching that starts before the invalidation does not put the stale result.
+     */
+    public synchronized void invalidate() {
+        version++;
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+}
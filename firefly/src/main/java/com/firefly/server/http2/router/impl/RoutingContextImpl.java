@@ -2,6 +2,7 @@ package com.firefly.server.http2.router.impl;
 
 import com.firefly.server.http2.SimpleRequest;
 import com.firefly.server.http2.SimpleResponse;
+import com.firefly.server.http2.router.ContentSubscriber;
 import com.firefly.server.http2.router.RouterManager;
 import com.firefly.server.http2.router.RoutingContext;
 import com.firefly.server.http2.router.handler.template.TemplateHandlerSPILoader;
@@ -103,6 +104,17 @@ public class RoutingContextImpl implements RoutingContext {
         return this;
     }
 
+    @Override
+    public RoutingContext contentSubscribe(ContentSubscriber subscriber, int maxPendingSize) {
+        ContentPublisher publisher = new ContentPublisher(subscriber, request.getConnection(), maxPendingSize);
+        request.contentWithCallback(publisher::offer);
+        request.contentComplete(r -> publisher.complete());
+        request.getAsyncResponse();
+        asynchronousRead = true;
+        publisher.subscribe();
+        return this;
+    }
+
     @Override
     public boolean isAsynchronousRead() {
         return asynchronousRead;
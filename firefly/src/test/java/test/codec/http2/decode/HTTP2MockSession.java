@@ -5,6 +5,7 @@ import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.LinkedList;
 
+import com.codahale.metrics.MetricRegistry;
 import com.firefly.net.ByteBufferArrayOutputEntry;
 import com.firefly.net.OutputEntry;
 import com.firefly.net.Session;
@@ -17,6 +18,8 @@ public class HTTP2MockSession implements Session {
 	private Object attachment;
 	public LinkedList<ByteBuffer> outboundData = new LinkedList<>();
 	private boolean isOpen = true;
+	private volatile boolean readSuspended;
+	private final MetricRegistry metricRegistry = new MetricRegistry();
 
 	@Override
 	public void attachObject(Object attachment) {
@@ -42,6 +45,10 @@ public class HTTP2MockSession implements Session {
 		}
 	}
 
+	@Override
+	public void decode(ByteBuffer buf) {
+	}
+
 	@Override
 	public int getSessionId() {
 		// TODO Auto-generated method stub
@@ -140,6 +147,29 @@ public class HTTP2MockSession implements Session {
 		
 	}
 
+	@Override
+	public void releaseBuffer(ByteBuffer buffer) {
+	}
+
+	@Override
+	public void enableReadBufferPool() {
+	}
+
+	@Override
+	public void suspendRead() {
+		readSuspended = true;
+	}
+
+	@Override
+	public void resumeRead() {
+		readSuspended = false;
+	}
+
+	@Override
+	public boolean isReadSuspended() {
+		return readSuspended;
+	}
+
 	@Override
 	public void write(OutputEntry<?> entry) {
 		ByteBufferArrayOutputEntry outputEntry = (ByteBufferArrayOutputEntry)entry;
@@ -181,4 +211,9 @@ public class HTTP2MockSession implements Session {
 		return 0;
 	}
 
+	@Override
+	public MetricRegistry getMetricRegistry() {
+		return metricRegistry;
+	}
+
 }
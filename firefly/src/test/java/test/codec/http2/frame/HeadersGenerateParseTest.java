@@ -19,6 +19,8 @@ import com.firefly.codec.http2.model.HttpFields;
 import com.firefly.codec.http2.model.HttpScheme;
 import com.firefly.codec.http2.model.HttpVersion;
 import com.firefly.codec.http2.model.MetaData;
+import com.firefly.net.DefaultMetricReporterFactory;
+import com.firefly.net.buffer.SizeClassedBufferPool;
 
 public class HeadersGenerateParseTest {
 	
@@ -160,4 +162,47 @@ public class HeadersGenerateParseTest {
 			Assert.assertEquals(priorityFrame.isExclusive(), priority.isExclusive());
 		}
 	}
+
+	@Test
+	public void testPooledBuffers() throws Exception {
+		SizeClassedBufferPool pool = new SizeClassedBufferPool(new DefaultMetricReporterFactory(), "test.headers",
+				false, 64, 64 * 1024, 16, 1);
+		HeaderGenerator headerGenerator = new HeaderGenerator(pool);
+		HeadersGenerator generator = new HeadersGenerator(headerGenerator, new HpackEncoder());
+
+		final List<HeadersFrame> frames = new ArrayList<>();
+		Parser parser = new Parser(new Parser.Listener.Adapter() {
+			@Override
+			public void onHeaders(HeadersFrame frame) {
+				frames.add(frame);
+			}
+		}, 4096, 8192, pool);
+
+		List<ByteBuffer> leased = new ArrayList<>();
+		for (int i = 0; i < 10; ++i) {
+			HttpFields fields = new HttpFields();
+			fields.put("Accept", "text/html");
+			fields.put("X-Index", String.valueOf(i));
+			MetaData.Request metaData = new MetaData.Request("GET", HttpScheme.HTTP,
+					new HostPortHttpField("localhost:8080"), "/path", HttpVersion.HTTP_2, fields);
+			List<ByteBuffer> list = generator.generateHeaders(13, metaData, null, true);
+
+			// parse one byte at a time, the parser accumulates the header block in a pooled buffer
+			for (ByteBuffer buffer : list) {
+				while (buffer.hasRemaining()) {
+					parser.parse(ByteBuffer.wrap(new byte[] { buffer.get() }));
+				}
+			}
+			headerGenerator.takeLeasedBuffers(leased);
+			headerGenerator.release(leased);
+			leased.clear();
+
+			Assert.assertEquals(i + 1, frames.size());
+			Assert.assertEquals(String.valueOf(i), frames.get(i).getMetaData().getFields().get("X-Index"));
+			Assert.assertEquals(0, pool.getOutstandingCount());
+		}
+		// the buffers of the first headers are reused
+		Assert.assertTrue(pool.getHitCount() > 0);
+		Assert.assertTrue(pool.getAllocationCount() <= 4);
+	}
 }
@@ -0,0 +1,124 @@
+package test.codec.http2.stream;
+
+import com.firefly.client.http2.HTTP2ClientSession;
+import com.firefly.codec.http2.encode.Generator;
+import com.firefly.codec.http2.frame.DataFrame;
+import com.firefly.codec.http2.frame.HeadersFrame;
+import com.firefly.codec.http2.model.*;
+import com.firefly.codec.http2.stream.Session;
+import com.firefly.codec.http2.stream.SimpleFlowControlStrategy;
+import com.firefly.codec.http2.stream.Stream;
+import com.firefly.net.ByteBufferArrayOutputEntry;
+import com.firefly.utils.concurrent.Callback;
+import com.firefly.utils.concurrent.FuturePromise;
+import com.firefly.utils.concurrent.Promise;
+import com.firefly.utils.concurrent.Scheduler;
+import com.firefly.utils.concurrent.Schedulers;
+import test.codec.http2.decode.HTTP2MockSession;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measure the time to first byte of the small streams that start behind a bulk stream on the same connection.
+ * The end point simulates a link with the fixed bandwidth, the time to first byte of a small stream is the time
+ * from creating the stream to the HEADERS frame leaves the link.
+ * <p>
+ * The quantum of Integer.MAX_VALUE writes all the DATA that the flow control windows allow in one flush, it is
+ * the behavior of the FIFO flusher.
+ *
+ * @author Pengtao Qiu
+ */
+public class HTTP2PriorityBenchmark {
+
+    private static final int WINDOW = 64 * 1024 * 1024;
+    private static final int BULK_SIZE = 16 * 1024 * 1024;
+    private static final long BANDWIDTH = 200L * 1024 * 1024; // bytes per second
+    private static final int SMALL_STREAMS = 20;
+    private static final long SMALL_STREAM_INTERVAL = 2; // ms
+
+    /**
+     * The end point completes the writing after the bytes pass the simulated link.
+     */
+    static class LinkSession extends HTTP2MockSession {
+        final ScheduledExecutorService link = Executors.newSingleThreadScheduledExecutor();
+        long linkFreeTime;
+
+        @Override
+        public synchronized void encode(Object message) {
+            ByteBufferArrayOutputEntry entry = (ByteBufferArrayOutputEntry) message;
+            long now = System.nanoTime();
+            long start = Math.max(now, linkFreeTime);
+            linkFreeTime = start + entry.remaining() * 1000_000_000L / BANDWIDTH;
+            link.schedule(() -> entry.getCallback().succeeded(), linkFreeTime - now, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] quanta = {Integer.MAX_VALUE, 256 * 1024, 64 * 1024, 16 * 1024};
+        for (int i = 0; i < 3; i++) {
+            System.out.println("round " + i);
+            for (int quantum : quanta) {
+                benchmark(quantum);
+            }
+        }
+    }
+
+    private static void benchmark(int quantum) throws Exception {
+        Scheduler scheduler = Schedulers.createScheduler();
+        LinkSession endPoint = new LinkSession();
+        HTTP2ClientSession session = new HTTP2ClientSession(scheduler, endPoint, new Generator(),
+                new Session.Listener.Adapter(), new SimpleFlowControlStrategy(WINDOW), 60 * 1000);
+        session.updateSendWindow(WINDOW);
+        session.setFlushQuantum(quantum);
+
+        FuturePromise<Stream> bulkPromise = new FuturePromise<>();
+        session.newStream(new HeadersFrame(request(), null, false), bulkPromise, new Stream.Listener.Adapter());
+        Stream bulk = bulkPromise.get();
+        CountDownLatch bulkLatch = new CountDownLatch(1);
+        long bulkStart = System.nanoTime();
+        bulk.data(new DataFrame(bulk.getId(), ByteBuffer.allocate(BULK_SIZE), true), new Callback() {
+            @Override
+            public void succeeded() {
+                bulkLatch.countDown();
+            }
+        });
+
+        AtomicLong totalTime = new AtomicLong();
+        AtomicLong maxTime = new AtomicLong();
+        CountDownLatch smallLatch = new CountDownLatch(SMALL_STREAMS);
+        for (int i = 0; i < SMALL_STREAMS; i++) {
+            Thread.sleep(SMALL_STREAM_INTERVAL);
+            long start = System.nanoTime();
+            session.newStream(new HeadersFrame(request(), null, true), new Promise<Stream>() {
+                @Override
+                public void succeeded(Stream result) {
+                    long time = System.nanoTime() - start;
+                    totalTime.addAndGet(time);
+                    maxTime.accumulateAndGet(time, Math::max);
+                    smallLatch.countDown();
+                }
+            }, new Stream.Listener.Adapter());
+        }
+        smallLatch.await();
+        bulkLatch.await();
+        long bulkTime = System.nanoTime() - bulkStart;
+
+        System.out.println("quantum " + (quantum == Integer.MAX_VALUE ? "unlimited" : quantum / 1024 + "KB")
+                + ": small stream TTFB avg " + TimeUnit.NANOSECONDS.toMicros(totalTime.get() / SMALL_STREAMS)
+                + "us, max " + TimeUnit.NANOSECONDS.toMicros(maxTime.get())
+                + "us, bulk stream " + TimeUnit.NANOSECONDS.toMillis(bulkTime) + "ms");
+
+        endPoint.link.shutdown();
+        scheduler.stop();
+    }
+
+    private static MetaData.Request request() {
+        return new MetaData.Request("GET", HttpScheme.HTTP, new HostPortHttpField("localhost:8080"), "/",
+                HttpVersion.HTTP_2, new HttpFields());
+    }
+}
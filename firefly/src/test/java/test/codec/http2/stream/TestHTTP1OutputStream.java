@@ -0,0 +1,190 @@
+package test.codec.http2.stream;
+
+import com.firefly.codec.http2.decode.HttpParser;
+import com.firefly.codec.http2.encode.HttpGenerator;
+import com.firefly.codec.http2.model.HttpFields;
+import com.firefly.codec.http2.model.HttpVersion;
+import com.firefly.codec.http2.model.MetaData;
+import com.firefly.codec.http2.stream.AbstractHTTP1Connection;
+import com.firefly.codec.http2.stream.AbstractHTTP1OutputStream;
+import com.firefly.codec.http2.stream.HTTP2Configuration;
+import com.firefly.codec.http2.stream.HTTPConnection;
+import com.firefly.net.ByteBufferOutputEntry;
+import com.firefly.net.DefaultMetricReporterFactory;
+import com.firefly.net.Session;
+import com.firefly.net.buffer.SizeClassedBufferPool;
+import com.firefly.utils.function.Action1;
+import com.firefly.utils.function.Action2;
+import com.firefly.utils.io.BufferUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import test.codec.http2.decode.HTTP2MockSession;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedList;
+
+import static org.hamcrest.Matchers.*;
+
+/**
+ * @author Pengtao Qiu
+ */
+public class TestHTTP1OutputStream {
+
+    private SizeClassedBufferPool pool;
+    private PendingSession endPoint;
+    private MockConnection connection;
+
+    /**
+     * The end point does not complete the writing until the test flushes it.
+     */
+    static class PendingSession extends HTTP2MockSession {
+        final LinkedList<ByteBufferOutputEntry> pending = new LinkedList<>();
+
+        @Override
+        public void encode(Object message) {
+            if (message instanceof ByteBufferOutputEntry) {
+                pending.offer((ByteBufferOutputEntry) message);
+            }
+        }
+
+        String flush() {
+            StringBuilder s = new StringBuilder();
+            while (!pending.isEmpty()) {
+                ByteBufferOutputEntry entry = pending.poll();
+                s.append(BufferUtils.toString(entry.getData(), StandardCharsets.UTF_8));
+                entry.getCallback().succeeded();
+            }
+            return s.toString();
+        }
+    }
+
+    static class MockConnection extends AbstractHTTP1Connection {
+
+        MockConnection(HTTP2Configuration config, Session tcpSession) {
+            super(config, null, tcpSession, null, null);
+        }
+
+        @Override
+        protected HttpParser initHttpParser(HTTP2Configuration config, HttpParser.RequestHandler requestHandler,
+                                            HttpParser.ResponseHandler responseHandler) {
+            return null;
+        }
+
+        @Override
+        protected HttpGenerator initHttpGenerator() {
+            return new HttpGenerator(true, true);
+        }
+
+        HttpGenerator getGenerator() {
+            return generator;
+        }
+
+        @Override
+        public boolean isEncrypted() {
+            return false;
+        }
+
+        @Override
+        public HTTPConnection close(Action1<HTTPConnection> closedCallback) {
+            return this;
+        }
+
+        @Override
+        public HTTPConnection exception(Action2<HTTPConnection, Throwable> exception) {
+            return this;
+        }
+    }
+
+    class MockOutputStream extends AbstractHTTP1OutputStream {
+
+        MockOutputStream(MetaData.Response response) {
+            super(response, false);
+        }
+
+        @Override
+        protected AbstractHTTP1Connection getHTTP1Connection() {
+            return connection;
+        }
+
+        @Override
+        protected int getMaxHeaderLength() {
+            return 4 * 1024;
+        }
+
+        @Override
+        protected int getMaxTrailerLength() {
+            return 4 * 1024;
+        }
+
+        @Override
+        protected Session getSession() {
+            return endPoint;
+        }
+
+        @Override
+        protected HttpGenerator getHttpGenerator() {
+            return connection.getGenerator();
+        }
+
+        @Override
+        protected void generateHTTPMessageSuccessfully() {
+            connection.getGenerator().reset();
+        }
+
+        @Override
+        protected void generateHTTPMessageExceptionally(HttpGenerator.Result generatorResult,
+                                                        HttpGenerator.State generatorState) {
+            connection.getGenerator().reset();
+            throw new IllegalStateException("generate http message exception");
+        }
+    }
+
+    @Before
+    public void init() {
+        pool = new SizeClassedBufferPool(new DefaultMetricReporterFactory(), "test.http1", false, 64, 64 * 1024, 16, 1);
+        HTTP2Configuration config = new HTTP2Configuration();
+        config.setHttp1BufferPool(pool);
+        endPoint = new PendingSession();
+        connection = new MockConnection(config, endPoint);
+    }
+
+    @Test
+    public void testReuseBuffers() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_1_1, 200, new HttpFields());
+            response.getFields().put("X-Index", String.valueOf(i));
+            MockOutputStream output = new MockOutputStream(response);
+            output.write(BufferUtils.toBuffer("hello", StandardCharsets.UTF_8));
+            output.write(BufferUtils.toBuffer("world", StandardCharsets.UTF_8));
+            output.close();
+
+            // the header and the chunk buffers are in use until the end point writes them
+            Assert.assertThat(pool.getOutstandingCount(), greaterThan(0L));
+            String message = endPoint.flush();
+            Assert.assertThat(message, containsString("X-Index: " + i));
+            Assert.assertThat(message, endsWith("0\r\n\r\n"));
+            Assert.assertThat(pool.getOutstandingCount(), is(0L));
+        }
+
+        // the small heads do not take the buffers of the max head length
+        Assert.assertThat(connection.getHeaderSizeEstimate(), is(AbstractHTTP1Connection.DEFAULT_HEADER_SIZE_ESTIMATE));
+        Assert.assertThat(pool.getAllocationCount(), lessThanOrEqualTo(4L));
+    }
+
+    @Test
+    public void testHeaderOverflow() throws Exception {
+        char[] value = new char[2000];
+        Arrays.fill(value, 'a');
+        MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_1_1, 200, new HttpFields());
+        response.getFields().put("X-Large", new String(value));
+        MockOutputStream output = new MockOutputStream(response);
+        output.close();
+
+        String message = endPoint.flush();
+        Assert.assertThat(message, containsString("X-Large: " + new String(value)));
+        Assert.assertThat(pool.getOutstandingCount(), is(0L));
+        Assert.assertThat(connection.getHeaderSizeEstimate(), greaterThan(2000));
+    }
+}
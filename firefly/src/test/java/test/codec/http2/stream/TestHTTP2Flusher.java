@@ -0,0 +1,173 @@
+package test.codec.http2.stream;
+
+import com.firefly.client.http2.HTTP2ClientSession;
+import com.firefly.codec.http2.encode.Generator;
+import com.firefly.codec.http2.frame.DataFrame;
+import com.firefly.codec.http2.frame.HeadersFrame;
+import com.firefly.codec.http2.frame.PriorityFrame;
+import com.firefly.codec.http2.model.*;
+import com.firefly.codec.http2.stream.Session;
+import com.firefly.codec.http2.stream.SimpleFlowControlStrategy;
+import com.firefly.codec.http2.stream.Stream;
+import com.firefly.net.ByteBufferArrayOutputEntry;
+import com.firefly.net.DefaultMetricReporterFactory;
+import com.firefly.net.buffer.SizeClassedBufferPool;
+import com.firefly.utils.concurrent.Callback;
+import com.firefly.utils.concurrent.FuturePromise;
+import com.firefly.utils.concurrent.Scheduler;
+import com.firefly.utils.concurrent.Schedulers;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import test.codec.http2.decode.HTTP2MockSession;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+/**
+ * @author Pengtao Qiu
+ */
+public class TestHTTP2Flusher {
+
+    private static final int WINDOW = 16 * 1024 * 1024;
+    private static final int QUANTUM = 32 * 1024;
+
+    private Scheduler scheduler;
+    private PendingSession endPoint;
+    private HTTP2ClientSession session;
+
+    /**
+     * The end point does not complete the writing until the test flushes it.
+     */
+    static class PendingSession extends HTTP2MockSession {
+        final LinkedList<ByteBufferArrayOutputEntry> pending = new LinkedList<>();
+
+        @Override
+        public void encode(Object message) {
+            pending.offer((ByteBufferArrayOutputEntry) message);
+        }
+
+        int flush() {
+            ByteBufferArrayOutputEntry entry = pending.poll();
+            int length = (int) entry.remaining();
+            entry.getCallback().succeeded();
+            return length;
+        }
+    }
+
+    @Before
+    public void init() {
+        scheduler = Schedulers.createScheduler();
+        endPoint = new PendingSession();
+        session = new HTTP2ClientSession(scheduler, endPoint, new Generator(), new Session.Listener.Adapter(),
+                new SimpleFlowControlStrategy(WINDOW), 10 * 1000);
+        session.updateSendWindow(WINDOW);
+        session.setFlushQuantum(QUANTUM);
+    }
+
+    @After
+    public void destroy() {
+        scheduler.stop();
+    }
+
+    @Test
+    public void testQuantum() throws Exception {
+        FuturePromise<Stream> bulkPromise = newStream();
+        endPoint.flush();
+        Stream bulk = bulkPromise.get();
+
+        AtomicBoolean bulkCompleted = new AtomicBoolean();
+        bulk.data(new DataFrame(bulk.getId(), ByteBuffer.allocate(1024 * 1024), true), complete(bulkCompleted));
+
+        // the small stream starts after the bulk data is queued, its HEADERS frame is written in the next flush
+        FuturePromise<Stream> smallPromise = newStream();
+        Assert.assertThat(endPoint.flush(), lessThanOrEqualTo(QUANTUM + 1024));
+        Assert.assertThat(endPoint.flush(), lessThanOrEqualTo(QUANTUM + 1024));
+        Stream small = smallPromise.get();
+
+        AtomicBoolean smallCompleted = new AtomicBoolean();
+        small.data(new DataFrame(small.getId(), ByteBuffer.allocate(100), true), complete(smallCompleted));
+        Assert.assertThat(endPoint.flush(), lessThanOrEqualTo(QUANTUM + 1024));
+        Assert.assertThat(endPoint.flush(), lessThanOrEqualTo(QUANTUM + 1024));
+        Assert.assertThat(smallCompleted.get(), is(true));
+        Assert.assertThat(bulkCompleted.get(), is(false));
+
+        while (!endPoint.pending.isEmpty()) {
+            endPoint.flush();
+        }
+        Assert.assertThat(bulkCompleted.get(), is(true));
+    }
+
+    @Test
+    public void testWeight() throws Exception {
+        FuturePromise<Stream> p1 = newStream();
+        FuturePromise<Stream> p2 = newStream();
+        endPoint.flush();
+        endPoint.flush();
+        Stream s1 = p1.get();
+        Stream s2 = p2.get();
+        session.onPriority(new PriorityFrame(s1.getId(), 0, 192, false));
+        session.onPriority(new PriorityFrame(s2.getId(), 0, 64, false));
+
+        int size = 256 * 1024;
+        ByteBuffer b1 = ByteBuffer.allocate(size);
+        ByteBuffer b2 = ByteBuffer.allocate(size);
+        s1.data(new DataFrame(s1.getId(), b1, true), Callback.NOOP);
+        s2.data(new DataFrame(s2.getId(), b2, true), Callback.NOOP);
+        for (int i = 0; i < 5; i++) {
+            endPoint.flush();
+        }
+
+        // the stream 1 sends about 3 times as many bytes as the stream 2, except the first flush that the stream 2
+        // has not any data
+        int sent1 = size - b1.remaining();
+        int sent2 = size - b2.remaining();
+        Assert.assertThat(Math.abs(sent1 - sent2 * 3), lessThanOrEqualTo(QUANTUM));
+    }
+
+    @Test
+    public void testReleasePooledBuffers() throws Exception {
+        SizeClassedBufferPool pool = new SizeClassedBufferPool(new DefaultMetricReporterFactory(), "test.flusher",
+                false, 64, 64 * 1024, 16, 1);
+        session = new HTTP2ClientSession(scheduler, endPoint, new Generator(4096, 0, pool),
+                new Session.Listener.Adapter(), new SimpleFlowControlStrategy(WINDOW), 10 * 1000);
+        session.updateSendWindow(WINDOW);
+
+        for (int i = 0; i < 10; i++) {
+            FuturePromise<Stream> promise = newStream();
+            // the frame header and the header block are in use until the end point writes them
+            Assert.assertThat(pool.getOutstandingCount(), is(2L));
+            endPoint.flush();
+            Stream stream = promise.get();
+            Assert.assertThat(pool.getOutstandingCount(), is(0L));
+
+            stream.data(new DataFrame(stream.getId(), ByteBuffer.allocate(100), true), Callback.NOOP);
+            endPoint.flush();
+            Assert.assertThat(pool.getOutstandingCount(), is(0L));
+        }
+        Assert.assertThat(pool.getAllocationCount(), lessThanOrEqualTo(3L));
+    }
+
+    private FuturePromise<Stream> newStream() {
+        MetaData.Request metaData = new MetaData.Request("GET", HttpScheme.HTTP,
+                new HostPortHttpField("localhost:8080"), "/", HttpVersion.HTTP_2, new HttpFields());
+        FuturePromise<Stream> promise = new FuturePromise<>();
+        session.newStream(new HeadersFrame(metaData, null, false), promise, new Stream.Listener.Adapter());
+        return promise;
+    }
+
+    private static Callback complete(AtomicBoolean completed) {
+        return new Callback() {
+            @Override
+            public void succeeded() {
+                completed.set(true);
+            }
+        };
+    }
+}
@@ -0,0 +1,126 @@
+package test.codec.http2.stream;
+
+import com.firefly.codec.http2.stream.HTTP2PriorityTree;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * @author Pengtao Qiu
+ */
+public class TestHTTP2PriorityTree {
+
+    @Test
+    public void testExclusive() {
+        HTTP2PriorityTree tree = new HTTP2PriorityTree();
+        tree.prioritize(1, 0, 16, false);
+        tree.prioritize(3, 0, 16, false);
+        tree.prioritize(5, 0, 32, true);
+
+        Assert.assertThat(tree.getParent(5), is(0));
+        Assert.assertThat(tree.getParent(1), is(5));
+        Assert.assertThat(tree.getParent(3), is(5));
+        Assert.assertThat(tree.getWeight(5), is(32));
+    }
+
+    @Test
+    public void testDependOnDescendant() {
+        HTTP2PriorityTree tree = new HTTP2PriorityTree();
+        tree.prioritize(1, 0, 16, false);
+        tree.prioritize(3, 1, 16, false);
+        tree.prioritize(5, 3, 16, false);
+
+        // the stream 5 is moved to the previous parent of the stream 1 first
+        tree.prioritize(1, 5, 16, false);
+        Assert.assertThat(tree.getParent(5), is(0));
+        Assert.assertThat(tree.getParent(1), is(5));
+        Assert.assertThat(tree.getParent(3), is(1));
+    }
+
+    @Test
+    public void testRemove() {
+        HTTP2PriorityTree tree = new HTTP2PriorityTree();
+        tree.prioritize(1, 0, 64, false);
+        tree.prioritize(3, 1, 10, false);
+        tree.prioritize(5, 1, 30, false);
+
+        tree.remove(1);
+        Assert.assertThat(tree.getParent(3), is(0));
+        Assert.assertThat(tree.getParent(5), is(0));
+        Assert.assertThat(tree.getWeight(3), is(16));
+        Assert.assertThat(tree.getWeight(5), is(48));
+        Assert.assertThat(tree.size(), is(2));
+    }
+
+    @Test
+    public void testEvictIdleNodes() {
+        HTTP2PriorityTree tree = new HTTP2PriorityTree();
+        tree.open(1);
+        tree.prioritize(1, 0, 64, false);
+        // the PRIORITY frames of the idle streams fill the tree
+        for (int i = 0; i < HTTP2PriorityTree.MAX_NODES * 2; i++) {
+            tree.prioritize(1001 + i * 2, 0, 8, false);
+        }
+        Assert.assertThat(tree.size(), is(HTTP2PriorityTree.MAX_NODES));
+        Assert.assertThat(tree.contains(1001), is(false));
+        Assert.assertThat(tree.getWeight(1), is(64));
+
+        // the new stream is still prioritized, the oldest idle node is evicted
+        tree.open(11);
+        tree.prioritize(11, 1, 32, false);
+        Assert.assertThat(tree.getParent(11), is(1));
+        Assert.assertThat(tree.getWeight(11), is(32));
+        Assert.assertThat(tree.size(), is(HTTP2PriorityTree.MAX_NODES));
+
+        double[] shares = new double[2];
+        tree.share(new int[]{1, 11}, 2, shares);
+        Assert.assertThat(shares[0], closeTo(1.0, 0.0001));
+        Assert.assertThat(shares[1], is(0D));
+    }
+
+    @Test
+    public void testShareOfUnknownStream() {
+        HTTP2PriorityTree tree = new HTTP2PriorityTree();
+        // the open streams fill the tree
+        for (int i = 0; i < HTTP2PriorityTree.MAX_NODES; i++) {
+            tree.open(1 + i * 2);
+        }
+        tree.prioritize(1, 0, 48, false);
+        int unknown = 1 + HTTP2PriorityTree.MAX_NODES * 2;
+
+        // the stream that is not in the tree has the default weight under the root
+        double[] shares = new double[2];
+        tree.share(new int[]{1, unknown}, 2, shares);
+        Assert.assertThat(tree.contains(unknown), is(false));
+        Assert.assertThat(shares[0], closeTo(0.75, 0.0001));
+        Assert.assertThat(shares[1], closeTo(0.25, 0.0001));
+    }
+
+    @Test
+    public void testShare() {
+        HTTP2PriorityTree tree = new HTTP2PriorityTree();
+        tree.prioritize(1, 0, 192, false);
+        tree.prioritize(3, 0, 64, false);
+        tree.prioritize(5, 3, 16, false);
+        tree.prioritize(7, 3, 48, false);
+
+        double[] shares = new double[4];
+        tree.share(new int[]{1, 5, 7}, 3, shares);
+        Assert.assertThat(shares[0], closeTo(0.75, 0.0001));
+        Assert.assertThat(shares[1], closeTo(0.0625, 0.0001));
+        Assert.assertThat(shares[2], closeTo(0.1875, 0.0001));
+
+        // the parent takes the whole share of its subtree
+        tree.share(new int[]{3, 5, 7}, 3, shares);
+        Assert.assertThat(shares[0], closeTo(1.0, 0.0001));
+        Assert.assertThat(shares[1], is(0D));
+        Assert.assertThat(shares[2], is(0D));
+
+        // the stream without priority depends on the root with the default weight
+        tree.share(new int[]{1, 9}, 2, shares);
+        Assert.assertThat(shares[0], closeTo(192D / 208D, 0.0001));
+        Assert.assertThat(shares[1], closeTo(16D / 208D, 0.0001));
+    }
+}
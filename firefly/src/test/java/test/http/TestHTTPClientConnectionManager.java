@@ -0,0 +1,95 @@
+package test.http;
+
+import com.firefly.client.http2.HTTPClientConnectionManager;
+import com.firefly.client.http2.SimpleHTTPClient;
+import com.firefly.client.http2.SimpleHTTPClientConfiguration;
+import com.firefly.server.http2.SimpleHTTPServer;
+import com.firefly.server.http2.SimpleHTTPServerConfiguration;
+import com.firefly.utils.concurrent.ThreadUtils;
+import com.firefly.utils.lang.pool.BoundedAsynchronousPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+
+/**
+ * @author Pengtao Qiu
+ */
+public class TestHTTPClientConnectionManager {
+
+    @Test
+    public void testPreWarmAndEvict() throws Exception {
+        int port = 1340;
+        SimpleHTTPServer server = new SimpleHTTPServer(new SimpleHTTPServerConfiguration());
+        server.headerComplete(r -> r.messageComplete(request -> request.getResponse().getPrintWriter().close()))
+              .listen("localhost", port);
+
+        SimpleHTTPClientConfiguration config = new SimpleHTTPClientConfiguration();
+        config.setMinIdle(2);
+        config.setMaxIdleTime(500L);
+        config.setEvictionInterval(200L);
+        config.setPreWarmUrls(Collections.singletonList("http://localhost:" + port));
+        SimpleHTTPClient client = new SimpleHTTPClient(config);
+        HTTPClientConnectionManager connectionManager = client.getConnectionManager();
+
+        // the pool creates the min idle connections when the client starts
+        Assert.assertThat(waitForIdle(client, port, 2), is(true));
+
+        for (int i = 0; i < 8; i++) {
+            client.get("http://localhost:" + port + "/").submit().get(5, TimeUnit.SECONDS);
+        }
+
+        // the idle connections above the min idle number are evicted by the sweeper
+        ThreadUtils.sleep(1500L);
+        BoundedAsynchronousPool<?> pool = connectionManager.getExistingPool("localhost", port);
+        Assert.assertThat(pool.size(), is(2));
+        Assert.assertThat(pool.getCreatedObjectSize(), is(2));
+        Assert.assertThat(connectionManager.getConnections(), is(2));
+
+        client.stop();
+        server.stop();
+    }
+
+    @Test
+    public void testMaxConnections() throws Exception {
+        int port1 = 1341;
+        int port2 = 1342;
+        SimpleHTTPServer server1 = new SimpleHTTPServer(new SimpleHTTPServerConfiguration());
+        server1.headerComplete(r -> r.messageComplete(request -> request.getResponse().getPrintWriter().close()))
+               .listen("localhost", port1);
+        SimpleHTTPServer server2 = new SimpleHTTPServer(new SimpleHTTPServerConfiguration());
+        server2.headerComplete(r -> r.messageComplete(request -> request.getResponse().getPrintWriter().close()))
+               .listen("localhost", port2);
+
+        SimpleHTTPClientConfiguration config = new SimpleHTTPClientConfiguration();
+        config.setMaxConnections(1);
+        SimpleHTTPClient client = new SimpleHTTPClient(config);
+        HTTPClientConnectionManager connectionManager = client.getConnectionManager();
+
+        client.get("http://localhost:" + port1 + "/").submit().get(5, TimeUnit.SECONDS);
+        Assert.assertThat(waitForIdle(client, port1, 1), is(true));
+
+        // the idle connection of the other origin is closed to make room for the new origin
+        client.get("http://localhost:" + port2 + "/").submit().get(5, TimeUnit.SECONDS);
+        Assert.assertThat(waitForIdle(client, port2, 1), is(true));
+        Assert.assertThat(client.getConnectionPoolSize("localhost", port1), is(0));
+        Assert.assertThat(connectionManager.getConnections(), is(1));
+
+        client.stop();
+        server1.stop();
+        server2.stop();
+    }
+
+    private static boolean waitForIdle(SimpleHTTPClient client, int port, int size) {
+        for (int i = 0; i < 50; i++) {
+            if (client.getConnectionPoolSize("localhost", port) == size) {
+                return true;
+            }
+            ThreadUtils.sleep(100L);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,98 @@
+package test.http;
+
+import com.codahale.metrics.MetricRegistry;
+import com.firefly.$;
+import com.firefly.codec.http2.model.HttpHeader;
+import com.firefly.codec.http2.model.MimeTypes;
+import com.firefly.net.DefaultMetricReporterFactory;
+import com.firefly.server.http2.SimpleHTTPServer;
+import com.firefly.server.http2.SimpleHTTPServerConfiguration;
+import com.firefly.server.http2.SimpleResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * @author Pengtao Qiu
+ */
+public class TestPipelinedResponseBatching {
+
+    private static final int PIPELINE_DEPTH = 16;
+
+    @Test
+    public void test() throws Exception {
+        SimpleHTTPServerConfiguration config = new SimpleHTTPServerConfiguration();
+        config.setPipelinedResponseBatching(true);
+        // a new registry records only the writes of this server
+        config.getTcpConfiguration().setMetricReporterFactory(new DefaultMetricReporterFactory());
+        MetricRegistry metrics = config.getTcpConfiguration().getMetricReporterFactory().getMetricRegistry();
+        SimpleHTTPServer server = $.createHTTPServer(config);
+        int port = 1343;
+        server.headerComplete(r -> r.messageComplete(request -> {
+            SimpleResponse response = request.getResponse();
+            response.getFields().put(HttpHeader.CONTENT_TYPE, MimeTypes.Type.TEXT_PLAIN.asString());
+            try (PrintWriter writer = response.getPrintWriter()) {
+                writer.print("response" + request.getURI().getPath());
+            }
+        })).listen("localhost", port);
+
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.setSoTimeout(5000);
+            StringBuilder requests = new StringBuilder();
+            for (int i = 0; i < PIPELINE_DEPTH; i++) {
+                requests.append("GET /").append(i).append(" HTTP/1.1\r\nHost: localhost:").append(port).append("\r\n\r\n");
+            }
+            OutputStream out = socket.getOutputStream();
+            out.write(requests.toString().getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            String last = "response/" + (PIPELINE_DEPTH - 1);
+            InputStream in = socket.getInputStream();
+            StringBuilder responses = new StringBuilder();
+            byte[] buf = new byte[4096];
+            while (responses.indexOf(last) < 0) {
+                int len = in.read(buf);
+                Assert.assertThat(len, greaterThan(0));
+                responses.append(new String(buf, 0, len, StandardCharsets.US_ASCII));
+            }
+
+            // the responses are in the order of the requests
+            int position = 0;
+            for (int i = 0; i < PIPELINE_DEPTH; i++) {
+                int index = responses.indexOf("response/" + i, position);
+                Assert.assertThat(index, greaterThan(position - 1));
+                position = index;
+            }
+            Assert.assertThat(count(responses, "HTTP/1.1 200"), is(PIPELINE_DEPTH));
+
+            // the responses are written by a few gathered writes instead of the writes of every response
+            long sessionWrites = 0;
+            for (long entries : metrics.histogram("aio.AsynchronousTcpSession.write.entries").getSnapshot().getValues()) {
+                sessionWrites += entries;
+            }
+            Assert.assertThat(sessionWrites, lessThan((long) PIPELINE_DEPTH));
+            Assert.assertThat(metrics.histogram("aio.AsynchronousTcpSession.write.buffers").getSnapshot().getMax(),
+                    greaterThanOrEqualTo((long) PIPELINE_DEPTH));
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static int count(CharSequence s, String pattern) {
+        int count = 0;
+        for (int i = s.toString().indexOf(pattern); i >= 0; i = s.toString().indexOf(pattern, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,191 @@
+package test.http.router;
+
+import com.firefly.server.http2.router.Matcher;
+import com.firefly.server.http2.router.Router;
+import com.firefly.server.http2.router.RouterManager;
+import com.firefly.server.http2.router.RouterManager.RouterMatchResult;
+import com.firefly.server.http2.router.impl.RouterManagerImpl;
+import com.firefly.utils.StringUtils;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compare the radix tree router with the linear scan of all the matchers.
+ *
+ * @author Pengtao Qiu
+ */
+public class RouterBenchmark {
+
+    public static void main(String[] args) {
+        RouterManagerImpl routerManager = createRouters(400);
+        RouterManagerImpl cachedRouterManager = createRouters(400);
+        cachedRouterManager.setMatchCacheSize(1024);
+        String[] paths = createPaths(400);
+        String accept = "application/json,text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,*/*;q=0.8";
+        int times = 50_000;
+
+        for (int i = 0; i < 3; i++) {
+            System.out.println("round " + i);
+            benchmark("linear matchers", times, paths,
+                    path -> legacyFindRouter(routerManager, "GET", path, "application/json", accept));
+            benchmark("radix tree", times, paths,
+                    path -> routerManager.findRouter("GET", path, "application/json", accept));
+            benchmark("radix tree with match cache", times, paths,
+                    path -> cachedRouterManager.findRouter("GET", path, "application/json", accept));
+        }
+        System.out.println("match cache hits: " + cachedRouterManager.getMatchCache().getHitCount()
+                + ", misses: " + cachedRouterManager.getMatchCache().getMissCount());
+    }
+
+    private static void benchmark(String name, int times, String[] paths,
+                                  java.util.function.Function<String, NavigableSet<RouterMatchResult>> function) {
+        long count = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < times; i++) {
+            count += function.apply(paths[i % paths.length]).size();
+        }
+        long time = System.nanoTime() - start;
+        System.out.println(name + ": " + (TimeUnit.NANOSECONDS.toMillis(time)) + "ms, "
+                + (time / times) + "ns/op, " + (times * 1000_000_000L / time) + " ops/s, matched: " + count);
+    }
+
+    public static RouterManagerImpl createRouters(int number) {
+        RouterManagerImpl routerManager = new RouterManagerImpl();
+        routerManager.register().path("*");
+        routerManager.register().path("/static/*");
+        routerManager.register().get("/");
+        for (int i = 0; i < number; i++) {
+            switch (i % 8) {
+                case 0:
+                    routerManager.register().get("/api/v1/resource" + i);
+                    break;
+                case 1:
+                    routerManager.register().get("/api/v1/resource" + i + "/:id").produces("application/json");
+                    break;
+                case 2:
+                    routerManager.register().post("/api/v1/resource" + i + "/:id/update").consumes("application/json");
+                    break;
+                case 3:
+                    routerManager.register().get("/api/v2/user" + i + "/:id/orders/:orderId");
+                    break;
+                case 4:
+                    routerManager.register().get("/page" + i + "/*").produces("text/html");
+                    break;
+                case 5:
+                    routerManager.register().put("/api/v1/resource" + i + "/:id").consumes("*/json");
+                    break;
+                case 6:
+                    routerManager.register().delete("/api/v1/resource" + i);
+                    break;
+                default:
+                    routerManager.register().get("/assets" + i + "/:file");
+                    break;
+            }
+        }
+        routerManager.register().pathRegex("/regex/(\\d+)");
+        routerManager.register().path("/he*/*");
+        routerManager.register().method("GET").produces("*/json");
+        return routerManager;
+    }
+
+    public static String[] createPaths(int number) {
+        String[] paths = new String[number];
+        for (int i = 0; i < number; i++) {
+            switch (i % 10) {
+                case 0:
+                    paths[i] = "/api/v1/resource" + i;
+                    break;
+                case 1:
+                    paths[i] = "/api/v1/resource" + i + "/33";
+                    break;
+                case 2:
+                    paths[i] = "/api/v1/resource" + i + "/33/update";
+                    break;
+                case 3:
+                    paths[i] = "/api/v2/user" + i + "/11/orders/22";
+                    break;
+                case 4:
+                    paths[i] = "/page" + i + "/a/b/c";
+                    break;
+                case 5:
+                    paths[i] = "/static/css/main.css";
+                    break;
+                case 6:
+                    paths[i] = "/assets" + (i + 1) + "/logo.png";
+                    break;
+                case 7:
+                    paths[i] = "/regex/" + i;
+                    break;
+                case 8:
+                    paths[i] = "/hello/foo/bar";
+                    break;
+                default:
+                    paths[i] = "/not/found/" + i;
+                    break;
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * The linear scan of all the matchers, it is the original implementation of the RouterManagerImpl.findRouter.
+     */
+    public static NavigableSet<RouterMatchResult> legacyFindRouter(RouterManagerImpl routerManager,
+                                                                   String method, String path,
+                                                                   String contentType, String accept) {
+        Map<Matcher.MatchType, List<Matcher>> matcherMap = new HashMap<>();
+        matcherMap.put(Matcher.MatchType.PATH, Arrays.asList(routerManager.getPrecisePathMather(),
+                routerManager.getPatternPathMatcher(), routerManager.getParameterPathMatcher(),
+                routerManager.getRegexPathMatcher()));
+        matcherMap.put(Matcher.MatchType.METHOD, Collections.singletonList(routerManager.getHttpMethodMatcher()));
+        matcherMap.put(Matcher.MatchType.CONTENT_TYPE, Arrays.asList(routerManager.getContentTypePreciseMatcher(),
+                routerManager.getContentTypePatternMatcher()));
+        matcherMap.put(Matcher.MatchType.ACCEPT, Collections.singletonList(routerManager.getAcceptHeaderMatcher()));
+
+        Map<Router, Set<Matcher.MatchType>> routerMatchTypes = new HashMap<>();
+        Map<Router, Map<String, String>> routerParameters = new HashMap<>();
+        findRouter(matcherMap, method, Matcher.MatchType.METHOD, routerMatchTypes, routerParameters);
+        findRouter(matcherMap, path, Matcher.MatchType.PATH, routerMatchTypes, routerParameters);
+        findRouter(matcherMap, contentType, Matcher.MatchType.CONTENT_TYPE, routerMatchTypes, routerParameters);
+        findRouter(matcherMap, accept, Matcher.MatchType.ACCEPT, routerMatchTypes, routerParameters);
+
+        Map<Router, Set<Matcher.MatchType>> filtered = new HashMap<>();
+        routerMatchTypes.entrySet()
+                        .stream()
+                        .filter(e -> e.getKey().isEnable())
+                        .filter(e -> e.getKey().getMatchTypes().equals(e.getValue()))
+                        .forEach(e -> filtered.computeIfAbsent(e.getKey(), k -> new HashSet<>()).addAll(e.getValue()));
+
+        if (filtered.isEmpty()) {
+            return Collections.emptyNavigableSet();
+        } else {
+            NavigableSet<RouterMatchResult> ret = new TreeSet<>();
+            filtered.forEach((router, value) -> ret.add(new RouterMatchResult(router, routerParameters.get(router), value)));
+            return ret;
+        }
+    }
+
+    private static void findRouter(Map<Matcher.MatchType, List<Matcher>> matcherMap,
+                                   String value, Matcher.MatchType matchType,
+                                   Map<Router, Set<Matcher.MatchType>> routerMatchTypes,
+                                   Map<Router, Map<String, String>> routerParameters) {
+        if (!StringUtils.hasText(value)) {
+            return;
+        }
+
+        List<Matcher.MatchResult> results = matcherMap.get(matchType)
+                                                      .stream()
+                                                      .map(m -> m.match(value))
+                                                      .filter(Objects::nonNull)
+                                                      .collect(Collectors.toList());
+        results.forEach(result -> result.getRouters().forEach(router -> {
+            routerMatchTypes.computeIfAbsent(router, k -> new HashSet<>()).add(result.getMatchType());
+            if (result.getParameters() != null && !result.getParameters().isEmpty()) {
+                routerParameters.computeIfAbsent(router, k -> new HashMap<>())
+                                .putAll(result.getParameters().get(router));
+            }
+        }));
+    }
+}
@@ -4,10 +4,15 @@ import com.firefly.server.http2.router.Matcher;
 import com.firefly.server.http2.router.Router;
 import com.firefly.server.http2.router.RouterManager;
 import com.firefly.server.http2.router.impl.RouterManagerImpl;
+import com.firefly.server.http2.router.impl.RouterMatchCache;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.NavigableSet;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.Matchers.*;
 
@@ -182,4 +187,99 @@ public class TestMatcher {
         Assert.assertThat(result.getRouters().contains(router9), is(true));
         Assert.assertThat(result.getParameters().get(router9).get("group1"), is("113"));
     }
+
+    @Test
+    public void testRadixTreeRouter() {
+        RouterManagerImpl routerManager = RouterBenchmark.createRouters(400);
+        routerManager.register().path("/ hello / world ");
+        routerManager.register().path("/hello/:foo").disable();
+        routerManager.register().path("/hel*");
+        routerManager.register().path("/hello/*").consumes("*/*");
+
+        List<String> paths = new ArrayList<>(Arrays.asList(RouterBenchmark.createPaths(400)));
+        paths.addAll(Arrays.asList("/", "//", "/hello", "/hello/", "/hello//", "/ hello / world ", "/ hello / world /",
+                "/hello/world", "/api/v1/resource0/", "/api/v1/resource1/ 33 ", "/api/v2/user3/11/orders/",
+                "/static", "/static/", "/regex/", "/x/hello/a"));
+        String accept = "application/json,text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,*/*;q=0.8";
+        for (String path : paths) {
+            for (String method : new String[]{"GET", "post", "PUT", "DELETE", null}) {
+                for (String contentType : new String[]{"application/json;charset=UTF-8", "text/plain", null}) {
+                    for (String a : new String[]{accept, "text/*", "*/json", null}) {
+                        NavigableSet<RouterManager.RouterMatchResult> expected = RouterBenchmark.legacyFindRouter(
+                                routerManager, method, path, contentType, a);
+                        NavigableSet<RouterManager.RouterMatchResult> result = routerManager.findRouter(
+                                method, path, contentType, a);
+                        String message = method + " " + path + " " + contentType + " " + a;
+                        Assert.assertThat(message, toList(result), is(toList(expected)));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMatchCache() {
+        RouterManagerImpl routerManager = RouterBenchmark.createRouters(40);
+        Router fooRouter = routerManager.register().path("/hello/:foo");
+        routerManager.setMatchCacheSize(1024);
+        RouterMatchCache matchCache = routerManager.getMatchCache();
+
+        List<String> paths = new ArrayList<>(Arrays.asList(RouterBenchmark.createPaths(40)));
+        paths.addAll(Arrays.asList("/", "/hello/a", "/hello/b", "/api/v1/resource1/44"));
+        for (int i = 0; i < 3; i++) {
+            for (String path : paths) {
+                for (String method : new String[]{"GET", "get", "POST"}) {
+                    for (String contentType : new String[]{"application/json", "application/json;charset=UTF-8", "text/plain", null}) {
+                        for (String accept : new String[]{"text/*", "*/json", "*/json, text/*;q=0.8", null}) {
+                            NavigableSet<RouterManager.RouterMatchResult> expected = RouterBenchmark.legacyFindRouter(
+                                    routerManager, method, path, contentType, accept);
+                            NavigableSet<RouterManager.RouterMatchResult> result = routerManager.findRouter(
+                                    method, path, contentType, accept);
+                            String message = method + " " + path + " " + contentType + " " + accept;
+                            Assert.assertThat(message, toList(result), is(toList(expected)));
+                            // the routing context consumes the result
+                            result.pollFirst();
+                        }
+                    }
+                }
+            }
+
+            if (i == 0) {
+                Assert.assertThat(matchCache.getMissCount(), greaterThan(0L));
+                Assert.assertThat(matchCache.getHitCount(), greaterThan(0L));
+                fooRouter.disable();
+                Assert.assertThat(matchCache.size(), is(0));
+            } else if (i == 1) {
+                fooRouter.enable();
+                routerManager.register().get("/hello/a");
+                Assert.assertThat(matchCache.size(), is(0));
+            }
+        }
+
+        // the requests that match the same route templates share one entry
+        long miss = matchCache.getMissCount();
+        NavigableSet<RouterManager.RouterMatchResult> result = routerManager.findRouter("GET", "/hello/c", null, "text/html");
+        Assert.assertThat(matchCache.getMissCount(), is(miss + 1));
+        Assert.assertThat(result.last().getParameters().get("foo"), is("c"));
+        int size = matchCache.size();
+        result = routerManager.findRouter("GET", "/hello/d", null, "text/html");
+        Assert.assertThat(matchCache.getMissCount(), is(miss + 1));
+        Assert.assertThat(result.last().getParameters().get("foo"), is("d"));
+        // the parameterized paths are not cached one by one
+        Assert.assertThat(matchCache.size(), is(size));
+
+        // the header parameters and the order of the accept types share the entry
+        routerManager.findRouter("POST", "/hello/e", "application/json; charset=UTF-8", "text/html, */json;q=0.9");
+        Assert.assertThat(matchCache.getMissCount(), is(miss + 2));
+        routerManager.findRouter("POST", "/hello/f", "application/json; charset=ISO-8859-1", "*/json, text/html;q=0.8");
+        routerManager.findRouter("POST", "/hello/g", "application/json", "*/json;q=0.5, text/html");
+        Assert.assertThat(matchCache.getMissCount(), is(miss + 2));
+        Assert.assertThat(matchCache.size(), is(size + 1));
+    }
+
+    private static List<String> toList(NavigableSet<RouterManager.RouterMatchResult> results) {
+        return results.stream()
+                      .map(r -> r.getRouter().getId() + " " + r.getMatchTypes() + " " + r.getParameters())
+                      .collect(Collectors.toList());
+    }
 }
@@ -1,21 +1,35 @@
 package test.http.router.handler.body;
 
 import com.firefly.$;
+import com.firefly.client.http2.SimpleHTTPClient;
+import com.firefly.client.http2.SimpleHTTPClientConfiguration;
 import com.firefly.codec.http2.encode.UrlEncoded;
 import com.firefly.codec.http2.model.HttpHeader;
 import com.firefly.codec.http2.model.HttpStatus;
+import com.firefly.codec.http2.model.HttpVersion;
+import com.firefly.codec.http2.stream.FlowControlStrategy;
 import com.firefly.codec.http2.stream.HTTPOutputStream;
 import com.firefly.server.http2.HTTP2ServerBuilder;
+import com.firefly.server.http2.SimpleHTTPServer;
+import com.firefly.server.http2.SimpleHTTPServerConfiguration;
+import com.firefly.server.http2.router.ContentSubscriber;
+import com.firefly.server.http2.router.handler.body.HTTPBodyConfiguration;
+import com.firefly.server.http2.router.impl.ContentPublisher;
+import com.firefly.server.http2.router.impl.RouterManagerImpl;
 import com.firefly.utils.concurrent.Promise;
 import org.junit.Assert;
 import org.junit.Test;
 import test.http.router.handler.AbstractHTTPHandlerTest;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.Phaser;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.hamcrest.Matchers.is;
 
@@ -178,4 +192,204 @@ public class TestHTTPBodyHandler extends AbstractHTTPHandlerTest {
         $.httpClient().stop();
     }
 
+    @Test
+    public void testStreamingBody() {
+        StringBuilder bigData = new StringBuilder();
+        int dataSize = 1024 * 1024;
+        for (int i = 0; i < dataSize; i++) {
+            bigData.append(i);
+        }
+        byte[] data = $.string.getBytes(bigData.toString());
+
+        Phaser phaser = new Phaser(5);
+
+        HTTPBodyConfiguration bodyConfiguration = new HTTPBodyConfiguration();
+        bodyConfiguration.setStreamingBodyEnabled(true);
+        HTTP2ServerBuilder httpServer = $.httpServer(new SimpleHTTPServerConfiguration(), bodyConfiguration);
+        httpServer.router().post("/bigData").handler(ctx -> {
+            Assert.assertThat($.io.toString(ctx.getInputStream()), is(bigData.toString()));
+            $.io.close(ctx.getInputStream());
+            ctx.end("server received big data");
+            phaser.arrive();
+        }).router().post("/content/form").handler(ctx -> {
+            Assert.assertThat(ctx.getParameter("name"), is("你的名字"));
+            ctx.end("server received form data");
+            phaser.arrive();
+        }).listen(host, port);
+
+        // post big data using chunked encoding
+        List<ByteBuffer> buffers = $.buffer.split(ByteBuffer.wrap(data), 4 * 1024);
+        Promise.Completable<HTTPOutputStream> promise = new Promise.Completable<>();
+        promise.thenAccept(output -> {
+            try (HTTPOutputStream out = output) {
+                for (ByteBuffer buf : buffers) {
+                    out.write(buf);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        $.httpClient().post(uri + "/bigData").output(promise)
+         .submit()
+         .thenAccept(res -> {
+             Assert.assertThat(res.getStatus(), is(HttpStatus.OK_200));
+             Assert.assertThat(res.getStringBody(), is("server received big data"));
+             phaser.arrive();
+         });
+
+        $.httpClient().post(uri + "/content/form")
+         .putFormParam("name", "你的名字")
+         .submit()
+         .thenAccept(res -> {
+             Assert.assertThat(res.getStatus(), is(HttpStatus.OK_200));
+             Assert.assertThat(res.getStringBody(), is("server received form data"));
+             phaser.arrive();
+         });
+
+        phaser.arriveAndAwaitAdvance();
+        httpServer.stop();
+        $.httpClient().stop();
+    }
+
+    @Test
+    public void testContentSubscribe() {
+        byte[] data = new byte[1024 * 1024];
+        ThreadLocalRandom.current().nextBytes(data);
+
+        Phaser phaser = new Phaser(3);
+        ScheduledExecutorService consumer = Executors.newSingleThreadScheduledExecutor();
+        SimpleHTTPServer server = new SimpleHTTPServer(new SimpleHTTPServerConfiguration());
+        RouterManagerImpl routerManager = new RouterManagerImpl();
+        routerManager.register().post("/subscribe").handler(ctx -> ctx.contentSubscribe(new ContentSubscriber() {
+
+            ByteArrayOutputStream received = new ByteArrayOutputStream();
+            Subscription subscription;
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(ByteBuffer buffer) {
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                received.write(bytes, 0, bytes.length);
+                // the slow consumer makes the connection suspend reading
+                consumer.schedule(() -> subscription.request(1), 1, TimeUnit.MILLISECONDS);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                t.printStackTrace();
+                ctx.end("server receives content exception");
+                phaser.arrive();
+            }
+
+            @Override
+            public void onComplete() {
+                Assert.assertThat(Arrays.equals(received.toByteArray(), data), is(true));
+                ctx.end("server received " + received.size());
+                phaser.arrive();
+            }
+        }, 16 * 1024));
+        server.headerComplete(routerManager::accept).listen(host, port);
+
+        $.httpClient().post(uri + "/subscribe").put(HttpHeader.CONTENT_LENGTH, data.length + "")
+         .write(ByteBuffer.wrap(data))
+         .submit()
+         .thenAccept(res -> {
+             Assert.assertThat(res.getStatus(), is(HttpStatus.OK_200));
+             Assert.assertThat(res.getStringBody(), is("server received " + data.length));
+             phaser.arrive();
+         });
+
+        phaser.arriveAndAwaitAdvance();
+        server.stop();
+        consumer.shutdown();
+        $.httpClient().stop();
+    }
+
+    @Test
+    public void testContentSubscribeHttp2() throws Exception {
+        byte[] data = new byte[1024 * 1024];
+        ThreadLocalRandom.current().nextBytes(data);
+
+        Phaser phaser = new Phaser(3);
+        AtomicLong maxPendingSize = new AtomicLong();
+        ScheduledExecutorService consumer = Executors.newSingleThreadScheduledExecutor();
+        SimpleHTTPServerConfiguration serverConfiguration = new SimpleHTTPServerConfiguration();
+        serverConfiguration.setSecureConnectionEnabled(true);
+        SimpleHTTPServer server = new SimpleHTTPServer(serverConfiguration);
+        RouterManagerImpl routerManager = new RouterManagerImpl();
+        AtomicReference<HttpVersion> httpVersion = new AtomicReference<>();
+        routerManager.register().post("/subscribe").handler(ctx -> {
+            httpVersion.set(ctx.getRequest().getHttpVersion());
+            ByteArrayOutputStream received = new ByteArrayOutputStream();
+            ContentPublisher[] publisher = new ContentPublisher[1];
+            publisher[0] = new ContentPublisher(new ContentSubscriber() {
+
+                Subscription subscription;
+
+                @Override
+                public void onSubscribe(Subscription subscription) {
+                    this.subscription = subscription;
+                    subscription.request(1);
+                }
+
+                @Override
+                public void onNext(ByteBuffer buffer) {
+                    byte[] bytes = new byte[buffer.remaining()];
+                    buffer.get(bytes);
+                    received.write(bytes, 0, bytes.length);
+                    consumer.schedule(() -> {
+                        maxPendingSize.accumulateAndGet(publisher[0].getPendingSize(), Math::max);
+                        subscription.request(1);
+                    }, 2, TimeUnit.MILLISECONDS);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    t.printStackTrace();
+                    ctx.end("server receives content exception");
+                    phaser.arrive();
+                }
+
+                @Override
+                public void onComplete() {
+                    Assert.assertThat(Arrays.equals(received.toByteArray(), data), is(true));
+                    ctx.end("server received " + received.size());
+                    phaser.arrive();
+                }
+            }, ctx.getRequest().getConnection(), 16 * 1024);
+            ctx.getRequest().contentWithCallback(publisher[0]::offer);
+            ctx.contentComplete(r -> publisher[0].complete());
+            ctx.getRequest().getAsyncResponse();
+            publisher[0].subscribe();
+        });
+        server.headerComplete(routerManager::accept).listen(host, port);
+
+        SimpleHTTPClientConfiguration clientConfiguration = new SimpleHTTPClientConfiguration();
+        clientConfiguration.setSecureConnectionEnabled(true);
+        SimpleHTTPClient client = new SimpleHTTPClient(clientConfiguration);
+        client.post(uri + "/subscribe").put(HttpHeader.CONTENT_LENGTH, data.length + "")
+              .write(ByteBuffer.wrap(data))
+              .submit()
+              .thenAccept(res -> {
+                  Assert.assertThat(res.getStatus(), is(HttpStatus.OK_200));
+                  Assert.assertThat(res.getStringBody(), is("server received " + data.length));
+                  phaser.arrive();
+              });
+
+        phaser.awaitAdvanceInterruptibly(phaser.arrive(), 30, TimeUnit.SECONDS);
+        Assert.assertThat(httpVersion.get(), is(HttpVersion.HTTP_2));
+        // the stream window is returned when the content is delivered, so the queue is bounded by the window
+        Assert.assertThat(maxPendingSize.get() > 0, is(true));
+        Assert.assertThat(maxPendingSize.get() <= FlowControlStrategy.DEFAULT_WINDOW_SIZE, is(true));
+        server.stop();
+        consumer.shutdown();
+        client.stop();
+    }
+
 }
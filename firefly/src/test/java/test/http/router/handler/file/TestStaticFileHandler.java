@@ -4,16 +4,37 @@ import com.firefly.$;
 import com.firefly.codec.http2.model.HttpFields;
 import com.firefly.codec.http2.model.HttpHeader;
 import com.firefly.codec.http2.model.HttpStatus;
+import com.firefly.net.DefaultMetricReporterFactory;
 import com.firefly.server.http2.HTTP2ServerBuilder;
+import com.firefly.server.http2.router.handler.file.CompressedContentCache;
+import com.firefly.server.http2.router.handler.file.StaticFileConfiguration;
 import com.firefly.server.http2.router.handler.file.StaticFileHandler;
+import com.firefly.server.http2.router.handler.file.StaticResource;
+import com.firefly.server.http2.router.handler.file.StaticResourceCache;
+import com.firefly.utils.concurrent.ThreadUtils;
+import com.firefly.utils.io.BufferUtils;
 import org.junit.Assert;
 import org.junit.Test;
 import test.http.router.handler.AbstractHTTPHandlerTest;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static org.hamcrest.Matchers.is;
 
@@ -128,4 +149,278 @@ public class TestStaticFileHandler extends AbstractHTTPHandlerTest {
         httpServer.stop();
         $.httpClient().stop();
     }
+
+    @Test
+    public void testConditionalRequest() throws Exception {
+        HTTP2ServerBuilder httpServer = $.httpServer();
+        Path path = Paths.get(TestStaticFileHandler.class.getResource("/").toURI());
+        StaticFileHandler staticFileHandler = new StaticFileHandler(path.toAbsolutePath().toString());
+        httpServer.router().get("/static/*").handler(staticFileHandler).listen(host, port);
+
+        com.firefly.client.http2.SimpleResponse res = $.httpClient().get(uri + "/static/hello.txt").submit().get();
+        Assert.assertThat(res.getStatus(), is(HttpStatus.OK_200));
+        String eTag = res.getFields().get(HttpHeader.ETAG);
+        String lastModified = res.getFields().get(HttpHeader.LAST_MODIFIED);
+        Assert.assertThat(eTag != null, is(true));
+        Assert.assertThat(lastModified != null, is(true));
+
+        res = $.httpClient().get(uri + "/static/hello.txt").put(HttpHeader.IF_NONE_MATCH, eTag).submit().get();
+        Assert.assertThat(res.getStatus(), is(HttpStatus.NOT_MODIFIED_304));
+        Assert.assertThat(res.getStringBody(), is(""));
+
+        res = $.httpClient().get(uri + "/static/hello.txt").put(HttpHeader.IF_MODIFIED_SINCE, lastModified).submit().get();
+        Assert.assertThat(res.getStatus(), is(HttpStatus.NOT_MODIFIED_304));
+
+        res = $.httpClient().get(uri + "/static/hello.txt").put(HttpHeader.IF_NONE_MATCH, "\"foo\"").submit().get();
+        Assert.assertThat(res.getStatus(), is(HttpStatus.OK_200));
+        Assert.assertThat(res.getStringBody(), is("hello static file"));
+
+        httpServer.stop();
+        $.httpClient().stop();
+    }
+
+    @Test
+    public void testLargeFile() throws Exception {
+        File dir = Files.createTempDirectory("firefly-static").toFile();
+        dir.deleteOnExit();
+        File file = new File(dir, "large.bin");
+        file.deleteOnExit();
+        byte[] data = new byte[300 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        Files.write(file.toPath(), data);
+
+        HTTP2ServerBuilder httpServer = $.httpServer();
+        httpServer.router().get("/*").handler(new StaticFileHandler(dir.getAbsolutePath())).listen(host, port);
+
+        com.firefly.client.http2.SimpleResponse res = $.httpClient().get(uri + "/large.bin").submit().get();
+        Assert.assertThat(res.getStatus(), is(HttpStatus.OK_200));
+        Assert.assertArrayEquals(data, toArray(res.getResponseBody()));
+
+        res = $.httpClient().get(uri + "/large.bin").put(HttpHeader.RANGE, "bytes=1000-200999").submit().get();
+        Assert.assertThat(res.getStatus(), is(HttpStatus.PARTIAL_CONTENT_206));
+        byte[] expected = new byte[200 * 1000];
+        System.arraycopy(data, 1000, expected, 0, expected.length);
+        Assert.assertArrayEquals(expected, toArray(res.getResponseBody()));
+
+        httpServer.stop();
+        $.httpClient().stop();
+    }
+
+    private static byte[] toArray(List<ByteBuffer> buffers) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        buffers.forEach(buf -> {
+            byte[] b = BufferUtils.toArray(buf);
+            out.write(b, 0, b.length);
+        });
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testResourceCache() throws Exception {
+        File dir = Files.createTempDirectory("firefly-static").toFile();
+        dir.deleteOnExit();
+        File file = new File(dir, "hello.txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "hello".getBytes());
+
+        StaticFileConfiguration configuration = new StaticFileConfiguration();
+        configuration.setRootPath(dir.getAbsolutePath());
+        configuration.setCacheValidationInterval(0);
+        StaticResourceCache cache = new StaticResourceCache(configuration);
+
+        StaticResource resource = cache.get("/hello.txt");
+        Assert.assertThat(resource.hasContent(), is(true));
+        Assert.assertThat(resource.getContent().isReadOnly(), is(true));
+        Assert.assertThat(BufferUtils.toString(resource.getContent()), is("hello"));
+        Assert.assertThat(resource.getMimeType(), is("text/plain"));
+        Assert.assertThat(cache.getContentSize(), is(5L));
+        Assert.assertThat(cache.get("/hello.txt") == resource, is(true));
+
+        Files.write(file.toPath(), "hello world".getBytes());
+        file.setLastModified(resource.getLastModified() + 2000);
+        StaticResource reloaded = cache.get("/hello.txt");
+        Assert.assertThat(reloaded == resource, is(false));
+        Assert.assertThat(BufferUtils.toString(reloaded.getContent()), is("hello world"));
+        Assert.assertThat(reloaded.getETag().equals(resource.getETag()), is(false));
+        Assert.assertThat(cache.getContentSize(), is(11L));
+
+        Assert.assertThat(file.delete(), is(true));
+        Assert.assertThat(cache.get("/hello.txt") == null, is(true));
+        Assert.assertThat(cache.getContentSize(), is(0L));
+        Assert.assertThat(cache.get("/nothing.txt") == null, is(true));
+    }
+
+    @Test
+    public void testConcurrentCompression() throws Exception {
+        File dir = Files.createTempDirectory("firefly-static").toFile();
+        dir.deleteOnExit();
+        File file = new File(dir, "hello.js");
+        file.deleteOnExit();
+        String text = createText();
+        Files.write(file.toPath(), text.getBytes());
+
+        StaticFileConfiguration configuration = new StaticFileConfiguration();
+        configuration.setRootPath(dir.getAbsolutePath());
+        configuration.setCompressionEnabled(true);
+        StaticResource resource = new StaticResourceCache(configuration).get("/hello.js");
+        AtomicInteger compressions = new AtomicInteger();
+        CompressedContentCache compressedContentCache = new CompressedContentCache(configuration,
+                new DefaultMetricReporterFactory()) {
+            @Override
+            protected ByteBuffer compress(StaticResource resource) throws IOException {
+                compressions.incrementAndGet();
+                ThreadUtils.sleep(300);
+                return super.compress(resource);
+            }
+        };
+
+        int threadNum = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<ByteBuffer>> results = new ArrayList<>();
+        for (int i = 0; i < threadNum; i++) {
+            CompletableFuture<ByteBuffer> result = new CompletableFuture<>();
+            results.add(result);
+            new Thread(() -> {
+                try {
+                    start.await();
+                    result.complete(compressedContentCache.get("/hello.js", resource));
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                }
+            }).start();
+        }
+        start.countDown();
+
+        for (CompletableFuture<ByteBuffer> result : results) {
+            Assert.assertThat(new String(gunzip(BufferUtils.toArray(result.get(10, TimeUnit.SECONDS)))), is(text));
+        }
+        Assert.assertThat(compressions.get(), is(1));
+        Assert.assertThat(compressedContentCache.size(), is(1));
+    }
+
+    private static byte[] gunzip(byte[] data) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[1024];
+            int len;
+            while ((len = in.read(buf)) != -1) {
+                out.write(buf, 0, len);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static String createText() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append("function hello").append(i).append("() { return 'hello static file'; }\n");
+        }
+        return text.toString();
+    }
+
+    @Test
+    public void testCompression() throws Exception {
+        File dir = Files.createTempDirectory("firefly-static").toFile();
+        dir.deleteOnExit();
+        File file = new File(dir, "hello.js");
+        file.deleteOnExit();
+        String text = createText();
+        Files.write(file.toPath(), text.getBytes());
+
+        StaticFileConfiguration configuration = new StaticFileConfiguration();
+        configuration.setRootPath(dir.getAbsolutePath());
+        configuration.setCompressionEnabled(true);
+        StaticFileHandler staticFileHandler = new StaticFileHandler(configuration);
+        HTTP2ServerBuilder httpServer = $.httpServer();
+        httpServer.router().get("/*").handler(staticFileHandler).listen(host, port);
+
+        com.firefly.client.http2.SimpleResponse res = $.httpClient().get(uri + "/hello.js")
+                                                      .put(HttpHeader.ACCEPT_ENCODING, "deflate, gzip;q=0.8")
+                                                      .submit().get();
+        Assert.assertThat(res.getStatus(), is(HttpStatus.OK_200));
+        Assert.assertThat(res.getFields().get(HttpHeader.CONTENT_ENCODING), is("gzip"));
+        Assert.assertThat(res.getFields().get(HttpHeader.VARY), is("Accept-Encoding"));
+        Assert.assertThat(res.getFields().get(HttpHeader.CONTENT_TYPE), is("application/javascript"));
+        byte[] gzipContent = toArray(res.getResponseBody());
+        Assert.assertThat(gzipContent.length < text.length(), is(true));
+        Assert.assertThat(new String(gunzip(gzipContent)), is(text));
+        Assert.assertThat(staticFileHandler.getCompressedContentCache().size(), is(1));
+        String eTag = res.getFields().get(HttpHeader.ETAG);
+
+        res = $.httpClient().get(uri + "/hello.js")
+               .put(HttpHeader.ACCEPT_ENCODING, "gzip")
+               .put(HttpHeader.IF_NONE_MATCH, eTag)
+               .submit().get();
+        Assert.assertThat(res.getStatus(), is(HttpStatus.NOT_MODIFIED_304));
+
+        // the identity content does not match the ETag of the gzip content
+        res = $.httpClient().get(uri + "/hello.js")
+               .put(HttpHeader.IF_NONE_MATCH, eTag)
+               .submit().get();
+        Assert.assertThat(res.getStatus(), is(HttpStatus.OK_200));
+        Assert.assertThat(res.getFields().get(HttpHeader.CONTENT_ENCODING) == null, is(true));
+        Assert.assertThat(res.getFields().get(HttpHeader.VARY), is("Accept-Encoding"));
+        Assert.assertThat(res.getStringBody(), is(text));
+
+        res = $.httpClient().get(uri + "/hello.js")
+               .put(HttpHeader.ACCEPT_ENCODING, "gzip;q=0, *")
+               .submit().get();
+        Assert.assertThat(res.getFields().get(HttpHeader.CONTENT_ENCODING) == null, is(true));
+        Assert.assertThat(res.getStringBody(), is(text));
+
+        res = $.httpClient().get(uri + "/hello.js")
+               .put(HttpHeader.ACCEPT_ENCODING, "gzip")
+               .put(HttpHeader.RANGE, "bytes=0-7")
+               .submit().get();
+        Assert.assertThat(res.getStatus(), is(HttpStatus.PARTIAL_CONTENT_206));
+        Assert.assertThat(res.getFields().get(HttpHeader.CONTENT_ENCODING) == null, is(true));
+        Assert.assertThat(res.getStringBody(), is("function"));
+
+        httpServer.stop();
+        $.httpClient().stop();
+    }
+
+    @Test
+    public void testPrecompressed() throws Exception {
+        File dir = Files.createTempDirectory("firefly-static").toFile();
+        dir.deleteOnExit();
+        File file = new File(dir, "hello.css");
+        file.deleteOnExit();
+        File gzipFile = new File(dir, "hello.css.gz");
+        gzipFile.deleteOnExit();
+        String text = createText();
+        Files.write(file.toPath(), text.getBytes());
+        try (GZIPOutputStream out = new GZIPOutputStream(Files.newOutputStream(gzipFile.toPath()))) {
+            out.write(text.getBytes());
+        }
+
+        StaticFileConfiguration configuration = new StaticFileConfiguration();
+        configuration.setRootPath(dir.getAbsolutePath());
+        configuration.setPrecompressedEnabled(true);
+        StaticFileHandler staticFileHandler = new StaticFileHandler(configuration);
+        HTTP2ServerBuilder httpServer = $.httpServer();
+        httpServer.router().get("/*").handler(staticFileHandler).listen(host, port);
+
+        com.firefly.client.http2.SimpleResponse res = $.httpClient().get(uri + "/hello.css")
+                                                      .put(HttpHeader.ACCEPT_ENCODING, "gzip")
+                                                      .submit().get();
+        Assert.assertThat(res.getStatus(), is(HttpStatus.OK_200));
+        Assert.assertThat(res.getFields().get(HttpHeader.CONTENT_ENCODING), is("gzip"));
+        Assert.assertThat(res.getFields().get(HttpHeader.VARY), is("Accept-Encoding"));
+        Assert.assertThat(res.getFields().get(HttpHeader.CONTENT_TYPE), is("text/css"));
+        Assert.assertArrayEquals(Files.readAllBytes(gzipFile.toPath()), toArray(res.getResponseBody()));
+        Assert.assertThat(staticFileHandler.getCompressedContentCache().size(), is(0));
+
+        res = $.httpClient().get(uri + "/hello.css").submit().get();
+        Assert.assertThat(res.getFields().get(HttpHeader.CONTENT_ENCODING) == null, is(true));
+        Assert.assertThat(res.getStringBody(), is(text));
+
+        res = $.httpClient().get(uri + "/hello.css.gz").submit().get();
+        Assert.assertThat(res.getStatus(), is(HttpStatus.OK_200));
+
+        httpServer.stop();
+        $.httpClient().stop();
+    }
 }
@@ -0,0 +1,113 @@
+package test.http.router.handler.session;
+
+import com.codahale.metrics.MetricRegistry;
+import com.firefly.server.http2.router.handler.session.HTTPSessionConfiguration;
+import com.firefly.server.http2.router.handler.session.HTTPSessionImpl;
+import com.firefly.server.http2.router.handler.session.OffHeapSessionStore;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.hamcrest.Matchers.is;
+
+/**
+ * @author Pengtao Qiu
+ */
+public class TestOffHeapSessionStore {
+
+    private HTTPSessionConfiguration configuration;
+    private OffHeapSessionStore sessionStore;
+
+    @Before
+    public void init() {
+        configuration = new HTTPSessionConfiguration();
+        configuration.setPassivationIdleTime(0);
+        configuration.setPassivationInterval(60 * 1000);
+        configuration.setOffHeapSegmentSize(4 * 1024);
+        configuration.setMaxOffHeapSize(16 * 1024);
+        sessionStore = new OffHeapSessionStore(configuration);
+    }
+
+    @After
+    public void destroy() {
+        sessionStore.stop();
+    }
+
+    @Test
+    public void testPassivateAndActivate() {
+        Date date = new Date();
+        HTTPSessionImpl session = new HTTPSessionImpl("s1");
+        session.setAttribute("string", "hello");
+        session.setAttribute("int", 10);
+        session.setAttribute("long", 20L);
+        session.setAttribute("boolean", true);
+        session.setAttribute("bytes", new byte[]{1, 2, 3});
+        session.setAttribute("date", date);
+        sessionStore.put(session.getId(), session);
+        sessionStore.put("empty", new HTTPSessionImpl("empty"));
+
+        Assert.assertThat(sessionStore.passivate(), is(2));
+        Assert.assertThat(sessionStore.getUsedSize() > 0, is(true));
+
+        HTTPSessionImpl s = (HTTPSessionImpl) sessionStore.get("s1");
+        Assert.assertThat(s.getAttribute("string"), is("hello"));
+        Assert.assertThat(s.getAttribute("int"), is(10));
+        Assert.assertThat(s.getAttribute("long"), is(20L));
+        Assert.assertThat(s.getAttribute("boolean"), is(true));
+        Assert.assertThat(Arrays.equals((byte[]) s.getAttribute("bytes"), new byte[]{1, 2, 3}), is(true));
+        Assert.assertThat(s.getAttribute("date"), is(date));
+        Assert.assertThat(sessionStore.get("empty").getAttributeNames().hasMoreElements(), is(false));
+        Assert.assertThat(sessionStore.getUsedSize(), is(0L));
+
+        MetricRegistry metrics = configuration.getMetricReporterFactory().getMetricRegistry();
+        Assert.assertThat(metrics.meter("http2.session.store.hit.count").getCount(), is(2L));
+        Assert.assertThat(metrics.meter("http2.session.store.activation.count").getCount(), is(1L));
+    }
+
+    @Test
+    public void testEvict() {
+        char[] value = new char[1000];
+        Arrays.fill(value, 'a');
+        int count = 40;
+        for (int i = 0; i < count; i++) {
+            HTTPSessionImpl session = new HTTPSessionImpl("s" + i);
+            session.setAttribute("value", new String(value));
+            sessionStore.put(session.getId(), session);
+            sessionStore.passivate();
+        }
+
+        // every segment holds 4 sessions, the store keeps the last 4 segments
+        Assert.assertThat(sessionStore.getAllocatedSize(), is(16 * 1024L));
+        Assert.assertThat(sessionStore.size() <= 16, is(true));
+        Assert.assertThat(sessionStore.get("s0") == null, is(true));
+        Assert.assertThat(sessionStore.get("s" + (count - 1)).getAttribute("value"), is(new String(value)));
+
+        MetricRegistry metrics = configuration.getMetricReporterFactory().getMetricRegistry();
+        Assert.assertThat(metrics.meter("http2.session.store.eviction.count").getCount(),
+                is((long) count - sessionStore.size()));
+
+        // the removed sessions release the memory
+        for (int i = 0; i < count; i++) {
+            sessionStore.remove("s" + i);
+        }
+        Assert.assertThat(sessionStore.getUsedSize(), is(0L));
+    }
+
+    @Test
+    public void testSharedMetricRegistry() {
+        MetricRegistry metrics = configuration.getMetricReporterFactory().getMetricRegistry();
+        sessionStore.put("s1", new HTTPSessionImpl("s1"));
+        Assert.assertThat(metrics.getGauges().get("http2.session.store.size").getValue(), is(1));
+
+        OffHeapSessionStore another = new OffHeapSessionStore(configuration);
+        Assert.assertThat(metrics.getGauges().get("http2.session.store.size").getValue(), is(0));
+        another.stop();
+        Assert.assertThat(metrics.getGauges().containsKey("http2.session.store.size"), is(false));
+        Assert.assertThat(metrics.getGauges().containsKey("http2.session.store.offHeap.used"), is(false));
+        Assert.assertThat(metrics.getGauges().containsKey("http2.session.store.offHeap.allocated"), is(false));
+    }
+}
@@ -0,0 +1,119 @@
+package test.http.router.handler.session;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.firefly.server.http2.router.handler.session.*;
+import com.firefly.utils.concurrent.Scheduler;
+import com.firefly.utils.concurrent.Schedulers;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.is;
+
+/**
+ * @author Pengtao Qiu
+ */
+public class TestSessionExpiryWheel {
+
+    private Scheduler scheduler;
+    private HTTPSessionConfiguration configuration;
+    private LocalSessionStore sessionStore;
+    private SessionExpiryWheel expiryWheel;
+
+    @Before
+    public void init() {
+        scheduler = Schedulers.createScheduler();
+        configuration = new HTTPSessionConfiguration();
+        configuration.setExpiryTickInterval(100);
+        sessionStore = new LocalSessionStore();
+        expiryWheel = new SessionExpiryWheel(sessionStore, scheduler, configuration);
+    }
+
+    @After
+    public void destroy() {
+        expiryWheel.stop();
+        scheduler.stop();
+    }
+
+    private HTTPSessionImpl createSession(String id, int maxInactiveInterval) {
+        HTTPSessionImpl session = new HTTPSessionImpl(id);
+        session.setMaxInactiveInterval(maxInactiveInterval);
+        sessionStore.put(id, session);
+        expiryWheel.schedule(session);
+        return session;
+    }
+
+    private void waitForRemoving(String id) throws InterruptedException {
+        // the test may run slowly when the machine is busy
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sessionStore.get(id) != null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+
+    @Test
+    public void testExpire() throws Exception {
+        HTTPSessionImpl active = createSession("active", 1);
+        createSession("inactive", 1);
+        createSession("invalid", 60).invalidate();
+        createSession("long", 60);
+
+        for (int i = 0; i < 15; i++) {
+            Thread.sleep(100);
+            active.setLastAccessedTime(System.currentTimeMillis());
+            expiryWheel.touch(active);
+        }
+        waitForRemoving("inactive");
+        Assert.assertThat(sessionStore.get("inactive") == null, is(true));
+        Assert.assertThat(sessionStore.get("active") == active, is(true));
+        Assert.assertThat(sessionStore.get("long") != null, is(true));
+        // the invalid session is removed at its deadline
+        Assert.assertThat(sessionStore.size(), is(3));
+
+        Meter expiration = configuration.getMetricReporterFactory().getMetricRegistry()
+                                        .meter("http2.session.expiration.count");
+        Assert.assertThat(expiration.getCount(), is(1L));
+        Assert.assertThat(expiryWheel.size(), is(3));
+    }
+
+    @Test
+    public void testShortenInterval() throws Exception {
+        HTTPSessionImpl session = createSession("shorten", 60);
+        session.setMaxInactiveInterval(1);
+        expiryWheel.touch(session);
+        waitForRemoving("shorten");
+        Assert.assertThat(sessionStore.get("shorten") == null, is(true));
+        Assert.assertThat(expiryWheel.size(), is(0));
+    }
+
+    @Test
+    public void testSharedMetricRegistry() {
+        MetricRegistry metrics = configuration.getMetricReporterFactory().getMetricRegistry();
+        createSession("first", 60);
+        Assert.assertThat(metrics.getGauges().get("http2.session.expiry.scheduled.size").getValue(), is(1));
+
+        // the latest wheel replaces the gauges, and the stopped wheel removes them
+        SessionExpiryWheel another = new SessionExpiryWheel(new LocalSessionStore(), scheduler, configuration);
+        Assert.assertThat(metrics.getGauges().get("http2.session.expiry.scheduled.size").getValue(), is(0));
+        another.stop();
+        Assert.assertThat(metrics.getGauges().containsKey("http2.session.expiry.scheduled.size"), is(false));
+        Assert.assertThat(metrics.getGauges().containsKey("http2.session.live.size"), is(false));
+    }
+
+    @Test
+    public void testSessionId() {
+        SessionIdGenerator generator = new SessionIdGenerator();
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 10000; i++) {
+            String id = generator.generate();
+            Assert.assertThat(id.length(), is(22));
+            ids.add(id);
+        }
+        Assert.assertThat(ids.size(), is(10000));
+    }
+}